@@ -0,0 +1,145 @@
+
+package com.atakmap.android.geofence.monitor;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.maps.Marker;
+import com.atakmap.android.maps.PointMapItem;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeoFenceIndexTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "GeoFenceIndexTest";
+
+    private static double[] envelope(double lat, double lng, double d) {
+        return new double[] {
+                lat - d, lng - d, lat + d, lng + d
+        };
+    }
+
+    @Test
+    public void moved_items_reported_to_entered_and_left_fences() {
+        GeoFenceIndex<String> index = new GeoFenceIndex<>();
+        Marker m = new Marker(new GeoPoint(30, -80), "marker");
+        List<PointMapItem> items = Collections.<PointMapItem> singletonList(m);
+        index.put("a", envelope(35, -78, 0.5), 0, items);
+        index.put("b", envelope(40, -70, 0.5), 0, items);
+        assertTrue(index.isCurrent("a", envelope(35, -78, 0.5), 0));
+
+        // not in either envelope
+        m.setPoint(new GeoPoint(30, -81));
+        assertTrue(index.drainMoved().isEmpty());
+
+        // entered a
+        m.setPoint(new GeoPoint(35, -78));
+        Map<String, List<PointMapItem>> moved = index.drainMoved();
+        assertEquals(Collections.singleton("a"), moved.keySet());
+        assertEquals(items, moved.get("a"));
+
+        // not moved
+        assertTrue(index.drainMoved().isEmpty());
+
+        // left a, entered b
+        m.setPoint(new GeoPoint(40, -70));
+        moved = index.drainMoved();
+        assertEquals(2, moved.size());
+        assertEquals(items, moved.get("a"));
+        assertEquals(items, moved.get("b"));
+
+        // no longer tracked by b
+        index.put("b", envelope(40, -70, 0.5), 1,
+                Collections.<PointMapItem> emptyList());
+        m.setPoint(new GeoPoint(40, -70.1));
+        assertTrue(index.drainMoved().isEmpty());
+
+        index.remove("a");
+        assertEquals(0, index.getTrackedCount());
+    }
+
+    @Test
+    public void fences_without_envelope_always_candidates() {
+        GeoFenceIndex<String> index = new GeoFenceIndex<>();
+        Marker m = new Marker(new GeoPoint(30, -80), "marker");
+        List<PointMapItem> items = Collections.<PointMapItem> singletonList(m);
+        index.put("none", null, 0, items);
+        index.put("idl", new double[] {
+                10, 170, 20, 190
+        }, 0, items);
+
+        m.setPoint(new GeoPoint(-30, 80));
+        Map<String, List<PointMapItem>> moved = index.drainMoved();
+        assertEquals(2, moved.size());
+
+        // envelope changes are detected
+        assertTrue(index.isCurrent("none", null, 0));
+        assertFalse(index.isCurrent("none", envelope(0, 0, 1), 0));
+        index.put("none", envelope(0, 0, 1), 0, items);
+        m.setPoint(new GeoPoint(-31, 80));
+        moved = index.drainMoved();
+        assertEquals(Collections.singleton("idl"), moved.keySet());
+        assertNull(moved.get("none"));
+    }
+
+    @Test
+    public void update_throughput() {
+        final int numFences = 256;
+        final int numItems = 2000;
+        final int numUpdates = 200000;
+        final Random r = new Random(1);
+
+        GeoFenceIndex<Integer> index = new GeoFenceIndex<>();
+        List<PointMapItem> items = new ArrayList<>(numItems);
+        for (int i = 0; i < numItems; i++)
+            items.add(new Marker(new GeoPoint(30 + r.nextDouble() * 10,
+                    -80 + r.nextDouble() * 10), "item" + i));
+
+        // fences on a grid, every fence tracks every item
+        for (int i = 0; i < numFences; i++) {
+            final double lat = 30 + (i / 16) * (10d / 16d);
+            final double lng = -80 + (i % 16) * (10d / 16d);
+            index.put(i, new double[] {
+                    lat, lng, lat + 0.1, lng + 0.1
+            }, 0, items);
+        }
+        assertEquals(numFences, index.getFenceCount());
+        assertEquals(numItems, index.getTrackedCount());
+
+        long reported = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < numUpdates; i++) {
+            final PointMapItem item = items.get(r.nextInt(numItems));
+            final GeoPoint p = item.getPoint();
+            item.setPoint(new GeoPoint(p.getLatitude() + 0.001,
+                    p.getLongitude() + 0.001));
+            // drain in batches, as the monitor pass does
+            if (i % 100 == 99) {
+                for (List<PointMapItem> l : index.drainMoved().values())
+                    reported += l.size();
+            }
+        }
+        final long elapsed = Math.max(System.nanoTime() - start, 1L);
+
+        Log.d(TAG, String.format(LocaleUtil.US,
+                "%d fences, %d items: %.0f updates/sec, %d fence checks "
+                        + "for %d updates (%d without the index)",
+                numFences, numItems, numUpdates * 1e9d / elapsed, reported,
+                numUpdates, (long) numUpdates * numFences));
+        assertTrue(reported < (long) numUpdates * numFences);
+        index.clear();
+        assertEquals(0, index.getTrackedCount());
+    }
+}
@@ -0,0 +1,175 @@
+package com.atakmap.android.maps;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.hierarchy.filters.FOVFilter;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.coremap.maps.coords.GeoPointMetaData;
+
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MapItemSpatialIndexTest extends ATAKInstrumentedTest {
+
+    private static GeoBounds around(double lat, double lng, double d) {
+        return new GeoBounds(lat + d, lng - d, lat - d, lng + d);
+    }
+
+    private static class FilterablePolyline extends Polyline
+            implements FOVFilter.Filterable {
+        FilterablePolyline(String uid) {
+            super(uid);
+        }
+
+        @Override
+        public boolean accept(FOVFilter.MapState fov) {
+            return true;
+        }
+    }
+
+    private static class AnchoredPolyline extends Polyline
+            implements AnchoredMapItem {
+        final Marker anchor;
+
+        AnchoredPolyline(String uid, Marker anchor) {
+            super(uid);
+            this.anchor = anchor;
+        }
+
+        @Override
+        public PointMapItem getAnchorItem() {
+            return anchor;
+        }
+    }
+
+    @Test
+    public void point_items_follow_point_changes() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        Marker m = new Marker(new GeoPoint(35, -78), "marker");
+        index.add(m);
+        assertFalse(index.isUnindexed(m));
+        assertTrue(index.query(around(35, -78, 0.01)).contains(m));
+        assertFalse(index.query(around(40, -70, 0.01)).contains(m));
+        assertTrue(index.query(new GeoPoint(35, -78.001), 500).contains(m));
+
+        m.setPoint(new GeoPoint(40, -70));
+        assertFalse(index.query(around(35, -78, 0.01)).contains(m));
+        assertTrue(index.query(around(40, -70, 0.01)).contains(m));
+
+        index.remove(m);
+        assertFalse(index.query(around(40, -70, 0.01)).contains(m));
+    }
+
+    @Test
+    public void shapes_indexed_on_points() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        Polyline line = new Polyline("line");
+        line.setPoints(new GeoPoint[] {
+                new GeoPoint(35, -78), new GeoPoint(35, -77)
+        });
+        index.add(line);
+        assertFalse(index.isUnindexed(line));
+        assertTrue(index.query(around(35, -77, 0.01)).contains(line));
+        assertFalse(index.query(around(36, -76, 0.01)).contains(line));
+
+        line.setPoints(new GeoPoint[] {
+                new GeoPoint(35, -78), new GeoPoint(36, -76)
+        });
+        assertTrue(index.query(around(36, -76, 0.01)).contains(line));
+    }
+
+    @Test
+    public void shapes_follow_radius_changes() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        GeoPointMetaData center = new GeoPointMetaData(new GeoPoint(35, -78));
+        Ellipse ellipse = new Ellipse("ellipse");
+        ellipse.setDimensions(center, 100, 100);
+        index.add(ellipse);
+
+        // ~5km east of the center
+        GeoBounds east = around(35, -77.945, 0.001);
+        assertFalse(index.query(east).contains(ellipse));
+
+        ellipse.setDimensions(center, 10000, 10000);
+        assertTrue(index.query(east).contains(ellipse));
+
+        ellipse.setDimensions(center, 100, 100);
+        assertFalse(index.query(east).contains(ellipse));
+    }
+
+    @Test
+    public void filterable_and_anchored_items_always_candidates() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        FilterablePolyline filterable = new FilterablePolyline("filterable");
+        filterable.setPoints(new GeoPoint[] {
+                new GeoPoint(35, -78), new GeoPoint(35, -77)
+        });
+        Marker anchor = new Marker(new GeoPoint(40, -70), "anchor");
+        AnchoredPolyline anchored = new AnchoredPolyline("anchored", anchor);
+        anchored.setPoints(new GeoPoint[] {
+                new GeoPoint(35, -78), new GeoPoint(35, -77)
+        });
+        index.add(filterable);
+        index.add(anchored);
+        assertTrue(index.isUnindexed(filterable));
+        assertTrue(index.isUnindexed(anchored));
+
+        Collection<MapItem> hits = index.query(around(-20, 100, 0.01));
+        assertTrue(hits.contains(filterable));
+        assertTrue(hits.contains(anchored));
+        hits = index.query(new GeoPoint(-20, 100), 10);
+        assertTrue(hits.contains(filterable));
+        assertTrue(hits.contains(anchored));
+
+        // a change in location does not move them into the index
+        anchored.setPoints(new GeoPoint[] {
+                new GeoPoint(36, -78), new GeoPoint(36, -77)
+        });
+        assertTrue(index.isUnindexed(anchored));
+
+        index.clear();
+        assertTrue(index.query(around(-20, 100, 0.01)).isEmpty());
+    }
+
+    @Test
+    public void find_items_matches_full_scan() {
+        DefaultMapGroup group = new DefaultMapGroup("test");
+        Marker near = new Marker(new GeoPoint(35, -78), "near");
+        Marker far = new Marker(new GeoPoint(-20, 100), "far");
+        Polyline line = new Polyline("line");
+        line.setPoints(new GeoPoint[] {
+                new GeoPoint(34.9, -78.1), new GeoPoint(35.1, -77.9)
+        });
+        FilterablePolyline filterable = new FilterablePolyline("filterable");
+        filterable.setPoints(new GeoPoint[] {
+                new GeoPoint(-20, 100), new GeoPoint(-21, 101)
+        });
+        group.addItem(near);
+        group.addItem(far);
+        group.addItem(line);
+        group.addItem(filterable);
+
+        Collection<MapItem> found = group.findItems(around(35, -78, 0.05),
+                Collections.<String, String> emptyMap());
+        assertEquals(3, found.size());
+        assertTrue(found.contains(near));
+        assertTrue(found.contains(line));
+        assertTrue(found.contains(filterable));
+
+        found = group.findItems(new GeoPoint(35, -78), 1000,
+                Collections.<String, String> emptyMap());
+        assertTrue(found.contains(near));
+        assertFalse(found.contains(far));
+
+        group.removeItem(near);
+        found = group.findItems(around(35, -78, 0.05),
+                Collections.<String, String> emptyMap());
+        assertFalse(found.contains(near));
+    }
+}
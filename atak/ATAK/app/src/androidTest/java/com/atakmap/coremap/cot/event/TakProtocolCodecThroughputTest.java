@@ -0,0 +1,103 @@
+
+package com.atakmap.coremap.cot.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures {@link TakProtocolCodec} encode and decode throughput against the
+ * XML path, for the same SA message.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TakProtocolCodecThroughputTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "TakProtocolCodecThroughputTest";
+
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 20000;
+
+    private final static String SA = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+            + "<event version='2.0' uid='ANDROID-589520ccfcd20f01' type='a-f-G-U-C' time='2020-12-16T19:59:34.913Z' start='2020-12-16T19:59:34.913Z' stale='2020-12-16T20:05:34.913Z' how='h-e' access='Unclassified'>"
+            + "<point lat='38.85606343062312' lon='-77.0563755018233' hae='9999999.0' ce='9999999.0' le='9999999.0' />"
+            + "<detail>"
+            + "<contact endpoint='*:-1:stcp' callsign='HOPE'/>"
+            + "<__group name='Cyan' role='Team Member'/>"
+            + "<precisionlocation geopointsrc='GPS' altsrc='GPS'/>"
+            + "<status battery='88'/>"
+            + "<takv device='SAMSUNG SM-G950U' platform='ATAK-CIV' os='28' version='4.5.0'/>"
+            + "<track speed='12' course='270.25'/>"
+            + "<uid Droid='HOPE'/>"
+            + "</detail>"
+            + "</event>";
+
+    @Test
+    public void encode_decode_throughput() throws Exception {
+        final CotEvent event = CotEvent.parse(SA);
+        assertTrue(event.isValid());
+
+        final byte[] proto = TakProtocolCodec.encode(event);
+        final byte[] xml = event.toString().getBytes(StandardCharsets.UTF_8);
+
+        // the typed track must decode to the original attribute text
+        final CotEvent decoded = TakProtocolCodec.decode(proto, 0,
+                proto.length);
+        assertEquals("12", decoded.getDetail().getChild("track")
+                .getAttribute("speed"));
+
+        for (int i = 0; i < WARMUP; i++) {
+            TakProtocolCodec.decode(TakProtocolCodec.encode(event), 0,
+                    proto.length);
+            CotEvent.parse(event.toString());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            TakProtocolCodec.encode(event);
+        final double protoEncode = rate(proto.length, start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            TakProtocolCodec.decode(proto, 0, proto.length);
+        final double protoDecode = rate(proto.length, start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            event.toString().getBytes(StandardCharsets.UTF_8);
+        final double xmlEncode = rate(xml.length, start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            CotEvent.parse(new String(xml, StandardCharsets.UTF_8));
+        final double xmlDecode = rate(xml.length, start);
+
+        Log.d(TAG, String.format(LocaleUtil.US,
+                "%d events, protobuf %d bytes: encode %.0f bytes/sec, "
+                        + "decode %.0f bytes/sec; XML %d bytes: encode %.0f "
+                        + "bytes/sec, decode %.0f bytes/sec",
+                ITERATIONS, proto.length, protoEncode, protoDecode,
+                xml.length, xmlEncode, xmlDecode));
+    }
+
+    /**
+     * @param size  The size of one message, in bytes
+     * @param start The start of the timed loop, from
+     *              {@link System#nanoTime()}
+     * @return the throughput of {@link #ITERATIONS} messages, in bytes per
+     *         second
+     */
+    private static double rate(int size, long start) {
+        final long elapsed = Math.max(System.nanoTime() - start, 1L);
+        return (double) size * ITERATIONS * 1e9d / elapsed;
+    }
+}
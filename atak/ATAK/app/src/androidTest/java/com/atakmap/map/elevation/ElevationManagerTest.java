@@ -2,6 +2,7 @@
 package com.atakmap.map.elevation;
 
 import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.maps.coords.GeoCalculations;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.map.layer.feature.geometry.Envelope;
@@ -159,6 +160,70 @@ public class ElevationManagerTest extends ATAKInstrumentedTest {
         assertTrue(fetched > 0);
     }
 
+    @Test
+    public void sample_along_polyline_places_vertices_and_intervals() {
+        final double[] lonLat = new double[] {
+                -77.5, 34.5, -77.5, 34.6, -77.4, 34.6
+        };
+        final double[] samples = ElevationManager.sampleAlongPolyline(lonLat,
+                3, 1000d, null, null);
+
+        int expected = 1;
+        for (int i = 1; i < 3; i++)
+            expected += (int) Math.ceil(segmentLength(lonLat, i) / 1000d);
+        assertEquals(expected * 3, samples.length);
+
+        // vertices are sampled exactly
+        assertEquals(-77.5, samples[0], 0.0);
+        assertEquals(34.5, samples[1], 0.0);
+        assertEquals(-77.4, samples[samples.length - 3], 0.0);
+        assertEquals(34.6, samples[samples.length - 2], 0.0);
+        for (int i = 0; i < samples.length; i += 3)
+            assertEquals(34567, samples[i + 2], 0.0);
+    }
+
+    @Test
+    public void sample_along_polyline_interval_near_multiple_of_length() {
+        // accumulating the interval drifts below the segment length when the
+        // length is (close to) a multiple of the interval
+        final double[] lonLat = new double[] {
+                -77.5, 34.5, -77.5, 34.5
+        };
+        for (int i = 1; i <= 200; i++) {
+            lonLat[3] = 34.5 + (i * 1e-5);
+            final double length = segmentLength(lonLat, 1);
+            final double[] intervals = new double[] {
+                    0.1d, length / 7d, length / 10d, length / 3d
+            };
+            for (double interval : intervals) {
+                final double[] samples = ElevationManager.sampleAlongPolyline(
+                        lonLat, 2, interval, null, null);
+                final int steps = (int) Math.ceil(length / interval);
+                assertEquals(Math.max(steps, 1) + 1, samples.length / 3);
+                assertEquals(lonLat[2], samples[samples.length - 3], 0.0);
+                assertEquals(lonLat[3], samples[samples.length - 2], 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void sample_along_polyline_repeated_vertex() {
+        final double[] lonLat = new double[] {
+                -77.5, 34.5, -77.5, 34.5, -77.5, 34.51
+        };
+        final double[] samples = ElevationManager.sampleAlongPolyline(lonLat,
+                3, 100d, null, null);
+        final int expected = 2
+                + (int) Math.ceil(segmentLength(lonLat, 2) / 100d);
+        assertEquals(expected * 3, samples.length);
+    }
+
+    private static double segmentLength(double[] lonLat, int i) {
+        return GeoCalculations.distanceTo(
+                new GeoPoint(lonLat[(i - 1) * 2 + 1], lonLat[(i - 1) * 2]),
+                new GeoPoint(lonLat[i * 2 + 1], lonLat[i * 2]));
+    }
+
     @Test
     public void chunk_query_order_resolution_asc() {
         ElevationSource.QueryParameters params = new ElevationSource.QueryParameters();
@@ -0,0 +1,162 @@
+package com.atakmap.map.layer.feature;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.map.layer.feature.FeatureDataStore2.FeatureQueryParameters;
+import com.atakmap.map.layer.feature.FeatureDataStore2.FeatureQueryParameters.AttributeFilter;
+import com.atakmap.map.layer.feature.datastore.FeatureSetDatabase2;
+import com.atakmap.map.layer.feature.geometry.Point;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that attribute filters on indexed keys are evaluated in SQL, for
+ * features indexed on insert and for features backfilled when a key is
+ * added.
+ */
+public class FeatureSetDatabase2AttributeIndexTest
+        extends ATAKInstrumentedTest {
+
+    private static final String KEY = "height";
+
+    @Test
+    public void backfill_then_pushdown() throws DataStoreException {
+        final FeatureSetDatabase2 db = new FeatureSetDatabase2(null);
+        try {
+            final long fsid = insertFeatureSet(db);
+
+            // ints 1..10, a double and a string, inserted before the key is
+            // indexed
+            for (int i = 1; i <= 10; i++)
+                insert(db, fsid, attribs(i));
+            final AttributeSet dbl = new AttributeSet();
+            dbl.setAttribute(KEY, 2.5d);
+            insert(db, fsid, dbl);
+            final AttributeSet str = new AttributeSet();
+            str.setAttribute(KEY, "tall");
+            insert(db, fsid, str);
+
+            db.setIndexedAttributes(Collections.singleton(KEY));
+            assertEquals(Collections.singleton(KEY),
+                    db.getIndexedAttributes());
+
+            assertFilters(db, 0);
+        } finally {
+            db.dispose();
+        }
+    }
+
+    @Test
+    public void index_on_insert_then_pushdown() throws DataStoreException {
+        final FeatureSetDatabase2 db = new FeatureSetDatabase2(null);
+        try {
+            db.setIndexedAttributes(Collections.singleton(KEY));
+
+            final long fsid = insertFeatureSet(db);
+            for (int i = 1; i <= 10; i++)
+                insert(db, fsid, attribs(i));
+            final AttributeSet dbl = new AttributeSet();
+            dbl.setAttribute(KEY, 2.5d);
+            insert(db, fsid, dbl);
+            final AttributeSet str = new AttributeSet();
+            str.setAttribute(KEY, "tall");
+            insert(db, fsid, str);
+
+            assertFilters(db, 0);
+
+            // a long of the same value is matched the same way
+            final AttributeSet lng = new AttributeSet();
+            lng.setAttribute(KEY, 7L);
+            insert(db, fsid, lng);
+
+            assertFilters(db, 1);
+        } finally {
+            db.dispose();
+        }
+    }
+
+    @Test
+    public void unindexed_key_is_not_filtered() throws DataStoreException {
+        final FeatureSetDatabase2 db = new FeatureSetDatabase2(null);
+        try {
+            final long fsid = insertFeatureSet(db);
+            for (int i = 1; i <= 10; i++)
+                insert(db, fsid, attribs(i));
+
+            assertEquals(10, count(db, new AttributeFilter.Arithmetic(KEY,
+                    AttributeFilter.Arithmetic.Comparison.GreaterThan, 5d)));
+
+            // filtered once indexed, and not once the key is dropped again
+            db.setIndexedAttributes(Collections.singleton(KEY));
+            assertEquals(5, count(db, new AttributeFilter.Arithmetic(KEY,
+                    AttributeFilter.Arithmetic.Comparison.GreaterThan, 5d)));
+            db.setIndexedAttributes(Collections.<String> emptySet());
+            assertEquals(10, count(db, new AttributeFilter.Arithmetic(KEY,
+                    AttributeFilter.Arithmetic.Comparison.GreaterThan, 5d)));
+        } finally {
+            db.dispose();
+        }
+    }
+
+    /**
+     * Checks the filters against ints 1..10, 2.5, "tall" and
+     * <code>extraSevens</code> additional values of 7.
+     */
+    private static void assertFilters(FeatureDataStore2 db, int extraSevens)
+            throws DataStoreException {
+        // the string value must not compare greater than the numbers
+        assertEquals(5 + extraSevens, count(db, new AttributeFilter.Arithmetic(
+                KEY, AttributeFilter.Arithmetic.Comparison.GreaterThan, 5d)));
+        assertEquals(3, count(db, new AttributeFilter.Arithmetic(KEY,
+                AttributeFilter.Arithmetic.Comparison.LessThan, 3d)));
+        assertEquals(1 + extraSevens, count(db,
+                new AttributeFilter.Arithmetic(KEY,
+                        AttributeFilter.Arithmetic.Comparison.Equals, 7d)));
+        assertEquals(10, count(db, new AttributeFilter.Arithmetic(KEY,
+                AttributeFilter.Arithmetic.Comparison.NotEqual, 7d)));
+
+        // numeric values are matched by number, strings by text
+        assertEquals(3 + extraSevens, count(db,
+                new AttributeFilter.PossibleValues(KEY, new HashSet<>(
+                        Arrays.asList("3", "7", "tall")))));
+        assertEquals(1, count(db, new AttributeFilter.PossibleValues(KEY,
+                Collections.singleton("2.5"))));
+        assertEquals(1, count(db, new AttributeFilter.PossibleValues(KEY,
+                Collections.singleton("3.0"))));
+        assertEquals(0, count(db, new AttributeFilter.PossibleValues(KEY,
+                Collections.singleton("short"))));
+
+        assertEquals(1, count(db, new AttributeFilter.Text(KEY,
+                AttributeFilter.Text.Comparison.Equals, "tall")));
+    }
+
+    private static int count(FeatureDataStore2 db, AttributeFilter filter)
+            throws DataStoreException {
+        final FeatureQueryParameters params = new FeatureQueryParameters();
+        params.attributeFilters = Collections.singleton(filter);
+        return db.queryFeaturesCount(params);
+    }
+
+    private static long insertFeatureSet(FeatureDataStore2 db)
+            throws DataStoreException {
+        return db.insertFeatureSet(new FeatureSet("test", "test", "test",
+                Double.MAX_VALUE, 0d));
+    }
+
+    private static void insert(FeatureDataStore2 db, long fsid,
+            AttributeSet attribs) throws DataStoreException {
+        db.insertFeature(new Feature(fsid, "feature", new Point(-78d, 35d),
+                null, attribs));
+    }
+
+    private static AttributeSet attribs(int height) {
+        final AttributeSet retval = new AttributeSet();
+        retval.setAttribute(KEY, height);
+        return retval;
+    }
+}
@@ -0,0 +1,94 @@
+package com.atakmap.map.layer.feature.datastore;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureSet;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures {@link FeatureSetDatabase2#insertFeatures} throughput for a large
+ * import, with per-feature index updates and with the indices dropped and
+ * rebuilt once.
+ */
+public class FeatureSetDatabase2BulkInsertTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "FeatureSetDatabase2BulkInsertTest";
+
+    private static final int NUM_FEATURES = 1000000;
+
+    @Test
+    public void insert_features_throughput() throws Exception {
+        final double perFeature = run(false);
+        final double bulk = run(true);
+
+        Log.d(TAG, String.format(LocaleUtil.US,
+                "insertFeatures, %d features: per-feature index %.0f "
+                        + "features/sec; index rebuild %.0f features/sec",
+                NUM_FEATURES, perFeature, bulk));
+    }
+
+    /**
+     * Imports {@link #NUM_FEATURES} features into a new database
+     *
+     * @param rebuildIndices <code>true</code> to use the default bulk insert
+     *                       threshold, <code>false</code> to update the
+     *                       indices for every feature
+     * @return the throughput, in features per second
+     */
+    private static double run(boolean rebuildIndices) throws Exception {
+        try (FileUtils.AutoDeleteFile dir = FileUtils.AutoDeleteFile
+                .createTempDir()) {
+            final FeatureSetDatabase2 db = new FeatureSetDatabase2(
+                    new File(dir.file, "fdb2.sqlite"));
+            try {
+                if (!rebuildIndices)
+                    db.bulkInsertThreshold = Integer.MAX_VALUE;
+
+                final long fsid = db.insertFeatureSet(new FeatureSet(
+                        "benchmark", "benchmark", "benchmark",
+                        Double.MAX_VALUE, 0d));
+
+                final long start = System.nanoTime();
+                db.insertFeatures(
+                        new SyntheticFeatureCursor(fsid, NUM_FEATURES, 1L));
+                final long elapsed = System.nanoTime() - start;
+
+                assertEquals(NUM_FEATURES, db.queryFeaturesCount(
+                        new FeatureDataStore2.FeatureQueryParameters()));
+
+                // the spatial index must be usable after the import
+                final FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+                params.spatialFilter = GeometryFactory.fromEnvelope(
+                        new Envelope(SyntheticFeatureCursor.MIN_LNG,
+                                SyntheticFeatureCursor.MIN_LAT, 0d,
+                                SyntheticFeatureCursor.MAX_LNG,
+                                SyntheticFeatureCursor.MAX_LAT, 0d));
+                params.limit = 1;
+                FeatureCursor result = null;
+                try {
+                    result = db.queryFeatures(params);
+                    assertTrue(result.moveToNext());
+                } finally {
+                    if (result != null)
+                        result.close();
+                }
+
+                return NUM_FEATURES / (elapsed / 1e9d);
+            } finally {
+                db.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.atakmap.map.layer.feature.datastore;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureSet;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Measures {@link FeatureSetDatabase2#queryFeatures} latency while render
+ * and hit-test style queries run concurrently with a bulk import, with and
+ * without the read-only connection pool.
+ */
+public class FeatureSetDatabase2ConcurrencyTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "FeatureSetDatabase2ConcurrencyTest";
+
+    private static final int NUM_READERS = 4;
+    private static final int QUERIES_PER_READER = 200;
+    private static final int INITIAL_FEATURES = 20000;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    @Test
+    public void query_latency_during_import() throws Exception {
+        final Result pooled = run(true);
+        final Result writeConnection = run(false);
+
+        Log.d(TAG, String.format(LocaleUtil.US,
+                "queryFeatures latency, %d readers and 1 writer: "
+                        + "pooled mean %.2fms max %.2fms (%d imported); "
+                        + "write connection mean %.2fms max %.2fms (%d imported)",
+                NUM_READERS,
+                pooled.meanMillis(), pooled.maxNanos / 1e6,
+                pooled.imported,
+                writeConnection.meanMillis(), writeConnection.maxNanos / 1e6,
+                writeConnection.imported));
+    }
+
+    private static Result run(boolean readConnections) throws Exception {
+        try (FileUtils.AutoDeleteFile dir = FileUtils.AutoDeleteFile
+                .createTempDir()) {
+            final FeatureSetDatabase2 db = new FeatureSetDatabase2(
+                    new File(dir.file, "fdb2.sqlite"));
+            try {
+                db.setReadConnectionsEnabled(readConnections);
+
+                final long fsid = db.insertFeatureSet(new FeatureSet(
+                        "benchmark", "benchmark", "benchmark",
+                        Double.MAX_VALUE, 0d));
+                db.setFeatureSetVisible(fsid, true);
+                db.insertFeatures(
+                        new SyntheticFeatureCursor(fsid, INITIAL_FEATURES, 1L));
+
+                final AtomicBoolean importing = new AtomicBoolean(true);
+                final AtomicReference<Throwable> error = new AtomicReference<>();
+                final AtomicInteger imported = new AtomicInteger(0);
+
+                final Thread writer = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            long seed = 2L;
+                            while (importing.get()) {
+                                db.insertFeatures(new SyntheticFeatureCursor(
+                                        fsid, IMPORT_BATCH_SIZE, seed++));
+                                imported.addAndGet(IMPORT_BATCH_SIZE);
+                            }
+                        } catch (Throwable t) {
+                            error.compareAndSet(null, t);
+                        }
+                    }
+                }, TAG + "-writer");
+
+                final CountDownLatch done = new CountDownLatch(NUM_READERS);
+                final AtomicLong totalNanos = new AtomicLong(0L);
+                final AtomicLong maxNanos = new AtomicLong(0L);
+                writer.start();
+                for (int i = 0; i < NUM_READERS; i++) {
+                    // alternate render (viewport) and hit-test (point) threads
+                    final boolean render = (i % 2) == 0;
+                    final long seed = 100L + i;
+                    new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                final Random random = new Random(seed);
+                                for (int q = 0; q < QUERIES_PER_READER; q++) {
+                                    final long nanos = query(db, random,
+                                            render);
+                                    totalNanos.addAndGet(nanos);
+                                    long max;
+                                    do {
+                                        max = maxNanos.get();
+                                    } while (nanos > max && !maxNanos
+                                            .compareAndSet(max, nanos));
+                                }
+                            } catch (Throwable t) {
+                                error.compareAndSet(null, t);
+                            } finally {
+                                done.countDown();
+                            }
+                        }
+                    }, TAG + "-reader-" + i).start();
+                }
+
+                done.await();
+                importing.set(false);
+                writer.join();
+                assertNull(error.get());
+
+                final Result result = new Result();
+                result.queries = NUM_READERS * QUERIES_PER_READER;
+                result.totalNanos = totalNanos.get();
+                result.maxNanos = maxNanos.get();
+                result.imported = imported.get();
+
+                assertEquals(INITIAL_FEATURES + result.imported,
+                        db.queryFeaturesCount(
+                                new FeatureDataStore2.FeatureQueryParameters()));
+                return result;
+            } finally {
+                db.dispose();
+            }
+        }
+    }
+
+    /**
+     * Issues a single query and drains the results
+     *
+     * @param render <code>true</code> for a viewport query over visible
+     *               features, <code>false</code> for a hit-test over a small
+     *               area returning the first match
+     * @return the elapsed time, in nanoseconds
+     */
+    private static long query(FeatureSetDatabase2 db, Random random,
+            boolean render) throws DataStoreException {
+        final double span = render ? 0.5d : 0.001d;
+        final double lng = SyntheticFeatureCursor.MIN_LNG + random.nextDouble()
+                * (SyntheticFeatureCursor.MAX_LNG
+                        - SyntheticFeatureCursor.MIN_LNG - span);
+        final double lat = SyntheticFeatureCursor.MIN_LAT + random.nextDouble()
+                * (SyntheticFeatureCursor.MAX_LAT
+                        - SyntheticFeatureCursor.MIN_LAT - span);
+
+        final FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+        params.spatialFilter = GeometryFactory.fromEnvelope(
+                new Envelope(lng, lat, 0d, lng + span, lat + span, 0d));
+        params.visibleOnly = render;
+        if (!render)
+            params.limit = 1;
+
+        final long start = System.nanoTime();
+        FeatureCursor result = null;
+        try {
+            result = db.queryFeatures(params);
+            while (result.moveToNext())
+                assertNotNull(result.get());
+        } finally {
+            if (result != null)
+                result.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static final class Result {
+        int queries;
+        long totalNanos;
+        long maxNanos;
+        int imported;
+
+        double meanMillis() {
+            return (totalNanos / (double) queries) / 1e6;
+        }
+    }
+}
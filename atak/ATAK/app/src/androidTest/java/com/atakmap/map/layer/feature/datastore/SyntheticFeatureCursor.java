@@ -0,0 +1,107 @@
+package com.atakmap.map.layer.feature.datastore;
+
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.geometry.Point;
+
+import java.util.Random;
+
+/**
+ * Generates point features at pseudo-random locations within a fixed region,
+ * for populating data stores in benchmarks.
+ */
+final class SyntheticFeatureCursor implements FeatureCursor {
+
+    final static double MIN_LNG = -80d;
+    final static double MAX_LNG = -78d;
+    final static double MIN_LAT = 34d;
+    final static double MAX_LAT = 36d;
+
+    private final long fsid;
+    private final int count;
+    private final Random random;
+    private int index;
+    private Point point;
+    private boolean closed;
+
+    SyntheticFeatureCursor(long fsid, int count, long seed) {
+        this.fsid = fsid;
+        this.count = count;
+        this.random = new Random(seed);
+        this.index = -1;
+    }
+
+    @Override
+    public boolean moveToNext() {
+        if (this.index + 1 >= this.count)
+            return false;
+        this.index++;
+        this.point = new Point(
+                MIN_LNG + this.random.nextDouble() * (MAX_LNG - MIN_LNG),
+                MIN_LAT + this.random.nextDouble() * (MAX_LAT - MIN_LAT));
+        return true;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    @Override
+    public Object getRawGeometry() {
+        return this.point;
+    }
+
+    @Override
+    public int getGeomCoding() {
+        return GEOM_ATAK_GEOMETRY;
+    }
+
+    @Override
+    public String getName() {
+        return "feature" + this.index;
+    }
+
+    @Override
+    public int getStyleCoding() {
+        return STYLE_ATAK_STYLE;
+    }
+
+    @Override
+    public Object getRawStyle() {
+        return null;
+    }
+
+    @Override
+    public AttributeSet getAttributes() {
+        return null;
+    }
+
+    @Override
+    public Feature get() {
+        return new Feature(this.fsid, this.getName(), this.point, null,
+                null, Feature.AltitudeMode.ClampToGround, 0d);
+    }
+
+    @Override
+    public long getId() {
+        return FeatureDataStore2.FEATURE_ID_NONE;
+    }
+
+    @Override
+    public long getVersion() {
+        return FeatureDataStore2.FEATURE_VERSION_NONE;
+    }
+
+    @Override
+    public long getFsid() {
+        return this.fsid;
+    }
+}
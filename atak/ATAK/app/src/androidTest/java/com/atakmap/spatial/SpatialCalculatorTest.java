@@ -136,6 +136,53 @@ public class SpatialCalculatorTest extends ATAKInstrumentedTest {
         post(runnable);
     }
 
+    @Test
+    public void testPolygonPredicates() {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                GeoPoint[] exterior = new GeoPoint[] {
+                        new GeoPoint(0, 0), new GeoPoint(0, 10),
+                        new GeoPoint(10, 10), new GeoPoint(10, 0),
+                        new GeoPoint(0, 0),
+                };
+                GeoPoint[][] holes = new GeoPoint[][] {
+                        {
+                                new GeoPoint(4, 4), new GeoPoint(4, 6),
+                                new GeoPoint(6, 6), new GeoPoint(6, 4),
+                                new GeoPoint(4, 4),
+                        }
+                };
+                long polygon = calculator.createPolygon(exterior, holes);
+                long inside = calculator.createPoint(new GeoPoint(2, 2));
+                long inHole = calculator.createPoint(new GeoPoint(5, 5));
+                long outside = calculator.createPoint(new GeoPoint(20, 20));
+                long onEdge = calculator.createPoint(new GeoPoint(0, 5));
+
+                assertTrue(calculator.intersects(polygon, inside));
+                assertTrue(calculator.contains(polygon, inside));
+                assertFalse(calculator.intersects(polygon, inHole));
+                assertFalse(calculator.contains(polygon, inHole));
+                assertFalse(calculator.intersects(polygon, outside));
+                assertFalse(calculator.contains(polygon, outside));
+
+                // boundary is part of the geometry, but not its interior
+                assertTrue(calculator.intersects(polygon, onEdge));
+                assertFalse(calculator.contains(polygon, onEdge));
+
+                // predicates reflect updates to the geometry
+                calculator.updatePoint(outside, new GeoPoint(1, 1));
+                assertTrue(calculator.contains(polygon, outside));
+                calculator.updatePolygon(polygon, new GeoPoint(0, 0),
+                        new GeoPoint(0, 1), new GeoPoint(1, 1),
+                        new GeoPoint(1, 0));
+                assertFalse(calculator.intersects(polygon, inside));
+            }
+        };
+
+        post(runnable);
+    }
+
     @AfterClass
     public static void disposeCalculator() {
         calculator.dispose();
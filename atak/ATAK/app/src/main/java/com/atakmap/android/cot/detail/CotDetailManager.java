@@ -17,12 +17,26 @@ import com.atakmap.coremap.cot.event.CotEvent;
 import com.atakmap.coremap.log.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches CoT details to the registered detail handlers.
+ *
+ * <P>Registration is copy-on-write; each change publishes an immutable
+ * snapshot of the registry that is used for dispatch without acquiring the
+ * manager monitor. Inbound details are dispatched only to the handlers
+ * registered for their element name.
+ *
+ * <P>The time spent in each handler is recorded and may be inspected via
+ * {@link #getHandlerStatistics()}.
+ */
 public class CotDetailManager {
 
     private static final String TAG = "CotDetailManager";
@@ -37,11 +51,53 @@ public class CotDetailManager {
 
     // Detail handlers
     private final Map<String, Set<CotDetailHandler>> _handlerMap = new HashMap<>();
-    private final Set<CotDetailHandler> _handlers = new HashSet<>();
+    private final Set<CotDetailHandler> _handlers = new LinkedHashSet<>();
 
     // Marker-specific detail handlers (legacy; use CotDetailHandler instead)
     private final Map<String, Set<MarkerDetailHandler>> _markerHandlerMap = new HashMap<>();
-    private final Set<MarkerDetailHandler> _markerHandlers = new HashSet<>();
+    private final Set<MarkerDetailHandler> _markerHandlers = new LinkedHashSet<>();
+
+    // Timing for each registered handler, keyed the same way as the handler
+    // sets so that the registry snapshot finds a timing for every handler
+    private final Map<Object, HandlerTiming> _timings = new HashMap<>();
+    private final Map<Object, HandlerTiming> _markerTimings = new HashMap<>();
+
+    // Snapshot of the above used for dispatch; replaced on every change
+    private volatile Registry _registry = Registry.EMPTY;
+
+    /**
+     * Snapshot of the time spent in a single handler
+     */
+    public static final class HandlerStatistics {
+        /** the handler */
+        public final Object handler;
+        /** the detail element names the handler is registered for */
+        public final Set<String> detailNames;
+        /** number of process and add invocations; support checks are
+         *  not counted */
+        public final long invocations;
+        /** total time spent in the handler, in milliseconds */
+        public final double totalMillis;
+        /** longest single invocation, in milliseconds */
+        public final double maxMillis;
+
+        HandlerStatistics(Object handler, Set<String> detailNames,
+                long invocations, double totalMillis, double maxMillis) {
+            this.handler = handler;
+            this.detailNames = detailNames;
+            this.invocations = invocations;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return handler.getClass().getName() + " " + detailNames
+                    + " {invocations=" + invocations
+                    + ", totalMillis=" + totalMillis
+                    + ", maxMillis=" + maxMillis + "}";
+        }
+    }
 
     public CotDetailManager(MapView mapView) {
         _mapView = mapView;
@@ -63,12 +119,14 @@ public class CotDetailManager {
         for (String key : names) {
             Set<CotDetailHandler> set = _handlerMap.get(key);
             if (set == null) {
-                set = new HashSet<>();
+                set = new LinkedHashSet<>();
                 _handlerMap.put(key, set);
             }
             set.add(handler);
         }
         _handlers.add(handler);
+        _timings.put(handler, new HandlerTiming(handler, names));
+        publishRegistry();
     }
 
     /**
@@ -86,15 +144,8 @@ public class CotDetailManager {
                 _handlerMap.remove(key);
         }
         _handlers.remove(handler);
-    }
-
-    /**
-     * Get a list of detail handlers
-     *
-     * @return List of CoT event detail handlers
-     */
-    private synchronized List<CotDetailHandler> getHandlers() {
-        return new ArrayList<>(_handlers);
+        _timings.remove(handler);
+        publishRegistry();
     }
 
     /**
@@ -102,6 +153,8 @@ public class CotDetailManager {
      * This is here for legacy compatibility - detail handlers should
      * extend {@link CotDetailHandler} instead
      *
+     * A handler that is already registered, under any name, is ignored.
+     *
      * @param detailName Detail name used to lookup the handler
      * @param handler Marker handler
      */
@@ -111,11 +164,16 @@ public class CotDetailManager {
             return;
         Set<MarkerDetailHandler> set = _markerHandlerMap.get(detailName);
         if (set == null) {
-            set = new HashSet<>();
+            set = new LinkedHashSet<>();
             _markerHandlerMap.put(detailName, set);
         }
         set.add(handler);
         _markerHandlers.add(handler);
+
+        // timing is tracked separately from the registration
+        _markerTimings.put(handler, new HandlerTiming(handler,
+                Collections.singleton(detailName)));
+        publishRegistry();
     }
 
     /**
@@ -131,15 +189,53 @@ public class CotDetailManager {
         for (Set<MarkerDetailHandler> handlers : _markerHandlerMap.values())
             handlers.remove(handler);
         _markerHandlers.remove(handler);
+        _markerTimings.remove(handler);
+        publishRegistry();
     }
 
     /**
-     * Get a list of all registered marker handlers
+     * Get the time spent in each registered handler since it was registered
+     * or since the last call to {@link #resetHandlerStatistics()}. Useful
+     * for identifying slow plugin handlers.
      *
-     * @return List of marker handlers
+     * @return Statistics for each registered handler, slowest (by total
+     * time) first
+     */
+    public List<HandlerStatistics> getHandlerStatistics() {
+        final Registry reg = _registry;
+        final List<HandlerStatistics> ret = new ArrayList<>(
+                reg.handlers.length + reg.markerHandlers.length);
+        for (HandlerTiming t : reg.handlers)
+            ret.add(t.snapshot());
+        for (HandlerTiming t : reg.markerHandlers)
+            ret.add(t.snapshot());
+        Collections.sort(ret, new Comparator<HandlerStatistics>() {
+            @Override
+            public int compare(HandlerStatistics lhs, HandlerStatistics rhs) {
+                return Double.compare(rhs.totalMillis, lhs.totalMillis);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Reset the timing statistics of all registered handlers
      */
-    private synchronized List<MarkerDetailHandler> getMarkerHandlers() {
-        return new ArrayList<>(_markerHandlers);
+    public void resetHandlerStatistics() {
+        final Registry reg = _registry;
+        for (HandlerTiming t : reg.handlers)
+            t.reset();
+        for (HandlerTiming t : reg.markerHandlers)
+            t.reset();
+    }
+
+    /**
+     * Publish a new snapshot of the registry. Must be called while holding
+     * the manager monitor.
+     */
+    private void publishRegistry() {
+        _registry = new Registry(_handlers, _handlerMap, _timings,
+                _markerHandlers, _markerHandlerMap, _markerTimings);
     }
 
     /**
@@ -152,16 +248,22 @@ public class CotDetailManager {
     public boolean addDetails(MapItem item, CotEvent event) {
         boolean ret = false;
         CotDetail root = event.getDetail();
-        List<CotDetailHandler> handlers = getHandlers();
-        for (CotDetailHandler h : handlers) {
-            if (h.isSupported(item, event, root))
-                ret |= h.toCotDetail(item, event, root);
+        final Registry reg = _registry;
+        for (HandlerTiming t : reg.handlers) {
+            final CotDetailHandler h = (CotDetailHandler) t.handler;
+            if (!h.isSupported(item, event, root))
+                continue;
+            final long start = System.nanoTime();
+            ret |= h.toCotDetail(item, event, root);
+            t.record(System.nanoTime() - start);
         }
         if (item instanceof Marker) {
             Marker marker = (Marker) item;
-            List<MarkerDetailHandler> markerHandlers = getMarkerHandlers();
-            for (MarkerDetailHandler h : markerHandlers)
-                h.toCotDetail(marker, root);
+            for (HandlerTiming t : reg.markerHandlers) {
+                final long start = System.nanoTime();
+                ((MarkerDetailHandler) t.handler).toCotDetail(marker, root);
+                t.record(System.nanoTime() - start);
+            }
         }
 
         // Include any leftover opaque details in the root node
@@ -182,66 +284,70 @@ public class CotDetailManager {
         if (root == null)
             return ImportResult.FAILURE;
 
-        // Add all the sets first before calling the process method so we
-        // don't run into potential deadlock
+        // Resolve the handlers for every detail before calling the process
+        // methods so all support checks see the same registry snapshot
+        final Registry reg = _registry;
         Marker marker = item instanceof Marker ? (Marker) item : null;
         List<ProcessSet> sets = new ArrayList<>();
         List<CotDetail> children = root.getChildren();
-        synchronized (this) {
-            for (CotDetail d : children) {
-                if (d == null)
-                    continue;
-                String name = d.getElementName();
-
-                // Regular handlers
-                Set<CotDetailHandler> handlers = _handlerMap.get(name);
-                if (handlers != null) {
-                    Set<CotDetailHandler> copy = null;
-                    for (CotDetailHandler h : handlers) {
-                        if (h.isSupported(item, event, d)) {
-                            if (copy == null)
-                                copy = new HashSet<>(handlers.size());
-                            copy.add(h);
-                        }
+        for (CotDetail d : children) {
+            if (d == null)
+                continue;
+            String name = d.getElementName();
+
+            // Regular handlers
+            List<HandlerTiming> handlers = null;
+            final HandlerTiming[] registered = reg.handlerMap.get(name);
+            if (registered != null) {
+                for (HandlerTiming t : registered) {
+                    if (((CotDetailHandler) t.handler).isSupported(item,
+                            event, d)) {
+                        if (handlers == null)
+                            handlers = new ArrayList<>(registered.length);
+                        handlers.add(t);
                     }
-                    handlers = copy;
-                }
-
-                // Marker handlers
-                Set<MarkerDetailHandler> markerHandlers = null;
-                if (marker != null) {
-                    markerHandlers = _markerHandlerMap.get(name);
-                    if (markerHandlers != null)
-                        markerHandlers = new HashSet<>(markerHandlers);
-                }
-
-                // Check if this detail has any handlers
-                if (handlers == null && markerHandlers == null) {
-                    // If not then it might be unhandled
-                    // Stick it in the opaque details
-                    //Log.d(TAG, "Unhandled detail: " + d.getElementName());
-                    OpaqueHandler.getInstance().toMarkerMetadata(item, event,
-                            d);
                 }
+            }
 
-                sets.add(new ProcessSet(d, handlers, markerHandlers));
+            // Marker handlers
+            HandlerTiming[] markerHandlers = null;
+            if (marker != null)
+                markerHandlers = reg.markerHandlerMap.get(name);
+
+            // Check if this detail has any handlers
+            if (handlers == null && markerHandlers == null) {
+                // If not then it might be unhandled
+                // Stick it in the opaque details
+                //Log.d(TAG, "Unhandled detail: " + d.getElementName());
+                OpaqueHandler.getInstance().toMarkerMetadata(item, event,
+                        d);
+                continue;
             }
+
+            sets.add(new ProcessSet(d, handlers, markerHandlers));
         }
 
         // Now process the sets
         ImportResult res = ImportResult.SUCCESS;
         for (ProcessSet ps : sets) {
             if (ps.handlers != null) {
-                for (CotDetailHandler h : ps.handlers) {
-                    ImportResult r = h.toItemMetadata(item, event, ps.detail);
+                for (HandlerTiming t : ps.handlers) {
+                    final long start = System.nanoTime();
+                    ImportResult r = ((CotDetailHandler) t.handler)
+                            .toItemMetadata(item, event, ps.detail);
+                    t.record(System.nanoTime() - start);
                     if (r == ImportResult.FAILURE)
                         Log.e(TAG, "Failed to process detail: " + ps.detail);
                     res = res.getHigherPriority(r);
                 }
             }
             if (marker != null && ps.markerHandlers != null) {
-                for (MarkerDetailHandler h : ps.markerHandlers)
-                    h.toMarkerMetadata(marker, event, ps.detail);
+                for (HandlerTiming t : ps.markerHandlers) {
+                    final long start = System.nanoTime();
+                    ((MarkerDetailHandler) t.handler).toMarkerMetadata(marker,
+                            event, ps.detail);
+                    t.record(System.nanoTime() - start);
+                }
             }
         }
         return res;
@@ -250,17 +356,105 @@ public class CotDetailManager {
     private static class ProcessSet {
 
         private final CotDetail detail;
-        private final Set<CotDetailHandler> handlers;
-        private final Set<MarkerDetailHandler> markerHandlers;
+        private final List<HandlerTiming> handlers;
+        private final HandlerTiming[] markerHandlers;
 
-        ProcessSet(CotDetail detail, Set<CotDetailHandler> handlers,
-                Set<MarkerDetailHandler> markerHandlers) {
+        ProcessSet(CotDetail detail, List<HandlerTiming> handlers,
+                HandlerTiming[] markerHandlers) {
             this.detail = detail;
             this.handlers = handlers;
             this.markerHandlers = markerHandlers;
         }
     }
 
+    /**
+     * Accumulated time spent in a single handler
+     */
+    private static final class HandlerTiming {
+
+        private final Object handler;
+        private final Set<String> detailNames;
+        private final AtomicLong invocations = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private volatile long maxNanos;
+
+        HandlerTiming(Object handler, Set<String> detailNames) {
+            this.handler = handler;
+            this.detailNames = detailNames;
+        }
+
+        void record(long nanos) {
+            invocations.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            // benign race; a concurrent larger value may occasionally be lost
+            if (nanos > maxNanos)
+                maxNanos = nanos;
+        }
+
+        void reset() {
+            invocations.set(0L);
+            totalNanos.set(0L);
+            maxNanos = 0L;
+        }
+
+        HandlerStatistics snapshot() {
+            return new HandlerStatistics(handler, detailNames,
+                    invocations.get(), totalNanos.get() / 1e6d,
+                    maxNanos / 1e6d);
+        }
+    }
+
+    /**
+     * Immutable snapshot of the registered handlers
+     */
+    private static final class Registry {
+
+        static final Registry EMPTY = new Registry(
+                Collections.<CotDetailHandler> emptySet(),
+                Collections.<String, Set<CotDetailHandler>> emptyMap(),
+                Collections.<Object, HandlerTiming> emptyMap(),
+                Collections.<MarkerDetailHandler> emptySet(),
+                Collections.<String, Set<MarkerDetailHandler>> emptyMap(),
+                Collections.<Object, HandlerTiming> emptyMap());
+
+        final HandlerTiming[] handlers;
+        final Map<String, HandlerTiming[]> handlerMap;
+        final HandlerTiming[] markerHandlers;
+        final Map<String, HandlerTiming[]> markerHandlerMap;
+
+        Registry(Set<CotDetailHandler> handlers,
+                Map<String, Set<CotDetailHandler>> handlerMap,
+                Map<Object, HandlerTiming> timings,
+                Set<MarkerDetailHandler> markerHandlers,
+                Map<String, Set<MarkerDetailHandler>> markerHandlerMap,
+                Map<Object, HandlerTiming> markerTimings) {
+            this.handlers = toArray(handlers, timings);
+            this.handlerMap = toArrays(handlerMap, timings);
+            this.markerHandlers = toArray(markerHandlers, markerTimings);
+            this.markerHandlerMap = toArrays(markerHandlerMap, markerTimings);
+        }
+
+        private static HandlerTiming[] toArray(Set<?> handlers,
+                Map<Object, HandlerTiming> timings) {
+            final HandlerTiming[] ret = new HandlerTiming[handlers.size()];
+            int i = 0;
+            for (Object h : handlers)
+                ret[i++] = timings.get(h);
+            return ret;
+        }
+
+        private static <T> Map<String, HandlerTiming[]> toArrays(
+                Map<String, Set<T>> handlerMap,
+                Map<Object, HandlerTiming> timings) {
+            final Map<String, HandlerTiming[]> ret = new HashMap<>();
+            for (Map.Entry<String, Set<T>> e : handlerMap.entrySet()) {
+                if (!e.getValue().isEmpty())
+                    ret.put(e.getKey(), toArray(e.getValue(), timings));
+            }
+            return ret;
+        }
+    }
+
     private void registerDefaultHandlers() {
         // TODO: Can we consolidate some of these together?
         // i.e. ShapeDetailHandler and CircleDetailHandler,
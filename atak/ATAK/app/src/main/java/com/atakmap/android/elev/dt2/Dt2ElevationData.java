@@ -3,10 +3,6 @@ package com.atakmap.android.elev.dt2;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -20,7 +16,6 @@ import com.atakmap.map.elevation.ElevationData;
 import com.atakmap.map.elevation.ElevationDataSpi;
 import com.atakmap.map.layer.raster.ImageInfo;
 import com.atakmap.math.Rectangle;
-import com.atakmap.util.zip.IoUtils;
 
 import gov.tak.api.annotation.DeprecatedApi;
 
@@ -31,12 +26,6 @@ public class Dt2ElevationData extends AbstractElevationData {
 
     private static final String TAG = "Dt2ElevationData";
 
-    /** offset into header where 4 char line count starts (4 char sample point follows) */
-    private static final int _NUM_LNG_LINES_OFFSET = 47;
-    private static final int _HEADER_OFFSET = 3428;
-    private static final int _DATA_RECORD_PREFIX_SIZE = 8;
-    private static final int _DATA_RECORD_SUFFIX_SIZE = 4;
-
     public final static ElevationDataSpi SPI = new ElevationDataSpi() {
         @Override
         public ElevationData create(ImageInfo object) {
@@ -80,6 +69,10 @@ public class Dt2ElevationData extends AbstractElevationData {
         DTED_TYPES.put(DtedFormat.DTED3.type, DtedFormat.DTED3);
     }
 
+    /** posts for recently accessed cells, shared across all instances */
+    private final static DtedCellCache CELLS = new DtedCellCache(
+            DtedCellCache.DEFAULT_BUDGET);
+
     private final File file;
     private final ImageInfo info;
 
@@ -104,7 +97,9 @@ public class Dt2ElevationData extends AbstractElevationData {
             return Double.NaN;
         }
 
-        double altMSL = _fromDtXFile(file, lat, lng);
+        double altMSL = _fromDtXFile(file,
+                lat - this.info.lowerLeft.getLatitude(),
+                lng - this.info.lowerLeft.getLongitude());
 
         // Return expects elevation in meters HAE
         return EGM96.getHAE(lat, lng, altMSL);
@@ -146,40 +141,21 @@ public class Dt2ElevationData extends AbstractElevationData {
         return val;
     }
 
-    private static double _readAndInterp(final RandomAccessFile in,
-            final int dataRecSize,
+    /**
+     * Bilinearly interpolates between the four posts surrounding a location.
+     * If exactly one post is invalid, the interpolation falls back to the
+     * remaining posts on the affected edge.
+     *
+     * @return  The interpolated value or {@link Double#NaN} if there are
+     *          insufficient valid posts
+     */
+    static double interpolate(final double sw, final double nw,
+            final double se, final double ne,
             final double xratio,
-            final double yratio) throws IOException {
+            final double yratio) {
 
         double r = Double.NaN;
 
-        ByteBuffer bb = ByteBuffer.allocate(2);
-        bb.order(ByteOrder.BIG_ENDIAN);
-
-        bb.put((byte) in.read());
-        bb.put((byte) in.read());
-
-        double sw = interpretSample(bb.getShort(0));
-
-        bb.rewind();
-        bb.put((byte) in.read());
-        bb.put((byte) in.read());
-
-        double nw = interpretSample(bb.getShort(0));
-
-        in.skipBytes(dataRecSize - 4);
-        bb.rewind();
-        bb.put((byte) in.read());
-        bb.put((byte) in.read());
-
-        double se = interpretSample(bb.getShort(0));
-
-        bb.rewind();
-        bb.put((byte) in.read());
-        bb.put((byte) in.read());
-
-        double ne = interpretSample(bb.getShort(0));
-
         if (Double.isNaN(sw) &&
                 Double.isNaN(nw) &&
                 Double.isNaN(se) &&
@@ -233,33 +209,39 @@ public class Dt2ElevationData extends AbstractElevationData {
         return r;
     }
 
+    /**
+     * Sets the maximum number of bytes of DTED posts retained in memory
+     * across all instances. Cells are evicted least recently used first.
+     *
+     * @param bytes The budget, in bytes
+     */
+    public static void setCacheBudget(long bytes) {
+        CELLS.setBudget(bytes);
+    }
+
     /**
      * Get elevation from a DTED file
      *
      * @param file DTED file
-     * @param lat Latitude
-     * @param lng Longitude
+     * @param latRatio Latitude offset from the south edge of the cell
+     * @param lngRatio Longitude offset from the west edge of the cell
      * @return Elevation in meters MSL
      */
-    private static double _fromDtXFile(File file, double lat, double lng) {
-        RandomAccessFile raf = null;
+    private static double _fromDtXFile(File file, double latRatio,
+            double lngRatio) {
         try {
-            raf = IOProviderFactory.getRandomAccessFile(file, "r");
-            return _getHeight(raf, lat, lng);
+            return CELLS.get(file).getHeight(latRatio, lngRatio);
         } catch (Exception e) {
             Log.e(TAG,
                     "Error getting height from input stream: "
                             + file.getAbsolutePath(),
                     e);
-        } finally {
-            IoUtils.close(raf, TAG,
-                    "Error closing file: " + file.getAbsolutePath());
         }
         return GeoPoint.UNKNOWN;
     }
 
     /**
-     * This will open up the file and try to read all the points storing the results in the
+     * This will try to read all the points storing the results in the
      * elevations array where the elevations will be stored in the array based on index of the
      * point that was extracted from the iterator
      *
@@ -274,111 +256,9 @@ public class Dt2ElevationData extends AbstractElevationData {
             Iterator<GeoPoint> points, double[] elevations,
             double cellLat,
             double cellLng) {
-        RandomAccessFile raf = null;
-
+        final DtedCellCache.Cell cell;
         try {
-            raf = IOProviderFactory.getRandomAccessFile(file, "r");
-
-            raf.skipBytes(_NUM_LNG_LINES_OFFSET);
-            byte[] bytes = {
-                    0, 0, 0, 0, 0, 0, 0, 0
-            };
-
-            if (raf.read(bytes, 0, 8) < 8) {
-                throw new IOException("Invalid File");
-            }
-
-            String lngLinesStr = new String(bytes, 0, 4,
-                    StandardCharsets.US_ASCII);
-            String latPointsStr = new String(bytes, 4, 4,
-                    StandardCharsets.US_ASCII);
-
-            int lngLines;
-            int latPoints;
-
-            try {
-                lngLines = Integer.parseInt(lngLinesStr);
-            } catch (Exception e) {
-                throw new IOException(e);
-            }
-            try {
-                latPoints = Integer.parseInt(latPointsStr);
-            } catch (Exception e) {
-                throw new IOException(e);
-            }
-
-            long start = raf.getFilePointer();
-            int index = 0;
-            while (points.hasNext()) {
-                double elevation = Double.NaN;
-
-                try {
-                    GeoPoint point = points.next();
-                    double latitude = point.getLatitude();
-                    double longitude = point.getLongitude();
-
-                    if (!Rectangle.contains(
-                            info.lowerLeft.getLongitude(),
-                            info.lowerLeft.getLatitude(),
-                            info.upperRight.getLongitude(),
-                            info.upperRight.getLatitude(),
-                            longitude, latitude)) {
-                        elevations[index] = Double.NaN;
-                        index++;
-                        continue;
-                    }
-
-                    double latRatio = latitude - cellLat;
-                    double lngRatio = longitude - cellLng;
-
-                    double yd = latRatio * (latPoints - 1);
-                    double xd = lngRatio * (lngLines - 1);
-
-                    int x = (int) xd;
-                    int y = (int) yd;
-
-                    int dataRecSize = _DATA_RECORD_PREFIX_SIZE
-                            + (latPoints * 2)
-                            + _DATA_RECORD_SUFFIX_SIZE;
-
-                    int byteOffset = (_HEADER_OFFSET - _NUM_LNG_LINES_OFFSET
-                            - 8)
-                            + x * dataRecSize
-                            + _DATA_RECORD_PREFIX_SIZE
-                            + y * 2;
-
-                    int skipped;
-                    do {
-                        skipped = raf.skipBytes(byteOffset);
-                        byteOffset = byteOffset - skipped;
-
-                        // three exit conditions, I want to know which one we hit
-                        if (skipped == 0) { // ran out of file
-                            break;
-                        } else if (byteOffset == 0) { // perfect
-                            break;
-                        } else if (byteOffset < 0) { // overshot
-                            break;
-                        }
-                    } while (true);
-
-                    double a = _readAndInterp(raf, dataRecSize, xd - x, yd - y);
-
-                    if (!Double.isNaN(a)) {
-                        elevation = a + EGM96.getOffset(latitude, longitude);
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error reading height from input stream: "
-                            + file
-                                    .getAbsolutePath(),
-                            e);
-                }
-
-                elevations[index] = elevation;
-                index++;
-
-                raf.seek(start);
-            }
+            cell = CELLS.get(file);
         } catch (Exception e) {
             Log.e(TAG,
                     "Error getting height from input stream: "
@@ -389,81 +269,37 @@ public class Dt2ElevationData extends AbstractElevationData {
                 elevations[index++] = Double.NaN;
                 points.next();
             }
-        } finally {
-            IoUtils.close(raf, TAG,
-                    "Error closing file: " + file.getAbsolutePath());
-        }
-    }
-
-    /**
-     * Reads the raw height given a latitude and longitude from the supplied file. The elevation
-     * posting data is provided in MSL as per MIL-PRF-89020B page 3.
-     *
-     * @return Altitude in MSL based on the underlying DTED file.
-     */
-    private static double _getHeight(RandomAccessFile in, double latitude,
-            double longitude) throws IOException {
-
-        in.skipBytes(_NUM_LNG_LINES_OFFSET);
-        byte[] bytes = {
-                0, 0, 0, 0, 0, 0, 0, 0
-        };
-
-        if (in.read(bytes, 0, 8) < 8) {
-            // read did not get all of the information required
-            throw new IOException("invalid file");
-        }
-
-        String lngLinesStr = new String(bytes, 0, 4, StandardCharsets.US_ASCII);
-        String latPointsStr = new String(bytes, 4, 4,
-                StandardCharsets.US_ASCII);
-
-        int lngLines;
-        int latPoints;
-
-        try {
-            lngLines = Integer.parseInt(lngLinesStr);
-        } catch (Exception e) {
-            throw new IOException(e);
-        }
-        try {
-            latPoints = Integer.parseInt(latPointsStr);
-        } catch (Exception e) {
-            throw new IOException(e);
+            return;
         }
 
-        double latRatio = latitude - Math.floor(latitude);
-        double lngRatio = longitude - Math.floor(longitude);
+        int index = 0;
+        while (points.hasNext()) {
+            double elevation = Double.NaN;
 
-        double yd = latRatio * (latPoints - 1);
-        double xd = lngRatio * (lngLines - 1);
+            GeoPoint point = points.next();
+            double latitude = point.getLatitude();
+            double longitude = point.getLongitude();
 
-        int x = (int) xd;
-        int y = (int) yd;
+            if (Rectangle.contains(
+                    info.lowerLeft.getLongitude(),
+                    info.lowerLeft.getLatitude(),
+                    info.upperRight.getLongitude(),
+                    info.upperRight.getLatitude(),
+                    longitude, latitude)) {
 
-        int dataRecSize = _DATA_RECORD_PREFIX_SIZE + (latPoints * 2)
-                + _DATA_RECORD_SUFFIX_SIZE;
-
-        int byteOffset = (_HEADER_OFFSET - _NUM_LNG_LINES_OFFSET - 8)
-                + x * dataRecSize
-                + _DATA_RECORD_PREFIX_SIZE
-                + y * 2;
-
-        int skipped;
-        do {
-            skipped = in.skipBytes(byteOffset);
-            byteOffset -= skipped;
-
-            // three exit conditions, I want to know which one we hit
-            if (skipped == 0) { // ran out of file
-                break;
-            } else if (byteOffset == 0) { // perfect
-                break;
-            } else if (byteOffset < 0) { // overshot
-                break;
+                try {
+                    double a = cell.getHeight(latitude - cellLat,
+                            longitude - cellLng);
+                    if (!Double.isNaN(a))
+                        elevation = a + EGM96.getOffset(latitude, longitude);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error reading height from input stream: "
+                            + file.getAbsolutePath(), e);
+                }
             }
-        } while (true);
 
-        return _readAndInterp(in, dataRecSize, xd - x, yd - y);
+            elevations[index] = elevation;
+            index++;
+        }
     }
 }
@@ -0,0 +1,442 @@
+
+package com.atakmap.android.elev.dt2;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.util.zip.IoUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of DTED cells. Each cell is read from disk once
+ * and its posts are held in memory, so that subsequent lookups against the
+ * cell are array reads rather than file I/O.
+ *
+ * <P>The cache is bounded by a byte budget over the retained posts. The most
+ * recently used entry is always retained, even if it alone exceeds the
+ * budget. Cells whose posts exceed the budget (e.g. DTED3) are not read in
+ * full; their posts are read and cached in blocks of longitude lines as they
+ * are accessed.
+ *
+ * <P>Cells are keyed on the file path, last modified time and length, so a
+ * file that is replaced in place (e.g. by a re-import) is read again. Entries
+ * for the previous version of the file are evicted when the new version is
+ * loaded.
+ *
+ * <P>This class is thread-safe.
+ */
+final class DtedCellCache {
+
+    private static final String TAG = "DtedCellCache";
+
+    /** offset into header where 4 char line count starts (4 char sample point follows) */
+    private static final int _NUM_LNG_LINES_OFFSET = 47;
+    private static final int _HEADER_OFFSET = 3428;
+    private static final int _DATA_RECORD_PREFIX_SIZE = 8;
+    private static final int _DATA_RECORD_SUFFIX_SIZE = 4;
+
+    /** default byte budget, sufficient for two DTED2 cells */
+    static final long DEFAULT_BUDGET = 64L * 1024L * 1024L;
+
+    /**
+     * The number of blocks of longitude lines that fit within the budget,
+     * for cells that exceed the budget
+     */
+    private static final int _BLOCKS_PER_BUDGET = 16;
+
+    /**
+     * An entry retained by the cache.
+     */
+    abstract static class Entry {
+        /**
+         * Returns the number of bytes retained by the entry.
+         */
+        abstract long getSize();
+    }
+
+    /**
+     * A contiguous run of longitude lines of posts, in MSL.
+     */
+    static final class Block extends Entry {
+        final int firstLine;
+        /** raw posts, stored by longitude line, south to north */
+        final short[] posts;
+
+        Block(int firstLine, short[] posts) {
+            this.firstLine = firstLine;
+            this.posts = posts;
+        }
+
+        @Override
+        long getSize() {
+            return this.posts.length * 2L;
+        }
+    }
+
+    /**
+     * The posts for a single DTED cell, in MSL.
+     */
+    abstract static class Cell extends Entry {
+        final int lngLines;
+        final int latPoints;
+
+        Cell(int lngLines, int latPoints) {
+            this.lngLines = lngLines;
+            this.latPoints = latPoints;
+        }
+
+        /**
+         * Returns the block containing the specified longitude line.
+         */
+        abstract Block getBlock(int line) throws IOException;
+
+        /**
+         * Returns the interpolated elevation at the specified location.
+         *
+         * @param latRatio  The latitude offset from the south edge of the
+         *                  cell, in the range <code>[0, 1]</code>
+         * @param lngRatio  The longitude offset from the west edge of the
+         *                  cell, in the range <code>[0, 1]</code>
+         * @return  The elevation in meters MSL or {@link Double#NaN} if
+         *          there is no valid data at the location
+         * @throws IOException  If the posts could not be read
+         */
+        double getHeight(double latRatio, double lngRatio)
+                throws IOException {
+            final double yd = latRatio * (this.latPoints - 1);
+            final double xd = lngRatio * (this.lngLines - 1);
+
+            final int x = (int) xd;
+            final int y = (int) yd;
+            if (x < 0 || y < 0 || x >= this.lngLines || y >= this.latPoints)
+                return Double.NaN;
+
+            // posts on the north and east edges have no neighbor; the ratio
+            // will be zero so clamping does not affect the result
+            final int x1 = Math.min(x + 1, this.lngLines - 1);
+            final int y1 = Math.min(y + 1, this.latPoints - 1);
+
+            final Block wb = getBlock(x);
+            final int wbLines = wb.posts.length / this.latPoints;
+            final Block eb = (x1 < wb.firstLine + wbLines) ? wb
+                    : getBlock(x1);
+
+            final int w = (x - wb.firstLine) * this.latPoints;
+            final int e = (x1 - eb.firstLine) * this.latPoints;
+
+            return Dt2ElevationData.interpolate(
+                    Dt2ElevationData.interpretSample(wb.posts[w + y]),
+                    Dt2ElevationData.interpretSample(wb.posts[w + y1]),
+                    Dt2ElevationData.interpretSample(eb.posts[e + y]),
+                    Dt2ElevationData.interpretSample(eb.posts[e + y1]),
+                    xd - x, yd - y);
+        }
+    }
+
+    /**
+     * A cell with all posts held in memory.
+     */
+    private static final class LoadedCell extends Cell {
+        final Block posts;
+
+        LoadedCell(int lngLines, int latPoints, short[] posts) {
+            super(lngLines, latPoints);
+            this.posts = new Block(0, posts);
+        }
+
+        @Override
+        Block getBlock(int line) {
+            return this.posts;
+        }
+
+        @Override
+        long getSize() {
+            return this.posts.getSize();
+        }
+    }
+
+    /**
+     * A cell that exceeds the budget. Blocks of longitude lines are read
+     * and retained by the cache as they are accessed.
+     */
+    private final class BlockedCell extends Cell {
+        final File file;
+        final String key;
+        final int blockLines;
+
+        BlockedCell(File file, String key, int lngLines, int latPoints,
+                int blockLines) {
+            super(lngLines, latPoints);
+            this.file = file;
+            this.key = key;
+            this.blockLines = blockLines;
+        }
+
+        @Override
+        Block getBlock(int line) throws IOException {
+            final int first = (line / this.blockLines) * this.blockLines;
+            final int count = Math.min(this.blockLines,
+                    this.lngLines - first);
+            return (Block) DtedCellCache.this.get(this.key + "#" + first,
+                    new Loader() {
+                        @Override
+                        public Entry load() throws IOException {
+                            return new Block(first, readLines(file,
+                                    latPoints, first, count));
+                        }
+                    });
+        }
+
+        @Override
+        long getSize() {
+            // only the blocks retain posts
+            return 0L;
+        }
+    }
+
+    private interface Loader {
+        Entry load() throws IOException;
+    }
+
+    private final Map<String, Holder> cells = new LinkedHashMap<>(16,
+            0.75f, true);
+    private long budget;
+    private long size;
+
+    DtedCellCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the byte budget, evicting cells as necessary.
+     */
+    synchronized void setBudget(long budget) {
+        this.budget = budget;
+        this.trimNoSync();
+    }
+
+    synchronized long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Returns the number of bytes currently retained.
+     */
+    synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Evicts all cells.
+     */
+    synchronized void clear() {
+        this.cells.clear();
+        this.size = 0L;
+    }
+
+    /**
+     * Returns the cell for the specified file, loading it if it is not
+     * already cached. Concurrent requests for the same cell share a single
+     * load. If the posts for the cell exceed the budget, only the cell
+     * dimensions are read; the posts are read in blocks on access. If the
+     * file was modified since the cell was cached, the cell is read again.
+     *
+     * @param file  The DTED file
+     * @return  The cell
+     * @throws IOException  If the file could not be read
+     */
+    Cell get(final File file) throws IOException {
+        final String path = file.getAbsolutePath();
+        final String key = path + "@" + IOProviderFactory.lastModified(file)
+                + "@" + IOProviderFactory.length(file);
+        return (Cell) get(key, new Loader() {
+            @Override
+            public Entry load() throws IOException {
+                evictStale(path, key);
+
+                RandomAccessFile raf = null;
+                try {
+                    raf = IOProviderFactory.getRandomAccessFile(file, "r");
+                    final int[] dims = readDimensions(raf);
+                    final long cellSize = (long) dims[0] * dims[1] * 2L;
+                    final long budget = getBudget();
+                    if (cellSize <= budget)
+                        return new LoadedCell(dims[0], dims[1],
+                                readLines(raf, dims[1], 0, dims[0]));
+
+                    final long blockSize = budget / _BLOCKS_PER_BUDGET;
+                    final int blockLines = (int) Math.max(1L,
+                            Math.min(dims[0], blockSize / (dims[1] * 2L)));
+                    return new BlockedCell(file, key, dims[0], dims[1],
+                            blockLines);
+                } finally {
+                    IoUtils.close(raf, TAG,
+                            "Error closing file: " + file.getAbsolutePath());
+                }
+            }
+        });
+    }
+
+    private Entry get(String key, Loader loader) throws IOException {
+        Holder holder;
+        synchronized (this) {
+            holder = this.cells.get(key);
+            if (holder == null)
+                this.cells.put(key, holder = new Holder());
+        }
+
+        Entry entry = holder.entry;
+        if (entry != null)
+            return entry;
+
+        synchronized (holder) {
+            if (holder.entry != null)
+                return holder.entry;
+
+            try {
+                holder.entry = loader.load();
+            } finally {
+                synchronized (this) {
+                    if (this.cells.get(key) == holder) {
+                        if (holder.entry != null) {
+                            holder.size = holder.entry.getSize();
+                            this.size += holder.size;
+                            this.trimNoSync();
+                        } else {
+                            this.cells.remove(key);
+                        }
+                    }
+                }
+            }
+            return holder.entry;
+        }
+    }
+
+    /**
+     * Evicts the entries for other versions of the file at the specified
+     * path.
+     *
+     * @param path  The file path
+     * @param key   The key for the current version of the file
+     */
+    private synchronized void evictStale(String path, String key) {
+        final String prefix = path + "@";
+        final String blockPrefix = key + "#";
+        final Iterator<Map.Entry<String, Holder>> it = this.cells.entrySet()
+                .iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Holder> e = it.next();
+            final String k = e.getKey();
+            if (!k.startsWith(prefix) || k.equals(key)
+                    || k.startsWith(blockPrefix))
+                continue;
+            it.remove();
+            this.size -= e.getValue().size;
+        }
+    }
+
+    private void trimNoSync() {
+        final Iterator<Holder> it = this.cells.values().iterator();
+        // retain at least the most recently used entry
+        while (this.size > this.budget && this.cells.size() > 1
+                && it.hasNext()) {
+            final Holder h = it.next();
+            it.remove();
+            this.size -= h.size;
+        }
+    }
+
+    /**
+     * Reads all posts for the specified DTED file.
+     */
+    static Cell load(File file) throws IOException {
+        RandomAccessFile raf = null;
+        try {
+            raf = IOProviderFactory.getRandomAccessFile(file, "r");
+            final int[] dims = readDimensions(raf);
+            return new LoadedCell(dims[0], dims[1],
+                    readLines(raf, dims[1], 0, dims[0]));
+        } finally {
+            IoUtils.close(raf, TAG,
+                    "Error closing file: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reads the number of longitude lines and latitude points of the cell.
+     */
+    private static int[] readDimensions(RandomAccessFile raf)
+            throws IOException {
+        byte[] bytes = new byte[8];
+        raf.seek(_NUM_LNG_LINES_OFFSET);
+        raf.readFully(bytes);
+
+        final int lngLines;
+        final int latPoints;
+        try {
+            lngLines = Integer.parseInt(new String(bytes, 0, 4,
+                    StandardCharsets.US_ASCII));
+            latPoints = Integer.parseInt(new String(bytes, 4, 4,
+                    StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IOException(e);
+        }
+        if (lngLines < 1 || latPoints < 1)
+            throw new IOException("invalid file");
+        return new int[] {
+                lngLines, latPoints
+        };
+    }
+
+    private static short[] readLines(File file, int latPoints, int first,
+            int count) throws IOException {
+        RandomAccessFile raf = null;
+        try {
+            raf = IOProviderFactory.getRandomAccessFile(file, "r");
+            return readLines(raf, latPoints, first, count);
+        } finally {
+            IoUtils.close(raf, TAG,
+                    "Error closing file: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reads the posts for a run of longitude lines.
+     */
+    private static short[] readLines(RandomAccessFile raf, int latPoints,
+            int first, int count) throws IOException {
+        final int dataRecSize = _DATA_RECORD_PREFIX_SIZE
+                + (latPoints * 2)
+                + _DATA_RECORD_SUFFIX_SIZE;
+
+        final short[] posts = new short[count * latPoints];
+        final byte[] record = new byte[dataRecSize];
+
+        raf.seek(_HEADER_OFFSET + (long) first * dataRecSize);
+        for (int x = 0; x < count; x++) {
+            raf.readFully(record);
+            final int off = x * latPoints;
+            for (int y = 0; y < latPoints; y++) {
+                final int i = _DATA_RECORD_PREFIX_SIZE + (y * 2);
+                posts[off + y] = (short) (((record[i] & 0xFF) << 8)
+                        | (record[i + 1] & 0xFF));
+            }
+        }
+        return posts;
+    }
+
+    private final static class Holder {
+        /** written while holding the holder's monitor */
+        volatile Entry entry;
+        /**
+         * the size accounted for the entry, written while holding the
+         * cache's monitor
+         */
+        long size;
+    }
+}
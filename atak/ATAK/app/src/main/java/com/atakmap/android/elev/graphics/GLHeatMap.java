@@ -50,7 +50,6 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
@@ -1325,13 +1324,15 @@ public class GLHeatMap extends GLAsynchronousMapRenderable<HeatMapParams>
             double[] els = new double[numSamples];
 
             {
-                Collection<GeoPoint> pts = new LinkedList<>();
+                double[] lonLat = new double[numSamples * 2];
+                int idx = 0;
                 for (int y = 0; y < result.ySampleResolution; y++) {
                     for (int x = 0; x < result.xSampleResolution; x++) {
                         img.x = x;
                         img.y = y;
                         img2geo.transform(img, geo);
-                        pts.add(new GeoPoint(geo.y, geo.x));
+                        lonLat[idx++] = geo.x;
+                        lonLat[idx++] = geo.y;
                     }
                 }
 
@@ -1345,7 +1346,8 @@ public class GLHeatMap extends GLAsynchronousMapRenderable<HeatMapParams>
                         result.upperRight,
                         result.lowerRight,
                         result.lowerLeft);
-                ElevationManager.getElevation(pts.iterator(), els, null, hints);
+                ElevationManager.getElevation(lonLat, numSamples, els, null,
+                        hints);
             }
 
             result.numSamples = 0;
@@ -1459,61 +1461,76 @@ public class GLHeatMap extends GLAsynchronousMapRenderable<HeatMapParams>
                             this.result.lowerRight,
                             this.result.lowerLeft);
 
-                    double[] samples = new double[maxSamples * maxSamples];
-                    ArrayList<GeoPoint> points = new ArrayList<>(
-                            maxSamples * maxSamples);
-                    for (int ty = 0; ty < nty; ty++) {
-                        for (int tx = 0; tx < ntx; tx++) {
-                            final int nrows = Math.min(maxSamples,
-                                    this.result.ySampleResolution
-                                            - (ty * maxSamples));
-                            final int ncols = Math.min(maxSamples,
-                                    this.result.xSampleResolution
-                                            - (tx * maxSamples));
-                            // build out the points
-                            points.clear();
-                            for (int y = 0; y < nrows; y++) {
-                                for (int x = 0; x < ncols; x++) {
-                                    img.x = x + (tx * maxSamples);
-                                    img.y = y + (ty * maxSamples);
-                                    img2geo.transform(img, geo);
-                                    points.add(new GeoPoint(geo.y, geo.x));
+                    // prepare the query once for all tiles
+                    ElevationManager.QueryParameters filter = new ElevationManager.QueryParameters();
+                    filter.spatialFilter = DatasetDescriptor
+                            .createSimpleCoverage(
+                                    this.result.upperLeft,
+                                    this.result.upperRight,
+                                    this.result.lowerRight,
+                                    this.result.lowerLeft);
+                    ElevationManager.QueryContext ctx = new ElevationManager.QueryContext(
+                            filter, hints);
+
+                    double[] lla = new double[maxSamples * maxSamples * 3];
+                    try {
+                        for (int ty = 0; ty < nty; ty++) {
+                            for (int tx = 0; tx < ntx; tx++) {
+                                if (canceled)
+                                    return;
+                                final int nrows = Math.min(maxSamples,
+                                        this.result.ySampleResolution
+                                                - (ty * maxSamples));
+                                final int ncols = Math.min(maxSamples,
+                                        this.result.xSampleResolution
+                                                - (tx * maxSamples));
+                                // build out the points
+                                int idx = 0;
+                                for (int y = 0; y < nrows; y++) {
+                                    for (int x = 0; x < ncols; x++) {
+                                        img.x = x + (tx * maxSamples);
+                                        img.y = y + (ty * maxSamples);
+                                        img2geo.transform(img, geo);
+                                        lla[idx++] = geo.x;
+                                        lla[idx++] = geo.y;
+                                        lla[idx++] = Double.NaN;
+                                    }
                                 }
-                            }
-                            ElevationManager.getElevation(points.iterator(),
-                                    samples, null, hints);
-                            for (int i = 0; i < (nrows * ncols); i++) {
-                                if (Double.isNaN(samples[i]))
-                                    continue;
-                                final int resultX = (i % ncols)
-                                        + (tx * maxSamples);
-                                final int resultY = (i / ncols)
-                                        + (ty * maxSamples);
-                                final int resultIdx = (resultY
-                                        * this.result.xSampleResolution)
-                                        + resultX;
-                                final GeoPoint geo = points.get(i);
-
-                                double altMSL = EGM96.getMSL(
-                                        geo.getLatitude(), geo.getLongitude(),
-                                        samples[i]);
-                                if (!GeoPoint.isAltitudeValid(altMSL)) {
-                                    this.result.elevationData[resultIdx] = Float.NaN;
-                                } else {
-                                    this.result.elevationData[resultIdx] = (float) altMSL;
-                                    if (this.result.numSamples == 0) {
-                                        this.result.minElev = this.result.elevationData[resultIdx];
-                                        this.result.maxElev = this.result.elevationData[resultIdx];
+                                ElevationManager.getElevation(lla, 0,
+                                        nrows * ncols, ctx);
+                                for (int i = 0; i < (nrows * ncols); i++) {
+                                    final double hae = lla[i * 3 + 2];
+                                    if (Double.isNaN(hae))
+                                        continue;
+                                    final int resultX = (i % ncols)
+                                            + (tx * maxSamples);
+                                    final int resultY = (i / ncols)
+                                            + (ty * maxSamples);
+                                    final int resultIdx = (resultY
+                                            * this.result.xSampleResolution)
+                                            + resultX;
+                                    double altMSL = EGM96.getMSL(
+                                            lla[i * 3 + 1], lla[i * 3], hae);
+                                    if (!GeoPoint.isAltitudeValid(altMSL)) {
+                                        this.result.elevationData[resultIdx] = Float.NaN;
                                     } else {
-                                        if (this.result.elevationData[resultIdx] < this.result.minElev)
+                                        this.result.elevationData[resultIdx] = (float) altMSL;
+                                        if (this.result.numSamples == 0) {
                                             this.result.minElev = this.result.elevationData[resultIdx];
-                                        else if (this.result.elevationData[resultIdx] > this.result.maxElev)
                                             this.result.maxElev = this.result.elevationData[resultIdx];
+                                        } else {
+                                            if (this.result.elevationData[resultIdx] < this.result.minElev)
+                                                this.result.minElev = this.result.elevationData[resultIdx];
+                                            else if (this.result.elevationData[resultIdx] > this.result.maxElev)
+                                                this.result.maxElev = this.result.elevationData[resultIdx];
+                                        }
+                                        this.result.numSamples++;
                                     }
-                                    this.result.numSamples++;
                                 }
                             }
                         }
+                    } finally {
+                        ctx.dispose();
                     }
                 }
             }
@@ -126,6 +126,32 @@ class CircleGeoFenceMonitor extends GeoFenceMonitor {
         return _circle.getCenter();
     }
 
+    @Override
+    protected double[] getEnvelope() {
+        GeoPointMetaData center = _circle.getCenter();
+        if (center == null)
+            return null;
+
+        int numRings = _circle.getNumRings();
+        if (numRings < 1 || numRings > DrawingCircle.MAX_RINGS)
+            numRings = 1;
+
+        //pad the outer radius, the meters per degree are approximate
+        double radiusMeters = _circle.getRadius() * numRings * 1.01d;
+        double lat = center.get().getLatitude();
+        double lng = center.get().getLongitude();
+        double dLat = radiusMeters
+                / GeoCalculations.approximateMetersPerDegreeLatitude(lat);
+        //the circle contains a pole, there is no useful envelope
+        if (Math.abs(lat) + dLat >= 90d)
+            return null;
+        double dLng = radiusMeters / GeoCalculations
+                .approximateMetersPerDegreeLongitude(Math.abs(lat) + dLat);
+        return new double[] {
+                lat - dLat, lng - dLng, lat + dLat, lng + dLng
+        };
+    }
+
     /**
      * Run a quick check of the specified search parameters
      *
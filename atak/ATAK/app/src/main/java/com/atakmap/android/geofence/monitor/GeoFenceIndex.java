@@ -0,0 +1,284 @@
+
+package com.atakmap.android.geofence.monitor;
+
+import com.atakmap.android.maps.PointMapItem;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.math.PointD;
+import com.atakmap.util.Quadtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spatial index over the envelopes of the active fences, shared by all
+ * monitors. Tracked items report their location changes to the index; a
+ * moved item is only reported to the fences that track it and whose envelope
+ * contains its previous or its current location, i.e. the fences it may have
+ * entered or left. Fences without an envelope, or whose envelope crosses the
+ * IDL, are always candidates.
+ *
+ * <P>This class is thread-safe.
+ *
+ * @param <T> the fence type
+ */
+final class GeoFenceIndex<T> implements PointMapItem.OnPointChangedListener {
+
+    private final Quadtree.Function<Fence<T>> fenceBounds = new Quadtree.Function<Fence<T>>() {
+        @Override
+        public void getBounds(Fence<T> object, PointD min, PointD max) {
+            min.x = object.envelope[1];
+            min.y = object.envelope[0];
+            max.x = object.envelope[3];
+            max.y = object.envelope[2];
+        }
+    };
+
+    private final Quadtree<Fence<T>> index;
+    private final Map<T, Fence<T>> fences;
+    private final Map<T, Fence<T>> unindexed;
+    private final Map<PointMapItem, Tracked<T>> tracked;
+    private final Set<PointMapItem> moved;
+
+    GeoFenceIndex() {
+        this.index = new Quadtree<>(fenceBounds, 8, -180d, -90d, 180d, 90d);
+        this.fences = new IdentityHashMap<>();
+        this.unindexed = new IdentityHashMap<>();
+        this.tracked = new IdentityHashMap<>();
+        this.moved = Collections
+                .newSetFromMap(new IdentityHashMap<PointMapItem, Boolean>());
+    }
+
+    /**
+     * Returns <code>true</code> if the fence is indexed with the specified
+     * envelope and revision. If not, the fence should be updated via
+     * {@link #put(Object, double[], int, Collection)} and all of its items
+     * checked.
+     */
+    synchronized boolean isCurrent(T key, double[] envelope, int revision) {
+        final Fence<T> fence = this.fences.get(key);
+        return fence != null && fence.revision == revision
+                && Arrays.equals(fence.envelope, envelope);
+    }
+
+    /**
+     * Adds or updates a fence.
+     *
+     * @param key       The fence
+     * @param envelope  The fence envelope as {minLat, minLng, maxLat, maxLng},
+     *                  or <code>null</code> if unknown
+     * @param revision  The revision of the fence and its tracked items
+     * @param items     The items tracked by the fence
+     */
+    void put(T key, double[] envelope, int revision,
+            Collection<PointMapItem> items) {
+        final List<PointMapItem> added = new ArrayList<>();
+        final List<PointMapItem> removed = new ArrayList<>();
+        final boolean changed;
+
+        synchronized (this) {
+            Fence<T> fence = this.fences.get(key);
+            if (fence == null) {
+                fence = new Fence<>(key);
+                this.fences.put(key, fence);
+                changed = true;
+            } else if (!Arrays.equals(fence.envelope, envelope)) {
+                if (this.unindexed.remove(key) == null)
+                    this.index.remove(fence);
+                changed = true;
+            } else {
+                changed = false;
+            }
+            if (changed) {
+                fence.envelope = (envelope != null) ? envelope.clone() : null;
+                if (isIndexable(fence.envelope))
+                    this.index.add(fence);
+                else
+                    this.unindexed.put(key, fence);
+            }
+            fence.revision = revision;
+
+            // reconcile the tracked items
+            final Set<PointMapItem> current = Collections.newSetFromMap(
+                    new IdentityHashMap<PointMapItem, Boolean>());
+            current.addAll(items);
+            for (PointMapItem item : fence.items) {
+                if (!current.contains(item) && this.untrackNoSync(fence, item))
+                    removed.add(item);
+            }
+            for (PointMapItem item : current) {
+                if (!fence.items.contains(item)
+                        && this.trackNoSync(fence, item))
+                    added.add(item);
+            }
+            fence.items.clear();
+            fence.items.addAll(current);
+        }
+
+        for (PointMapItem item : added)
+            item.addOnPointChangedListener(this);
+        for (PointMapItem item : removed)
+            item.removeOnPointChangedListener(this);
+    }
+
+    /**
+     * Removes a fence, and stops tracking the items that are no longer
+     * tracked by any fence.
+     */
+    void remove(T key) {
+        final List<PointMapItem> removed = new ArrayList<>();
+        synchronized (this) {
+            final Fence<T> fence = this.fences.remove(key);
+            if (fence == null)
+                return;
+            if (this.unindexed.remove(key) == null)
+                this.index.remove(fence);
+            for (PointMapItem item : fence.items) {
+                if (this.untrackNoSync(fence, item))
+                    removed.add(item);
+            }
+            fence.items.clear();
+        }
+        for (PointMapItem item : removed)
+            item.removeOnPointChangedListener(this);
+    }
+
+    /**
+     * Removes all fences and stops tracking all items.
+     */
+    void clear() {
+        final Collection<PointMapItem> removed;
+        synchronized (this) {
+            removed = new ArrayList<>(this.tracked.keySet());
+            this.fences.clear();
+            this.unindexed.clear();
+            this.index.clear();
+            this.tracked.clear();
+            this.moved.clear();
+        }
+        for (PointMapItem item : removed)
+            item.removeOnPointChangedListener(this);
+    }
+
+    /**
+     * Returns the items that moved since the last call, keyed on the fences
+     * they may have entered or left. The current locations become the
+     * previous locations for the next call.
+     */
+    synchronized Map<T, List<PointMapItem>> drainMoved() {
+        if (this.moved.isEmpty())
+            return Collections.emptyMap();
+
+        final Map<T, List<PointMapItem>> retval = new IdentityHashMap<>();
+        final Set<Fence<T>> candidates = Collections
+                .newSetFromMap(new IdentityHashMap<Fence<T>, Boolean>());
+        for (PointMapItem item : this.moved) {
+            final Tracked<T> t = this.tracked.get(item);
+            final GeoPoint point = item.getPoint();
+            if (t == null || point == null)
+                continue;
+
+            candidates.clear();
+            if (t.last != null)
+                this.queryNoSync(t.last, candidates);
+            this.queryNoSync(point, candidates);
+            for (Fence<T> fence : candidates) {
+                if (!t.fences.contains(fence))
+                    continue;
+                List<PointMapItem> items = retval.get(fence.key);
+                if (items == null)
+                    retval.put(fence.key, items = new ArrayList<>());
+                items.add(item);
+            }
+            t.last = point;
+        }
+        this.moved.clear();
+        return retval;
+    }
+
+    synchronized int getFenceCount() {
+        return this.fences.size();
+    }
+
+    synchronized int getTrackedCount() {
+        return this.tracked.size();
+    }
+
+    @Override
+    public void onPointChanged(PointMapItem item) {
+        synchronized (this) {
+            if (this.tracked.containsKey(item))
+                this.moved.add(item);
+        }
+    }
+
+    private void queryNoSync(GeoPoint point, Collection<Fence<T>> retval) {
+        final double lat = point.getLatitude();
+        final double lng = point.getLongitude();
+        this.index.get(lng, lat, lng, lat, retval);
+        retval.addAll(this.unindexed.values());
+    }
+
+    /**
+     * @return  <code>true</code> if the item was not previously tracked
+     */
+    private boolean trackNoSync(Fence<T> fence, PointMapItem item) {
+        Tracked<T> t = this.tracked.get(item);
+        final boolean retval = (t == null);
+        if (retval) {
+            t = new Tracked<>(item.getPoint());
+            this.tracked.put(item, t);
+        }
+        t.fences.add(fence);
+        return retval;
+    }
+
+    /**
+     * @return  <code>true</code> if the item is no longer tracked
+     */
+    private boolean untrackNoSync(Fence<T> fence, PointMapItem item) {
+        final Tracked<T> t = this.tracked.get(item);
+        if (t == null)
+            return false;
+        t.fences.remove(fence);
+        if (!t.fences.isEmpty())
+            return false;
+        this.tracked.remove(item);
+        this.moved.remove(item);
+        return true;
+    }
+
+    private static boolean isIndexable(double[] envelope) {
+        return envelope != null
+                && envelope[0] >= -90d && envelope[2] <= 90d
+                && envelope[1] >= -180d && envelope[3] <= 180d
+                && envelope[0] <= envelope[2] && envelope[1] <= envelope[3];
+    }
+
+    private final static class Fence<T> {
+        final T key;
+        final Set<PointMapItem> items = Collections
+                .newSetFromMap(new IdentityHashMap<PointMapItem, Boolean>());
+        double[] envelope;
+        int revision;
+
+        Fence(T key) {
+            this.key = key;
+        }
+    }
+
+    private final static class Tracked<T> {
+        final Set<Fence<T>> fences = Collections
+                .newSetFromMap(new IdentityHashMap<Fence<T>, Boolean>());
+        GeoPoint last;
+
+        Tracked(GeoPoint last) {
+            this.last = last;
+        }
+    }
+}
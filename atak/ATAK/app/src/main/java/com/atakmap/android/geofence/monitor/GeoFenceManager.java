@@ -82,6 +82,12 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
      */
     private final SpatialCalculator _spatialCalc;
 
+    /**
+     * Envelopes of all monitored fences, so that an item that moved is only checked against
+     * the fences it may have entered or left
+     */
+    private final GeoFenceIndex<GeoFenceMonitor> _fenceIndex;
+
     /**
      * Map the geo fence map item's (shape) UID to the monitor
      */
@@ -108,6 +114,7 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         _toRemove = new ArrayList<>();
         _deferredAdds = new HashMap<>();
         _spatialCalc = new SpatialCalculator.Builder().inMemory().build();
+        _fenceIndex = new GeoFenceIndex<>();
         _monitorIteration = 0;
         initialize();
     }
@@ -124,6 +131,7 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
                 MapEvent.ITEM_ADDED, this);
         if (_alerting != null)
             _alerting.dispose();
+        _fenceIndex.clear();
         _spatialCalc.dispose();
     }
 
@@ -482,6 +490,7 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         GeoFenceMonitor removed = _monitors.remove(uid);
         if (removed != null) {
             _alerting.dismiss(removed);
+            _fenceIndex.remove(removed);
             removed.dispose();
             removed.getItem().removeOnGroupChangedListener(this);
             dispatchMonitorRemoved(uid);
@@ -533,6 +542,10 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         //auto dismiss for "Both" trigger based on how we track "last state" and alert
         final boolean bAutoDismissAlerts = false;
 
+        //items that moved since the last pass, by the fences they may have entered or left
+        final Map<GeoFenceMonitor, List<PointMapItem>> moved = _fenceIndex
+                .drainMoved();
+
         for (GeoFenceMonitor monitor : _monitors.values()) {
             //indicator that dispose has been called
             if (_group == null) {
@@ -561,7 +574,23 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
                 rescan(monitor);
             }
 
-            List<GeoFenceAlerting.Alert> toAlert = monitor.check();
+            List<GeoFenceAlerting.Alert> toAlert;
+            if (!monitor.getFence().isTracking()) {
+                //check all items once tracking resumes
+                _fenceIndex.remove(monitor);
+                toAlert = null;
+            } else if (!_fenceIndex.isCurrent(monitor, monitor.getEnvelope(),
+                    monitor.getRevision())) {
+                //new monitor, or the fence or its items changed
+                final int revision = monitor.getRevision();
+                final List<PointMapItem> items = monitor.getItems();
+                _fenceIndex.put(monitor, monitor.getEnvelope(), revision,
+                        items);
+                toAlert = monitor.check(items);
+            } else {
+                final List<PointMapItem> items = moved.get(monitor);
+                toAlert = (items != null) ? monitor.check(items) : null;
+            }
             if (!FileSystemUtils.isEmpty(toAlert)) {
                 //TODO combine alerts for all monitors and alert all at once?
                 _alerting.alert(monitor, toAlert, bAutoDismissAlerts);
@@ -873,6 +902,7 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         Log.d(TAG, "Deleting all monitors");
         _alerting.dismissAll();
         _monitors.clear();
+        _fenceIndex.clear();
         _component.getDatabase().clearAll();
 
     }
@@ -17,6 +17,7 @@ import com.atakmap.app.R;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.conversion.EGM96;
+import com.atakmap.coremap.maps.coords.GeoCalculations;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.spatial.SpatialCalculator;
@@ -32,6 +33,7 @@ import java.util.Set;
 public abstract class GeoFenceMonitor {
 
     private static final String TAG = "GeoFenceMonitor";
+    private static final double METERS_THRESHOLD_TO_UPDATE_POINT = 2;
 
     /**
      * Cache fence and its corresponding shape
@@ -62,12 +64,39 @@ public abstract class GeoFenceMonitor {
      */
     protected final Map<String, Boolean> _uidsLastState;
 
+    /**
+     * Envelope of the fence geometry as {minLat, minLng, maxLat, maxLng}. Items outside of
+     * the envelope cannot be inside the fence and need not be tested against the
+     * SpatialCalculator. Replaced, never modified, when the fence geometry changes
+     */
+    private volatile double[] _envelope;
+
+    /**
+     * Incremented whenever the fence geometry changes. Containment results are only
+     * reused for the version they were computed with
+     */
+    private volatile int _geometryVersion;
+
+    /**
+     * Incremented whenever the fence geometry, the fence or the tracked items change.
+     * Used by the {@link GeoFenceIndex} to decide when all items need to be checked
+     */
+    private volatile int _revision;
+
+    /**
+     * Map item UID to the point last inserted into the SpatialCalculator for the item,
+     * and the result of the last containment test. Guarded by itself, no other lock may
+     * be acquired while holding it
+     */
+    private final Map<String, TrackedPoint> _trackedPoints;
+
     public GeoFenceMonitor(MapView view, GeoFence fence, MapItem item) {
         _fence = fence;
         _item = item;
         _view = view;
         _uidsToIgnore = new HashSet<>();
         _uidsLastState = new HashMap<>();
+        _trackedPoints = new HashMap<>();
         _itemsToTrack = new ArrayList<>();
         _uidsToTrack = new ArrayList<>();
     }
@@ -96,6 +125,19 @@ public abstract class GeoFenceMonitor {
         return check(trigger, getItems(), true);
     }
 
+    /**
+     * Check if the specified tracked items have breached the Geo Fence
+     *
+     * @param items the items to check, e.g. those that moved
+     * @return the list of alerts for the items that have breached the geofence
+     */
+    List<GeoFenceAlerting.Alert> check(List<PointMapItem> items) {
+        if (!_fence.isTracking())
+            return null;
+
+        return check(_fence.getTrigger(), items, true);
+    }
+
     /**
      * Check if the item has breached the Geo Fence
      *
@@ -220,10 +262,12 @@ public abstract class GeoFenceMonitor {
             Map<String, Boolean> uidsLastState) {
         this._uidsLastState.clear();
         this._uidsLastState.putAll(uidsLastState);
+        _revision++;
     }
 
     public synchronized void clearUidsLastState() {
         _uidsLastState.clear();
+        _revision++;
     }
 
     /**
@@ -235,6 +279,7 @@ public abstract class GeoFenceMonitor {
     public synchronized void setSelectItems(List<PointMapItem> items) {
         _itemsToTrack = items;
         _uidsToIgnore.clear();
+        _revision++;
     }
 
     public synchronized void clearSelectItems() {
@@ -254,6 +299,7 @@ public abstract class GeoFenceMonitor {
     public synchronized boolean checkSelectedItem(PointMapItem item) {
         if (_uidsToTrack.remove(item.getUID())) {
             _itemsToTrack.add(item);
+            _revision++;
             return true;
         }
         return false;
@@ -301,6 +347,7 @@ public abstract class GeoFenceMonitor {
     public void setFence(GeoFence fence) {
         //Log.d(TAG, "Updated fence");
         this._fence = fence;
+        _revision++;
     }
 
     public GeoFence getFence() {
@@ -317,6 +364,7 @@ public abstract class GeoFenceMonitor {
         //mark that future alerts should be ignored
         _uidsToIgnore.add(item.getUID());
         _uidsLastState.remove(item.getUID());
+        _revision++;
 
         if (!FileSystemUtils.isEmpty(_itemsToTrack)) {
             int toRemove = itemsToTrackIndex(item);
@@ -377,6 +425,7 @@ public abstract class GeoFenceMonitor {
 
         //don't ignore if previously done so
         _uidsToIgnore.remove(item.getUID());
+        _revision++;
 
         //check if currently inside & set initial state. For "Both" fences set opposite from
         //current state, so we alert immediately
@@ -483,6 +532,197 @@ public abstract class GeoFenceMonitor {
                 && (Double.isNaN(maxElev) || pointElev <= maxElev);
     }
 
+    /**
+     * Set the envelope of the fence geometry. Must be called whenever the geometry
+     * changes, after the SpatialCalculator has been updated, as doing so also
+     * invalidates all cached containment results
+     *
+     * @param points the fence vertices, as provided to the SpatialCalculator
+     */
+    protected void setEnvelope(GeoPoint[] points) {
+        double[] envelope = null;
+        if (!FileSystemUtils.isEmpty(points)) {
+            envelope = new double[] {
+                    Double.MAX_VALUE, Double.MAX_VALUE,
+                    -Double.MAX_VALUE, -Double.MAX_VALUE
+            };
+            for (GeoPoint p : points) {
+                envelope[0] = Math.min(envelope[0], p.getLatitude());
+                envelope[1] = Math.min(envelope[1], p.getLongitude());
+                envelope[2] = Math.max(envelope[2], p.getLatitude());
+                envelope[3] = Math.max(envelope[3], p.getLongitude());
+            }
+        }
+        _envelope = envelope;
+        _geometryVersion++;
+        _revision++;
+    }
+
+    /**
+     * Get the envelope of the monitored area
+     *
+     * @return the envelope as {minLat, minLng, maxLat, maxLng}, or null if unknown
+     */
+    protected double[] getEnvelope() {
+        return _envelope;
+    }
+
+    /**
+     * Get the revision of the monitor state, incremented whenever the fence geometry, the
+     * fence or the tracked items change
+     */
+    int getRevision() {
+        return _revision;
+    }
+
+    /**
+     * Quick rejection test against the envelope of the fence geometry
+     *
+     * @param point the point to test
+     * @return false if the point is known to be outside the fence, true if it
+     *      may be inside and needs to be tested against the fence geometry
+     */
+    protected boolean inEnvelope(GeoPoint point) {
+        final double[] envelope = _envelope;
+        if (envelope == null)
+            return true;
+        final double lat = point.getLatitude();
+        final double lng = point.getLongitude();
+        return lat >= envelope[0] && lng >= envelope[1]
+                && lat <= envelope[2] && lng <= envelope[3];
+    }
+
+    /**
+     * Check if the point is inside the fence geometry, inserting or updating the point in the
+     * SpatialCalculator as needed. If the point has not moved since it was last checked, and
+     * the fence geometry has not changed, the last result is reused.
+     *
+     * @param spatialCalc the spatial calculator holding the fence geometry
+     * @param fenceHandle handle of the fence geometry in the spatial calculator
+     * @param uid the UID of the item
+     * @param point the current location of the item
+     * @return true if inside, false if outside, null if the point could not be checked
+     */
+    protected Boolean contains(SpatialCalculator spatialCalc, long fenceHandle,
+            String uid, GeoPoint point) {
+        // capture the version before testing, a result computed while the
+        // fence geometry is being changed must not be reused
+        final int version = _geometryVersion;
+
+        TrackedPoint last;
+        synchronized (_trackedPoints) {
+            last = _trackedPoints.get(uid);
+        }
+
+        long pointHandle;
+        if (last == null) {
+            //no last point, insert
+            synchronized (spatialCalc) {
+                pointHandle = spatialCalc.createPoint(point);
+            }
+
+            if (pointHandle < 1) {
+                Log.w(TAG, "Failed to insert point into SpatialCalculator");
+                return null;
+            }
+        } else {
+            //see if map item has moved
+            pointHandle = last.handle;
+            double moved = GeoCalculations.distanceTo(last.point, point);
+            if (moved >= METERS_THRESHOLD_TO_UPDATE_POINT) {
+                synchronized (spatialCalc) {
+                    spatialCalc.updatePoint(pointHandle, point);
+                }
+            } else {
+                //reuse the last result if the fence has not changed
+                if (last.version == version && last.contains != null)
+                    return last.contains;
+                point = last.point;
+            }
+        }
+
+        if (pointHandle < 1) {
+            Log.w(TAG,
+                    "Failed to insert or update point into SpatialCalculator");
+            return null;
+        }
+
+        boolean bInside;
+        synchronized (spatialCalc) {
+            bInside = spatialCalc.contains(fenceHandle, pointHandle);
+        }
+
+        boolean orphaned = false;
+        synchronized (_trackedPoints) {
+            final TrackedPoint current = _trackedPoints.get(uid);
+            if (last == null && current != null) {
+                // another check inserted a point for the item first, ours
+                // was never recorded and must be deleted
+                orphaned = true;
+            } else if (last != null && current != last) {
+                // item was removed while testing, its point has been deleted
+                return bInside;
+            } else {
+                // discard the result if the fence changed while testing
+                _trackedPoints.put(uid, new TrackedPoint(point, pointHandle,
+                        version == _geometryVersion ? bInside : null,
+                        version));
+            }
+        }
+        if (orphaned) {
+            try {
+                synchronized (spatialCalc) {
+                    spatialCalc.deleteGeometry(pointHandle);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to remove point from spatial calc", e);
+            }
+        }
+        return bInside;
+    }
+
+    /**
+     * Remove the point for the specified item from the SpatialCalculator, along with
+     * the cached containment result
+     *
+     * @param spatialCalc the spatial calculator holding the point
+     * @param uid the UID of the item
+     */
+    protected void removePoint(SpatialCalculator spatialCalc, String uid) {
+        final TrackedPoint last;
+        synchronized (_trackedPoints) {
+            last = _trackedPoints.remove(uid);
+        }
+        if (last == null)
+            return;
+
+        try {
+            synchronized (spatialCalc) {
+                spatialCalc.deleteGeometry(last.handle);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to remove item from spatial calc", e);
+        }
+    }
+
+    /**
+     * Last point inserted into the SpatialCalculator for an item
+     */
+    private static final class TrackedPoint {
+        final GeoPoint point;
+        final long handle;
+        final Boolean contains;
+        final int version;
+
+        TrackedPoint(GeoPoint point, long handle, Boolean contains,
+                int version) {
+            this.point = point;
+            this.handle = handle;
+            this.contains = contains;
+            this.version = version;
+        }
+    }
+
     /**
      * Factory to create proper monitor, based on Map Item
      * Map Item should be the reference shape (see GeoFenceReceiver.getReferenceShape)
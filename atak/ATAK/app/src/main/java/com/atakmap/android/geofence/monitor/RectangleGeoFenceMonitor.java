@@ -1,8 +1,6 @@
 
 package com.atakmap.android.geofence.monitor;
 
-import android.util.Pair;
-
 import com.atakmap.android.editableShapes.Rectangle;
 import com.atakmap.android.geofence.alert.GeoFenceAlerting;
 import com.atakmap.android.geofence.data.GeoFence;
@@ -12,7 +10,6 @@ import com.atakmap.android.maps.Shape;
 import com.atakmap.android.util.ATAKUtilities;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
-import com.atakmap.coremap.maps.coords.GeoCalculations;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.coremap.maps.time.CoordinatedTime;
@@ -21,16 +18,12 @@ import android.database.sqlite.SQLiteException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 class RectangleGeoFenceMonitor extends GeoFenceMonitor {
 
     private static final String TAG = "RectangleGeoFenceMonitor";
 
-    private static final double METERS_THRESHOLD_TO_UPDATE_POINT = 2;
-
     private final SpatialCalculator _spatialCalc;
 
     /**
@@ -43,14 +36,6 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
      */
     private final Rectangle _shape;
 
-    /**
-     * Map UID to tracking info (last location, and _spatialCalc handle)
-     *
-     * Cache last point of each monitored shape, used to determine if point in _spatialCalc
-     * needs to be updated
-     */
-    private final Map<String, Pair<GeoPoint, Long>> _lastPoints;
-
     /**
      * ctor
      *
@@ -64,7 +49,6 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
         super(view, fence, item);
         _shape = item;
         _spatialCalc = spatialCalc;
-        _lastPoints = new HashMap<>();
 
         GeoPoint[] points = item.getPoints();
         if (points != null && points.length >= 4) {
@@ -75,6 +59,7 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
                     _fenceHandle = _spatialCalc.createPolygon(points[0],
                             points[1], points[2], points[3]);
                 }
+                setEnvelope(Arrays.copyOf(points, 4));
             } catch (SQLiteException err) {
                 Log.e(TAG,
                         "something very BAD happened when building the monitor",
@@ -153,30 +138,14 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
                         points[1],
                         points[2], points[3]);
             }
+            setEnvelope(Arrays.copyOf(points, 4));
         }
     };
 
     @Override
     public synchronized boolean removeItem(PointMapItem item) {
         //remove point from _spatialCalc
-        //TODO is this necessary? doesn't it just get deleted when ATAK restarts anyway?
-        //if so, why waste time here?
-
-        try {
-            Pair<GeoPoint, Long> lastPoint = _lastPoints.get(item.getUID());
-            if (lastPoint != null) {
-                //long s2 = android.os.SystemClock.elapsedRealtime();
-                synchronized (_spatialCalc) {
-                    _spatialCalc.deleteGeometry(lastPoint.second);
-                }
-                //long deleteTally = (android.os.SystemClock.elapsedRealtime() - s2);
-
-                //Log.d(TAG, "Checked " + toString() + ", delete calls took: " + (deleteTally / 1000D));
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to remove item from spatial calc", e);
-        }
-
+        removePoint(_spatialCalc, item.getUID());
         return super.removeItem(item);
     }
 
@@ -199,7 +168,6 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
         PointMapItem centerMarker = _shape.getAnchorItem();
 
         //long start = android.os.SystemClock.elapsedRealtime();
-        //long containsTally = 0, insertTally = 0, updateTally=0, s2 = 0;
 
         //get timestamp once, for efficiency, even though we get each points location at slightly future times...
         long timestamp = new CoordinatedTime().getMilliseconds();
@@ -226,62 +194,18 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
                         continue;
                     }
 
-                    Pair<GeoPoint, Long> lastPoint = _lastPoints.get(item
-                            .getUID());
-                    long pointHandle = -1;
-                    if (lastPoint == null) {
-                        //no last point, insert
-                        //Log.d(TAG, "Inserting point: " + item.getUID());
-                        //s2 = android.os.SystemClock.elapsedRealtime();
-                        synchronized (_spatialCalc) {
-                            pointHandle = _spatialCalc.createPoint(point);
-                        }
-                        //insertTally += (android.os.SystemClock.elapsedRealtime() - s2);
-
-                        if (pointHandle < 1) {
-                            Log.w(TAG,
-                                    "Failed to insert point into SpatialCalculator");
+                    //items outside of the fence envelope cannot be inside
+                    //the fence, don't bother the SpatialCalculator with them
+                    boolean bInside = inElevationRange(point)
+                            && inEnvelope(point);
+                    if (bInside) {
+                        //let SpatialCalculator do it's magic
+                        Boolean bContains = contains(_spatialCalc,
+                                _fenceHandle, item.getUID(), point);
+                        if (bContains == null)
                             continue;
-                        }
-
-                        _lastPoints.put(item.getUID(),
-                                new Pair<>(point, pointHandle));
-                    } else {
-                        //see if map item has moved
-                        pointHandle = lastPoint.second;
-                        double moved = GeoCalculations
-                                .distanceTo(lastPoint.first, point);
-                        if (moved >= METERS_THRESHOLD_TO_UPDATE_POINT) {
-                            //Log.d(TAG, "Updating point: " + item.getUID());
-                            //s2 = android.os.SystemClock.elapsedRealtime();
-                            synchronized (_spatialCalc) {
-                                _spatialCalc.updatePoint(pointHandle, point);
-                            }
-                            _lastPoints
-                                    .put(item.getUID(),
-                                            new Pair<>(point,
-                                                    pointHandle));
-                            //updateTally += (android.os.SystemClock.elapsedRealtime() - s2);
-                        } else {
-                            //no -op just use current location
-                            //Log.d(TAG, "Reusing point: " + item.getUID());
-                        }
-                    }
-
-                    if (pointHandle < 1) {
-                        Log.w(TAG,
-                                "Failed to insert or update point into SpatialCalculator");
-                        continue;
-                    }
-
-                    //let SpatialCalculator do it's magic
-                    //s2 = android.os.SystemClock.elapsedRealtime();
-                    boolean bInside;
-                    synchronized (_spatialCalc) {
-                        bInside = inElevationRange(point) && _spatialCalc
-                                .contains(_fenceHandle, pointHandle);
+                        bInside = bContains;
                     }
-                    //containsTally += (android.os.SystemClock.elapsedRealtime() - s2);
 
                     //now check if we should alert based on trigger
                     if (bCheckPrevious) {
@@ -316,10 +240,7 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
         //        long stop = android.os.SystemClock.elapsedRealtime();
         //        Log.d(TAG, "Checked " + toString() + " monitor in seconds: "
         //                + ((double) stop - start) / 1000D
-        //                + ", insert calls took: " + (insertTally / 1000D)
-        //                + ", update calls took: " + (updateTally / 1000D)
-        //                + ", contains calls took: " + (containsTally / 1000D)
-        //                + ", delete calls took: " + (deleteTally / 1000D));
+        //                + ", items: " + items.size());
 
         return ret;
     }
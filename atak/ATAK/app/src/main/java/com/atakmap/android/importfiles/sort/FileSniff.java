@@ -0,0 +1,266 @@
+
+package com.atakmap.android.importfiles.sort;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.util.zip.ZipEntry;
+import com.atakmap.util.zip.ZipFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content sniffed from a file that is being matched against a set of
+ * {@link ImportResolver}s. The leading bytes of the file and, for zip
+ * archives, the names of the archive entries and the leading bytes of the
+ * entries inspected by the resolvers are each read at most once and shared
+ * by all of the resolvers, rather than each resolver reopening the file to
+ * inspect it.
+ *
+ * <P>Content is read lazily, on first request.
+ */
+public class FileSniff {
+
+    private static final String TAG = "FileSniff";
+
+    /**
+     * Maximum number of leading bytes read from the file
+     */
+    public static final int HEADER_SIZE = 8192;
+
+    /**
+     * Maximum number of leading bytes read from a zip archive entry
+     */
+    public static final int ENTRY_HEADER_SIZE = 4096;
+
+    /**
+     * Extensions of the zip archive entries whose leading bytes are read
+     * along with the entry names
+     */
+    private static final String[] ENTRY_HEADER_EXTENSIONS = new String[] {
+            ".kml", ".shp"
+    };
+
+    /**
+     * Maximum number of zip archive entries whose leading bytes are read
+     */
+    private static final int MAX_ENTRY_HEADERS = 32;
+
+    private static final byte[] ZIP_MAGIC = new byte[] {
+            'P', 'K', 3, 4
+    };
+
+    /**
+     * Result of looking up an entry in the zip archive
+     */
+    public enum ZipEntryMatch {
+        /** The archive was listed and has a matching entry */
+        FOUND,
+        /** The archive was listed and has no matching entry */
+        NOT_FOUND,
+        /** The archive entries could not be listed */
+        UNLISTABLE
+    }
+
+    private final File _file;
+    private byte[] _header;
+    private List<String> _zipEntries;
+    private boolean _zipListed;
+    private Map<String, byte[]> _zipEntryHeaders;
+
+    public FileSniff(File file) {
+        _file = file;
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Get the leading bytes of the file
+     *
+     * @return up to {@link #HEADER_SIZE} bytes, empty if the file could not be
+     *      read. The returned array must not be modified.
+     */
+    public synchronized byte[] getHeader() {
+        if (_header == null)
+            _header = readHeader(_file);
+        return _header;
+    }
+
+    /**
+     * Get a stream over the leading bytes of the file, for use in place of a
+     * stream over the file itself by matchers that only inspect the start of
+     * the file
+     *
+     * @return stream over the bytes returned by {@link #getHeader()}
+     */
+    public InputStream getHeaderStream() {
+        return new ByteArrayInputStream(getHeader());
+    }
+
+    /**
+     * Check the file signature for a zip archive. Does not read the archive.
+     *
+     * @return true if the file starts with a zip local file header
+     */
+    public boolean isZip() {
+        final byte[] header = getHeader();
+        if (header.length < ZIP_MAGIC.length)
+            return false;
+        for (int i = 0; i < ZIP_MAGIC.length; i++) {
+            if (header[i] != ZIP_MAGIC[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the names of the entries in the zip archive
+     *
+     * @return the entry names, empty if the file is not a readable zip archive
+     */
+    public synchronized List<String> getZipEntries() {
+        if (_zipEntries == null)
+            readZip();
+        return _zipEntries;
+    }
+
+    /**
+     * Check if the entries of the zip archive could be listed. The listing
+     * fails if {@link ZipFile} rejects the file, which may still be an
+     * archive that other readers (e.g. GDAL) are able to open.
+     *
+     * @return true if {@link #getZipEntries()} holds the archive entries
+     */
+    public synchronized boolean isZipListed() {
+        if (_zipEntries == null)
+            readZip();
+        return _zipListed;
+    }
+
+    /**
+     * Get a stream over the leading bytes of an entry in the zip archive.
+     * Only entries ending in .kml or .shp are read, in the same pass as the
+     * entry names.
+     *
+     * @param name the entry name, as returned by {@link #getZipEntries()}
+     * @return stream over up to {@link #ENTRY_HEADER_SIZE} bytes of the entry,
+     *      or null if the entry was not read
+     */
+    public synchronized InputStream getZipEntryHeaderStream(String name) {
+        if (_zipEntries == null)
+            readZip();
+        final byte[] header = _zipEntryHeaders.get(name);
+        return header != null ? new ByteArrayInputStream(header) : null;
+    }
+
+    /**
+     * Check if the zip archive contains an entry with the specified extension
+     *
+     * @param ext the extension, e.g. ".kml"
+     * @return {@link ZipEntryMatch#FOUND} if at least one entry name ends
+     *      with <code>ext</code>, ignoring case, or
+     *      {@link ZipEntryMatch#UNLISTABLE} if the entries could not be listed
+     */
+    public ZipEntryMatch hasZipEntry(String ext) {
+        if (!isZipListed())
+            return ZipEntryMatch.UNLISTABLE;
+        ext = ext.toLowerCase(LocaleUtil.getCurrent());
+        for (String name : getZipEntries()) {
+            if (name.toLowerCase(LocaleUtil.getCurrent()).endsWith(ext))
+                return ZipEntryMatch.FOUND;
+        }
+        return ZipEntryMatch.NOT_FOUND;
+    }
+
+    private static byte[] readHeader(File file) {
+        if (file == null || !IOProviderFactory.isFile(file))
+            return new byte[0];
+
+        byte[] buf = new byte[HEADER_SIZE];
+        int len = 0;
+        try (InputStream is = IOProviderFactory.getInputStream(file)) {
+            int n;
+            while (len < buf.length
+                    && (n = is.read(buf, len, buf.length - len)) > 0)
+                len += n;
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to read header: " + file.getAbsolutePath(),
+                    e);
+        }
+
+        if (len < buf.length) {
+            byte[] header = new byte[len];
+            System.arraycopy(buf, 0, header, 0, len);
+            return header;
+        }
+        return buf;
+    }
+
+    private void readZip() {
+        _zipEntries = Collections.emptyList();
+        _zipEntryHeaders = Collections.emptyMap();
+
+        try (ZipFile zip = new ZipFile(_file)) {
+            List<String> names = new ArrayList<>();
+            Map<String, byte[]> headers = new HashMap<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final String name = entry.getName();
+                names.add(name);
+                if (headers.size() < MAX_ENTRY_HEADERS
+                        && hasHeaderExtension(name)) {
+                    try {
+                        headers.put(name, readEntryHeader(zip, entry));
+                    } catch (IOException e) {
+                        Log.d(TAG, "Failed to read zip entry: " + name, e);
+                    }
+                }
+            }
+            _zipEntries = Collections.unmodifiableList(names);
+            _zipEntryHeaders = headers;
+            _zipListed = true;
+        } catch (Exception e) {
+            Log.d(TAG, "Failed to read zip entries: "
+                    + _file.getAbsolutePath(), e);
+        }
+    }
+
+    private static boolean hasHeaderExtension(String name) {
+        name = name.toLowerCase(LocaleUtil.getCurrent());
+        for (String ext : ENTRY_HEADER_EXTENSIONS) {
+            if (name.endsWith(ext))
+                return true;
+        }
+        return false;
+    }
+
+    private static byte[] readEntryHeader(ZipFile zip, ZipEntry entry)
+            throws IOException {
+        byte[] buf = new byte[ENTRY_HEADER_SIZE];
+        int len = 0;
+        try (InputStream is = zip.getInputStream(entry)) {
+            int n;
+            while (len < buf.length
+                    && (n = is.read(buf, len, buf.length - len)) > 0)
+                len += n;
+        }
+        if (len < buf.length) {
+            byte[] header = new byte[len];
+            System.arraycopy(buf, 0, header, 0, len);
+            return header;
+        }
+        return buf;
+    }
+}
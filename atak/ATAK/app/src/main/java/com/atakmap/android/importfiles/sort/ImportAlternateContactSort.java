@@ -59,10 +59,21 @@ public class ImportAlternateContactSort extends ImportResolver {
 
     @Override
     public boolean match(File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(File file, FileSniff sniff) {
+        if (isMatchOverridden(ImportAlternateContactSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(File file, FileSniff sniff) {
         if (!super.match(file))
             return false;
 
-        try (InputStream is = IOProviderFactory.getInputStream(file)) {
+        try (InputStream is = sniff.getHeaderStream()) {
             return isContact(is, _charBuffer);
         } catch (IOException e) {
             Log.e(TAG,
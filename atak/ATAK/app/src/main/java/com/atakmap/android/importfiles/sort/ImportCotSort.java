@@ -50,11 +50,22 @@ public class ImportCotSort extends ImportResolver {
 
     @Override
     public boolean match(final File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(final File file, final FileSniff sniff) {
+        if (isMatchOverridden(ImportCotSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(final File file, final FileSniff sniff) {
         if (!super.match(file))
             return false;
 
         // it is a .cot, now lets see if it contains reasonable CoT
-        try (FileInputStream fis = IOProviderFactory.getInputStream(file)) {
+        try (InputStream fis = sniff.getHeaderStream()) {
             return isCoT(fis, _charBuffer);
         } catch (IOException e) {
             Log.e(TAG, "Error checking if CoT: " + file.getAbsolutePath(), e);
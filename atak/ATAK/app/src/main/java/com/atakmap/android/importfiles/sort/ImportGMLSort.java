@@ -38,12 +38,23 @@ public class ImportGMLSort extends ImportInPlaceResolver {
 
     @Override
     public boolean match(File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(File file, FileSniff sniff) {
+        if (isMatchOverridden(ImportGMLSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(File file, FileSniff sniff) {
         if (!super.match(file)) {
             Log.d(TAG, "No match: " + file.getAbsolutePath());
             return false;
         }
 
-        try (InputStream fis = IOProviderFactory.getInputStream(file)) {
+        try (InputStream fis = sniff.getHeaderStream()) {
             return isGML(fis);
         } catch (IOException e) {
             Log.e(TAG, "Error checking if GPX: " + file.getAbsolutePath(), e);
@@ -38,11 +38,22 @@ public class ImportGMLZSort extends ImportInPlaceResolver {
 
     @Override
     public boolean match(File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(File file, FileSniff sniff) {
+        if (isMatchOverridden(ImportGMLZSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(File file, FileSniff sniff) {
         if (!super.match(file))
             return false;
 
         // it is a .zip, now lets see if it contains a .gml
-        return HasGML(file);
+        return sniff.hasZipEntry(".gml") == FileSniff.ZipEntryMatch.FOUND;
     }
 
     /**
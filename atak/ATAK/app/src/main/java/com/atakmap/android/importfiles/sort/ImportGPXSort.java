@@ -6,7 +6,6 @@ import android.util.Pair;
 
 import com.atakmap.app.R;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
-import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.spatial.file.GpxFileSpatialDb;
 
@@ -42,11 +41,22 @@ public class ImportGPXSort extends ImportInPlaceResolver {
 
     @Override
     public boolean match(File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(File file, FileSniff sniff) {
+        if (isMatchOverridden(ImportGPXSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(File file, FileSniff sniff) {
         if (!super.match(file))
             return false;
 
         // it is a .gpx, now lets see if it contains reasonable xml
-        try (InputStream fis = IOProviderFactory.getInputStream(file)) {
+        try (InputStream fis = sniff.getHeaderStream()) {
             return isGpx(fis);
         } catch (IOException e) {
             Log.e(TAG, "Error checking if GPX: " + file.getAbsolutePath(), e);
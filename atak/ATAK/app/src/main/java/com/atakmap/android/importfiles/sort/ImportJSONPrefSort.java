@@ -8,7 +8,6 @@ import com.atakmap.app.R;
 import com.atakmap.app.preferences.PreferenceControl;
 import com.atakmap.app.preferences.json.JSONPreferenceControl;
 import com.atakmap.comms.http.HttpUtil;
-import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
 
 import java.io.BufferedReader;
@@ -34,10 +33,21 @@ public class ImportJSONPrefSort extends ImportInternalSDResolver {
 
     @Override
     public boolean match(File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(File file, FileSniff sniff) {
+        if (isMatchOverridden(ImportJSONPrefSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(File file, FileSniff sniff) {
         if (!super.match(file))
             return false;
 
-        try (InputStream is = IOProviderFactory.getInputStream(file)) {
+        try (InputStream is = sniff.getHeaderStream()) {
             return isPreference(is);
         } catch (IOException e) {
             Log.e(TAG, "Failed to match Pref file: " + file.getAbsolutePath(),
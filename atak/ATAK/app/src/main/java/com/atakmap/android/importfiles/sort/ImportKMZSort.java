@@ -18,16 +18,10 @@ import org.gdal.ogr.Driver;
 import org.gdal.ogr.ogr;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
 import com.atakmap.coremap.locale.LocaleUtil;
-import com.atakmap.util.zip.ZipEntry;
 
 import java.util.List;
-import java.util.zip.ZipException;
-import com.atakmap.util.zip.ZipFile;
 
 /**
  * Imports KMZ files, per https://developers.google.com/kml/documentation/kmzarchives "For clarity,
@@ -60,11 +54,33 @@ public class ImportKMZSort extends ImportInPlaceResolver {
 
     @Override
     public boolean match(File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(File file, FileSniff sniff) {
+        if (isMatchOverridden(ImportKMZSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(File file, FileSniff sniff) {
         if (!super.match(file))
             return false;
 
         // it is a .kmz, now lets see if it contains a .kml
-        if (!hasKML(file, _bStrict)) {
+        final FileSniff.ZipEntryMatch kml = sniff.hasZipEntry(".kml");
+        if (kml == FileSniff.ZipEntryMatch.NOT_FOUND)
+            return false;
+        if (kml == FileSniff.ZipEntryMatch.UNLISTABLE) {
+            Log.d(TAG, "Unable to list KMZ entries: "
+                    + file.getAbsolutePath());
+            // XXX - ATAK-8959
+            // Some zip files may raise exceptions via the Java ZIP API but can
+            // still be successfully opened via GDAL. we'll continue from
+            // here to promote better interoperability as an immediate sanity
+            // check for GDAL loading is performed afterwards
+        } else if (!hasKML(file, sniff, _bStrict)) {
             return false;
         }
 
@@ -111,122 +127,65 @@ public class ImportKMZSort extends ImportInPlaceResolver {
     }
 
     /**
-     * Search for a zip entry ending in .kml
+     * Search for a zip entry ending in .kml. The entries and their leading
+     * bytes are taken from the sniffed archive, rather than reopening it.
      * 
      * @param file
+     * @param sniff content sniffed from the file
      * @param bStrict If in strict mode (e.g. not validating the KMZ extension) then require a
      *            single doc.kml in top level zip folder (no other KML files included in the zip
      *            file)
      * @return
      */
-    private static boolean hasKML(File file, boolean bStrict) {
-        if (file == null) {
-            Log.d(TAG, "KMZ file passed in was null.");
-            return false;
-        }
-
-        if (!IOProviderFactory.exists(file)) {
-            Log.d(TAG, "KMZ does not exist: " + file.getAbsolutePath());
-            return false;
-        }
-
-        ZipFile zipFile = null;
-        try {
-            zipFile = new ZipFile(file);
-
-            ArrayList<? extends ZipEntry> arZipEnt = Collections
-                    .list(zipFile.entries());
-
-            if (bStrict) {
-
-                // require a single doc.kml in the top level zip folder (no other KML files)
-                ZipEntry zeDoc = null;
-                boolean bOtherKml = false;
-
-                for (ZipEntry ze : arZipEnt) {
-                    if (ze.getName().equalsIgnoreCase("doc.kml")) {
-                        if (zeDoc != null) {
-                            Log.d(TAG,
-                                    "(strict) Found more than one doc.kml in "
-                                            + file.getAbsolutePath());
-                            return false;
-                        }
-                        zeDoc = ze;
-                    } else if (ze.getName()
-                            .toLowerCase(LocaleUtil.getCurrent())
-                            .endsWith(".kml")) {
-                        bOtherKml = true;
+    private static boolean hasKML(File file, FileSniff sniff,
+            boolean bStrict) {
+        if (bStrict) {
+
+            // require a single doc.kml in the top level zip folder (no other KML files)
+            String docEntry = null;
+            boolean bOtherKml = false;
+
+            for (String name : sniff.getZipEntries()) {
+                if (name.equalsIgnoreCase("doc.kml")) {
+                    if (docEntry != null) {
+                        Log.d(TAG,
+                                "(strict) Found more than one doc.kml in "
+                                        + file.getAbsolutePath());
+                        return false;
                     }
+                    docEntry = name;
+                } else if (name.toLowerCase(LocaleUtil.getCurrent())
+                        .endsWith(".kml")) {
+                    bOtherKml = true;
                 }
+            }
 
-                if (zeDoc == null) {
-                    Log.d(TAG,
-                            "(strict) KMZ does not contain doc.kml: "
-                                    + file.getAbsolutePath());
-                    return false;
-                }
-
-                if (bOtherKml) {
-                    Log.d(TAG, "(strict) KMZ found multiple KML files in: "
-                            + file.getAbsolutePath());
-                    return false;
-                }
-
+            if (docEntry == null) {
                 Log.d(TAG,
-                        "(strict) Found a single doc.kml entry in: "
+                        "(strict) KMZ does not contain doc.kml: "
                                 + file.getAbsolutePath());
+                return false;
+            }
 
-                InputStream is = null;
-                try {
-                    return ImportKMLSort
-                            .isKml(is = zipFile.getInputStream(zeDoc));
-                } finally {
-                    if (is != null) {
-                        try {
-                            is.close();
-                        } catch (Exception ignored) {
-                        }
-                    }
-                }
-            } else {
-
-                // any old KML will do...
-                for (ZipEntry ze : arZipEnt) {
-                    if (ze.getName().toLowerCase(LocaleUtil.getCurrent())
-                            .endsWith(".kml")) {
-                        // Found KML file in KMZ, ensure it is well formed
-                        Log.d(TAG, "Found KMZ entry: " + ze.getName());
-                        InputStream zis = zipFile.getInputStream(ze);
-                        boolean val = ImportKMLSort.isKml(zis);
-                        zis.close();
-                        return val;
-                    }
-                }
+            if (bOtherKml) {
+                Log.d(TAG, "(strict) KMZ found multiple KML files in: "
+                        + file.getAbsolutePath());
+                return false;
             }
-        } catch (ZipException e) {
-            Log.d(TAG,
-                    "ZipException testing for KML compatibility: "
-                            + file.getAbsolutePath(),
-                    e);
-            // XXX - ATAK-8959
-            // Some zip files may raise exceptions via the Java ZIP API but can
-            // still be successfully opened via GDAL. we'll return true from
-            // here to promote better interoperability as an immediate sanity
-            // check for GDAL loading is performed afterwards
-            return true;
-        } catch (Exception e) {
+
             Log.d(TAG,
-                    "Failed to find KMZ content in: " + file.getAbsolutePath(),
-                    e);
-        } finally {
-            if (zipFile != null) {
-                try {
-                    zipFile.close();
-                } catch (IOException e) {
-                    Log.e(TAG,
-                            "Failed to close zip file: "
-                                    + file.getAbsolutePath(),
-                            e);
+                    "(strict) Found a single doc.kml entry in: "
+                            + file.getAbsolutePath());
+            return isKml(file, sniff, docEntry);
+        } else {
+
+            // any old KML will do...
+            for (String name : sniff.getZipEntries()) {
+                if (name.toLowerCase(LocaleUtil.getCurrent())
+                        .endsWith(".kml")) {
+                    // Found KML file in KMZ, ensure it is well formed
+                    Log.d(TAG, "Found KMZ entry: " + name);
+                    return isKml(file, sniff, name);
                 }
             }
         }
@@ -234,6 +193,17 @@ public class ImportKMZSort extends ImportInPlaceResolver {
         return false;
     }
 
+    private static boolean isKml(File file, FileSniff sniff, String entry) {
+        final InputStream is = sniff.getZipEntryHeaderStream(entry);
+        if (is == null) {
+            Log.d(TAG, "Unable to read KMZ entry " + entry + " in: "
+                    + file.getAbsolutePath());
+            // the entry was not sniffed, leave it to the GDAL check
+            return true;
+        }
+        return ImportKMLSort.isKml(is);
+    }
+
     @Override
     public Pair<String, String> getContentMIME() {
         return new Pair<>(KmlFileSpatialDb.KML_CONTENT_TYPE,
@@ -12,10 +12,8 @@ import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.locale.LocaleUtil;
 import com.atakmap.coremap.log.Log;
-import com.atakmap.util.zip.ZipFile;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -94,10 +92,26 @@ public class ImportMissionPackageSort extends ImportInternalSDResolver {
 
     @Override
     public boolean match(final File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(final File file, final FileSniff sniff) {
+        if (isMatchOverridden(ImportMissionPackageSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(final File file, final FileSniff sniff) {
         if (!super.match(file))
             return false;
 
         if (_bStrict) {
+            // no need to open the archive if there is no manifest entry
+            if (sniff.hasZipEntry(
+                    "manifest.xml") == FileSniff.ZipEntryMatch.NOT_FOUND)
+                return false;
+
             try {
                 // it is a .zip, now lets see if it is a Mission Package manifest
                 boolean bMatch = MissionPackageExtractorFactory
@@ -115,26 +129,13 @@ public class ImportMissionPackageSort extends ImportInternalSDResolver {
                 return false;
             }
 
-            ZipFile zipFile = null;
-            try {
-                zipFile = new ZipFile(file);
-                Log.d(TAG, "(Non-strict) processing zip file");
-                return true;
-            } catch (Exception e) {
-                Log.e(TAG, "Not a zip file: " + file.getAbsolutePath(), e);
+            if (!sniff.isZipListed()) {
+                Log.e(TAG, "Not a zip file: " + file.getAbsolutePath());
                 return false;
-            } finally {
-                if (zipFile != null) {
-                    try {
-                        zipFile.close();
-                    } catch (IOException e) {
-                        Log.e(TAG,
-                                "Failed to close zip file: "
-                                        + file.getAbsolutePath(),
-                                e);
-                    }
-                }
             }
+
+            Log.d(TAG, "(Non-strict) processing zip file");
+            return true;
         }
     }
 
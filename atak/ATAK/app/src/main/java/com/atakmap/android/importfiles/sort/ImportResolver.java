@@ -19,7 +19,9 @@ import java.io.FileFilter;
 import com.atakmap.coremap.locale.LocaleUtil;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Matches a file based on filename, content, or other properties. Also imports or 
@@ -45,6 +47,11 @@ public abstract class ImportResolver {
 
     private static final String TAG = "ImportResolver";
 
+    /**
+     * The class declaring match(File), by resolver class
+     */
+    private static final Map<Class<?>, Class<?>> _matchDeclaringClasses = new ConcurrentHashMap<>();
+
     protected final String _ext;
     protected boolean _bValidateExt;
 
@@ -128,6 +135,52 @@ public abstract class ImportResolver {
         return _filter.accept(file);
     }
 
+    /**
+     * Return true if this sort matches the specified file. Content sniffed from the file is
+     * shared by all of the resolvers the file is matched against, so resolvers that inspect
+     * file content should override this method and use <code>sniff</code> rather than
+     * reopening the file. Subclasses overriding this method should also override
+     * {@link #match(File)}, and should defer to {@link #match(File)} if it is overridden by a
+     * further subclass, see {@link #isMatchOverridden(Class)}.
+     *
+     * <P>The default implementation returns {@link #match(File)}.
+     *
+     * @param file the file to read to see if the import resolver supports the file.
+     * @param sniff content sniffed from <code>file</code>
+     * @return true if the import resolver is capable of handling the file.
+     */
+    public boolean match(final File file, final FileSniff sniff) {
+        return match(file);
+    }
+
+    /**
+     * Returns true if {@link #match(File)} is overridden by a subclass of the specified class.
+     * A resolver that overrides both {@link #match(File)} and
+     * {@link #match(File, FileSniff)} uses this to defer to {@link #match(File)} when it is
+     * extended (e.g. by a plugin) with only {@link #match(File)} overridden, so that the
+     * extension is not bypassed when files are sorted via {@link #match(File, FileSniff)}.
+     *
+     * @param declaringClass the class implementing both match methods
+     * @return true if {@link #match(File)} is overridden below <code>declaringClass</code>
+     */
+    protected final boolean isMatchOverridden(
+            Class<? extends ImportResolver> declaringClass) {
+        if (getClass() == declaringClass)
+            return false;
+
+        Class<?> c = _matchDeclaringClasses.get(getClass());
+        if (c == null) {
+            try {
+                c = getClass().getMethod("match", File.class)
+                        .getDeclaringClass();
+            } catch (NoSuchMethodException e) {
+                c = ImportResolver.class;
+            }
+            _matchDeclaringClasses.put(getClass(), c);
+        }
+        return c != declaringClass && declaringClass.isAssignableFrom(c);
+    }
+
     /**
      * Provides for a capability by which a set of resolvers can be trimmed by a found sorter
      * implementation.    This provides great power to the sorter to force itself to be used over
@@ -10,12 +10,9 @@ import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.locale.LocaleUtil;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.spatial.file.ShapefileSpatialDb;
-import com.atakmap.util.zip.ZipEntry;
-import com.atakmap.util.zip.ZipFile;
 
 import java.io.File;
 import java.io.InputStream;
-import java.util.Enumeration;
 
 /**
  * Imports archived Shapefiles
@@ -39,11 +36,28 @@ public class ImportSHPZSort extends ImportInPlaceResolver {
 
     @Override
     public boolean match(File file) {
+        return matchSniffed(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(File file, FileSniff sniff) {
+        if (isMatchOverridden(ImportSHPZSort.class))
+            return match(file);
+        return matchSniffed(file, sniff);
+    }
+
+    private boolean matchSniffed(File file, FileSniff sniff) {
         if (!super.match(file))
             return false;
 
+        // check the entry names before opening the archive to validate the .shp
+        if (sniff.hasZipEntry(".shp") != FileSniff.ZipEntryMatch.FOUND
+                || sniff.hasZipEntry(".shx") != FileSniff.ZipEntryMatch.FOUND
+                || sniff.hasZipEntry(".dbf") != FileSniff.ZipEntryMatch.FOUND)
+            return false;
+
         // it is a .zip, now lets see if it contains a .shp
-        return HasSHP(file);
+        return hasSHP(file, sniff);
     }
 
     /**
@@ -63,69 +77,48 @@ public class ImportSHPZSort extends ImportInPlaceResolver {
             return false;
         }
 
-        ZipFile zip = null;
-        try {
-            zip = new ZipFile(file);
-
-            boolean bSHP = false, bSHX = false, bDBF = false;
-            Enumeration<? extends ZipEntry> entries = zip.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry ze = entries.nextElement();
-                if (ze.getName().toLowerCase(LocaleUtil.getCurrent())
-                        .endsWith(".shp")) {
-                    final InputStream zis = zip.getInputStream(ze);
-                    try {
-                        if (ImportSHPSort.isShp(zis)) {
-                            bSHP = true;
-                        } else {
-                            Log.w(TAG,
-                                    "Found invalid archived SHP file: "
-                                            + ze.getName());
-                        }
-                    } finally {
-                        zis.close();
-                    }
-                } else if (ze.getName().toLowerCase(LocaleUtil.getCurrent())
-                        .endsWith(".shx")) {
-                    bSHX = true;
-                } else if (ze.getName().toLowerCase(LocaleUtil.getCurrent())
-                        .endsWith(".dbf")) {
-                    bDBF = true;
-                }
+        return hasSHP(file, new FileSniff(file));
+    }
 
-                if (bSHP && bSHX && bDBF) {
-                    // found what we needed, quit looping
-                    break;
+    /**
+     * Search the sniffed archive for entries ending in .shp .shx .dbf, using
+     * the leading bytes of the .shp entries read with the entry names
+     *
+     * @param file
+     * @param sniff content sniffed from the file
+     * @return
+     */
+    private static boolean hasSHP(File file, FileSniff sniff) {
+        boolean bSHP = false, bSHX = false, bDBF = false;
+        for (String name : sniff.getZipEntries()) {
+            final String lc = name.toLowerCase(LocaleUtil.getCurrent());
+            if (lc.endsWith(".shp")) {
+                final InputStream zis = sniff.getZipEntryHeaderStream(name);
+                if (zis != null && ImportSHPSort.isShp(zis)) {
+                    bSHP = true;
+                } else {
+                    Log.w(TAG, "Found invalid archived SHP file: " + name);
                 }
+            } else if (lc.endsWith(".shx")) {
+                bSHX = true;
+            } else if (lc.endsWith(".dbf")) {
+                bDBF = true;
             }
 
-            if (!bSHP || !bSHX || !bDBF) {
-                Log.w(TAG,
-                        "Invalid archived Shapefile: "
-                                + file.getAbsolutePath());
-                return false;
+            if (bSHP && bSHX && bDBF) {
+                // found what we needed, quit looping
+                break;
             }
+        }
 
-            Log.d(TAG, "Matched archived Shapfile: " + file.getAbsolutePath());
-            return true;
-        } catch (Exception e) {
-            Log.d(TAG,
-                    "Failed to find SHP content in: " + file.getAbsolutePath(),
-                    e);
-        } finally {
-            if (zip != null) {
-                try {
-                    zip.close();
-                } catch (Exception e) {
-                    Log.e(TAG,
-                            "Failed closing archived Shapefile: "
-                                    + file.getAbsolutePath(),
-                            e);
-                }
-            }
+        if (!bSHP || !bSHX || !bDBF) {
+            Log.w(TAG,
+                    "Invalid archived Shapefile: " + file.getAbsolutePath());
+            return false;
         }
 
-        return false;
+        Log.d(TAG, "Matched archived Shapfile: " + file.getAbsolutePath());
+        return true;
     }
 
     @Override
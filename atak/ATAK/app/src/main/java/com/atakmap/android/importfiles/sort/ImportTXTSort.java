@@ -102,12 +102,17 @@ final public class ImportTXTSort extends ImportInternalSDResolver {
 
     @Override
     public boolean match(File file) {
+        return match(file, new FileSniff(file));
+    }
+
+    @Override
+    public boolean match(File file, FileSniff sniff) {
         if (!super.match(file))
             return false;
 
         // it is a .xml or .txt, now lets see if content inspection passes
         TxtType t = null;
-        try (InputStream fis = IOProviderFactory.getInputStream(file)) {
+        try (InputStream fis = sniff.getHeaderStream()) {
             t = getType(fis);
         } catch (IOException e) {
             Log.e(TAG, "Failed to match TXT file: " + file.getAbsolutePath(),
@@ -14,6 +14,7 @@ import android.widget.TextView;
 
 import com.atakmap.android.gui.TileButtonDialog;
 import com.atakmap.android.image.ImageGalleryReceiver;
+import com.atakmap.android.importfiles.sort.FileSniff;
 import com.atakmap.android.importfiles.sort.ImportResolver;
 import com.atakmap.android.importfiles.sort.ImportResolver.SortFlags;
 import com.atakmap.android.maps.MapView;
@@ -266,12 +267,13 @@ public class ImportFileTask extends
         boolean isDirectory = IOProviderFactory.isDirectory(file);
 
         final List<ImportResolver> matchingSorters = new ArrayList<>();
+        final FileSniff sniff = new FileSniff(file);
         for (ImportResolver sorter : sorters) {
             if (isDirectory && !sorter.directoriesSupported()) {
                 continue;
             }
             try {
-                if (sorter.match(file)) {
+                if (sorter.match(file, sniff)) {
                     matchingSorters.add(sorter);
                 }
             } catch (Exception ioe) {
@@ -5,6 +5,7 @@ import android.content.Context;
 import android.os.AsyncTask;
 
 import com.atakmap.android.importexport.ImportExportMapComponent;
+import com.atakmap.android.importfiles.sort.FileSniff;
 import com.atakmap.android.importfiles.sort.ImportAPKSort;
 import com.atakmap.android.importfiles.sort.ImportAlternateContactSort;
 import com.atakmap.android.importfiles.sort.ImportCertSort;
@@ -349,11 +350,13 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
                     continue;
                 }
 
-                // otherwise attempt to sort the file
+                // otherwise attempt to sort the file, sniffing its content
+                // once for all of the sorters
                 boolean sorted = false;
+                FileSniff sniff = new FileSniff(file);
                 for (ImportResolver sorter : sorters) {
                     // see if this sorter can handle the current file
-                    if (sorter.match(file)) {
+                    if (sorter.match(file, sniff)) {
                         // do not overwrite is we've already imported a file to the anticipated
                         // location
                         File destPath = sorter.getDestinationPath(file);
@@ -7,6 +7,7 @@ import android.os.AsyncTask;
 
 import com.atakmap.android.importexport.ImportExportMapComponent;
 import com.atakmap.android.importfiles.resource.RemoteResource;
+import com.atakmap.android.importfiles.sort.FileSniff;
 import com.atakmap.android.importfiles.sort.ImportGRGSort;
 import com.atakmap.android.importfiles.sort.ImportKMLSort;
 import com.atakmap.android.importfiles.sort.ImportKMZSort;
@@ -143,9 +144,10 @@ public class ImportNetworkLinksTask extends
         for (File file : downloads) {
             // use KML or KMZ to validate and import to proper location
             Log.d(TAG, "Importing Network Link: " + file.getAbsolutePath());
+            FileSniff sniff = new FileSniff(file);
             for (ImportResolver sorter : sorters) {
                 // see if this sorter can handle the current file
-                if (sorter.match(file)) {
+                if (sorter.match(file, sniff)) {
                     // check if we will be overwriting an existing file
                     File destPath = sorter.getDestinationPath(file);
                     if (destPath == null) {
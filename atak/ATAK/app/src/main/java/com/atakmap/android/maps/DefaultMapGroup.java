@@ -10,7 +10,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -63,6 +62,7 @@ public class DefaultMapGroup extends MapGroup {
         final boolean hasItemListChangedListeners = this
                 .hasItemListChangedListeners();
         _items.clear();
+        _spatialIndex.clear();
         for (MapItem item : items) {
             item.onRemoved(this);
             if (hasItemListChangedListeners)
@@ -220,6 +220,7 @@ public class DefaultMapGroup extends MapGroup {
     @Override
     protected void addItemImpl(MapItem item) {
         _items.put(item.getSerialId(), item);
+        _spatialIndex.add(item);
 
         // Adding a new item to an invisible group
         // This will NOT turn on visibility for existing
@@ -230,6 +231,24 @@ public class DefaultMapGroup extends MapGroup {
 
     @Override
     public MapItem deepFindUID(final String uid) {
+        // if this group is attached to the root, consult the UID index and
+        // verify that the item is a descendant of this group
+        MapGroup root = this;
+        while (root.getParentGroup() != null)
+            root = root.getParentGroup();
+        if (root instanceof RootMapGroup) {
+            final MapItem indexed = ((RootMapGroup) root).getUidIndex()
+                    .get(uid);
+            if (indexed != null) {
+                MapGroup g = indexed.getGroup();
+                while (g != null) {
+                    if (g == this)
+                        return indexed;
+                    g = g.getParentGroup();
+                }
+            }
+        }
+
         Collection<MapItem> items = this.getItems();
         for (MapItem item : items) {
             if (item.getUID().equals(uid))
@@ -346,9 +365,14 @@ public class DefaultMapGroup extends MapGroup {
     protected final Map<Long, MapItem> _items = new ConcurrentHashMap<>();
     protected final Map<Long, MapGroup> _groups = new ConcurrentHashMap<>();
 
+    /** spatial index over _items, used for the bounds/radius queries */
+    private final MapItemSpatialIndex _spatialIndex = new MapItemSpatialIndex();
+
     @Override
     protected boolean removeItemImpl(MapItem item) {
         MapItem mi = _items.remove(item.getSerialId());
+        if (mi != null)
+            _spatialIndex.remove(mi);
         return (mi != null);
     }
 
@@ -404,9 +428,12 @@ public class DefaultMapGroup extends MapGroup {
         MapItem candidate = null;
         double candidateDistance = Double.NaN;
 
+        if (location == null)
+            return null;
+
         MetaDataMapItemFilter filter = new MetaDataMapItemFilter(metadata);
         double distance;
-        for (MapItem i : _items.values()) {
+        for (MapItem i : _spatialIndex.query(location, threshold)) {
             distance = MapItem.computeDistance(i, location);
             if (Double.isNaN(distance) || distance > threshold)
                 continue;
@@ -426,13 +453,13 @@ public class DefaultMapGroup extends MapGroup {
             final double radius,
             final Map<String, String> metadata) {
 
-        final Collection<MapItem> candidates = new LinkedList<>();
+        final Collection<MapItem> candidates = new ArrayList<>();
 
         if (location != null) {
             final MetaDataMapItemFilter filter = new MetaDataMapItemFilter(
                     metadata);
             double distance;
-            for (MapItem i : _items.values()) {
+            for (MapItem i : _spatialIndex.query(location, radius)) {
                 distance = MapItem.computeDistance(i, location);
                 if (Double.isNaN(distance) || distance > radius)
                     continue;
@@ -453,8 +480,10 @@ public class DefaultMapGroup extends MapGroup {
                         ? null
                         : new MetaDataMapItemFilter(metadata);
 
-        Collection<MapItem> candidates = new LinkedList<>();
-        for (MapItem i : _items.values()) {
+        Collection<MapItem> candidates = new ArrayList<>();
+        Collection<MapItem> items = bounds == null ? _items.values()
+                : _spatialIndex.query(bounds);
+        for (MapItem i : items) {
             if (boundsfilter != null && !boundsfilter.accept(i))
                 continue;
 
@@ -471,7 +500,7 @@ public class DefaultMapGroup extends MapGroup {
     public Collection<MapItem> deepFindItems(GeoBounds bounds,
             Map<String, String> metadata) {
 
-        LinkedList<MapItem> retval = new LinkedList<>(
+        List<MapItem> retval = new ArrayList<>(
                 this.findItems(bounds, metadata));
 
         Collection<MapGroup> children = this.getChildGroups();
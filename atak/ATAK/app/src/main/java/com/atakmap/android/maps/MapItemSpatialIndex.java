@@ -0,0 +1,307 @@
+package com.atakmap.android.maps;
+
+import com.atakmap.android.drawing.mapItems.DrawingCircle;
+import com.atakmap.android.hierarchy.filters.FOVFilter;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.coremap.maps.coords.GeoPointMetaData;
+import com.atakmap.coremap.maps.coords.MutableGeoBounds;
+import com.atakmap.math.PointD;
+import com.atakmap.util.Quadtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Incrementally maintained spatial index over the items of a single
+ * {@link MapGroup}. {@link PointMapItem} instances are indexed on their point
+ * and {@link Shape} instances on their bounds, unioned with their center and
+ * their points. Items that cannot be located, whose bounds span the IDL, or
+ * that {@link FOVFilter} matches by other means ({@link FOVFilter.Filterable}
+ * items and {@link AnchoredMapItem} shapes) are kept in a separate list and
+ * are always reported as candidates.
+ *
+ * <P>The index only produces candidates based on the minimum bounding
+ * rectangles; callers are expected to apply their exact filter to the
+ * returned items.
+ *
+ * <P>This class is thread-safe.
+ */
+final class MapItemSpatialIndex implements
+        PointMapItem.OnPointChangedListener,
+        Shape.OnPointsChangedListener,
+        DrawingCircle.OnRadiusChangedListener {
+
+    /** approximate meters per degree of latitude, slightly underestimated */
+    private final static double METERS_PER_DEGREE_LAT = 110000d;
+
+    private final static Quadtree.Function<Entry> ENTRY_BOUNDS = new Quadtree.Function<Entry>() {
+        @Override
+        public void getBounds(Entry object, PointD min, PointD max) {
+            min.x = object.minX;
+            min.y = object.minY;
+            max.x = object.maxX;
+            max.y = object.maxY;
+        }
+    };
+
+    private final Quadtree<Entry> index;
+    private final Map<MapItem, Entry> entries;
+    private final Map<MapItem, Entry> unindexed;
+    private final MutableGeoBounds scratchBounds;
+
+    MapItemSpatialIndex() {
+        this.index = new Quadtree<>(ENTRY_BOUNDS, 8, -180d, -90d, 180d, 90d);
+        this.entries = new IdentityHashMap<>();
+        this.unindexed = new IdentityHashMap<>();
+        this.scratchBounds = new MutableGeoBounds(0, 0, 0, 0);
+    }
+
+    /**
+     * Adds the item to the index and starts tracking location changes.
+     */
+    void add(MapItem item) {
+        this.addListeners(item);
+
+        synchronized (this) {
+            if (this.entries.containsKey(item))
+                return;
+            final Entry entry = new Entry(item);
+            this.entries.put(item, entry);
+            this.insertNoSync(entry);
+        }
+    }
+
+    /**
+     * Removes the item from the index and stops tracking location changes.
+     */
+    void remove(MapItem item) {
+        this.removeListeners(item);
+
+        synchronized (this) {
+            final Entry entry = this.entries.remove(item);
+            if (entry != null)
+                this.removeNoSync(entry);
+        }
+    }
+
+    /**
+     * Removes all items from the index.
+     */
+    void clear() {
+        final Collection<MapItem> items;
+        synchronized (this) {
+            items = new ArrayList<>(this.entries.keySet());
+            this.entries.clear();
+            this.unindexed.clear();
+            this.index.clear();
+        }
+        for (MapItem item : items)
+            this.removeListeners(item);
+    }
+
+    /**
+     * Returns <code>true</code> if the item is not spatially indexed and is
+     * always reported as a candidate.
+     */
+    synchronized boolean isUnindexed(MapItem item) {
+        return this.unindexed.containsKey(item);
+    }
+
+    /**
+     * Returns all items whose minimum bounding rectangle intersects the
+     * specified bounds, plus all items that are not spatially indexed. If
+     * the bounds cross the IDL, all items are returned.
+     */
+    synchronized Collection<MapItem> query(GeoBounds bounds) {
+        if (bounds.crossesIDL()
+                || Math.abs(bounds.getEast() - bounds.getWest()) > 180d)
+            return new ArrayList<>(this.entries.keySet());
+        return this.queryNoSync(
+                Math.min(bounds.getWest(), bounds.getEast()),
+                Math.min(bounds.getSouth(), bounds.getNorth()),
+                Math.max(bounds.getWest(), bounds.getEast()),
+                Math.max(bounds.getSouth(), bounds.getNorth()));
+    }
+
+    /**
+     * Returns all items whose minimum bounding rectangle may be within the
+     * specified distance of the point, plus all items that are not spatially
+     * indexed. If the search region cannot be expressed as a single
+     * rectangle (e.g. it contains a pole or crosses the IDL), all items are
+     * returned.
+     *
+     * @param location  The search center
+     * @param radius    The search radius, in meters
+     */
+    synchronized Collection<MapItem> query(GeoPoint location, double radius) {
+        final double dlat = radius / METERS_PER_DEGREE_LAT;
+        final double minY = location.getLatitude() - dlat;
+        final double maxY = location.getLatitude() + dlat;
+        if (Double.isNaN(dlat) || minY <= -90d || maxY >= 90d)
+            return new ArrayList<>(this.entries.keySet());
+
+        final double cosLat = Math.min(Math.cos(Math.toRadians(minY)),
+                Math.cos(Math.toRadians(maxY)));
+        final double dlng = dlat / cosLat;
+        final double minX = location.getLongitude() - dlng;
+        final double maxX = location.getLongitude() + dlng;
+        if (minX < -180d || maxX > 180d)
+            return new ArrayList<>(this.entries.keySet());
+
+        return this.queryNoSync(minX, minY, maxX, maxY);
+    }
+
+    private Collection<MapItem> queryNoSync(double minX, double minY,
+            double maxX, double maxY) {
+        final Collection<Entry> hits = new ArrayList<>();
+        this.index.get(minX, minY, maxX, maxY, hits);
+        final Collection<MapItem> retval = new ArrayList<>(
+                hits.size() + this.unindexed.size());
+        for (Entry e : hits)
+            retval.add(e.item);
+        retval.addAll(this.unindexed.keySet());
+        return retval;
+    }
+
+    @Override
+    public void onPointChanged(PointMapItem item) {
+        this.refresh(item);
+    }
+
+    @Override
+    public void onPointsChanged(Shape s) {
+        this.refresh(s);
+    }
+
+    @Override
+    public void onRadiusChanged(DrawingCircle circle, double oldRadius) {
+        // the circle points are not updated through onPointsChanged
+        this.refresh(circle);
+    }
+
+    private void addListeners(MapItem item) {
+        if (item instanceof PointMapItem)
+            ((PointMapItem) item).addOnPointChangedListener(this);
+        else if (item instanceof Shape)
+            ((Shape) item).addOnPointsChangedListener(this);
+        if (item instanceof DrawingCircle)
+            ((DrawingCircle) item).addOnRadiusChangedListener(this);
+    }
+
+    private void removeListeners(MapItem item) {
+        if (item instanceof PointMapItem)
+            ((PointMapItem) item).removeOnPointChangedListener(this);
+        else if (item instanceof Shape)
+            ((Shape) item).removeOnPointsChangedListener(this);
+        if (item instanceof DrawingCircle)
+            ((DrawingCircle) item).removeOnRadiusChangedListener(this);
+    }
+
+    private synchronized void refresh(MapItem item) {
+        final Entry entry = this.entries.get(item);
+        if (entry == null)
+            return;
+        this.removeNoSync(entry);
+        this.insertNoSync(entry);
+    }
+
+    private void insertNoSync(Entry entry) {
+        entry.indexed = entry.update(this.scratchBounds);
+        if (entry.indexed)
+            this.index.add(entry);
+        else
+            this.unindexed.put(entry.item, entry);
+    }
+
+    private void removeNoSync(Entry entry) {
+        if (entry.indexed)
+            this.index.remove(entry);
+        else
+            this.unindexed.remove(entry.item);
+    }
+
+    /**************************************************************************/
+
+    private final static class Entry {
+        final MapItem item;
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+        boolean indexed;
+
+        Entry(MapItem item) {
+            this.item = item;
+        }
+
+        /**
+         * Captures the current bounds of the item.
+         *
+         * @return  <code>true</code> if the item may be spatially indexed,
+         *          <code>false</code> otherwise
+         */
+        boolean update(MutableGeoBounds scratch) {
+            // acceptance is defined by the item itself
+            if (this.item instanceof FOVFilter.Filterable)
+                return false;
+
+            if (this.item instanceof PointMapItem) {
+                final GeoPoint p = ((PointMapItem) this.item).getPoint();
+                if (p == null || !p.isValid())
+                    return false;
+                this.minX = p.getLongitude();
+                this.minY = p.getLatitude();
+                this.maxX = this.minX;
+                this.maxY = this.minY;
+                return true;
+            } else if (this.item instanceof Shape) {
+                // the anchor is matched independently of the shape
+                if (this.item instanceof AnchoredMapItem)
+                    return false;
+
+                final Shape shape = (Shape) this.item;
+                final GeoBounds b = shape.getBounds(scratch);
+                if (b == null || b.crossesIDL()
+                        || Math.abs(b.getEast() - b.getWest()) > 180d)
+                    return false;
+                this.minX = Math.min(b.getWest(), b.getEast());
+                this.minY = Math.min(b.getSouth(), b.getNorth());
+                this.maxX = Math.max(b.getWest(), b.getEast());
+                this.maxY = Math.max(b.getSouth(), b.getNorth());
+
+                // distance based queries are evaluated against the center
+                final GeoPointMetaData center = shape.getCenter();
+                if (center != null && center.get().isValid()) {
+                    final GeoPoint c = center.get();
+                    this.minX = Math.min(this.minX, c.getLongitude());
+                    this.minY = Math.min(this.minY, c.getLatitude());
+                    this.maxX = Math.max(this.maxX, c.getLongitude());
+                    this.maxY = Math.max(this.maxY, c.getLatitude());
+                }
+
+                // bounds queries are evaluated against the points
+                final GeoPointMetaData[] points = shape.getMetaDataPoints();
+                if (points != null) {
+                    for (GeoPointMetaData p : points) {
+                        if (p == null || !p.get().isValid())
+                            continue;
+                        final GeoPoint g = p.get();
+                        this.minX = Math.min(this.minX, g.getLongitude());
+                        this.minY = Math.min(this.minY, g.getLatitude());
+                        this.maxX = Math.max(this.maxX, g.getLongitude());
+                        this.maxY = Math.max(this.maxY, g.getLatitude());
+                    }
+                    if (this.maxX - this.minX > 180d)
+                        return false;
+                }
+                return !Double.isNaN(this.minX) && !Double.isNaN(this.minY)
+                        && !Double.isNaN(this.maxX)
+                        && !Double.isNaN(this.maxY);
+            }
+            return false;
+        }
+    }
+}
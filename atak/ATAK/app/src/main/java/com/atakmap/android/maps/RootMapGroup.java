@@ -11,7 +11,6 @@ import com.atakmap.map.hittest.HitTestQueryParameters;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -22,6 +21,7 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class RootMapGroup extends DefaultMapGroup
         implements DeepHitTestQuery {
@@ -38,8 +38,13 @@ public final class RootMapGroup extends DefaultMapGroup
         super("Root");
 
         this.deepQueryFunctions = new IdentityHashMap<>();
-        this.uidIndex = new FastUIDLookup();
+        this.uidIndex = new FastUIDLookup(this);
         this.hitTester = new RootHitTestQuery();
+
+        // the index is maintained directly off of the group hierarchy so it
+        // is up to date as soon as MapGroup.addItem/removeItem return
+        this.addOnItemListChangedListener(this.uidIndex);
+        this.addOnGroupListChangedListener(this.uidIndex);
     }
 
     FastUIDLookup getUidIndex() {
@@ -49,6 +54,7 @@ public final class RootMapGroup extends DefaultMapGroup
     synchronized void dispose() {
         this._groups.clear();
         this._items.clear();
+        this.uidIndex.clear();
     }
 
     /************************************************************************/
@@ -61,11 +67,28 @@ public final class RootMapGroup extends DefaultMapGroup
     @ModifierApi(since = "4.5", target = "4.8", modifiers = {
             "@Nullable", "public"
     })
-    public synchronized MapItem deepFindUID(final String uid) {
+    public MapItem deepFindUID(final String uid) {
+        // fast path, the index is concurrent and does not require the lock
         final MapItem byUid = this.uidIndex.get(uid);
         if (byUid != null)
             return byUid;
-        return deepFindItemImpl(Collections.singletonMap("uid", uid), true);
+        synchronized (this) {
+            return deepFindItemImpl(Collections.singletonMap("uid", uid),
+                    true);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if an item with the specified UID is
+     * currently a member of the map group hierarchy. This check only consults
+     * the UID index and does not execute any of the registered deep queries.
+     *
+     * @param uid   The UID
+     * @return  <code>true</code> if an item with the UID exists in the
+     *          hierarchy, <code>false</code> otherwise
+     */
+    public boolean containsUID(final String uid) {
+        return this.uidIndex.contains(uid);
     }
 
     @Override
@@ -367,28 +390,91 @@ public final class RootMapGroup extends DefaultMapGroup
 
     /**
      * Keeps a cache of all items that have been added to the map for fast UID lookup.
+     * The index is maintained via the item and group list listeners of the
+     * hierarchy that it is attached to; it will also accept
+     * {@link MapEvent#ITEM_ADDED} and {@link MapEvent#ITEM_REMOVED} events
+     * for legacy registrations.
      */
     public static class FastUIDLookup implements
-            MapEventDispatcher.MapEventDispatchListener {
-        final Map<String, MapItem> map = new HashMap<>();
+            MapEventDispatcher.MapEventDispatchListener,
+            MapGroup.OnItemListChangedListener,
+            MapGroup.OnGroupListChangedListener {
+        final Map<String, MapItem> map = new ConcurrentHashMap<>();
+
+        /**
+         * The root of the hierarchy the index is attached to, if any. Items
+         * that no longer descend from the root are evicted on lookup.
+         */
+        private final MapGroup root;
+
+        public FastUIDLookup() {
+            this(null);
+        }
+
+        FastUIDLookup(MapGroup root) {
+            this.root = root;
+        }
 
         @Override
         public void onMapEvent(final MapEvent event) {
             final String etype = event.getType();
             final MapItem mi = event.getItem();
-            final String uid = mi.getUID();
-            final boolean added = etype.equals(MapEvent.ITEM_ADDED);
-            final boolean removed = etype.equals(MapEvent.ITEM_REMOVED);
-
-            // See ATAK-10160
-            // Without synchronization some items do not get mapped properly
-            // Map events can be dispatched from any thread
-            synchronized (this) {
-                if (added)
-                    map.put(uid, mi);
-                else if (removed)
-                    map.remove(uid);
-            }
+            if (mi == null)
+                return;
+            if (etype.equals(MapEvent.ITEM_ADDED))
+                this.add(mi);
+            else if (etype.equals(MapEvent.ITEM_REMOVED))
+                this.remove(mi);
+        }
+
+        @Override
+        public void onItemAdded(MapItem item, MapGroup group) {
+            this.add(item);
+        }
+
+        @Override
+        public void onItemRemoved(MapItem item, MapGroup group) {
+            // the item is being transferred between groups and will be
+            // re-added immediately; retain the mapping so that concurrent
+            // lookups do not transiently miss. If the destination is not
+            // under the root, the mapping is evicted on the next lookup.
+            if (item.getMetaBoolean("__groupTransfer", false))
+                return;
+            this.remove(item);
+        }
+
+        @Override
+        public void onGroupAdded(MapGroup group, MapGroup parent) {
+            group.addOnItemListChangedListener(this);
+            group.addOnGroupListChangedListener(this);
+            for (MapItem item : group.getItems())
+                this.add(item);
+            for (MapGroup child : group.getChildGroups())
+                this.onGroupAdded(child, group);
+        }
+
+        @Override
+        public void onGroupRemoved(MapGroup group, MapGroup parent) {
+            group.removeOnItemListChangedListener(this);
+            group.removeOnGroupListChangedListener(this);
+            for (MapItem item : group.getItems())
+                this.remove(item);
+            for (MapGroup child : group.getChildGroups())
+                this.onGroupRemoved(child, group);
+        }
+
+        private void add(MapItem item) {
+            final String uid = item.getUID();
+            if (uid != null)
+                map.put(uid, item);
+        }
+
+        private void remove(MapItem item) {
+            final String uid = item.getUID();
+            // only evict if the mapping still refers to the removed instance,
+            // a newer item may have been registered with the same UID
+            if (uid != null)
+                map.remove(uid, item);
         }
 
         /**
@@ -396,12 +482,52 @@ public final class RootMapGroup extends DefaultMapGroup
          * @return null if there is no map item.
          */
         public MapItem get(String uid) {
-            // No need to synchronize get - this seems to work as expected
-            return map.get(uid);
+            if (uid == null)
+                return null;
+            final MapItem item = map.get(uid);
+            if (item == null || isAttached(item))
+                return item;
+            map.remove(uid, item);
+            return null;
+        }
+
+        /**
+         * Returns <code>true</code> if an item with the supplied UID is
+         * indexed.
+         */
+        public boolean contains(String uid) {
+            return get(uid) != null;
+        }
+
+        public List<MapItem> getItems() {
+            final List<MapItem> retval = new ArrayList<>(map.size());
+            for (MapItem item : map.values()) {
+                if (isAttached(item))
+                    retval.add(item);
+            }
+            return retval;
+        }
+
+        /**
+         * Returns <code>true</code> if the item is still a descendant of the
+         * root, or is in the middle of a group transfer.
+         */
+        private boolean isAttached(MapItem item) {
+            if (root == null)
+                return true;
+            MapGroup g = item.getGroup();
+            if (g == null)
+                return item.getMetaBoolean("__groupTransfer", false);
+            while (g != null) {
+                if (g == root)
+                    return true;
+                g = g.getParentGroup();
+            }
+            return false;
         }
 
-        public synchronized List<MapItem> getItems() {
-            return new ArrayList<>(map.values());
+        void clear() {
+            map.clear();
         }
     }
 }
@@ -1753,7 +1753,11 @@ public class MissionPackageReceiver extends BroadcastReceiver implements
                             .getName(),
                             _context.getString(
                                     R.string.mission_package_name)
-                                    + " Received from " + senderCallsign,
+                                    + " Received from " + senderCallsign
+                                    + (FileSystemUtils.isEmpty(
+                                            manifest.getExtractTimings()) ? ""
+                                                    : ". " + manifest
+                                                            .getExtractTimings()),
                             expectedByteLen));
 
             if (filesFailed > 0) {
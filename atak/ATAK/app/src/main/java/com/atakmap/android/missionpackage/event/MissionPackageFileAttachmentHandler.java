@@ -117,11 +117,13 @@ public class MissionPackageFileAttachmentHandler implements
 
             // Make sure map item exists on the map or is within manifest
             // If it's not then consider this a regular non-attachment file
+            // The manifest is checked first since the map items of this package are imported
+            // concurrently, and may not be on the map yet
             boolean isAttachment = false;
             List<MissionPackageContent> items = manifest.getMapItems();
             for (MissionPackageContent item : items) {
                 if (item.hasParameter(MissionPackageContent.PARAMETER_UID)) {
-                    String parentUid = content.getParameter(
+                    String parentUid = item.getParameter(
                             MissionPackageContent.PARAMETER_UID).getValue();
                     if (FileSystemUtils.isEquals(parentUid, uid)) {
                         isAttachment = true;
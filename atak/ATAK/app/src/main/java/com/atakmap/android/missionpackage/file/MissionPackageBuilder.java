@@ -8,14 +8,18 @@ import com.atakmap.coremap.cot.event.CotEvent;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
+import com.atakmap.filesystem.HashingUtils;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -63,6 +67,8 @@ public class MissionPackageBuilder {
 
     private ZipFile _existing; // Used for reading an existing MP when overwriting
 
+    private String _sha256; // SHA-256 of the package, computed as it is written
+
     public MissionPackageBuilder(Progress progress,
             MissionPackageManifest contents,
             MapGroup mapGroup) {
@@ -73,6 +79,17 @@ public class MissionPackageBuilder {
         _warnings = new ArrayList<>();
     }
 
+    /**
+     * Get the SHA-256 of the package, computed while it was written so the
+     * package does not need to be read back
+     *
+     * @return hex representation of the SHA-256, or null if the package was
+     * not successfully built
+     */
+    public String getSha256sum() {
+        return _sha256;
+    }
+
     public boolean hasWarnings() {
         return _warnings != null && _warnings.size() > 0;
     }
@@ -85,6 +102,9 @@ public class MissionPackageBuilder {
     public String build() {
         // TODO if a ZipEntry fails, the manifest _may_ be out of sync with actual contents
         File tmpCopy = null;
+        MessageDigest digest = null;
+        boolean built = false;
+        _sha256 = null;
         try {
             _totalBytes = _contents.getTotalSize();
             _writtenBytes = 0;
@@ -105,9 +125,17 @@ public class MissionPackageBuilder {
                 }
             }
 
-            FileOutputStream fos = IOProviderFactory
+            OutputStream os = IOProviderFactory
                     .getOutputStream(new File(_contents.getPath()));
-            _zos = new ZipOutputStream(new BufferedOutputStream(fos));
+            try {
+                // digest the package as it is written
+                digest = MessageDigest
+                        .getInstance(HashingUtils.ALGORITHM_SHA256);
+                os = new DigestOutputStream(os, digest);
+            } catch (NoSuchAlgorithmException e) {
+                Log.w(TAG, "Failed to create SHA-256 digest", e);
+            }
+            _zos = new ZipOutputStream(new BufferedOutputStream(os));
 
             Log.d(TAG, "Building package: " + _contents.getPath());
             // store manifest. Note in case of otherwise empty Mission Package, this
@@ -127,6 +155,10 @@ public class MissionPackageBuilder {
                 if (!submitProgress(0))
                     return null;
             }
+
+            // finish the zip so the digest covers the entire package
+            _zos.close();
+            built = true;
         } catch (Exception e) {
             Log.e(TAG, "Failed to create zip file", e);
             if (_progress != null)
@@ -139,6 +171,9 @@ public class MissionPackageBuilder {
                 FileSystemUtils.delete(tmpCopy);
         }
 
+        if (built && digest != null)
+            _sha256 = HashingUtils.toHexString(digest.digest());
+
         if (_progress != null)
             _progress.publish(99);
 
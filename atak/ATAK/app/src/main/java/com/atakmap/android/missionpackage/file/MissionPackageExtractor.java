@@ -3,6 +3,7 @@ package com.atakmap.android.missionpackage.file;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 
 import com.atakmap.android.cot.CotMapComponent;
 import com.atakmap.android.importfiles.sort.ImportCotSort;
@@ -10,7 +11,9 @@ import com.atakmap.android.importfiles.sort.ImportResolver;
 import com.atakmap.android.importfiles.task.ImportFilesTask;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.android.missionpackage.event.MissionPackageEventProcessor;
+import com.atakmap.app.R;
 import com.atakmap.comms.CommsMapComponent.ImportResult;
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.cot.event.CotEvent;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
@@ -24,6 +27,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Support for extracting a Mission Package
@@ -37,6 +44,14 @@ public class MissionPackageExtractor implements IMissionPackageExtractor {
     public static final String VERSION_MATCHER = "version=\"2\"";
     public static final String VERSION_MATCHER_ALT = "version=\'2\'";
 
+    /**
+     * Imports CoT contents while the file contents of the same package are extracted and
+     * imported on the calling thread
+     */
+    private static final ExecutorService cotExecutor = Executors
+            .newCachedThreadPool(
+                    new NamedThreadFactory("MissionPackageCoT-Pool"));
+
     /*
      * (non-Javadoc)
      * @see com.atakmap.android.missionpackage.file.IMissionPackageExtractor#extract(java.io.File)
@@ -62,10 +77,10 @@ public class MissionPackageExtractor implements IMissionPackageExtractor {
 
         manifest.setPath(inFile.getAbsolutePath());
 
-        List<String> cotXml = new ArrayList<>();
-        ZipFile zipFile = null;
+        final long extractStart = SystemClock.elapsedRealtime();
+        PrefetchZipFile zipFile = null;
         try {
-            zipFile = new ZipFile(inFile);
+            zipFile = new PrefetchZipFile(inFile);
             List<MissionPackageContent> contents = manifest._contents
                     .getContents();
             if (contents == null || contents.size() < 1) {
@@ -90,6 +105,9 @@ public class MissionPackageExtractor implements IMissionPackageExtractor {
                     "Extracting " + contents.size()
                             + " contents from Manifest: "
                             + manifest);
+            final List<String> cotXml = new ArrayList<>();
+            List<MissionPackageContent> fileContents = new ArrayList<>();
+            List<ZipEntry> fileEntries = new ArrayList<>();
             for (MissionPackageContent content : contents) {
                 if (content == null || !content.isValid()) {
                     Log.w(TAG,
@@ -115,6 +133,8 @@ public class MissionPackageExtractor implements IMissionPackageExtractor {
                 }
 
                 if (content.isCoT()) {
+                    // the CoT is read up front, so the UID is set on the manifest before any
+                    // attachment content that refers to it is extracted
                     Log.d(TAG,
                             "Extracting COT Content: "
                                     + content.getManifestUid());
@@ -123,31 +143,69 @@ public class MissionPackageExtractor implements IMissionPackageExtractor {
                     if (eventXml != null)
                         cotXml.add(eventXml);
                 } else {
-                    Log.d(TAG,
-                            "Extracting FILE Content: "
-                                    + content.getManifestUid());
-                    try {
-                        eventProcessor.extract(manifest, content, zipFile,
-                                atakRoot, buffer,
-                                sorters);
-                    } catch (IOException e) {
-                        Log.e(TAG,
-                                "Failed to extract File: "
-                                        + content);
-                    }
+                    fileContents.add(content);
+                    fileEntries.add(entry);
                 }
             } // end content loop
 
-            // 1st pass - import CoT events
-            List<String> deferred = new ArrayList<>();
-            for (String eventXml : cotXml) {
-                if (handleCoT(eventXml) == ImportResult.DEFERRED)
-                    deferred.add(eventXml);
+            // CoT import does not depend on the file contents, so rather than waiting for all
+            // of the files to be extracted and imported, import the CoT now
+            final long[] cotMillis = new long[1];
+            Future<?> cotTask = null;
+            if (!cotXml.isEmpty()) {
+                cotTask = cotExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        long start = SystemClock.elapsedRealtime();
+                        ImportCoT(cotXml);
+                        cotMillis[0] = SystemClock.elapsedRealtime() - start;
+                    }
+                });
             }
 
-            // 2nd pass - import deferred events
-            for (String eventXml : deferred)
-                handleCoT(eventXml);
+            // the file contents are decompressed ahead on the pool, but extracted and handed
+            // to the import handlers one at a time, in manifest order, on this thread
+            zipFile.prefetch(fileEntries);
+
+            long start = SystemClock.elapsedRealtime();
+            for (int i = 0; i < fileContents.size(); i++) {
+                MissionPackageContent content = fileContents.get(i);
+                Log.d(TAG,
+                        "Extracting FILE Content: "
+                                + content.getManifestUid());
+                try {
+                    eventProcessor.extract(manifest, content, zipFile,
+                            atakRoot, buffer,
+                            sorters);
+                } catch (IOException e) {
+                    Log.e(TAG,
+                            "Failed to extract File: "
+                                    + content);
+                } finally {
+                    zipFile.release(fileEntries.get(i));
+                }
+            }
+            final long fileMillis = SystemClock.elapsedRealtime() - start;
+            Log.d(TAG, "Extracted " + fileContents.size()
+                    + " FILE contents in " + fileMillis + "ms, "
+                    + zipFile.getDecompressedCount()
+                    + " decompressed ahead in "
+                    + zipFile.getDecompressMillis() + "ms");
+
+            if (cotTask != null) {
+                try {
+                    cotTask.get();
+                    Log.d(TAG, "Imported " + cotXml.size()
+                            + " COT contents in " + cotMillis[0] + "ms");
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Failed to import CoT: "
+                            + inFile.getAbsolutePath(), e.getCause());
+                } catch (InterruptedException e) {
+                    Log.w(TAG, "Interrupted waiting for CoT import: "
+                            + inFile.getAbsolutePath());
+                    Thread.currentThread().interrupt();
+                }
+            }
 
             // clean up unzip dir if necessary
             File unzipDir = new File(
@@ -167,6 +225,15 @@ public class MissionPackageExtractor implements IMissionPackageExtractor {
                 }
             }
 
+            if (context != null) {
+                manifest.setExtractTimings(context.getString(
+                        R.string.mission_package_extract_timings,
+                        SystemClock.elapsedRealtime() - extractStart,
+                        cotMillis[0], fileMillis,
+                        zipFile.getDecompressedCount(),
+                        zipFile.getDecompressMillis()));
+            }
+
         } catch (Exception e) {
             Log.e(TAG, "Failed to extract: " + inFile.getAbsolutePath(), e);
         } finally {
@@ -302,7 +369,30 @@ public class MissionPackageExtractor implements IMissionPackageExtractor {
         return false;
     }
 
-    private String ExtractCoTContent(MissionPackageContent content,
+    /**
+     * Import the specified CoT events. Events that are deferred are imported in a second pass.
+     *
+     * @param cotXml the extracted CoT events
+     */
+    private static void ImportCoT(List<String> cotXml) {
+        long start = SystemClock.elapsedRealtime();
+
+        // 1st pass - import CoT events
+        List<String> deferred = new ArrayList<>();
+        for (String eventXml : cotXml) {
+            if (handleCoT(eventXml) == ImportResult.DEFERRED)
+                deferred.add(eventXml);
+        }
+
+        // 2nd pass - import deferred events
+        for (String eventXml : deferred)
+            handleCoT(eventXml);
+
+        Log.d(TAG, "Imported " + cotXml.size() + " COT contents in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    private static String ExtractCoTContent(MissionPackageContent content,
             InputStream inputStream, char[] charBuffer) {
         // TODO OK to not close BufferedReader? Will it close cleanly later when I
         // close the underlying ZipInputStream
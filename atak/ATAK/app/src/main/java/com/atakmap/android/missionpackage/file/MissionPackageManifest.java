@@ -68,6 +68,11 @@ public class MissionPackageManifest implements Parcelable {
     String _path;
     String _lastSavedPath;
 
+    /**
+     * Summary of the time spent in each stage of the last extraction, not persisted
+     */
+    String _extractTimings;
+
     @Attribute(name = "version", required = true)
     private int VERSION = 2;
 
@@ -256,6 +261,19 @@ public class MissionPackageManifest implements Parcelable {
         _path = path;
     }
 
+    /**
+     * Get the time spent in each stage of the last extraction, for display
+     *
+     * @return the summary, or null if the package was not extracted
+     */
+    public String getExtractTimings() {
+        return _extractTimings;
+    }
+
+    public void setExtractTimings(String timings) {
+        _extractTimings = timings;
+    }
+
     /**
      * True if Mission Package has Map Items
      * 
@@ -0,0 +1,301 @@
+package com.atakmap.android.missionpackage.file;
+
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.util.ResourcePool;
+import com.atakmap.util.zip.ZipEntry;
+import com.atakmap.util.zip.ZipFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Zip file whose entries may be decompressed ahead of use on a thread pool.
+ * Entries that were decompressed ahead are served from memory by
+ * {@link #getInputStream(ZipEntry)}, all other entries are streamed from the
+ * file as usual. Only the decompression is concurrent; the caller still
+ * consumes the entries one at a time.
+ *
+ * <P>The decompressed data is held in fixed size blocks drawn from a shared
+ * pool, and the number of bytes decompressed ahead is bounded. The blocks of
+ * an entry are returned to the pool on {@link #release(ZipEntry)}.
+ */
+final class PrefetchZipFile extends ZipFile {
+
+    private static final String TAG = "PrefetchZipFile";
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /** Largest entry that is decompressed ahead, larger entries are streamed */
+    private static final long MAX_ENTRY_SIZE = 4L * 1024L * 1024L;
+
+    /** Max number of bytes decompressed ahead of use */
+    private static final long MAX_PREFETCH_SIZE = 16L * 1024L * 1024L;
+
+    /** Blocks kept for reuse once released, at most 2MB */
+    private static final ResourcePool<byte[]> blockPool = new ResourcePool<>(
+            32);
+
+    private static final ThreadPoolExecutor executor;
+    static {
+        final int threads = Math.max(1,
+                Runtime.getRuntime().availableProcessors() - 1);
+        executor = new ThreadPoolExecutor(threads, threads, 30L,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("MissionPackageExtract-Pool"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private final Queue<ZipEntry> pending = new ArrayDeque<>();
+    private final Map<String, Future<Blocks>> prefetched = new HashMap<>();
+    private long reserved;
+
+    private final AtomicLong decompressNanos = new AtomicLong(0L);
+    private int decompressCount;
+
+    PrefetchZipFile(File file) throws IOException {
+        super(file);
+    }
+
+    /**
+     * Queues entries to be decompressed ahead, in the order they are
+     * expected to be read.
+     */
+    void prefetch(List<ZipEntry> entries) {
+        synchronized (this.prefetched) {
+            this.pending.addAll(entries);
+            this.fillNoSync();
+        }
+    }
+
+    /**
+     * Releases the memory held for the specified entry, if it was
+     * decompressed ahead, and starts decompressing the next queued entries.
+     * Streams previously returned for the entry must no longer be used.
+     */
+    void release(ZipEntry entry) {
+        final Future<Blocks> f;
+        synchronized (this.prefetched) {
+            f = this.prefetched.remove(entry.getName());
+            if (f == null)
+                return;
+            this.reserved -= entry.getSize();
+        }
+        recycle(f);
+        synchronized (this.prefetched) {
+            this.fillNoSync();
+        }
+    }
+
+    /**
+     * @return the number of entries that were decompressed ahead
+     */
+    int getDecompressedCount() {
+        synchronized (this.prefetched) {
+            return this.decompressCount;
+        }
+    }
+
+    /**
+     * @return the total time spent decompressing entries ahead, summed over
+     *         the pool threads, in milliseconds
+     */
+    long getDecompressMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.decompressNanos.get());
+    }
+
+    @Override
+    public InputStream getInputStream(ZipEntry entry) throws IOException {
+        final Future<Blocks> f;
+        synchronized (this.prefetched) {
+            f = this.prefetched.get(entry.getName());
+        }
+        if (f != null) {
+            try {
+                return new BlocksInputStream(f.get());
+            } catch (ExecutionException e) {
+                Log.w(TAG, "Failed to decompress " + entry.getName()
+                        + " ahead, streaming", e.getCause());
+            } catch (CancellationException e) {
+                Log.w(TAG, "Decompression cancelled for " + entry.getName()
+                        + ", streaming");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted decompressing "
+                        + entry.getName());
+            }
+        }
+        return super.getInputStream(entry);
+    }
+
+    @Override
+    public void close() throws IOException {
+        final List<Future<Blocks>> outstanding;
+        synchronized (this.prefetched) {
+            this.pending.clear();
+            outstanding = new ArrayList<>(this.prefetched.values());
+            this.prefetched.clear();
+            this.reserved = 0L;
+        }
+        // wait for the running tasks before the file is closed under them
+        for (Future<Blocks> f : outstanding)
+            recycle(f);
+        super.close();
+    }
+
+    private void fillNoSync() {
+        while (!this.pending.isEmpty()) {
+            final ZipEntry entry = this.pending.peek();
+            final long size = entry.getSize();
+            if (size < 0L || size > MAX_ENTRY_SIZE
+                    || this.prefetched.containsKey(entry.getName())) {
+                // streamed when read
+                this.pending.poll();
+                continue;
+            }
+            if (this.reserved + size > MAX_PREFETCH_SIZE)
+                break;
+
+            this.pending.poll();
+            this.reserved += size;
+            this.decompressCount++;
+            this.prefetched.put(entry.getName(),
+                    executor.submit(new Callable<Blocks>() {
+                        @Override
+                        public Blocks call() throws IOException {
+                            return decompress(entry);
+                        }
+                    }));
+        }
+    }
+
+    private Blocks decompress(ZipEntry entry) throws IOException {
+        final long start = System.nanoTime();
+        final Blocks retval = new Blocks();
+        try (InputStream in = super.getInputStream(entry)) {
+            while (true) {
+                byte[] block = blockPool.get();
+                if (block == null)
+                    block = new byte[BLOCK_SIZE];
+                retval.blocks.add(block);
+
+                int off = 0;
+                int n = 0;
+                while (off < BLOCK_SIZE
+                        && (n = in.read(block, off, BLOCK_SIZE - off)) >= 0)
+                    off += n;
+                retval.length += off;
+                if (n < 0)
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            retval.recycle();
+            throw e;
+        } finally {
+            this.decompressNanos.addAndGet(System.nanoTime() - start);
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the blocks of a prefetch task to the pool, waiting for the
+     * task to complete if it has already started.
+     */
+    private static void recycle(Future<Blocks> f) {
+        if (f.cancel(false))
+            return;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    f.get().recycle();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException | CancellationException ignored) {
+            // nothing to recycle
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private final static class Blocks {
+        final List<byte[]> blocks = new ArrayList<>();
+        long length;
+
+        void recycle() {
+            for (byte[] block : this.blocks)
+                blockPool.put(block);
+            this.blocks.clear();
+            this.length = 0L;
+        }
+    }
+
+    private final static class BlocksInputStream extends InputStream {
+        private final Blocks data;
+        private long position;
+
+        BlocksInputStream(Blocks data) {
+            this.data = data;
+            this.position = 0L;
+        }
+
+        @Override
+        public int read() {
+            if (this.position >= this.data.length)
+                return -1;
+            final byte[] block = this.data.blocks
+                    .get((int) (this.position / BLOCK_SIZE));
+            return block[(int) (this.position++ % BLOCK_SIZE)] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            final long remaining = this.data.length - this.position;
+            if (remaining <= 0L)
+                return -1;
+            final int blockOffset = (int) (this.position % BLOCK_SIZE);
+            final int n = (int) Math.min(Math.min(len, remaining),
+                    BLOCK_SIZE - blockOffset);
+            System.arraycopy(
+                    this.data.blocks.get((int) (this.position / BLOCK_SIZE)),
+                    blockOffset, b, off, n);
+            this.position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            final long skipped = Math.max(0L,
+                    Math.min(n, this.data.length - this.position));
+            this.position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE,
+                    this.data.length - this.position);
+        }
+    }
+}
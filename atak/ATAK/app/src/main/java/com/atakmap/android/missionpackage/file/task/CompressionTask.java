@@ -127,7 +127,9 @@ public class CompressionTask extends MissionPackageBaseTask {
             db.insertOrReplace(fileInfo, TABLETYPE.SAVED);
         }
 
-        String retVal = buildPackage(contents, receiver, progress);
+        MissionPackageBuilder builder = new MissionPackageBuilder(progress,
+                contents, receiver.getMapView().getRootGroup());
+        String retVal = builder.build();
 
         // now that file was written out, set additional data
         if (FileSystemUtils.isFile(contents.getPath())) {
@@ -135,7 +137,13 @@ public class CompressionTask extends MissionPackageBaseTask {
             fileInfo.setUserLabel(contents.getName());
             fileInfo.setSizeInBytes((int) IOProviderFactory.length(file));
             fileInfo.setUpdateTime(IOProviderFactory.lastModified(file));
-            fileInfo.computeSha256sum();
+            // use the hash computed while writing the package, rather than
+            // reading it back
+            String sha256 = builder.getSha256sum();
+            if (FileSystemUtils.isEmpty(sha256))
+                fileInfo.computeSha256sum();
+            else
+                fileInfo.setSha256sum(sha256);
             fileInfo.setFileMetadata(localManifestXml);
             db.update(fileInfo, TABLETYPE.SAVED);
 
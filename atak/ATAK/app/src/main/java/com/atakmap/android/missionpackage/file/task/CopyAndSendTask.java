@@ -22,12 +22,15 @@ import com.atakmap.comms.missionpackage.MPSendListener;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
+import com.atakmap.filesystem.HashingUtils;
 import com.foxykeep.datadroid.exception.ConnectionException;
 
 import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.UnknownServiceException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.UUID;
 
 /**
@@ -99,15 +102,11 @@ public class CopyAndSendTask extends MissionPackageBaseTask {
         FileInfoPersistanceHelper db = FileInfoPersistanceHelper.instance();
         AndroidFileInfo fileInfo = db.getFileInfoFromFilename(_destination,
                 TABLETYPE.TRANSFER);
-        boolean recomputeHash = false;
         if (fileInfo == null) {
             // dont create Md5 until after we write out file
             fileInfo = new AndroidFileInfo("", _destination,
                     MIMETypeMapper.GetContentType(_destination),
                     _manifest.toXml(true));
-            // File hash may have changed during re-serialization
-            // i.e. MANIFEST directory/file added where original is missing
-            recomputeHash = true;
             if (db.insertOrReplace(fileInfo, TABLETYPE.TRANSFER)) {
                 // re-pull to get ID
                 fileInfo = db.getFileInfoFromFilename(_destination,
@@ -129,11 +128,16 @@ public class CopyAndSendTask extends MissionPackageBaseTask {
             }
         }
 
-        // now copy to deploy directory
+        // now copy to deploy directory, digesting the package as it is copied
+        // so the hash always reflects the file that is sent
+        final String sha256;
         try (InputStream is = IOProviderFactory.getInputStream(source);
                 OutputStream os = IOProviderFactory
                         .getOutputStream(_destination)) {
-            FileSystemUtils.copyStream(is, os);
+            MessageDigest digest = MessageDigest
+                    .getInstance(HashingUtils.ALGORITHM_SHA256);
+            FileSystemUtils.copyStream(new DigestInputStream(is, digest), os);
+            sha256 = HashingUtils.toHexString(digest.digest());
         } catch (Exception e) {
             Log.w(TAG, "Failed to deploy (1) to: " + _destination, e);
             cancel("Failed to deploy "
@@ -160,32 +164,7 @@ public class CopyAndSendTask extends MissionPackageBaseTask {
         fileInfo.setSizeInBytes((int) IOProviderFactory.length(_destination));
         fileInfo.setUpdateTime(IOProviderFactory.lastModified(_destination));
 
-        // attempt to use existing file hash (for file we copied above), only recompute if necessary
-        String sha256 = null;
-        if (!recomputeHash) {
-            AndroidFileInfo savedFileInfo = db.getFileInfoFromFilename(source,
-                    TABLETYPE.SAVED);
-            if (savedFileInfo != null)
-                sha256 = savedFileInfo.sha256sum();
-        }
-
-        if (FileSystemUtils.isEmpty(sha256)) {
-            Log.w(TAG, "Recomputing SHA256...");
-            sha256 = fileInfo.computeSha256sum();
-            if (FileSystemUtils.isEmpty(sha256)) {
-                Log.w(TAG, "Failed to compute sha256 for package delivery to: "
-                        + _destination);
-                cancel("Failed to compute sha256 for "
-                        + (_context == null ? " package"
-                                : _context.getString(
-                                        R.string.mission_package_name))
-                        + " (CODE=3)  " + _manifest.getName());
-                return false;
-            }
-
-        } else {
-            fileInfo.setSha256sum(sha256);
-        }
+        fileInfo.setSha256sum(sha256);
 
         db.update(fileInfo, TABLETYPE.TRANSFER);
         Log.d(TAG, "Package deployed: " + _destination);
@@ -152,7 +152,8 @@ public class ExtractMissionPackageTask extends MissionPackageBaseTask {
                                                                 .getString(
                                                                         R.string.mission_package_name))
                                                         + " imported from SD card: "
-                                                        + _manifest.getPath(),
+                                                        + _manifest.getPath()
+                                                        + timingsSuffix(),
                                                 IOProviderFactory
                                                         .length(zipFile)));
                     }
@@ -169,4 +170,12 @@ public class ExtractMissionPackageTask extends MissionPackageBaseTask {
         if (_callback != null && _manifest != null)
             _callback.onMissionPackageTaskComplete(this, result);
     }
+
+    /**
+     * The extraction stage timings, appended to the transfer log entry
+     */
+    private String timingsSuffix() {
+        String timings = _manifest.getExtractTimings();
+        return FileSystemUtils.isEmpty(timings) ? "" : ". " + timings;
+    }
 } // end ExtractMissionPackageTask
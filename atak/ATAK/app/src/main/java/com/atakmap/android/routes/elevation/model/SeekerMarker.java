@@ -42,6 +42,12 @@ public class SeekerMarker implements OnSharedPreferenceChangeListener {
 
     private final SharedPreferences prefs;
 
+    // most recent ground elevation lookup; the seeker is frequently redrawn
+    // at the same location as the profile is scrubbed
+    private double _groundLat = Double.NaN;
+    private double _groundLng = Double.NaN;
+    private double _groundElev = GeoPoint.UNKNOWN;
+
     public SeekerMarker(MapView mapView) {
         this._mapView = mapView;
 
@@ -116,6 +122,21 @@ public class SeekerMarker implements OnSharedPreferenceChangeListener {
         _mapView.getRootGroup().addItem(_marker);
     }
 
+    /**
+     * Returns the ground elevation, in meters HAE, at the specified point,
+     * reusing the previous lookup if the location has not changed.
+     */
+    private double getGroundElevation(GeoPoint p) {
+        if (p.getLatitude() != _groundLat
+                || p.getLongitude() != _groundLng) {
+            _groundElev = ElevationManager.getElevation(p.getLatitude(),
+                    p.getLongitude(), null);
+            _groundLat = p.getLatitude();
+            _groundLng = p.getLongitude();
+        }
+        return _groundElev;
+    }
+
     public void setQuickDraw(boolean qd) {
         quickDraw = qd;
     }
@@ -137,9 +158,7 @@ public class SeekerMarker implements OnSharedPreferenceChangeListener {
         }
 
         if (showViewshed && p.isAltitudeValid()) {
-            double groundElev = ElevationManager.getElevation(
-                    p.getLatitude(),
-                    p.getLongitude(), null);
+            double groundElev = getGroundElevation(p);
             if (!GeoPoint.isAltitudeValid(groundElev)) {
                 if (layer != null) {
                     layer.uninstall();
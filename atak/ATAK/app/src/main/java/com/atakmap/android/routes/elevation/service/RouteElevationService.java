@@ -212,6 +212,11 @@ public class RouteElevationService {
                     - sourceAlt.get().getAltitude();
 
         if (totalDistance > 0 && totalDistance > incrementInMeters) {
+            // indices of the generated points that require an elevation
+            // lookup; all lookups are performed in a single query once the
+            // segment has been walked
+            List<Integer> lookups = new ArrayList<>();
+
             // Find altitudes between source and target points
             GeoPoint newPoint;
             double currentDistance = 0;
@@ -238,16 +243,13 @@ public class RouteElevationService {
 
                 }
 
-                //see if we can get alt from DTED (HAE)
-                if (!GeoPoint.isAltitudeValid(alt)) {
-                    //Log.d(TAG, "Using DTED alt");
-                    alt = ElevationManager.getElevation(newPoint, null);
-                }
-
                 if (GeoPoint.isAltitudeValid(alt)) {
                     newPoint = new GeoPoint(newPoint.getLatitude(),
                             newPoint.getLongitude(),
                             alt);
+                } else {
+                    // get alt from DTED (HAE) below
+                    lookups.add(geoPointVec.size());
                 }
 
                 geoPointVec.add(GeoPointMetaData.wrap(newPoint));
@@ -257,6 +259,8 @@ public class RouteElevationService {
             } while (GeoCalculations.distanceTo(newPoint,
                     newTarget.get()) > incrementInMeters);
 
+            lookupElevations(geoPointVec, lookups);
+
             // adjust i, it's more than increment count
             i -= incrementInFeet
                     - UnitConverter.Meter.toFeet(GeoCalculations
@@ -280,6 +284,37 @@ public class RouteElevationService {
         return data;
     }
 
+    /**
+     * Looks up the elevation for the specified points with a single query,
+     * updating the points for which a valid elevation is found.
+     *
+     * @param points The points
+     * @param indices The indices of the points to look up
+     */
+    private static void lookupElevations(List<GeoPointMetaData> points,
+            List<Integer> indices) {
+        final int count = indices.size();
+        if (count == 0)
+            return;
+
+        final double[] lonLat = new double[count * 2];
+        for (int j = 0; j < count; j++) {
+            final GeoPoint p = points.get(indices.get(j)).get();
+            lonLat[j * 2] = p.getLongitude();
+            lonLat[j * 2 + 1] = p.getLatitude();
+        }
+
+        final double[] alts = new double[count];
+        ElevationManager.getElevation(lonLat, count, alts, null, null);
+
+        for (int j = 0; j < count; j++) {
+            if (!GeoPoint.isAltitudeValid(alts[j]))
+                continue;
+            points.set(indices.get(j), GeoPointMetaData.wrap(
+                    new GeoPoint(lonLat[j * 2 + 1], lonLat[j * 2], alts[j])));
+        }
+    }
+
     public static RouteData expandRoute(final GeoPointMetaData[] route,
             final int incrementInFeet, boolean bInterpolateAltitudes) {
         List<Double> distVec = new ArrayList<>();
@@ -43,17 +43,17 @@ import com.ekito.simpleKML.model.Track;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class CrumbDatabase {
     public static final String TAG = "CrumbDatabase";
-    public static final int DATABASE_VERSION = 5;
+    public static final int DATABASE_VERSION = 6;
 
     private static final int DEFAULT_NUMBER_TRACKS = 15;
     private static final double TEMP_TRACK_THRESHOLD_MILLIS = 1000 * 60 * 10; //10 minutes
@@ -62,7 +62,20 @@ public class CrumbDatabase {
     public static final double VALUE_UNKNOWN = GeoPoint.UNKNOWN;
     private static final int MAX_TITLE_LENGTH = 30;
 
-    private final Set<Crumb> crumbsToProcess = new HashSet<>();
+    /**
+     * Pending crumbs are written in a single transaction at most once per
+     * this interval.
+     */
+    private static final long BATCH_INTERVAL_MILLIS = 500;
+
+    private final List<Crumb> crumbsToProcess = new ArrayList<>();
+
+    /**
+     * Most recent segment (by timestamp) for each user UID. Looked up for
+     * every crumb persisted; cleared whenever segments are added or removed.
+     * Populated and cleared while holding 'lock'.
+     */
+    private final Map<String, Integer> currentSegmentIds = new ConcurrentHashMap<>();
     private final ExecutorService pool = Executors
             .newSingleThreadExecutor(new NamedThreadFactory(
                     "CrumbPool"));
@@ -99,6 +112,16 @@ public class CrumbDatabase {
      */
     private static final String SEGMENT_TABLE_NAME = "segment";
 
+    /**
+     * Index supporting the crumb by segment and time range queries
+     */
+    private static final String BREADCRUMB_SEGMENT_TIME_INDEX_NAME = "breadcrumb2_sid_timestamp";
+
+    /**
+     * Index supporting the segment by user UID and time queries
+     */
+    private static final String SEGMENT_USER_TIME_INDEX_NAME = "segment_uuid_timestamp";
+
     //breadcrumb table columns
     public final static String COLUMN_ID = "_id"; // unique id field
     private final static String COLUMN_SEGMENT_ID = "_sid"; // unique id of the corresponding segment
@@ -233,6 +256,12 @@ public class CrumbDatabase {
 
     void onUpgrade(DatabaseIface db, int oldVersion, int newVersion) {
 
+        if (oldVersion == 5) {
+            // version 6 only adds the indices, which are created below
+            Log.d(TAG, "Upgrading db from VERSION=5");
+            db.setVersion(DATABASE_VERSION);
+        }
+
         if (oldVersion == 4) {
             //upgrade previous version
             Log.d(TAG, "Upgrading db from VERSION=4");
@@ -434,11 +463,6 @@ public class CrumbDatabase {
                     + COLUMN_POINT_SOURCE + " TEXT, "
                     + COLUMN_ALTITUDE_SOURCE + " TEXT) ", null);
 
-            // probably should index (uid and timestamp but won't for the first cut
-            //
-            //crumbdb.execute("CREATE INDEX " + TABLE_NAME_INDEX + 
-            //                              " on " + TABLE_NAME + "(" + COLUMN_UID + ")");
-
             final int major = FeatureSpatialDatabase
                     .getSpatialiteMajorVersion(db);
             final int minor = FeatureSpatialDatabase
@@ -480,11 +504,6 @@ public class CrumbDatabase {
                     + SEG_COLUMN_COLOR + " INTEGER, "
                     + SEG_COLUMN_USER_UID + " TEXT, "
                     + SEG_COLUMN_USER_TITLE + " TITLE) ", null);
-
-            // probably should index (uid and timestamp but won't for the first cut
-            //
-            //crumbdb.execute("CREATE INDEX " + TABLE_NAME_INDEX + 
-            //                              " on " + TABLE_NAME + "(" + COLUMN_UID + ")");  
         } else {
             //remove segments no longer referenced by any crumbs. We could have a track with
             //stale timestamp which still has un-stale crumbs
@@ -497,6 +516,27 @@ public class CrumbDatabase {
                     + ")";
             db.execute(sql, null);
         }
+
+        createIndices(db);
+    }
+
+    /**
+     * Create the indices used by the crumb and track queries, if they do not
+     * already exist
+     */
+    private static void createIndices(DatabaseIface db) {
+        try {
+            db.execute("CREATE INDEX IF NOT EXISTS "
+                    + BREADCRUMB_SEGMENT_TIME_INDEX_NAME + " ON "
+                    + BREADCRUMB_TABLE_NAME2 + "(" + COLUMN_SEGMENT_ID + ", "
+                    + COLUMN_TIMESTAMP + ")", null);
+            db.execute("CREATE INDEX IF NOT EXISTS "
+                    + SEGMENT_USER_TIME_INDEX_NAME + " ON "
+                    + SEGMENT_TABLE_NAME + "(" + SEG_COLUMN_USER_UID + ", "
+                    + SEG_COLUMN_TIMESTAMP + ")", null);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to create indices", e);
+        }
     }
 
     /**
@@ -514,6 +554,7 @@ public class CrumbDatabase {
         if (db != null) {
             synchronized (lock) {
                 Log.d(TAG, "dropping the database tables");
+                currentSegmentIds.clear();
 
                 try {
                     db.execute(
@@ -550,18 +591,30 @@ public class CrumbDatabase {
      */
     public int getCurrentSegmentId(String uid, String orderBy) {
 
+        // the most recent segment by timestamp is requested for every crumb
+        final boolean cacheable = uid != null
+                && SEG_COLUMN_TIMESTAMP.equals(orderBy);
+        if (cacheable) {
+            final Integer cached = currentSegmentIds.get(uid);
+            if (cached != null)
+                return cached;
+        }
+
         synchronized (lock) {
             CursorIface result = null;
             int mostRecentSegment_id = -1;
             try {
                 String sql = "SELECT " + SEG_COLUMN_ID + " FROM "
                         + SEGMENT_TABLE_NAME + " WHERE " + SEG_COLUMN_USER_UID
-                        + "='" + uid +
-                        "' ORDER BY " + orderBy + " DESC LIMIT 1";
+                        + "=? ORDER BY " + orderBy + " DESC LIMIT 1";
 
-                result = crumbdb.query(sql, null);
+                result = crumbdb.query(sql, new String[] {
+                        uid
+                });
                 if (result.moveToNext()) {
                     mostRecentSegment_id = result.getInt(SEG_COLUMN_ID_INDEX);
+                    if (cacheable)
+                        currentSegmentIds.put(uid, mostRecentSegment_id);
                 } //else {
                   //Log.d(TAG, "No segments found: " + sql);
                   //}
@@ -758,6 +811,7 @@ public class CrumbDatabase {
                     insertStmt.bind(5, userUid);
                     insertStmt.bind(6, userTitle);
                     insertStmt.execute();
+                    currentSegmentIds.clear();
                 } finally {
                     if (insertStmt != null)
                         insertStmt.close();
@@ -816,6 +870,7 @@ public class CrumbDatabase {
                 sql = "DELETE FROM " + SEGMENT_TABLE_NAME +
                         " WHERE " + SEG_COLUMN_ID + " = " + track_dbid;
                 crumbdb.execute(sql, null);
+                currentSegmentIds.clear();
                 Log.d(TAG, "Deleted segment: " + track_dbid);
             } catch (Exception e) {
                 Log.w(TAG, "Failed to delete track id: " + track_dbid, e);
@@ -1858,6 +1913,7 @@ public class CrumbDatabase {
                         sql = "DELETE FROM " + SEGMENT_TABLE_NAME +
                                 " WHERE " + SEG_COLUMN_ID + "=" + trackId;
                         crumbdb.execute(sql, null);
+                        currentSegmentIds.clear();
                     }
                 } else {
                     Log.d(TAG,
@@ -2048,6 +2104,8 @@ public class CrumbDatabase {
                 Log.e(TAG, "Failed to setServerTrack", e);
             } finally {
                 crumbdb.endTransaction();
+                // segments may have been rolled back
+                currentSegmentIds.clear();
             }
         }
 
@@ -2073,7 +2131,7 @@ public class CrumbDatabase {
 
     class Handler implements Runnable {
 
-        private final Set<Crumb> localCrumbsToProcess = new HashSet<>();
+        private final List<Crumb> localCrumbsToProcess = new ArrayList<>();
         private boolean endTransactionError = false;
         private StatementIface insertStmt = null;
 
@@ -2102,7 +2160,7 @@ public class CrumbDatabase {
             while (!endTransactionError) {
                 try {
                     // batch process the crumbs for efficiency
-                    Thread.sleep(500);
+                    Thread.sleep(BATCH_INTERVAL_MILLIS);
                 } catch (Exception ignored) {
                 }
 
@@ -2124,36 +2182,8 @@ public class CrumbDatabase {
                     try {
                         crumbdb.beginTransaction();
                         //Log.d(TAG, "processing crumbs: " + localCrumbsToProcess.size());
-                        for (Crumb c : localCrumbsToProcess) {
-                            int trackId = c.trackDBID;
-                            long timestamp = c.timestamp;
-                            GeoPoint gp = c.getPoint();
-                            double bearing = c.bearing;
-                            double speed = c.speed;
-                            String geopointSource = c.getMetaString(
-                                    "tmpgpSource", GeoPointMetaData.UNKNOWN);
-                            String altitudeSource = c.getMetaString(
-                                    "tmpaltSource", GeoPointMetaData.UNKNOWN);
-
-                            try {
-                                insertStmt.bind(1, trackId);
-                                insertStmt.bind(2, timestamp);
-                                insertStmt.bind(3, gp.getLatitude());
-                                insertStmt.bind(4, gp.getLongitude());
-                                insertStmt.bind(5, gp.getAltitude());
-                                insertStmt.bind(6, gp.getCE());
-                                insertStmt.bind(7, gp.getLE());
-                                insertStmt.bind(8, bearing);
-                                insertStmt.bind(9, speed);
-                                insertStmt.bind(10, geopointSource);
-                                insertStmt.bind(11, altitudeSource);
-                                insertStmt.bind(12, gp.getLongitude());
-                                insertStmt.bind(13, gp.getLatitude());
-                                insertStmt.execute();
-                            } finally {
-                                insertStmt.clearBindings();
-                            }
-                        }
+                        for (Crumb c : localCrumbsToProcess)
+                            insertImpl(c);
                         localCrumbsToProcess.clear();
                         crumbdb.setTransactionSuccessful();
                     } catch (Exception e) {
@@ -2182,34 +2212,7 @@ public class CrumbDatabase {
             synchronized (lock) {
                 try {
                     crumbdb.beginTransaction();
-                    int trackId = c.trackDBID;
-                    long timestamp = c.timestamp;
-                    GeoPoint gp = c.getPoint();
-                    double bearing = c.bearing;
-                    double speed = c.speed;
-                    String geopointSource = c.getMetaString("tmpgpSource",
-                            GeoPointMetaData.UNKNOWN);
-                    String altitudeSource = c.getMetaString("tmpaltSource",
-                            GeoPointMetaData.UNKNOWN);
-
-                    try {
-                        insertStmt.bind(1, trackId);
-                        insertStmt.bind(2, timestamp);
-                        insertStmt.bind(3, gp.getLatitude());
-                        insertStmt.bind(4, gp.getLongitude());
-                        insertStmt.bind(5, gp.getAltitude());
-                        insertStmt.bind(6, gp.getCE());
-                        insertStmt.bind(7, gp.getLE());
-                        insertStmt.bind(8, bearing);
-                        insertStmt.bind(9, speed);
-                        insertStmt.bind(10, geopointSource);
-                        insertStmt.bind(11, altitudeSource);
-                        insertStmt.bind(12, gp.getLongitude());
-                        insertStmt.bind(13, gp.getLatitude());
-                        insertStmt.execute();
-                    } finally {
-                        insertStmt.clearBindings();
-                    }
+                    insertImpl(c);
                     crumbdb.setTransactionSuccessful();
                 } catch (Exception e) {
                     Log.d(TAG, "transaction error", e);
@@ -2225,5 +2228,33 @@ public class CrumbDatabase {
                 }
             }
         }
+
+        /**
+         * Binds and executes the reused insert statement. Must be invoked
+         * while holding 'lock'.
+         */
+        private void insertImpl(Crumb c) {
+            final GeoPoint gp = c.getPoint();
+            try {
+                insertStmt.bind(1, c.trackDBID);
+                insertStmt.bind(2, c.timestamp);
+                insertStmt.bind(3, gp.getLatitude());
+                insertStmt.bind(4, gp.getLongitude());
+                insertStmt.bind(5, gp.getAltitude());
+                insertStmt.bind(6, gp.getCE());
+                insertStmt.bind(7, gp.getLE());
+                insertStmt.bind(8, (double) c.bearing);
+                insertStmt.bind(9, (double) c.speed);
+                insertStmt.bind(10, c.getMetaString("tmpgpSource",
+                        GeoPointMetaData.UNKNOWN));
+                insertStmt.bind(11, c.getMetaString("tmpaltSource",
+                        GeoPointMetaData.UNKNOWN));
+                insertStmt.bind(12, gp.getLongitude());
+                insertStmt.bind(13, gp.getLatitude());
+                insertStmt.execute();
+            } finally {
+                insertStmt.clearBindings();
+            }
+        }
     }
 }
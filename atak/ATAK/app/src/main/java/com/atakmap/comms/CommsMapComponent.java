@@ -163,6 +163,18 @@ public class CommsMapComponent extends AbstractMapComponent implements
     // should not be used for anything more than that.
     private final ConcurrentLinkedQueue<CommsLogger> loggers = new ConcurrentLinkedQueue<>();
 
+    // parses and dispatches inbound messages off of the commo callback thread
+    private final CotInboundPipeline inboundPipeline = new CotInboundPipeline(
+            new CotInboundPipeline.Sink() {
+                @Override
+                public void onCotEvent(CotEvent event, String rxEndpointId) {
+                    processReceived(event, rxEndpointId);
+                }
+            });
+
+    // coalesces and prioritizes outbound messages off of the caller thread
+    private final CotOutboundQueue outboundQueue = new CotOutboundQueue();
+
     private final Set<String> hwAddressesIn;
     private final Set<String> hwAddressesOut;
 
@@ -946,6 +958,9 @@ public class CommsMapComponent extends AbstractMapComponent implements
         }
         loggers.clear();
 
+        inboundPipeline.dispose();
+        outboundQueue.dispose();
+
         if (this.takServerListener != null)
             this.takServerListener.dispose();
     }
@@ -1548,22 +1563,109 @@ public class CommsMapComponent extends AbstractMapComponent implements
             return;
         }
 
-        try {
-            final String event = e.toString();
-            commo.sendCoTTcpDirect(s[0], port, event);
+        outboundQueue.submit(new TcpDirectMessage(e, endpoint, s[0], port));
+    }
 
-            for (CommsLogger logger : loggers) {
-                try {
-                    logger.logSend(e, endpoint);
-                } catch (Exception err) {
-                    Log.e(TAG, "error occurred with a logger", err);
-                }
+    /**
+     * Returns the statistics for the outbound CoT queue, keyed on the
+     * destination of the queued messages.
+     *
+     * @return the current outbound statistics
+     */
+    public Map<String, CotOutboundQueue.EndpointStatistics> getOutboundStatistics() {
+        return outboundQueue.getStatistics();
+    }
+
+    private void logSend(CotEvent e, String destination) {
+        for (CommsLogger logger : loggers) {
+            try {
+                logger.logSend(e, destination);
+            } catch (Exception err) {
+                Log.e(TAG, "error occurred with a logger", err);
             }
+        }
+    }
 
-        } catch (CommoException ex) {
-            Log.e(TAG,
-                    "Invalid cot message or destination for tcp direct send to "
-                            + endpoint + " msg = " + e);
+    private final class TcpDirectMessage extends CotOutboundQueue.Message {
+        private final String destination;
+        private final String host;
+        private final int port;
+
+        TcpDirectMessage(CotEvent event, String destination, String host,
+                int port) {
+            super("tcp/" + destination, event);
+            this.destination = destination;
+            this.host = host;
+            this.port = port;
+        }
+
+        @Override
+        void transmit() {
+            try {
+                if (commo != null)
+                    commo.sendCoTTcpDirect(host, port, xml);
+                logSend(event, destination);
+            } catch (CommoException ex) {
+                Log.e(TAG,
+                        "Invalid cot message or destination for tcp direct send to "
+                                + destination + " msg = " + xml);
+            }
+        }
+    }
+
+    private final class BroadcastMessage extends CotOutboundQueue.Message {
+        private final CoTSendMethod method;
+
+        BroadcastMessage(CotEvent event, CoTSendMethod method) {
+            super("broadcast/" + method, event);
+            this.method = method;
+        }
+
+        @Override
+        void transmit() {
+            try {
+                if (commo != null)
+                    commo.broadcastCoT(xml, method);
+                logSend(event, "broadcast");
+            } catch (CommoException ex) {
+                Log.e(TAG, "Invalid cot message for broadcast " + xml);
+            }
+        }
+    }
+
+    private final class UnicastMessage extends CotOutboundQueue.Message {
+        private final Vector<Contact> contacts;
+        private final String[] toUIDs;
+        private final CoTSendMethod method;
+
+        UnicastMessage(CotEvent event, Vector<Contact> contacts,
+                String[] toUIDs, CoTSendMethod method) {
+            super("contacts/" + method + "/" + Arrays.toString(toUIDs),
+                    event);
+            this.contacts = contacts;
+            this.toUIDs = toUIDs;
+            this.method = method;
+        }
+
+        /**
+         * On return, the contacts that could not be sent to remain in the
+         * contact list.
+         */
+        @Override
+        void transmit() {
+            try {
+                if (commo != null)
+                    commo.sendCoT(contacts, xml, method);
+                for (CommsLogger logger : loggers) {
+                    try {
+                        logger.logSend(event, toUIDs);
+                    } catch (Exception err) {
+                        Log.e(TAG, "error occurred with a logger", err);
+                    }
+                }
+            } catch (CommoException ex) {
+                Log.e(TAG, "Invalid cot message for unicast " + xml);
+            }
         }
     }
 
@@ -1582,6 +1684,32 @@ public class CommsMapComponent extends AbstractMapComponent implements
             CotEvent e,
             String[] toUIDs,
             CoTSendMethod method) {
+        sendCoT(failedContactUids, e, toUIDs, method, false);
+    }
+
+    /**
+     *
+     * if failedContactUids is non-null, fill it with those contacts who are not known via the specified method
+     * or who are invalid or missing on the network
+     *
+     * <P>Broadcasts, and unicasts that do not request the failed contacts,
+     * are placed on the outbound queue unless <code>immediate</code> is
+     * specified. Queued messages may be superseded by a newer message for
+     * the same UID and type to the same destination before they are sent.
+     *
+     * @param failedContactUids a list that will be filled with the list of sending contacts that failed.
+     * @param e event to send
+     * @param toUIDs  Destination UIDs, null for broadcast
+     * @param method    method for sending
+     * @param immediate if <code>true</code> the event is sent on the calling
+     *                  thread, bypassing the outbound queue
+     */
+    void sendCoT(
+            List<String> failedContactUids,
+            CotEvent e,
+            String[] toUIDs,
+            CoTSendMethod method,
+            boolean immediate) {
         if (failedContactUids != null)
             failedContactUids.clear();
 
@@ -1600,22 +1728,11 @@ public class CommsMapComponent extends AbstractMapComponent implements
         }
 
         if (toUIDs == null) {
-            try {
-                final String event = e.toString();
-                if (commo != null)
-                    commo.broadcastCoT(event, method);
-
-                for (CommsLogger logger : loggers) {
-                    try {
-                        logger.logSend(e, "broadcast");
-                    } catch (Exception err) {
-                        Log.e(TAG, "error occurred with a logger", err);
-                    }
-                }
-
-            } catch (CommoException ex) {
-                Log.e(TAG, "Invalid cot message for broadcast " + e);
-            }
+            final BroadcastMessage msg = new BroadcastMessage(e, method);
+            if (immediate)
+                msg.transmit();
+            else
+                outboundQueue.submit(msg);
         } else {
 
             Vector<Contact> commoContacts = new Vector<>();
@@ -1631,21 +1748,14 @@ public class CommsMapComponent extends AbstractMapComponent implements
                 }
             }
 
-            try {
-                final String event = e.toString();
-                if (commo != null)
-                    commo.sendCoT(commoContacts, event, method);
-
-                for (CommsLogger logger : loggers) {
-                    try {
-                        logger.logSend(e, toUIDs);
-                    } catch (Exception err) {
-                        Log.e(TAG, "error occurred with a logger", err);
-                    }
-                }
-
-            } catch (CommoException ex) {
-                Log.e(TAG, "Invalid cot message for unicast " + e);
+            final UnicastMessage msg = new UnicastMessage(e, commoContacts,
+                    toUIDs, method);
+            // the failed contacts are only known once the send completes
+            if (immediate || failedContactUids != null) {
+                msg.transmit();
+            } else {
+                outboundQueue.submit(msg);
+                return;
             }
 
             if (failedContactUids != null) {
@@ -1798,7 +1908,23 @@ public class CommsMapComponent extends AbstractMapComponent implements
             }
         }
 
-        CotEvent cotEvent = CotEvent.parse(message);
+        // parsing and dispatch are handled asynchronously so that slow
+        // listeners do not back up the network thread
+        inboundPipeline.submit(message, rxEndpointId);
+    }
+
+    /**
+     * Returns the statistics for the inbound CoT pipeline, including the
+     * queue depths, drop and coalesce counts and delivery latency.
+     *
+     * @return the current inbound statistics
+     */
+    public CotInboundPipeline.Statistics getInboundStatistics() {
+        return inboundPipeline.getStatistics();
+    }
+
+    private void processReceived(final CotEvent cotEvent,
+            final String rxEndpointId) {
         Bundle extras = new Bundle();
         extras.putString("from", cotEvent.getUID());
         if (rxEndpointId != null) {
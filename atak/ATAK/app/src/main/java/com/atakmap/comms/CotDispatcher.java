@@ -23,6 +23,8 @@ public class CotDispatcher {
 
     /**
      * Set the dispatch flags to determine basic dispatch behavior (@see DispatchFlags).
+     * Broadcast external dispatches are queued and coalesced by UID and type unless
+     * DISPATCH_IMMEDIATE is specified.
      *
      * @param flags one of INTERNAL or EXTERNAL.
      */
@@ -75,7 +77,8 @@ public class CotDispatcher {
         if ((flags & DispatchFlags.DISPATCH_EXTERNAL) != 0) {
             if (broadcast || toUIDs != null || toConnectStrings == null)
                 CommsMapComponent.getInstance().sendCoT(ret, event, toUIDs,
-                        sendMethod);
+                        sendMethod,
+                        (flags & DispatchFlags.DISPATCH_IMMEDIATE) != 0);
             else {
                 Log.w(TAG,
                         "Got a dispatchEvent command w/o Contacts, using OLD NetConnectStr method... ",
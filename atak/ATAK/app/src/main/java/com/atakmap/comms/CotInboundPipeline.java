@@ -0,0 +1,350 @@
+package com.atakmap.comms;
+
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.log.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Staged pipeline for inbound CoT messages. Raw messages are accepted from
+ * the network callback thread into a bounded ingest queue, parsed on a pool
+ * of worker threads and then delivered, in the order that they were received,
+ * on a single delivery thread.
+ *
+ * <P>Position reports (events with an atom type, <code>a-*</code>) are
+ * coalesced; if a newer report for the same UID has already been parsed when
+ * an older one becomes eligible for delivery, the older report is discarded.
+ * All other events are always delivered. Ordering is preserved for all events
+ * that are delivered.
+ *
+ * <P>The number of parsed events waiting for delivery is bounded by the
+ * capacity of the pipeline. If the sink falls behind, the parse workers
+ * block until the delivery stage catches up, the ingest queue fills and
+ * further messages are dropped on submit.
+ */
+public final class CotInboundPipeline {
+
+    private static final String TAG = "CotInboundPipeline";
+
+    /** default capacity of the ingest queue */
+    static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * Receives parsed events from the pipeline. All invocations occur on the
+     * pipeline's delivery thread.
+     */
+    interface Sink {
+        /**
+         * @param event         The parsed event
+         * @param rxEndpointId  The receiving endpoint, may be <code>null</code>
+         */
+        void onCotEvent(CotEvent event, String rxEndpointId);
+    }
+
+    /**
+     * Snapshot of the pipeline statistics.
+     */
+    public static final class Statistics {
+        /** number of raw messages waiting to be parsed */
+        public final int ingestDepth;
+        /** number of parsed events waiting to be delivered */
+        public final int deliveryDepth;
+        /** number of messages accepted into the pipeline */
+        public final long received;
+        /** number of events delivered */
+        public final long delivered;
+        /** number of messages dropped due to a full ingest queue */
+        public final long dropped;
+        /** number of position reports superseded prior to delivery */
+        public final long coalesced;
+        /** mean receive to delivery latency, in milliseconds */
+        public final double meanLatencyMillis;
+        /** maximum receive to delivery latency, in milliseconds */
+        public final double maxLatencyMillis;
+
+        Statistics(int ingestDepth, int deliveryDepth, long received,
+                long delivered, long dropped, long coalesced,
+                double meanLatencyMillis, double maxLatencyMillis) {
+            this.ingestDepth = ingestDepth;
+            this.deliveryDepth = deliveryDepth;
+            this.received = received;
+            this.delivered = delivered;
+            this.dropped = dropped;
+            this.coalesced = coalesced;
+            this.meanLatencyMillis = meanLatencyMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics {ingestDepth=" + ingestDepth
+                    + ", deliveryDepth=" + deliveryDepth
+                    + ", received=" + received
+                    + ", delivered=" + delivered
+                    + ", dropped=" + dropped
+                    + ", coalesced=" + coalesced
+                    + ", meanLatencyMillis=" + meanLatencyMillis
+                    + ", maxLatencyMillis=" + maxLatencyMillis + "}";
+        }
+    }
+
+    private final Sink sink;
+    private final int capacity;
+    private final BlockingQueue<Message> ingest;
+    private final ExecutorService workers;
+
+    /**
+     * parsed messages awaiting delivery, keyed on sequence number. Only
+     * messages within <code>capacity</code> of the next delivery are
+     * admitted.
+     */
+    private final Map<Long, Message> ready = new HashMap<>();
+    /** newest parsed sequence number of a coalescable event per UID */
+    private final Map<String, Long> latestByUid = new HashMap<>();
+
+    private long nextSequence;
+    private long nextDelivery;
+    private boolean disposed;
+
+    private final AtomicLong received = new AtomicLong(0L);
+    private final AtomicLong delivered = new AtomicLong(0L);
+    private final AtomicLong dropped = new AtomicLong(0L);
+    private final AtomicLong coalesced = new AtomicLong(0L);
+    private final AtomicLong totalLatencyNanos = new AtomicLong(0L);
+    private volatile long maxLatencyNanos;
+
+    CotInboundPipeline(Sink sink) {
+        this(sink, DEFAULT_CAPACITY, Math.max(1, Math.min(4,
+                Runtime.getRuntime().availableProcessors() - 1)));
+    }
+
+    /**
+     * @param sink          Receives the parsed events
+     * @param capacity      The capacity of the ingest queue and of the
+     *                      delivery stage
+     * @param parseThreads  The number of parse worker threads
+     */
+    CotInboundPipeline(Sink sink, int capacity, int parseThreads) {
+        this.sink = sink;
+        this.capacity = capacity;
+        this.ingest = new LinkedBlockingQueue<>(capacity);
+        this.workers = Executors.newFixedThreadPool(parseThreads + 1,
+                new NamedThreadFactory(TAG + "-Pool"));
+        for (int i = 0; i < parseThreads; i++)
+            this.workers.execute(new ParseWorker());
+        this.workers.execute(new DeliveryWorker());
+    }
+
+    /**
+     * Submits a raw message to the pipeline. This method does not block; if
+     * the ingest queue is full the message is dropped.
+     *
+     * @param xml           The raw CoT message
+     * @param rxEndpointId  The receiving endpoint, may be <code>null</code>
+     * @return  <code>true</code> if the message was accepted,
+     *          <code>false</code> if it was dropped
+     */
+    boolean submit(String xml, String rxEndpointId) {
+        // sequence numbers must be contiguous over accepted messages for the
+        // delivery stage to make progress, assign and enqueue atomically
+        synchronized (this.ingest) {
+            final Message msg = new Message(this.nextSequence, xml,
+                    rxEndpointId);
+            if (!this.ingest.offer(msg)) {
+                final long n = this.dropped.incrementAndGet();
+                // avoid flooding the log during a sustained burst
+                if (n == 1 || (n % 1000) == 0)
+                    Log.w(TAG, "Ingest queue full, dropped " + n
+                            + " messages");
+                return false;
+            }
+            this.nextSequence++;
+        }
+        this.received.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the current pipeline statistics.
+     */
+    public Statistics getStatistics() {
+        final int deliveryDepth;
+        synchronized (this.ready) {
+            deliveryDepth = this.ready.size();
+        }
+        final long n = this.delivered.get();
+        return new Statistics(this.ingest.size(),
+                deliveryDepth,
+                this.received.get(),
+                n,
+                this.dropped.get(),
+                this.coalesced.get(),
+                (n > 0) ? (this.totalLatencyNanos.get() / (double) n) / 1e6d
+                        : 0d,
+                this.maxLatencyNanos / 1e6d);
+    }
+
+    /**
+     * Stops all pipeline threads. Any pending messages are discarded.
+     */
+    void dispose() {
+        synchronized (this.ready) {
+            this.disposed = true;
+            this.ready.clear();
+            this.latestByUid.clear();
+            this.ready.notifyAll();
+        }
+        this.ingest.clear();
+        this.workers.shutdownNow();
+    }
+
+    private static boolean isCoalescable(CotEvent event) {
+        if (event == null || !event.isValid())
+            return false;
+        final String type = event.getType();
+        return type != null && type.startsWith("a-");
+    }
+
+    /**
+     * Hands a parsed message to the delivery stage, blocking while the
+     * message is too far ahead of the next delivery. The message for the next
+     * delivery is always admitted, so the delivery stage can always make
+     * progress.
+     */
+    private void onParsed(Message msg) {
+        final boolean coalescable = isCoalescable(msg.event);
+        synchronized (this.ready) {
+            while (!this.disposed
+                    && msg.sequence - this.nextDelivery >= this.capacity) {
+                try {
+                    this.ready.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (this.disposed)
+                return;
+            if (coalescable) {
+                // record the newest sequence number seen for the UID
+                final String uid = msg.event.getUID();
+                final Long latest = this.latestByUid.get(uid);
+                if (latest == null || latest < msg.sequence)
+                    this.latestByUid.put(uid, msg.sequence);
+            }
+            this.ready.put(msg.sequence, msg);
+            if (msg.sequence == this.nextDelivery)
+                this.ready.notifyAll();
+        }
+    }
+
+    private void deliver(Message msg) {
+        if (isCoalescable(msg.event)) {
+            final String uid = msg.event.getUID();
+            synchronized (this.ready) {
+                final Long latest = this.latestByUid.get(uid);
+                if (latest != null && latest > msg.sequence) {
+                    // a newer report for the UID is already in the pipeline
+                    this.coalesced.incrementAndGet();
+                    return;
+                }
+                this.latestByUid.remove(uid);
+            }
+        }
+
+        try {
+            this.sink.onCotEvent(msg.event, msg.rxEndpointId);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "error delivering received event", e);
+        }
+
+        final long latency = System.nanoTime() - msg.receivedNanos;
+        this.totalLatencyNanos.addAndGet(latency);
+        if (latency > this.maxLatencyNanos)
+            this.maxLatencyNanos = latency;
+        this.delivered.incrementAndGet();
+    }
+
+    /**************************************************************************/
+
+    private final static class Message {
+        final long sequence;
+        final String xml;
+        final String rxEndpointId;
+        final long receivedNanos;
+        CotEvent event;
+
+        Message(long sequence, String xml, String rxEndpointId) {
+            this.sequence = sequence;
+            this.xml = xml;
+            this.rxEndpointId = rxEndpointId;
+            this.receivedNanos = System.nanoTime();
+        }
+    }
+
+    private final class ParseWorker implements Runnable {
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Message msg;
+                try {
+                    msg = ingest.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                try {
+                    msg.event = CotEvent.parse(msg.xml);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "error parsing received message", e);
+                } finally {
+                    // always hand off so the delivery sequence advances
+                    onParsed(msg);
+                }
+            }
+        }
+    }
+
+    private final class DeliveryWorker implements Runnable {
+        @Override
+        public void run() {
+            final List<Message> batch = new ArrayList<>();
+            while (true) {
+                synchronized (ready) {
+                    while (!disposed && !ready.containsKey(nextDelivery)) {
+                        try {
+                            ready.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (disposed)
+                        return;
+
+                    // drain all contiguous parsed messages
+                    Message msg;
+                    while ((msg = ready.remove(nextDelivery)) != null) {
+                        batch.add(msg);
+                        nextDelivery++;
+                    }
+                    // release any parse workers waiting for room
+                    ready.notifyAll();
+                }
+
+                for (Message msg : batch) {
+                    if (msg.event != null)
+                        deliver(msg);
+                }
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.atakmap.comms;
+
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
+import com.atakmap.coremap.cot.event.CotDetail;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.log.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Coalescing queue for outbound CoT messages. Messages are transmitted on a
+ * single sender thread so that a slow or degraded link does not block the
+ * caller.
+ *
+ * <P>While a message for a given (endpoint, UID, type) is waiting to be
+ * sent, a newer message for the same key replaces it in place, so that a
+ * backlog of superseded position reports does not build up behind a slow
+ * link. Messages are sent from three priority lanes; chat and emergency
+ * messages are always sent ahead of other traffic and position reports
+ * (atoms, <code>a-*</code>) are sent last.
+ *
+ * <P>Messages about the same item to the same endpoint are always sent in
+ * the order they were submitted, regardless of lane; a message that is
+ * submitted to a higher priority lane promotes any earlier messages about
+ * the item along with it. A delete task (<code>t-x-d-d</code>) discards any
+ * messages about the deleted item that are still waiting to be sent.
+ */
+public final class CotOutboundQueue {
+
+    private static final String TAG = "CotOutboundQueue";
+
+    /** default maximum number of pending messages */
+    static final int DEFAULT_CAPACITY = 2000;
+
+    private static final String DELETE_TYPE = "t-x-d-d";
+
+    /**
+     * Send priority of an outbound message
+     */
+    public enum Priority {
+        /** chat and emergency messages */
+        HIGH,
+        /** all other messages */
+        NORMAL,
+        /** position reports */
+        LOW,
+    }
+
+    /**
+     * An outbound message. The message is serialized at the time it is
+     * created, so later modification of the event by the caller does not
+     * affect what is sent.
+     */
+    static abstract class Message {
+        /** destination label used for coalescing and statistics */
+        final String endpoint;
+        final CotEvent event;
+        final String xml;
+        final Priority priority;
+        /** UID of the item the message is about, may be null */
+        final String subject;
+
+        Message(String endpoint, CotEvent event) {
+            this.endpoint = endpoint;
+            this.event = event;
+            this.xml = event.toString();
+            this.priority = priorityOf(event);
+            this.subject = subjectOf(event);
+        }
+
+        /**
+         * Performs the send. Invoked on the sender thread.
+         */
+        abstract void transmit();
+    }
+
+    /**
+     * Snapshot of the queue statistics for a single endpoint
+     */
+    public static final class EndpointStatistics {
+        /** the destination label */
+        public final String endpoint;
+        /** number of messages currently waiting to be sent */
+        public final int depth;
+        /** maximum number of messages waiting at one time */
+        public final int maxDepth;
+        /** number of messages submitted */
+        public final long enqueued;
+        /** number of messages sent */
+        public final long sent;
+        /** number of messages replaced by a newer message prior to send */
+        public final long coalesced;
+        /** number of messages dropped due to a full queue */
+        public final long dropped;
+
+        EndpointStatistics(String endpoint, int depth, int maxDepth,
+                long enqueued, long sent, long coalesced, long dropped) {
+            this.endpoint = endpoint;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.enqueued = enqueued;
+            this.sent = sent;
+            this.coalesced = coalesced;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public String toString() {
+            return "EndpointStatistics {endpoint=" + endpoint
+                    + ", depth=" + depth
+                    + ", maxDepth=" + maxDepth
+                    + ", enqueued=" + enqueued
+                    + ", sent=" + sent
+                    + ", coalesced=" + coalesced
+                    + ", dropped=" + dropped + "}";
+        }
+    }
+
+    private final int capacity;
+    private final ExecutorService worker;
+
+    // all state below is guarded by 'pending'
+    private final Map<Key, Entry> pending = new HashMap<>();
+    // pending entries per (endpoint, subject), in send order
+    private final Map<Key, List<Entry>> subjects = new HashMap<>();
+    private final ArrayDeque<Entry>[] lanes;
+    private final Map<String, Counters> counters = new HashMap<>();
+    private int size;
+    private boolean disposed;
+
+    CotOutboundQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity  The maximum number of pending messages
+     */
+    @SuppressWarnings("unchecked")
+    CotOutboundQueue(int capacity) {
+        this.capacity = capacity;
+        final Priority[] priorities = Priority.values();
+        this.lanes = new ArrayDeque[priorities.length];
+        for (int i = 0; i < priorities.length; i++)
+            this.lanes[i] = new ArrayDeque<>();
+        this.worker = Executors.newFixedThreadPool(1,
+                new NamedThreadFactory(TAG + "-Pool"));
+        this.worker.execute(new SendWorker());
+    }
+
+    /**
+     * Returns the send priority for the specified event.
+     */
+    static Priority priorityOf(CotEvent event) {
+        final String type = event.getType();
+        if (type == null)
+            return Priority.NORMAL;
+        // chat, emergency alerts and geofence alerts
+        if (type.startsWith("b-t-f") || type.startsWith("b-a-o")
+                || type.startsWith("b-a-g"))
+            return Priority.HIGH;
+        if (type.startsWith("a-")) {
+            if (event.getDetail() != null
+                    && event.getDetail().getChild("emergency") != null)
+                return Priority.HIGH;
+            return Priority.LOW;
+        }
+        return Priority.NORMAL;
+    }
+
+    /**
+     * Returns <code>true</code> if the event is a delete task.
+     */
+    static boolean isDelete(CotEvent event) {
+        final String type = event.getType();
+        return type != null && type.startsWith(DELETE_TYPE);
+    }
+
+    /**
+     * Returns the UID of the item that the specified event is about. This is
+     * the UID of the event, except for delete tasks, where it is the UID of
+     * the linked item being deleted.
+     */
+    static String subjectOf(CotEvent event) {
+        if (isDelete(event) && event.getDetail() != null) {
+            final CotDetail link = event.getDetail().getFirstChildByName(0,
+                    "link");
+            if (link != null && link.getAttribute("uid") != null)
+                return link.getAttribute("uid");
+        }
+        return event.getUID();
+    }
+
+    /**
+     * Submits a message for sending. This method does not block. If a
+     * message with the same endpoint, UID and type is already pending, it is
+     * replaced by this message. If the queue is full, the oldest pending
+     * message of the lowest priority at or below that of this message is
+     * dropped; if there is no such message, this message is dropped.
+     *
+     * <P>If the message is a delete task, any pending messages about the
+     * deleted item to the same endpoint are discarded.
+     *
+     * @param msg   The message
+     * @return  <code>true</code> if the message was accepted,
+     *          <code>false</code> if it was dropped
+     */
+    boolean submit(Message msg) {
+        final String uid = msg.event.getUID();
+        final Key key = (uid != null)
+                ? new Key(msg.endpoint, uid, msg.event.getType())
+                : null;
+        final Key subject = (msg.subject != null)
+                ? new Key(msg.endpoint, msg.subject, null)
+                : null;
+
+        synchronized (this.pending) {
+            if (this.disposed)
+                return false;
+
+            final Counters c = this.countersNoSync(msg.endpoint);
+            c.enqueued++;
+
+            if (subject != null && isDelete(msg.event)) {
+                final List<Entry> superseded = this.subjects.get(subject);
+                if (superseded != null) {
+                    for (Entry e : new ArrayList<>(superseded)) {
+                        this.lanes[e.lane].remove(e);
+                        this.removedNoSync(e);
+                        c.coalesced++;
+                    }
+                }
+            }
+
+            final Entry existing = (key != null) ? this.pending.get(key)
+                    : null;
+            if (existing != null) {
+                c.coalesced++;
+                if (existing.lane == msg.priority.ordinal()) {
+                    existing.message = msg;
+                    return true;
+                }
+                // the priority changed; requeue as the newest message
+                this.lanes[existing.lane].remove(existing);
+                this.removedNoSync(existing);
+            }
+
+            if (this.size >= this.capacity && !this.evictNoSync(msg.priority)) {
+                c.dropped++;
+                if (c.dropped == 1 || (c.dropped % 1000) == 0)
+                    Log.w(TAG, "Outbound queue full, dropped " + c.dropped
+                            + " messages to " + msg.endpoint);
+                return false;
+            }
+
+            final Entry entry = new Entry(key, subject, msg);
+            this.enqueueNoSync(entry);
+            this.size++;
+            c.depth++;
+            if (c.depth > c.maxDepth)
+                c.maxDepth = c.depth;
+            this.pending.notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Drops the oldest message from the lowest priority non-empty lane that
+     * is not higher than the specified priority.
+     *
+     * @return  <code>true</code> if a message was dropped
+     */
+    private boolean evictNoSync(Priority priority) {
+        for (int i = this.lanes.length - 1; i >= priority.ordinal(); i--) {
+            final Entry e = this.lanes[i].poll();
+            if (e == null)
+                continue;
+            this.removedNoSync(e);
+            this.countersNoSync(e.message.endpoint).dropped++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Appends the entry to the lane for its priority. Any pending entries
+     * for the same subject that are waiting in a lower priority lane are
+     * first moved to that lane, so that they are still sent ahead of the new
+     * entry.
+     */
+    private void enqueueNoSync(Entry entry) {
+        entry.lane = entry.message.priority.ordinal();
+        if (entry.subject != null) {
+            List<Entry> queued = this.subjects.get(entry.subject);
+            if (queued == null) {
+                this.subjects.put(entry.subject, queued = new ArrayList<>(2));
+            } else {
+                // entries are in send order, so lanes are non-decreasing
+                for (Entry e : queued) {
+                    if (e.lane > entry.lane) {
+                        this.lanes[e.lane].remove(e);
+                        e.lane = entry.lane;
+                        this.lanes[e.lane].add(e);
+                    }
+                }
+            }
+            queued.add(entry);
+        }
+        this.lanes[entry.lane].add(entry);
+        if (entry.key != null)
+            this.pending.put(entry.key, entry);
+    }
+
+    /**
+     * Updates the bookkeeping for an entry that has been removed from its
+     * lane.
+     */
+    private void removedNoSync(Entry e) {
+        if (e.key != null)
+            this.pending.remove(e.key);
+        if (e.subject != null) {
+            final List<Entry> queued = this.subjects.get(e.subject);
+            if (queued != null) {
+                queued.remove(e);
+                if (queued.isEmpty())
+                    this.subjects.remove(e.subject);
+            }
+        }
+        this.size--;
+        this.countersNoSync(e.message.endpoint).depth--;
+    }
+
+    private Counters countersNoSync(String endpoint) {
+        Counters c = this.counters.get(endpoint);
+        if (c == null)
+            this.counters.put(endpoint, c = new Counters());
+        return c;
+    }
+
+    /**
+     * Returns a snapshot of the queue statistics, keyed on endpoint.
+     */
+    public Map<String, EndpointStatistics> getStatistics() {
+        synchronized (this.pending) {
+            final Map<String, EndpointStatistics> retval = new HashMap<>();
+            for (Map.Entry<String, Counters> e : this.counters.entrySet()) {
+                final Counters c = e.getValue();
+                retval.put(e.getKey(), new EndpointStatistics(e.getKey(),
+                        c.depth, c.maxDepth, c.enqueued, c.sent,
+                        c.coalesced, c.dropped));
+            }
+            return retval;
+        }
+    }
+
+    /**
+     * Stops the sender thread. Any pending messages are discarded.
+     */
+    void dispose() {
+        synchronized (this.pending) {
+            this.disposed = true;
+            this.pending.clear();
+            this.subjects.clear();
+            for (ArrayDeque<Entry> lane : this.lanes)
+                lane.clear();
+            this.size = 0;
+            this.pending.notifyAll();
+        }
+        this.worker.shutdownNow();
+    }
+
+    /**************************************************************************/
+
+    private final static class Key {
+        final String endpoint;
+        final String uid;
+        final String type;
+
+        Key(String endpoint, String uid, String type) {
+            this.endpoint = endpoint;
+            this.uid = uid;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            final Key other = (Key) o;
+            return this.endpoint.equals(other.endpoint)
+                    && this.uid.equals(other.uid)
+                    && (this.type == null ? other.type == null
+                            : this.type.equals(other.type));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.endpoint.hashCode();
+            result = 31 * result + this.uid.hashCode();
+            result = 31 * result
+                    + ((this.type != null) ? this.type.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private final static class Entry {
+        final Key key;
+        final Key subject;
+        Message message;
+        /** ordinal of the lane the entry is queued in */
+        int lane;
+
+        Entry(Key key, Key subject, Message message) {
+            this.key = key;
+            this.subject = subject;
+            this.message = message;
+        }
+    }
+
+    private final static class Counters {
+        int depth;
+        int maxDepth;
+        long enqueued;
+        long sent;
+        long coalesced;
+        long dropped;
+    }
+
+    private final class SendWorker implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                final Message msg;
+                synchronized (pending) {
+                    while (!disposed && size == 0) {
+                        try {
+                            pending.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (disposed)
+                        return;
+
+                    Entry entry = null;
+                    for (ArrayDeque<Entry> lane : lanes) {
+                        entry = lane.poll();
+                        if (entry != null)
+                            break;
+                    }
+                    if (entry == null)
+                        continue;
+                    removedNoSync(entry);
+                    msg = entry.message;
+                }
+
+                try {
+                    msg.transmit();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "error sending to " + msg.endpoint, e);
+                }
+
+                synchronized (pending) {
+                    countersNoSync(msg.endpoint).sent++;
+                }
+            }
+        }
+    }
+}
@@ -26,6 +26,13 @@ public class DispatchFlags {
      */
     public static final int DISPATCH_RELIABLE = 1 << 3;
 
+    /**
+     * Specifies the CoT event should be sent to the external outputs on the calling thread rather
+     * than being placed on the outbound queue, where it may be superseded by a newer event for the
+     * same UID and type.
+     */
+    public static final int DISPATCH_IMMEDIATE = 1 << 4;
+
     /**
      * Indicates the CoT will be 'routed' to the outputs (systems pushing cot to).
      */
@@ -28,9 +28,30 @@ class CotContentHandler implements ContentHandler {
     private org.xml.sax.XMLReader reader;
 
     /**
-     * Makes use of internal buffers and will not be able to be threaded.
+     * Per-thread handler instances. The handler and its underlying
+     * {@link org.xml.sax.XMLReader} make use of internal buffers and are not
+     * thread-safe, so each parsing thread is given its own instance rather
+     * than serializing all parsing through a single shared monitor.
      */
-    synchronized CotEvent parseXML(final String xml) {
+    private static final ThreadLocal<CotContentHandler> _handlers = new ThreadLocal<CotContentHandler>() {
+        @Override
+        protected CotContentHandler initialValue() {
+            return new CotContentHandler();
+        }
+    };
+
+    /**
+     * Returns the handler instance for the calling thread.
+     */
+    static CotContentHandler get() {
+        return _handlers.get();
+    }
+
+    /**
+     * Makes use of internal buffers and will not be able to be threaded. Use
+     * {@link #get()} to obtain an instance for the calling thread.
+     */
+    CotEvent parseXML(final String xml) {
         _detailStack.clear();
         _finishedDetail = false;
         _innerTextBuilder.setLength(0);
@@ -75,7 +96,11 @@ class CotContentHandler implements ContentHandler {
             Log.e(TAG, "error: ", e);
         }
 
-        return editor;
+        // handlers are retained per thread, do not hold on to the result
+        final CotEvent retval = editor;
+        editor = null;
+        _detailStack.clear();
+        return retval;
 
     }
 
@@ -133,10 +158,14 @@ class CotContentHandler implements ContentHandler {
     }
 
     @Override
-    public void startElement(final String uri, final String localName,
+    public void startElement(final String uri, final String elementName,
             final String qName,
             final Attributes attrs)
             throws SAXException {
+        // parsers that are not namespace aware may not report the local name
+        final String localName = (elementName == null || elementName.isEmpty())
+                ? qName
+                : elementName;
         try {
             if (localName.equals("event") && _detailStack.size() == 0) {
                 editor.setType(_stringOrThrow(attrs, "type",
@@ -210,6 +239,8 @@ class CotContentHandler implements ContentHandler {
         detail.setElementName(name);
         for (int i = 0; i < attrs.getLength(); ++i) {
             String attrName = attrs.getLocalName(i);
+            if (attrName == null || attrName.isEmpty())
+                attrName = attrs.getQName(i);
             String attrValue = attrs.getValue(i);
             detail.setAttribute(attrName, attrValue);
         }
@@ -2,24 +2,42 @@
 package com.atakmap.coremap.cot.event;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
 import android.os.Parcel;
 import android.os.Parcelable;
 
 /**
  * A Cursor on Target root detail tag or sub tag
+ *
+ * <P>Element and attribute names are resolved against a shared symbol table
+ * so that retained details do not each hold their own copies of the common
+ * names. Attributes are stored in insertion order in parallel name/value
+ * arrays and the child list is only allocated once a child is added.
  */
 public class CotDetail implements Parcelable {
 
-    private final Map<String, String> _attrs = new HashMap<>();
-    private final List<CotDetail> _children = new ArrayList<>();
-    private final Map<String, CotDetail> firstNode = new HashMap<>();
+    private final static String[] EMPTY_STRINGS = new String[0];
+
+    /**
+     * Child count at which first-child-by-name lookups are cached. Below
+     * this, a scan is cheaper than maintaining the cache.
+     */
+    private final static int FIRST_NODE_CACHE_THRESHOLD = 8;
+
+    private String[] _attrNames = EMPTY_STRINGS;
+    private String[] _attrValues = EMPTY_STRINGS;
+    private int _attrCount;
+
+    /** guarded by <code>this</code>; lazily allocated */
+    private List<CotDetail> _children;
+    /** guarded by <code>this</code>; lazily allocated */
+    private Map<String, CotDetail> firstNode;
 
     private String _elemName;
     private String _innerText;
@@ -37,8 +55,8 @@ public class CotDetail implements Parcelable {
     public CotDetail(final CotDetail d) {
         _elemName = d.getElementName();
         _innerText = d.getInnerText();
-        d.copyAttributesInternal(_attrs);
-        d.copyChildrenInternal(_children);
+        d.copyAttributesInternal(this);
+        d.copyChildrenInternal(this);
     }
 
     /**
@@ -57,23 +75,38 @@ public class CotDetail implements Parcelable {
      * @return the attribute
      */
     public String getAttribute(final String name) {
-        return _attrs.get(name);
+        final int idx = indexOfAttribute(name);
+        return (idx >= 0) ? _attrValues[idx] : null;
+    }
+
+    private int indexOfAttribute(final String name) {
+        if (name == null)
+            return -1;
+        final String[] names = _attrNames;
+        final int count = Math.min(_attrCount, names.length);
+        for (int i = 0; i < count; i++) {
+            if (name.equals(names[i]))
+                return i;
+        }
+        return -1;
     }
 
     /**
-     * Internal copy _attrs -- only used in the copy contructor
+     * Internal copy attributes -- only used in the copy contructor
      */
-    private void copyAttributesInternal(Map<String, String> destination) {
-        destination.putAll(_attrs);
+    private void copyAttributesInternal(CotDetail destination) {
+        final int count = _attrCount;
+        destination._attrNames = Arrays.copyOf(_attrNames, count);
+        destination._attrValues = Arrays.copyOf(_attrValues, count);
+        destination._attrCount = count;
     }
 
     /**
      * Internal copy _children -- only used in the copy contructor
      */
-    private void copyChildrenInternal(List<CotDetail> destination) {
-        synchronized (_children) {
-            destination.addAll(_children);
-        }
+    private synchronized void copyChildrenInternal(CotDetail destination) {
+        if (_children != null && !_children.isEmpty())
+            destination._children = new ArrayList<>(_children);
     }
 
     /**
@@ -95,7 +128,7 @@ public class CotDetail implements Parcelable {
         if (!_validateName(elementName)) {
             throw new IllegalArgumentException("invalid element name");
         }
-        _elemName = elementName;
+        _elemName = CotSymbolTable.intern(elementName);
     }
 
     /**
@@ -105,14 +138,13 @@ public class CotDetail implements Parcelable {
      * @return get a copy of the current attributes.
      */
     public CotAttribute[] getAttributes() {
-        CotAttribute[] attrs = new CotAttribute[_attrs.size()];
-        Set<Map.Entry<String, String>> entries = _attrs.entrySet();
-        Iterator<Map.Entry<String, String>> it = entries.iterator();
-        int index = 0;
-        while (it.hasNext()) {
-            Map.Entry<String, String> entry = it.next();
-            attrs[index++] = new CotAttribute(entry.getKey(), entry.getValue());
-        }
+        final String[] names = _attrNames;
+        final String[] values = _attrValues;
+        final int count = Math.min(_attrCount,
+                Math.min(names.length, values.length));
+        CotAttribute[] attrs = new CotAttribute[count];
+        for (int i = 0; i < count; i++)
+            attrs[i] = new CotAttribute(names[i], values[i]);
         return attrs;
     }
 
@@ -128,10 +160,8 @@ public class CotDetail implements Parcelable {
      * 
      * @return the number of sub tags
      */
-    public int childCount() {
-        synchronized (_children) {
-            return _children.size();
-        }
+    public synchronized int childCount() {
+        return (_children != null) ? _children.size() : 0;
     }
 
     /**
@@ -141,14 +171,10 @@ public class CotDetail implements Parcelable {
      * @param index
      * @return the child  at the provided index
      */
-    public CotDetail getChild(final int index) {
-        synchronized (_children) {
-            try {
-                return _children.get(index);
-            } catch (IndexOutOfBoundsException oobe) {
-                return null;
-            }
-        }
+    public synchronized CotDetail getChild(final int index) {
+        if (_children == null || index < 0 || index >= _children.size())
+            return null;
+        return _children.get(index);
     }
 
     /**
@@ -169,10 +195,10 @@ public class CotDetail implements Parcelable {
      *
      * @return List of child nodes
      */
-    public List<CotDetail> getChildren() {
-        synchronized (_children) {
-            return new ArrayList<>(_children);
-        }
+    public synchronized List<CotDetail> getChildren() {
+        if (_children == null)
+            return new ArrayList<>();
+        return new ArrayList<>(_children);
     }
 
     /**
@@ -182,8 +208,10 @@ public class CotDetail implements Parcelable {
      */
     public List<CotDetail> getChildrenByName(String name) {
         List<CotDetail> ret = new ArrayList<>();
-        synchronized (_children) {
-            for (CotDetail d : _children) {
+        synchronized (this) {
+            final List<CotDetail> children = (_children != null) ? _children
+                    : Collections.<CotDetail> emptyList();
+            for (CotDetail d : children) {
                 if (d != null && name.equals(d.getElementName()))
                     ret.add(d);
             }
@@ -200,8 +228,21 @@ public class CotDetail implements Parcelable {
      */
     public void setAttribute(String name, String value) {
         //XXX-- contract violation (does not check for name being legal XML
-        if (value != null)
-            _attrs.put(name, value);
+        if (value == null)
+            return;
+        final int idx = indexOfAttribute(name);
+        if (idx >= 0) {
+            _attrValues[idx] = value;
+            return;
+        }
+        if (_attrCount == _attrNames.length) {
+            final int capacity = Math.max(4, _attrCount * 2);
+            _attrNames = Arrays.copyOf(_attrNames, capacity);
+            _attrValues = Arrays.copyOf(_attrValues, capacity);
+        }
+        _attrNames[_attrCount] = CotSymbolTable.intern(name);
+        _attrValues[_attrCount] = value;
+        _attrCount++;
     }
 
     /**
@@ -211,14 +252,26 @@ public class CotDetail implements Parcelable {
      * @return get the value removed if any
      */
     public String removeAttribute(final String name) {
-        return _attrs.remove(name);
+        final int idx = indexOfAttribute(name);
+        if (idx < 0)
+            return null;
+        final String retval = _attrValues[idx];
+        final int tail = _attrCount - idx - 1;
+        System.arraycopy(_attrNames, idx + 1, _attrNames, idx, tail);
+        System.arraycopy(_attrValues, idx + 1, _attrValues, idx, tail);
+        _attrCount--;
+        _attrNames[_attrCount] = null;
+        _attrValues[_attrCount] = null;
+        return retval;
     }
 
     /**
      * Remove all attributes
      */
     public void clearAttributes() {
-        _attrs.clear();
+        _attrNames = EMPTY_STRINGS;
+        _attrValues = EMPTY_STRINGS;
+        _attrCount = 0;
     }
 
     /**
@@ -232,7 +285,7 @@ public class CotDetail implements Parcelable {
             throw new IllegalArgumentException("attribute name is invalid ('"
                     + name + "')");
         }
-        _elemName = name;
+        _elemName = CotSymbolTable.intern(name);
     }
 
     /**
@@ -242,15 +295,14 @@ public class CotDetail implements Parcelable {
      * @throws IllegalArgumentException if detail is null
      * @param detail
      */
-    public void addChild(CotDetail detail) {
-
-        synchronized (_children) {
-            if (detail == null) {
-                throw new IllegalArgumentException("detail is null");
-            }
-            _innerText = null;
-            _children.add(detail);
+    public synchronized void addChild(CotDetail detail) {
+        if (detail == null) {
+            throw new IllegalArgumentException("detail is null");
         }
+        _innerText = null;
+        if (_children == null)
+            _children = new ArrayList<>(4);
+        _children.add(detail);
     }
 
     /**
@@ -261,24 +313,24 @@ public class CotDetail implements Parcelable {
      * @param index
      * @param detail
      */
-    public void setChild(final int index, final CotDetail detail) {
-        synchronized (_children) {
-            firstNode.clear(); // children are changing, clear the cache.
-            if (detail == null) {
-                throw new IllegalArgumentException("detail cannot be null");
-            }
-            _children.set(index, detail);
+    public synchronized void setChild(final int index,
+            final CotDetail detail) {
+        firstNode = null; // children are changing, clear the cache.
+        if (detail == null) {
+            throw new IllegalArgumentException("detail cannot be null");
         }
+        if (_children == null)
+            throw new ArrayIndexOutOfBoundsException(index);
+        _children.set(index, detail);
     }
 
     /**
      * Remove a child.
      */
-    public void removeChild(final CotDetail detail) {
-        synchronized (_children) {
-            firstNode.clear(); // children are changing, clear the cache.
+    public synchronized void removeChild(final CotDetail detail) {
+        firstNode = null; // children are changing, clear the cache.
+        if (_children != null)
             _children.remove(detail);
-        }
     }
 
     /**
@@ -287,12 +339,10 @@ public class CotDetail implements Parcelable {
      * 
      * @param text
      */
-    public void setInnerText(final String text) {
-        synchronized (_children) {
-            firstNode.clear(); // children are changing, clear the cache.
-            _children.clear();
-            _innerText = text;
-        }
+    public synchronized void setInnerText(final String text) {
+        firstNode = null; // children are changing, clear the cache.
+        _children = null;
+        _innerText = text;
     }
 
     /**
@@ -308,20 +358,26 @@ public class CotDetail implements Parcelable {
             final String childElementName) {
         CotDetail cd;
 
-        synchronized (_children) {
-            if (startIndex == 0) {
+        synchronized (this) {
+            if (_children == null)
+                return null;
+            final boolean cache = (startIndex == 0
+                    && _children.size() >= FIRST_NODE_CACHE_THRESHOLD);
+            if (cache && firstNode != null) {
                 // check the cache for the first node
                 cd = firstNode.get(childElementName);
                 if (cd != null) {
                     return cd;
                 }
             }
-            for (int i = startIndex; i < _children.size(); ++i) {
-                cd = getChild(i); // includes protection for an index out of bound exception
+            for (int i = Math.max(startIndex, 0); i < _children.size(); ++i) {
+                cd = _children.get(i);
                 if (cd != null
                         && cd.getElementName().equals(childElementName)) {
-                    if (startIndex == 0) {
+                    if (cache) {
                         // populate the cache for the first found node.
+                        if (firstNode == null)
+                            firstNode = new HashMap<>();
                         firstNode.put(childElementName, cd);
                     }
                     return cd;
@@ -359,29 +415,32 @@ public class CotDetail implements Parcelable {
     private void buildXmlImpl(final Appendable b) throws IOException {
         b.append("<");
         b.append(_elemName);
-        Set<Map.Entry<String, String>> entries = _attrs.entrySet();
-        for (Map.Entry<String, String> entry : entries) {
+        final String[] names = _attrNames;
+        final String[] values = _attrValues;
+        final int count = Math.min(_attrCount,
+                Math.min(names.length, values.length));
+        for (int i = 0; i < count; i++) {
             b.append(" ");
-            b.append(entry.getKey());
+            b.append(names[i]);
             b.append("='");
-            String valueText = entry.getValue();
+            String valueText = values[i];
             if (valueText != null) {
-                b.append(CotEvent.escapeXmlText(entry.getValue()));
+                CotEvent.appendEscaped(b, valueText);
             }
             b.append("'");
         }
         if (_innerText != null) {
             b.append(">");
-            b.append(CotEvent.escapeXmlText(_innerText));
+            CotEvent.appendEscaped(b, _innerText);
             b.append("</");
             b.append(_elemName);
             b.append(">");
         } else {
-            synchronized (_children) {
-                if (_children.size() > 0) {
+            synchronized (this) {
+                if (_children != null && _children.size() > 0) {
                     b.append(">");
                     for (int i = 0; i < _children.size(); ++i) {
-                        CotDetail child = getChild(i);
+                        CotDetail child = _children.get(i);
                         if (child != null)
                             child.buildXml(b);
                     }
@@ -401,7 +460,7 @@ public class CotDetail implements Parcelable {
      * @return the number of attributes in a tag
      */
     public int getAttributeCount() {
-        return _attrs.size();
+        return _attrCount;
     }
 
     /**
@@ -410,10 +469,11 @@ public class CotDetail implements Parcelable {
      * @param source the parcel to extract out the CoT detail.
      */
     public CotDetail(final Parcel source) {
-        _elemName = source.readString();
+        _elemName = CotSymbolTable.intern(source.readString());
 
         int childCount = source.readInt();
         if (childCount > 0) {
+            _children = new ArrayList<>(childCount);
             do {
                 _children.add(CREATOR.createFromParcel(source));
             } while (--childCount > 0);
@@ -421,11 +481,15 @@ public class CotDetail implements Parcelable {
             _innerText = source.readString();
         }
 
-        int attrCount = source.readInt();
-        while (attrCount-- > 0) {
-            String name = source.readString();
-            String value = source.readString();
-            _attrs.put(name, value);
+        final int attrCount = source.readInt();
+        if (attrCount > 0) {
+            _attrNames = new String[attrCount];
+            _attrValues = new String[attrCount];
+            for (int i = 0; i < attrCount; i++) {
+                _attrNames[i] = CotSymbolTable.intern(source.readString());
+                _attrValues[i] = source.readString();
+            }
+            _attrCount = attrCount;
         }
     }
 
@@ -438,9 +502,11 @@ public class CotDetail implements Parcelable {
     public void writeToParcel(final Parcel dest, final int flags) {
         // name and inner text
         dest.writeString(_elemName);
-        synchronized (_children) {
-            dest.writeInt(_children.size());
-            if (_children.size() > 0) {
+        synchronized (this) {
+            final int childCount = (_children != null) ? _children.size()
+                    : 0;
+            dest.writeInt(childCount);
+            if (childCount > 0) {
                 for (CotDetail child : _children) {
                     child.writeToParcel(dest, flags);
                 }
@@ -450,11 +516,11 @@ public class CotDetail implements Parcelable {
         }
 
         // attributes
-        Set<Map.Entry<String, String>> entries = _attrs.entrySet();
-        dest.writeInt(entries.size());
-        for (Map.Entry<String, String> entry : entries) {
-            dest.writeString(entry.getKey());
-            dest.writeString(entry.getValue());
+        final int attrCount = _attrCount;
+        dest.writeInt(attrCount);
+        for (int i = 0; i < attrCount; i++) {
+            dest.writeString(_attrNames[i]);
+            dest.writeString(_attrValues[i]);
         }
     }
 
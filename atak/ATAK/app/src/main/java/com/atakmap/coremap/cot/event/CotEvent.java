@@ -5,6 +5,8 @@ import java.io.File;
 import java.io.OutputStreamWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 
@@ -31,10 +33,19 @@ public class CotEvent implements Parcelable {
     private final static int _OPTIONAL_ACCESS_BIT = 1 << 2;
     private final static int _OPTIONAL_QOS_BIT = 1 << 3;
 
-    final static CotContentHandler cotHandler = new CotContentHandler();
 
     public static final String TAG = "CotEvent";
-    static PrintWriter fileWriter = null;
+    static volatile PrintWriter fileWriter = null;
+
+    /** largest per-thread builder retained by {@link #toString()} */
+    private static final int MAX_CACHED_BUILDER_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> toStringBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(1024);
+        }
+    };
 
     // required
     private String _uid;
@@ -444,6 +455,33 @@ public class CotEvent implements Parcelable {
         this.buildXmlImpl(b);
     }
 
+    /**
+     * Encodes the well formed CoT message as UTF-8 directly into the
+     * specified buffer, starting at its current position. No intermediate
+     * string representation of the message is produced, allowing a single
+     * buffer to be reused for successive messages.
+     *
+     * @param buffer the buffer that the encoded message is written to
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the buffer does not have
+     *         sufficient space remaining for the message. The position of the
+     *         buffer is restored to its original value.
+     */
+    public int buildXml(final ByteBuffer buffer) {
+        final int start = buffer.position();
+        try {
+            final Utf8Appendable utf8 = new Utf8Appendable(buffer);
+            this.buildXmlImpl(utf8);
+            utf8.finish();
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buffer.position() - start;
+    }
+
     private void buildXmlImpl(Appendable b) throws IOException {
         b.append(
                 "<?xml version='1.0' encoding='UTF-8' standalone='yes'?><event");
@@ -453,7 +491,7 @@ public class CotEvent implements Parcelable {
             b.append("'");
         }
         b.append(" uid='");
-        b.append(escapeXmlText(_uid));
+        appendEscaped(b, _uid);
         b.append("' type='");
         b.append(_type);
         b.append("' time='");
@@ -497,19 +535,17 @@ public class CotEvent implements Parcelable {
      * @return a CoT Event that can either be valid or invalid.
      */
     public static CotEvent parse(final String xml) {
-        CotEvent e = cotHandler.parseXML(xml);
+        CotEvent e = CotContentHandler.get().parseXML(xml);
 
         //If the CotEvent is not valid, we should probably record it to a file if CotLogging is
-        // enabled.
-        synchronized (CotEvent.class) {
-            if (fileWriter != null) {
-                if (!e.isValid()) {
-                    try {
-                        fileWriter.println(xml);
-                    } catch (Exception ex) {
-                        // instead of synchronizing this to death, just catch the
-                        // potential npe.
-                    }
+        // enabled. Only contend for the lock if there is something to log.
+        if (fileWriter != null && !e.isValid()) {
+            synchronized (CotEvent.class) {
+                try {
+                    fileWriter.println(xml);
+                } catch (Exception ex) {
+                    // instead of synchronizing this to death, just catch the
+                    // potential npe.
                 }
             }
         }
@@ -518,9 +554,14 @@ public class CotEvent implements Parcelable {
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
+        final StringBuilder sb = toStringBuilder.get();
+        sb.setLength(0);
         buildXml(sb);
-        return sb.toString();
+        final String retval = sb.toString();
+        // do not hold on to the storage for an unusually large message
+        if (sb.capacity() > MAX_CACHED_BUILDER_CAPACITY)
+            toStringBuilder.remove();
+        return retval;
     }
 
     @Override
@@ -540,6 +581,53 @@ public class CotEvent implements Parcelable {
         return v.equals("") ? null : v;
     }
 
+    /**
+     * Appends the escaped form of the specified text. Equivalent to
+     * <code>b.append(escapeXmlText(text))</code> without creating the
+     * intermediate string.
+     */
+    static void appendEscaped(final Appendable b, final String text)
+            throws IOException {
+        if (text == null)
+            return;
+
+        final int len = text.length();
+        int run = 0;
+        for (int i = 0; i < len; ++i) {
+            final String entity;
+            switch (text.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '\'':
+                    entity = "&apos;";
+                    break;
+                case '\n':
+                    entity = "&#10;";
+                    break;
+                default:
+                    continue;
+            }
+            if (run < i)
+                b.append(text, run, i);
+            b.append(entity);
+            run = i + 1;
+        }
+        if (run == 0)
+            b.append(text);
+        else if (run < len)
+            b.append(text, run, len);
+    }
+
     public static String escapeXmlText(final String innerText) {
 
         if (innerText == null) {
@@ -766,4 +854,80 @@ public class CotEvent implements Parcelable {
         _access = access;
     }
 
+
+    /**
+     * Encodes appended characters as UTF-8 directly into a byte buffer.
+     * Unpaired surrogates are encoded as <code>'?'</code>, consistent with
+     * {@link String#getBytes(java.nio.charset.Charset)}.
+     */
+    final static class Utf8Appendable implements Appendable {
+        private final ByteBuffer buffer;
+        /** pending high surrogate */
+        private char high;
+
+        Utf8Appendable(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            if (csq == null)
+                csq = "null";
+            return this.append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            if (csq == null)
+                csq = "null";
+            for (int i = start; i < end; i++)
+                this.append(csq.charAt(i));
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            if (this.high != 0) {
+                final char h = this.high;
+                this.high = 0;
+                if (Character.isLowSurrogate(c)) {
+                    final int cp = Character.toCodePoint(h, c);
+                    this.buffer.put((byte) (0xF0 | (cp >> 18)));
+                    this.buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    this.buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    this.buffer.put((byte) (0x80 | (cp & 0x3F)));
+                    return this;
+                }
+                // unpaired surrogate, replace consistent with String.getBytes
+                this.buffer.put((byte) '?');
+            }
+
+            if (c < 0x80) {
+                this.buffer.put((byte) c);
+            } else if (c < 0x800) {
+                this.buffer.put((byte) (0xC0 | (c >> 6)));
+                this.buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c)) {
+                this.high = c;
+            } else if (Character.isLowSurrogate(c)) {
+                this.buffer.put((byte) '?');
+            } else {
+                this.buffer.put((byte) (0xE0 | (c >> 12)));
+                this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                this.buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+            return this;
+        }
+
+        /**
+         * Encodes a trailing unpaired high surrogate, if any. Must be invoked
+         * once all characters have been appended.
+         */
+        void finish() {
+            if (this.high != 0) {
+                this.high = 0;
+                this.buffer.put((byte) '?');
+            }
+        }
+    }
 }
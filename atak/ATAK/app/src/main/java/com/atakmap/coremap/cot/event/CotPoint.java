@@ -135,18 +135,27 @@ public class CotPoint implements Parcelable {
      */
     public void buildXml(Appendable b) throws IOException {
         b.append("<point lat='");
-        b.append(String.valueOf(decimate(_lat, PRECISION_7)));
+        appendDouble(b, decimate(_lat, PRECISION_7));
         b.append("' lon='");
-        b.append(String.valueOf(decimate(_lon, PRECISION_7)));
+        appendDouble(b, decimate(_lon, PRECISION_7));
         b.append("' hae='");
-        b.append(String.valueOf(decimate(_hae, PRECISION_4)));
+        appendDouble(b, decimate(_hae, PRECISION_4));
         b.append("' ce='");
-        b.append(String.valueOf(decimate(_ce, PRECISION_1)));
+        appendDouble(b, decimate(_ce, PRECISION_1));
         b.append("' le='");
-        b.append(String.valueOf(decimate(_le, PRECISION_1)));
+        appendDouble(b, decimate(_le, PRECISION_1));
         b.append("' />");
     }
 
+    private static void appendDouble(Appendable b, double v)
+            throws IOException {
+        // avoid the intermediate string for the common case
+        if (b instanceof StringBuilder)
+            ((StringBuilder) b).append(v);
+        else
+            b.append(String.valueOf(v));
+    }
+
     /**
      * Get the latitude
      * 
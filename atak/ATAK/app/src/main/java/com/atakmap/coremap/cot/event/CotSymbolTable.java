@@ -0,0 +1,64 @@
+package com.atakmap.coremap.cot.event;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared table of element and attribute names. CoT traffic repeats a small
+ * vocabulary of names; resolving names against the table allows all retained
+ * details to share a single instance of each name rather than each parse
+ * producing its own copy.
+ *
+ * <P>The table is bounded. Once full, names that are not already present are
+ * returned as-is, so arbitrary input cannot grow the table without limit.
+ *
+ * <P>This class is thread-safe.
+ */
+final class CotSymbolTable {
+
+    /** maximum number of distinct names retained */
+    private final static int MAX_SYMBOLS = 4096;
+
+    private final static ConcurrentHashMap<String, String> symbols = new ConcurrentHashMap<>();
+
+    static {
+        final String[] common = new String[] {
+                "detail", "contact", "callsign", "endpoint", "phone",
+                "__group", "name", "role", "status", "battery", "readiness",
+                "track", "speed", "course", "takv", "device", "platform",
+                "os", "version", "precisionlocation", "geopointsrc",
+                "altsrc", "uid", "Droid", "link", "relation", "type",
+                "parent_callsign", "production_time", "point", "remarks",
+                "source", "to", "time", "color", "argb", "value",
+                "usericon", "iconsetpath", "model", "strokeColor",
+                "strokeWeight", "fillColor", "labels_on", "archive",
+                "__chat", "chatgrp", "hierarchy", "ce_human_input",
+                "height", "height_unit", "__video", "url", "sensor",
+                "shape", "ellipse", "polyline", "vertex", "lat", "lon",
+                "hae", "ce", "le",
+        };
+        for (String s : common)
+            symbols.put(s, s);
+    }
+
+    private CotSymbolTable() {
+    }
+
+    /**
+     * Returns the canonical instance of the specified name.
+     *
+     * @param name  A name, may be <code>null</code>
+     * @return  The shared instance equal to <code>name</code>, or
+     *          <code>name</code> itself if the table is full
+     */
+    static String intern(final String name) {
+        if (name == null)
+            return null;
+        final String s = symbols.get(name);
+        if (s != null)
+            return s;
+        if (symbols.size() >= MAX_SYMBOLS)
+            return name;
+        final String existing = symbols.putIfAbsent(name, name);
+        return (existing != null) ? existing : name;
+    }
+}
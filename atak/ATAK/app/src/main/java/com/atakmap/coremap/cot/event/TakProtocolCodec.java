@@ -0,0 +1,776 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes and decodes {@link CotEvent} instances to and from the TAK
+ * Protocol Version 1 protobuf payload (<code>TakMessage</code>) described by
+ * the <code>takproto</code> message definitions.
+ *
+ * <P>Decoding maps the strongly typed fields directly into the
+ * {@link CotEvent}; only the <code>xmlDetail</code> remainder, if any, is
+ * parsed as XML. Encoding moves the <code>contact</code>,
+ * <code>__group</code>, <code>precisionlocation</code>, <code>status</code>,
+ * <code>takv</code> and <code>track</code> elements into their typed messages
+ * when they can be represented losslessly and serializes the remaining
+ * detail elements into <code>xmlDetail</code>.
+ *
+ * <P>The wire format is implemented directly to avoid requiring a protobuf
+ * runtime for the small, fixed message set.
+ */
+public final class TakProtocolCodec {
+
+    public static final String TAG = "TakProtocolCodec";
+
+    /** TAK Protocol header magic byte */
+    public static final int MAGIC = 0xbf;
+
+    /** The TAK Protocol version implemented by this codec */
+    public static final int VERSION = 1;
+
+    // wire types
+    private static final int WT_VARINT = 0;
+    private static final int WT_FIXED64 = 1;
+    private static final int WT_LENGTH_DELIMITED = 2;
+    private static final int WT_FIXED32 = 5;
+
+    // TakMessage
+    private static final int TAKMESSAGE_COTEVENT = 2;
+
+    // CotEvent
+    private static final int EVENT_TYPE = 1;
+    private static final int EVENT_ACCESS = 2;
+    private static final int EVENT_QOS = 3;
+    private static final int EVENT_OPEX = 4;
+    private static final int EVENT_UID = 5;
+    private static final int EVENT_SEND_TIME = 6;
+    private static final int EVENT_START_TIME = 7;
+    private static final int EVENT_STALE_TIME = 8;
+    private static final int EVENT_HOW = 9;
+    private static final int EVENT_LAT = 10;
+    private static final int EVENT_LON = 11;
+    private static final int EVENT_HAE = 12;
+    private static final int EVENT_CE = 13;
+    private static final int EVENT_LE = 14;
+    private static final int EVENT_DETAIL = 15;
+
+    // Detail
+    private static final int DETAIL_XML = 1;
+    private static final int DETAIL_CONTACT = 2;
+    private static final int DETAIL_GROUP = 3;
+    private static final int DETAIL_PRECISIONLOCATION = 4;
+    private static final int DETAIL_STATUS = 5;
+    private static final int DETAIL_TAKV = 6;
+    private static final int DETAIL_TRACK = 7;
+
+    /**
+     * Typed detail messages consisting only of string fields; the element
+     * name followed by the attribute names in field order. The corresponding
+     * <code>Detail</code> field numbers are in STRING_DETAIL_FIELDS.
+     */
+    private static final String[][] STRING_DETAILS = new String[][] {
+            {
+                    "contact", "endpoint", "callsign"
+            },
+            {
+                    "__group", "name", "role"
+            },
+            {
+                    "precisionlocation", "geopointsrc", "altsrc"
+            },
+            {
+                    "takv", "device", "platform", "os", "version"
+            },
+    };
+    private static final int[] STRING_DETAIL_FIELDS = new int[] {
+            DETAIL_CONTACT,
+            DETAIL_GROUP,
+            DETAIL_PRECISIONLOCATION,
+            DETAIL_TAKV,
+    };
+
+    private TakProtocolCodec() {
+    }
+
+    /**************************************************************************/
+    // Decode
+
+    /**
+     * Decodes a mesh network TAK Protocol message; the header (magic byte,
+     * version, magic byte) followed by the <code>TakMessage</code> payload.
+     *
+     * @param data  The message
+     * @return  The decoded event, or <code>null</code> if the message is not a
+     *          TAK Protocol Version 1 message or does not contain an event.
+     *          Otherwise follows the semantics of {@link #decode(byte[], int, int)}
+     */
+    public static CotEvent decodeMeshMessage(final byte[] data) {
+        if (data == null || data.length < 3 || (data[0] & 0xFF) != MAGIC)
+            return null;
+        final Reader r = new Reader(data, 1, data.length - 1);
+        final long version = r.varint();
+        if (version != VERSION || r.pos >= r.limit
+                || (data[r.pos] & 0xFF) != MAGIC)
+            return null;
+        r.pos++;
+        return decode(data, r.pos, r.limit - r.pos);
+    }
+
+    /**
+     * Decodes a <code>TakMessage</code> payload.
+     *
+     * @param data  The buffer
+     * @param off   The offset of the payload in the buffer
+     * @param len   The length of the payload
+     * @return  The decoded event; as with {@link CotEvent#parse(String)}, the
+     *          event may be invalid if the content was malformed. Returns
+     *          <code>null</code> if the message does not contain an event.
+     */
+    public static CotEvent decode(final byte[] data, final int off,
+            final int len) {
+        final Reader r = new Reader(data, off, len);
+        CotEvent event = null;
+        try {
+            while (r.pos < r.limit) {
+                final int tag = (int) r.varint();
+                if ((tag >>> 3) == TAKMESSAGE_COTEVENT
+                        && (tag & 0x7) == WT_LENGTH_DELIMITED) {
+                    final int n = r.length();
+                    event = new CotEvent();
+                    decodeEvent(new Reader(data, r.pos, n), event);
+                    r.pos += n;
+                } else {
+                    // TakControl and unknown fields are not applicable
+                    r.skip(tag & 0x7);
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "error decoding TAK message", e);
+            if (event == null)
+                event = new CotEvent();
+        }
+        return event;
+    }
+
+    private static void decodeEvent(final Reader r, final CotEvent event) {
+        double lat = 0d;
+        double lon = 0d;
+        double hae = 0d;
+        double ce = 0d;
+        double le = 0d;
+
+        // proto3 omits default values; match the defaults that would be
+        // produced by parsing the XML
+        event.setVersion(CotEvent.VERSION_2_0);
+        event.setHow("");
+        event.setTime(new CoordinatedTime(0L));
+        event.setStart(new CoordinatedTime(0L));
+        event.setStale(new CoordinatedTime(0L));
+
+        while (r.pos < r.limit) {
+            final int tag = (int) r.varint();
+            if ((tag & 0x7) != eventWireType(tag >>> 3)) {
+                r.skip(tag & 0x7);
+                continue;
+            }
+            switch (tag >>> 3) {
+                case EVENT_TYPE:
+                    event.setType(r.string());
+                    break;
+                case EVENT_ACCESS:
+                    event.setAccess(r.string());
+                    break;
+                case EVENT_QOS:
+                    event.setQos(r.string());
+                    break;
+                case EVENT_OPEX:
+                    event.setOpex(r.string());
+                    break;
+                case EVENT_UID:
+                    event.setUID(r.string());
+                    break;
+                case EVENT_SEND_TIME:
+                    event.setTime(new CoordinatedTime(r.varint()));
+                    break;
+                case EVENT_START_TIME:
+                    event.setStart(new CoordinatedTime(r.varint()));
+                    break;
+                case EVENT_STALE_TIME:
+                    event.setStale(new CoordinatedTime(r.varint()));
+                    break;
+                case EVENT_HOW:
+                    event.setHow(r.string());
+                    break;
+                case EVENT_LAT:
+                    lat = r.fixed64();
+                    break;
+                case EVENT_LON:
+                    lon = r.fixed64();
+                    break;
+                case EVENT_HAE:
+                    hae = r.fixed64();
+                    break;
+                case EVENT_CE:
+                    ce = r.fixed64();
+                    break;
+                case EVENT_LE:
+                    le = r.fixed64();
+                    break;
+                case EVENT_DETAIL: {
+                    final int n = r.length();
+                    event.setDetail(
+                            decodeDetail(new Reader(r.buf, r.pos, n)));
+                    r.pos += n;
+                    break;
+                }
+                default:
+                    r.skip(tag & 0x7);
+                    break;
+            }
+        }
+
+        event.setPoint(new CotPoint(lat, lon, hae, ce, le));
+    }
+
+    /**
+     * Returns the expected wire type for the <code>CotEvent</code> field or
+     * <code>-1</code> if the field is unknown.
+     */
+    private static int eventWireType(int field) {
+        switch (field) {
+            case EVENT_TYPE:
+            case EVENT_ACCESS:
+            case EVENT_QOS:
+            case EVENT_OPEX:
+            case EVENT_UID:
+            case EVENT_HOW:
+            case EVENT_DETAIL:
+                return WT_LENGTH_DELIMITED;
+            case EVENT_SEND_TIME:
+            case EVENT_START_TIME:
+            case EVENT_STALE_TIME:
+                return WT_VARINT;
+            case EVENT_LAT:
+            case EVENT_LON:
+            case EVENT_HAE:
+            case EVENT_CE:
+            case EVENT_LE:
+                return WT_FIXED64;
+            default:
+                return -1;
+        }
+    }
+
+    private static CotDetail decodeDetail(final Reader r) {
+        String xmlDetail = null;
+        CotDetail contact = null;
+        CotDetail group = null;
+        CotDetail precisionLocation = null;
+        CotDetail status = null;
+        CotDetail takv = null;
+        CotDetail track = null;
+
+        while (r.pos < r.limit) {
+            final int tag = (int) r.varint();
+            final int field = tag >>> 3;
+            if ((tag & 0x7) != WT_LENGTH_DELIMITED) {
+                r.skip(tag & 0x7);
+                continue;
+            } else if (field == DETAIL_XML) {
+                xmlDetail = r.string();
+                continue;
+            } else if (field < DETAIL_CONTACT || field > DETAIL_TRACK) {
+                r.skip(tag & 0x7);
+                continue;
+            }
+
+            final int n = r.length();
+            final Reader sub = new Reader(r.buf, r.pos, n);
+            r.pos += n;
+            switch (field) {
+                case DETAIL_CONTACT:
+                    contact = decodeStringDetail(sub, STRING_DETAILS[0]);
+                    break;
+                case DETAIL_GROUP:
+                    group = decodeStringDetail(sub, STRING_DETAILS[1]);
+                    break;
+                case DETAIL_PRECISIONLOCATION:
+                    precisionLocation = decodeStringDetail(sub,
+                            STRING_DETAILS[2]);
+                    break;
+                case DETAIL_TAKV:
+                    takv = decodeStringDetail(sub, STRING_DETAILS[3]);
+                    break;
+                case DETAIL_STATUS: {
+                    long battery = 0L;
+                    while (sub.pos < sub.limit) {
+                        final int t = (int) sub.varint();
+                        if (t == ((1 << 3) | WT_VARINT))
+                            battery = sub.varint() & 0xFFFFFFFFL;
+                        else
+                            sub.skip(t & 0x7);
+                    }
+                    status = new CotDetail("status");
+                    status.setAttribute("battery", String.valueOf(battery));
+                    break;
+                }
+                case DETAIL_TRACK: {
+                    double speed = 0d;
+                    double course = 0d;
+                    while (sub.pos < sub.limit) {
+                        final int t = (int) sub.varint();
+                        if (t == ((1 << 3) | WT_FIXED64))
+                            speed = sub.fixed64();
+                        else if (t == ((2 << 3) | WT_FIXED64))
+                            course = sub.fixed64();
+                        else
+                            sub.skip(t & 0x7);
+                    }
+                    track = new CotDetail("track");
+                    track.setAttribute("speed", formatDouble(speed));
+                    track.setAttribute("course", formatDouble(course));
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        // only the remainder is handled as XML
+        CotDetail detail = null;
+        if (xmlDetail != null && !xmlDetail.isEmpty()) {
+            final CotEvent parsed = CotContentHandler.get()
+                    .parseXML("<detail>" + xmlDetail + "</detail>");
+            detail = parsed.getDetail();
+        }
+        if (detail == null)
+            detail = new CotDetail("detail");
+
+        // per the protocol, elements present in xmlDetail take precedence
+        // over their typed equivalents
+        mergeDetail(detail, contact);
+        mergeDetail(detail, group);
+        mergeDetail(detail, precisionLocation);
+        mergeDetail(detail, status);
+        mergeDetail(detail, takv);
+        mergeDetail(detail, track);
+
+        return detail;
+    }
+
+    private static CotDetail decodeStringDetail(final Reader r,
+            final String[] spec) {
+        final String[] values = new String[spec.length - 1];
+        while (r.pos < r.limit) {
+            final int t = (int) r.varint();
+            final int f = t >>> 3;
+            if (f >= 1 && f < spec.length
+                    && (t & 0x7) == WT_LENGTH_DELIMITED)
+                values[f - 1] = r.string();
+            else
+                r.skip(t & 0x7);
+        }
+        final CotDetail retval = new CotDetail(spec[0]);
+        for (int i = 0; i < values.length; i++) {
+            // empty strings are the proto3 default, the only attribute that
+            // is documented as optional is the contact endpoint
+            if (values[i] == null)
+                values[i] = "";
+            if (values[i].isEmpty() && spec[0].equals("contact")
+                    && spec[i + 1].equals("endpoint"))
+                continue;
+            retval.setAttribute(spec[i + 1], values[i]);
+        }
+        return retval;
+    }
+
+    private static void mergeDetail(CotDetail detail, CotDetail typed) {
+        if (typed == null)
+            return;
+        if (detail.getFirstChildByName(0, typed.getElementName()) != null)
+            return;
+        detail.addChild(typed);
+    }
+
+    /**************************************************************************/
+    // Encode
+
+    /**
+     * Encodes the event as a mesh network TAK Protocol message; the header
+     * (magic byte, version, magic byte) followed by the
+     * <code>TakMessage</code> payload.
+     *
+     * @param event The event
+     * @return  The encoded message
+     * @throws CotIllegalException if the event is not valid
+     */
+    public static byte[] encodeMeshMessage(final CotEvent event)
+            throws CotIllegalException {
+        final Writer w = new Writer(256);
+        w.write(MAGIC);
+        w.varint(VERSION);
+        w.write(MAGIC);
+        encodeImpl(event, w);
+        return w.toByteArray();
+    }
+
+    /**
+     * Encodes the event as a <code>TakMessage</code> payload.
+     *
+     * @param event The event
+     * @return  The encoded payload
+     * @throws CotIllegalException if the event is not valid
+     */
+    public static byte[] encode(final CotEvent event)
+            throws CotIllegalException {
+        final Writer w = new Writer(256);
+        encodeImpl(event, w);
+        return w.toByteArray();
+    }
+
+    private static void encodeImpl(final CotEvent event, final Writer out)
+            throws CotIllegalException {
+        if (event == null || !event.isValid())
+            throw new CotIllegalException("cannot encode invalid event");
+
+        final Writer w = new Writer(256);
+        w.string(EVENT_TYPE, event.getType());
+        w.string(EVENT_ACCESS, event.getAccess());
+        w.string(EVENT_QOS, event.getQos());
+        w.string(EVENT_OPEX, event.getOpex());
+        w.string(EVENT_UID, event.getUID());
+        w.uint64(EVENT_SEND_TIME, event.getTime().getMilliseconds());
+        w.uint64(EVENT_START_TIME, event.getStart().getMilliseconds());
+        w.uint64(EVENT_STALE_TIME, event.getStale().getMilliseconds());
+        w.string(EVENT_HOW, event.getHow());
+
+        final CotPoint point = event.getCotPoint();
+        w.fixed64(EVENT_LAT, point.getLat());
+        w.fixed64(EVENT_LON, point.getLon());
+        w.fixed64(EVENT_HAE, point.getHae());
+        w.fixed64(EVENT_CE, point.getCe());
+        w.fixed64(EVENT_LE, point.getLe());
+
+        final CotDetail detail = event.getDetail();
+        if (detail != null && (detail.childCount() > 0
+                || detail.getInnerText() != null))
+            w.message(EVENT_DETAIL, encodeDetail(detail));
+
+        out.message(TAKMESSAGE_COTEVENT, w);
+    }
+
+    private static Writer encodeDetail(final CotDetail detail) {
+        final Writer w = new Writer(128);
+        final List<CotDetail> children = detail.getChildren();
+        final boolean[] converted = new boolean[children.size()];
+
+        for (int i = 0; i < STRING_DETAILS.length; i++) {
+            final String[] spec = STRING_DETAILS[i];
+            final int idx = findConvertible(children, spec[0], converted);
+            if (idx < 0)
+                continue;
+            final CotDetail d = children.get(idx);
+            if (!hasOnlyAttributes(d, spec, spec[0].equals("contact")
+                    ? new String[] {
+                            "endpoint"
+                    }
+                    : null))
+                continue;
+            final Writer sub = new Writer(64);
+            for (int j = 1; j < spec.length; j++)
+                sub.string(j, d.getAttribute(spec[j]));
+            w.message(STRING_DETAIL_FIELDS[i], sub);
+            converted[idx] = true;
+        }
+
+        int idx = findConvertible(children, "status", converted);
+        if (idx >= 0) {
+            final CotDetail d = children.get(idx);
+            final long battery = parseUnsignedInt(d.getAttribute("battery"));
+            if (d.getAttributeCount() == 1 && battery >= 0L) {
+                final Writer sub = new Writer(8);
+                sub.uint64(1, battery);
+                w.message(DETAIL_STATUS, sub);
+                converted[idx] = true;
+            }
+        }
+
+        idx = findConvertible(children, "track", converted);
+        if (idx >= 0) {
+            final CotDetail d = children.get(idx);
+            final double speed = parseDouble(d.getAttribute("speed"));
+            final double course = parseDouble(d.getAttribute("course"));
+            // only use the typed message if decoding reproduces the text
+            if (d.getAttributeCount() == 2 && !Double.isNaN(speed)
+                    && !Double.isNaN(course)
+                    && formatDouble(speed).equals(d.getAttribute("speed"))
+                    && formatDouble(course)
+                            .equals(d.getAttribute("course"))) {
+                final Writer sub = new Writer(18);
+                sub.fixed64(1, speed);
+                sub.fixed64(2, course);
+                w.message(DETAIL_TRACK, sub);
+                converted[idx] = true;
+            }
+        }
+
+        // serialize the remainder
+        final StringBuilder xml = new StringBuilder();
+        if (detail.getInnerText() != null) {
+            xml.append(CotEvent.escapeXmlText(detail.getInnerText()));
+        } else {
+            for (int i = 0; i < children.size(); i++) {
+                if (!converted[i])
+                    children.get(i).buildXml(xml);
+            }
+        }
+        if (xml.length() > 0)
+            w.string(DETAIL_XML, xml.toString());
+
+        return w;
+    }
+
+    /**
+     * Returns the index of the child with the specified name if it is the
+     * only such child and it is a leaf node; <code>-1</code> otherwise.
+     */
+    private static int findConvertible(List<CotDetail> children, String name,
+            boolean[] converted) {
+        int retval = -1;
+        for (int i = 0; i < children.size(); i++) {
+            final CotDetail c = children.get(i);
+            if (!name.equals(c.getElementName()))
+                continue;
+            if (retval >= 0 || converted[i])
+                return -1;
+            retval = i;
+        }
+        if (retval >= 0) {
+            final CotDetail c = children.get(retval);
+            if (c.childCount() > 0 || c.getInnerText() != null)
+                return -1;
+        }
+        return retval;
+    }
+
+    /**
+     * Returns <code>true</code> if the detail has all of the attributes in
+     * the spec, excluding those that are optional, and no others.
+     */
+    private static boolean hasOnlyAttributes(CotDetail d, String[] spec,
+            String[] optional) {
+        int present = 0;
+        for (int i = 1; i < spec.length; i++) {
+            if (d.getAttribute(spec[i]) != null) {
+                present++;
+            } else if (optional == null
+                    || !Arrays.asList(optional).contains(spec[i])) {
+                return false;
+            }
+        }
+        if (present != d.getAttributeCount())
+            return false;
+        // an empty optional value could not be distinguished from absent
+        if (optional != null) {
+            for (String o : optional) {
+                final String v = d.getAttribute(o);
+                if (v != null && v.isEmpty())
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseUnsignedInt(String s) {
+        if (s == null)
+            return -1L;
+        try {
+            final long v = Long.parseLong(s);
+            // must round trip exactly
+            if (v < 0L || v > 0xFFFFFFFFL || !String.valueOf(v).equals(s))
+                return -1L;
+            return v;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Formats a decoded value as attribute text. Whole numbers are written
+     * without a fraction, e.g. <code>12</code> rather than <code>12.0</code>.
+     * Encoding only uses the typed message for values whose text matches
+     * this format, so decoding reproduces the original attribute text.
+     */
+    static String formatDouble(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15d
+                && !(v == 0d && 1d / v < 0d))
+            return Long.toString((long) v);
+        return Double.toString(v);
+    }
+
+    private static double parseDouble(String s) {
+        if (s == null)
+            return Double.NaN;
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**************************************************************************/
+
+    private final static class Reader {
+        final byte[] buf;
+        final int limit;
+        int pos;
+
+        Reader(byte[] buf, int off, int len) {
+            if (off < 0 || len < 0 || off + len > buf.length)
+                throw new IllegalArgumentException("invalid buffer range");
+            this.buf = buf;
+            this.pos = off;
+            this.limit = off + len;
+        }
+
+        long varint() {
+            long result = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= limit)
+                    throw new IllegalArgumentException("truncated varint");
+                final int b = buf[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return result;
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+
+        double fixed64() {
+            if (pos + 8 > limit)
+                throw new IllegalArgumentException("truncated fixed64");
+            long bits = 0L;
+            for (int i = 0; i < 8; i++)
+                bits |= (long) (buf[pos++] & 0xFF) << (8 * i);
+            return Double.longBitsToDouble(bits);
+        }
+
+        int length() {
+            final long n = varint();
+            if (n < 0 || pos + n > limit)
+                throw new IllegalArgumentException("invalid length");
+            return (int) n;
+        }
+
+        String string() {
+            final int n = length();
+            final String s = new String(buf, pos, n,
+                    FileSystemUtils.UTF8_CHARSET);
+            pos += n;
+            return s;
+        }
+
+        void skip(int wireType) {
+            switch (wireType) {
+                case WT_VARINT:
+                    varint();
+                    break;
+                case WT_FIXED64:
+                    if (pos + 8 > limit)
+                        throw new IllegalArgumentException("truncated field");
+                    pos += 8;
+                    break;
+                case WT_LENGTH_DELIMITED:
+                    pos += length();
+                    break;
+                case WT_FIXED32:
+                    if (pos + 4 > limit)
+                        throw new IllegalArgumentException("truncated field");
+                    pos += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "unsupported wire type " + wireType);
+            }
+        }
+    }
+
+    private final static class Writer {
+        byte[] buf;
+        int len;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void ensure(int n) {
+            if (len + n > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
+
+        void varint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0L) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        void tag(int field, int wireType) {
+            varint(((long) field << 3) | wireType);
+        }
+
+        void string(int field, String s) {
+            // proto3 does not encode default values
+            if (s == null || s.isEmpty())
+                return;
+            final byte[] b = s.getBytes(FileSystemUtils.UTF8_CHARSET);
+            tag(field, WT_LENGTH_DELIMITED);
+            varint(b.length);
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, len, b.length);
+            len += b.length;
+        }
+
+        void uint64(int field, long v) {
+            if (v == 0L)
+                return;
+            tag(field, WT_VARINT);
+            varint(v);
+        }
+
+        void fixed64(int field, double d) {
+            // negative zero is not the default value
+            final long bits = Double.doubleToRawLongBits(d);
+            if (bits == 0L)
+                return;
+            tag(field, WT_FIXED64);
+            ensure(8);
+            for (int i = 0; i < 8; i++)
+                buf[len++] = (byte) (bits >>> (8 * i));
+        }
+
+        void message(int field, Writer m) {
+            tag(field, WT_LENGTH_DELIMITED);
+            varint(m.len);
+            ensure(m.len);
+            System.arraycopy(m.buf, 0, buf, len, m.len);
+            len += m.len;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+    }
+}
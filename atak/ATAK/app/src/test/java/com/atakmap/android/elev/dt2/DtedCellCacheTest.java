@@ -0,0 +1,197 @@
+
+package com.atakmap.android.elev.dt2;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class DtedCellCacheTest {
+
+    /**
+     * Writes a DTED file with the specified posts, indexed by longitude line
+     * then latitude point.
+     */
+    private static File createCell(short[][] posts) throws IOException {
+        final File f = File.createTempFile("cell", ".dt1");
+        f.deleteOnExit();
+        writeCell(f, posts);
+        return f;
+    }
+
+    private static void writeCell(File f, short[][] posts)
+            throws IOException {
+        final int lngLines = posts.length;
+        final int latPoints = posts[0].length;
+        final byte[] header = new byte[3428];
+        final byte[] counts = String.format("%04d%04d", lngLines, latPoints)
+                .getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(counts, 0, header, 47, counts.length);
+
+        try (OutputStream out = new FileOutputStream(f)) {
+            out.write(header);
+            for (short[] line : posts) {
+                final byte[] record = new byte[8 + latPoints * 2 + 4];
+                for (int y = 0; y < latPoints; y++) {
+                    record[8 + y * 2] = (byte) (line[y] >> 8);
+                    record[8 + y * 2 + 1] = (byte) line[y];
+                }
+                out.write(record);
+            }
+        }
+    }
+
+    @Test
+    public void test_load_and_interpolate() throws IOException {
+        final File f = createCell(new short[][] {
+                {
+                        0, 10, 20
+                },
+                {
+                        100, 110, 120
+                },
+        });
+        final DtedCellCache.Cell cell = DtedCellCache.load(f);
+        assertEquals(2, cell.lngLines);
+        assertEquals(3, cell.latPoints);
+
+        // corners
+        assertEquals(0d, cell.getHeight(0d, 0d), 0d);
+        assertEquals(20d, cell.getHeight(1d, 0d), 0d);
+        assertEquals(100d, cell.getHeight(0d, 1d), 0d);
+        assertEquals(120d, cell.getHeight(1d, 1d), 0d);
+
+        // bilinear
+        assertEquals(55d, cell.getHeight(0.25d, 0.5d), 1e-9);
+        assertEquals(65d, cell.getHeight(0.75d, 0.5d), 1e-9);
+    }
+
+    @Test
+    public void test_signed_magnitude_and_void() throws IOException {
+        final File f = createCell(new short[][] {
+                {
+                        (short) 0x8005, (short) 0x8005
+                },
+                {
+                        (short) 0x8005, (short) 0xFFFF
+                },
+        });
+        final DtedCellCache.Cell cell = DtedCellCache.load(f);
+        assertEquals(-5d, cell.getHeight(0d, 0d), 0d);
+        assertTrue(Double.isNaN(cell.getHeight(1d, 1d)));
+    }
+
+    @Test
+    public void test_cache_shared_and_bounded() throws IOException {
+        final short[][] posts = new short[][] {
+                {
+                        1, 2
+                },
+                {
+                        3, 4
+                },
+        };
+        final File a = createCell(posts);
+        final File b = createCell(posts);
+
+        // budget for a single cell
+        final DtedCellCache cache = new DtedCellCache(8L);
+        final DtedCellCache.Cell cellA = cache.get(a);
+        assertSame(cellA, cache.get(a));
+        assertEquals(8L, cache.getSize());
+
+        final DtedCellCache.Cell cellB = cache.get(b);
+        assertNotSame(cellA, cellB);
+        assertEquals(8L, cache.getSize());
+
+        // 'a' was evicted
+        assertNotSame(cellA, cache.get(a));
+
+        cache.setBudget(16L);
+        assertSame(cache.get(b), cache.get(b));
+        assertEquals(16L, cache.getSize());
+
+        cache.clear();
+        assertEquals(0L, cache.getSize());
+    }
+
+    @Test
+    public void test_modified_file_reloaded() throws IOException {
+        final File f = createCell(new short[][] {
+                {
+                        1, 2
+                },
+                {
+                        3, 4
+                },
+        });
+        final DtedCellCache cache = new DtedCellCache(
+                DtedCellCache.DEFAULT_BUDGET);
+        final DtedCellCache.Cell cell = cache.get(f);
+        assertEquals(2, cell.latPoints);
+        assertSame(cell, cache.get(f));
+
+        // replaced in place
+        writeCell(f, new short[][] {
+                {
+                        10, 20, 30
+                },
+                {
+                        40, 50, 60
+                },
+        });
+        assertTrue(f.setLastModified(f.lastModified() + 2000L));
+
+        final DtedCellCache.Cell reloaded = cache.get(f);
+        assertNotSame(cell, reloaded);
+        assertEquals(3, reloaded.latPoints);
+        assertEquals(60d, reloaded.getHeight(1d, 1d), 0d);
+
+        // the previous version was evicted
+        assertEquals(12L, cache.getSize());
+    }
+
+    @Test
+    public void test_cell_exceeds_budget() throws IOException {
+        final int lngLines = 40;
+        final int latPoints = 3;
+        final short[][] posts = new short[lngLines][latPoints];
+        for (int x = 0; x < lngLines; x++) {
+            for (int y = 0; y < latPoints; y++)
+                posts[x][y] = (short) (x * 10 + y);
+        }
+        final File f = createCell(posts);
+        final DtedCellCache.Cell loaded = DtedCellCache.load(f);
+
+        // the cell is 240 bytes; blocks are read as lines are accessed
+        final DtedCellCache cache = new DtedCellCache(160L);
+        final DtedCellCache.Cell cell = cache.get(f);
+        assertEquals(lngLines, cell.lngLines);
+        assertEquals(latPoints, cell.latPoints);
+        assertEquals(0L, cache.getSize());
+
+        for (int i = 0; i <= 20; i++) {
+            final double lngRatio = i / 20d;
+            for (int j = 0; j <= 4; j++) {
+                final double latRatio = j / 4d;
+                assertEquals(loaded.getHeight(latRatio, lngRatio),
+                        cell.getHeight(latRatio, lngRatio), 1e-9);
+            }
+        }
+        assertEquals(390d, cell.getHeight(0d, 1d), 0d);
+        assertTrue(cache.getSize() > 0L);
+        assertTrue(cache.getSize() <= 160L);
+    }
+
+    @Test(expected = IOException.class)
+    public void test_invalid_file() throws IOException {
+        final File f = File.createTempFile("cell", ".dt1");
+        f.deleteOnExit();
+        new DtedCellCache(DtedCellCache.DEFAULT_BUDGET).get(f);
+    }
+}
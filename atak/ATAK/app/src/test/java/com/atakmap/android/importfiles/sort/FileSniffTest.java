@@ -0,0 +1,150 @@
+
+package com.atakmap.android.importfiles.sort;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class FileSniffTest {
+
+    private static File createFile(String suffix, byte[] content)
+            throws IOException {
+        final File f = File.createTempFile("sniff", suffix);
+        f.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(f)) {
+            out.write(content);
+        }
+        return f;
+    }
+
+    @Test
+    public void test_header() throws IOException {
+        final byte[] content = "<?xml version=\"1.0\"?><kml>"
+                .getBytes(StandardCharsets.UTF_8);
+        final FileSniff sniff = new FileSniff(createFile(".kml", content));
+        assertArrayEquals(content, sniff.getHeader());
+        assertSame(sniff.getHeader(), sniff.getHeader());
+        assertTrue(ImportKMLSort.isKml(sniff.getHeaderStream()));
+        assertFalse(sniff.isZip());
+        assertTrue(sniff.getZipEntries().isEmpty());
+    }
+
+    @Test
+    public void test_header_truncated() throws IOException {
+        final byte[] content = new byte[FileSniff.HEADER_SIZE * 2];
+        Arrays.fill(content, (byte) 'a');
+        final FileSniff sniff = new FileSniff(createFile(".txt", content));
+        assertEquals(FileSniff.HEADER_SIZE, sniff.getHeader().length);
+    }
+
+    @Test
+    public void test_zip_entries() throws IOException {
+        final File f = File.createTempFile("sniff", ".zip");
+        f.deleteOnExit();
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new FileOutputStream(f))) {
+            zos.putNextEntry(new ZipEntry("MANIFEST/manifest.xml"));
+            zos.write(new byte[] {
+                    1, 2, 3
+            });
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("files/Doc.KML"));
+            zos.closeEntry();
+        }
+
+        final FileSniff sniff = new FileSniff(f);
+        assertTrue(sniff.isZip());
+        assertEquals(Arrays.asList("MANIFEST/manifest.xml", "files/Doc.KML"),
+                sniff.getZipEntries());
+        assertTrue(sniff.isZipListed());
+        assertEquals(FileSniff.ZipEntryMatch.FOUND,
+                sniff.hasZipEntry("manifest.xml"));
+        assertEquals(FileSniff.ZipEntryMatch.FOUND, sniff.hasZipEntry(".kml"));
+        assertEquals(FileSniff.ZipEntryMatch.NOT_FOUND,
+                sniff.hasZipEntry(".shp"));
+    }
+
+    @Test
+    public void test_zip_entry_headers() throws IOException {
+        final File f = File.createTempFile("sniff", ".kmz");
+        f.deleteOnExit();
+        final byte[] kml = "<?xml version=\"1.0\"?><kml>"
+                .getBytes(StandardCharsets.UTF_8);
+        final byte[] shp = new byte[FileSniff.ENTRY_HEADER_SIZE * 2];
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new FileOutputStream(f))) {
+            zos.putNextEntry(new ZipEntry("doc.kml"));
+            zos.write(kml);
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("data/points.shp"));
+            zos.write(shp);
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("data/points.dbf"));
+            zos.write(shp);
+            zos.closeEntry();
+        }
+
+        final FileSniff sniff = new FileSniff(f);
+        assertTrue(ImportKMLSort.isKml(
+                sniff.getZipEntryHeaderStream("doc.kml")));
+        final InputStream is = sniff.getZipEntryHeaderStream(
+                "data/points.shp");
+        assertNotNull(is);
+        assertEquals(FileSniff.ENTRY_HEADER_SIZE, is.available());
+        assertNull(sniff.getZipEntryHeaderStream("data/points.dbf"));
+        assertNull(sniff.getZipEntryHeaderStream("missing.kml"));
+    }
+
+    @Test
+    public void test_zip_unlistable() throws IOException {
+        final ByteArrayOutputStream kmz = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(kmz)) {
+            zos.putNextEntry(new ZipEntry("doc.kml"));
+            zos.write("<?xml version=\"1.0\"?><kml>"
+                    .getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+
+        // archive with a stub prepended, e.g. self-extracting
+        final ByteArrayOutputStream prefixed = new ByteArrayOutputStream();
+        prefixed.write("#!/bin/sh\nexit 0\n".getBytes(StandardCharsets.UTF_8));
+        prefixed.write(kmz.toByteArray());
+        FileSniff sniff = new FileSniff(
+                createFile(".kmz", prefixed.toByteArray()));
+        assertFalse(sniff.isZip());
+        assertFalse(sniff.isZipListed());
+        assertTrue(sniff.getZipEntries().isEmpty());
+        assertEquals(FileSniff.ZipEntryMatch.UNLISTABLE,
+                sniff.hasZipEntry(".kml"));
+
+        // truncated central directory
+        final byte[] corrupt = Arrays.copyOf(kmz.toByteArray(),
+                kmz.size() - 8);
+        sniff = new FileSniff(createFile(".kmz", corrupt));
+        assertTrue(sniff.isZip());
+        assertFalse(sniff.isZipListed());
+        assertEquals(FileSniff.ZipEntryMatch.UNLISTABLE,
+                sniff.hasZipEntry(".kml"));
+    }
+
+    @Test
+    public void test_missing_file() {
+        final FileSniff sniff = new FileSniff(new File("does_not_exist"));
+        assertEquals(0, sniff.getHeader().length);
+        assertFalse(sniff.isZip());
+        assertTrue(sniff.getZipEntries().isEmpty());
+        assertEquals(FileSniff.ZipEntryMatch.UNLISTABLE,
+                sniff.hasZipEntry(".kml"));
+    }
+}
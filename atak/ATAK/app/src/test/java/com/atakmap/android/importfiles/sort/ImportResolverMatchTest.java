@@ -0,0 +1,83 @@
+
+package com.atakmap.android.importfiles.sort;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ImportResolverMatchTest {
+
+    private static final String COT = "<event version='2.0' uid='test'>"
+            + "<point lat='0' lon='0' hae='0' ce='0' le='0'/></event>";
+
+    private static File createFile(String prefix, String suffix,
+            String content) throws IOException {
+        final File f = File.createTempFile(prefix, suffix);
+        f.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(f)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return f;
+    }
+
+    /**
+     * Extension written against match(File) only
+     */
+    private static class AnyExtensionCotSort extends ImportCotSort {
+        AnyExtensionCotSort() {
+            super(null, true, false);
+        }
+
+        @Override
+        public boolean match(File file) {
+            return true;
+        }
+    }
+
+    /**
+     * Extension that narrows the match via super.match(File)
+     */
+    private static class KeepCotSort extends ImportCotSort {
+        KeepCotSort() {
+            super(null, true, false);
+        }
+
+        @Override
+        public boolean match(File file) {
+            return super.match(file) && file.getName().startsWith("keep");
+        }
+    }
+
+    @Test
+    public void test_sniffed_match() throws IOException {
+        final ImportCotSort sort = new ImportCotSort(null, true, false);
+        final File cot = createFile("event", ".cot", COT);
+        final File txt = createFile("event", ".txt", COT);
+        assertTrue(sort.match(cot, new FileSniff(cot)));
+        assertTrue(sort.match(cot));
+        assertFalse(sort.match(txt, new FileSniff(txt)));
+    }
+
+    @Test
+    public void test_match_file_override_honored() throws IOException {
+        final File txt = createFile("event", ".txt", COT);
+        final ImportCotSort sort = new AnyExtensionCotSort();
+        assertTrue(sort.match(txt, new FileSniff(txt)));
+    }
+
+    @Test
+    public void test_match_file_override_calls_super() throws IOException {
+        final ImportCotSort sort = new KeepCotSort();
+        final File keep = createFile("keep", ".cot", COT);
+        final File drop = createFile("drop", ".cot", COT);
+        assertTrue(sort.match(keep, new FileSniff(keep)));
+        assertFalse(sort.match(drop, new FileSniff(drop)));
+        assertFalse(sort.match(drop));
+    }
+}
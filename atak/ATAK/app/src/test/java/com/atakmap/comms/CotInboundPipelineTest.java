@@ -0,0 +1,114 @@
+package com.atakmap.comms;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CotInboundPipelineTest {
+
+    private static String xml(String uid, String type) {
+        CotEvent event = new CotEvent();
+        event.setVersion("2.0");
+        event.setUID(uid);
+        event.setType(type);
+        event.setHow("h-e");
+        CoordinatedTime now = new CoordinatedTime();
+        event.setTime(now);
+        event.setStart(now);
+        event.setStale(now.addMinutes(1));
+        event.setPoint(CotPoint.ZERO);
+        return event.toString();
+    }
+
+    private static class RecordingSink implements CotInboundPipeline.Sink {
+        final List<String> received = new ArrayList<>();
+        final CountDownLatch gate;
+
+        RecordingSink(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void onCotEvent(CotEvent event, String rxEndpointId) {
+            try {
+                if (gate != null)
+                    gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            synchronized (received) {
+                received.add(event.getUID());
+                received.notifyAll();
+            }
+        }
+
+        void await(int count) throws InterruptedException {
+            final long timeout = System.currentTimeMillis() + 5000;
+            synchronized (received) {
+                while (received.size() < count
+                        && System.currentTimeMillis() < timeout)
+                    received.wait(100);
+            }
+        }
+    }
+
+    @Test
+    public void test_order() throws Exception {
+        final RecordingSink sink = new RecordingSink(null);
+        final CotInboundPipeline pipeline = new CotInboundPipeline(sink,
+                100, 4);
+        try {
+            for (int i = 0; i < 50; i++)
+                assertTrue(pipeline.submit(xml("uid" + i, "u-d-f"), null));
+            sink.await(50);
+            synchronized (sink.received) {
+                assertEquals(50, sink.received.size());
+                for (int i = 0; i < 50; i++)
+                    assertEquals("uid" + i, sink.received.get(i));
+            }
+        } finally {
+            pipeline.dispose();
+        }
+    }
+
+    @Test
+    public void test_delivery_bounded() throws Exception {
+        final int capacity = 4;
+        final CountDownLatch gate = new CountDownLatch(1);
+        final RecordingSink sink = new RecordingSink(gate);
+        final CotInboundPipeline pipeline = new CotInboundPipeline(sink,
+                capacity, 2);
+        try {
+            int accepted = 0;
+            for (int i = 0; i < 100; i++) {
+                if (pipeline.submit(xml("uid" + i, "u-d-f"), null))
+                    accepted++;
+                Thread.sleep(1);
+            }
+            Thread.sleep(100);
+
+            // the sink is stalled; the pipeline pushes back rather than
+            // buffering without limit
+            CotInboundPipeline.Statistics stats = pipeline.getStatistics();
+            assertTrue(stats.deliveryDepth <= capacity);
+            assertTrue(stats.dropped > 0);
+            assertEquals(accepted, stats.received);
+
+            gate.countDown();
+            sink.await(accepted);
+            synchronized (sink.received) {
+                assertEquals(accepted, sink.received.size());
+            }
+        } finally {
+            pipeline.dispose();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.atakmap.comms;
+
+import com.atakmap.coremap.cot.event.CotDetail;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CotOutboundQueueTest {
+
+    private static CotEvent event(String uid, String type, String how) {
+        CotEvent event = new CotEvent();
+        event.setVersion("2.0");
+        event.setUID(uid);
+        event.setType(type);
+        event.setHow(how);
+        CoordinatedTime now = new CoordinatedTime();
+        event.setTime(now);
+        event.setStart(now);
+        event.setStale(now.addMinutes(1));
+        event.setPoint(CotPoint.ZERO);
+        return event;
+    }
+
+    private static CotEvent delete(String uid, String target) {
+        CotEvent event = event(uid, "t-x-d-d", "h-g-i-g-o");
+        CotDetail detail = new CotDetail("detail");
+        CotDetail link = new CotDetail("link");
+        link.setAttribute("uid", target);
+        link.setAttribute("relation", "none");
+        link.setAttribute("type", "none");
+        detail.addChild(link);
+        event.setDetail(detail);
+        return event;
+    }
+
+    private static CotEvent emergency(CotEvent event) {
+        CotDetail detail = new CotDetail("detail");
+        detail.addChild(new CotDetail("emergency"));
+        event.setDetail(detail);
+        return event;
+    }
+
+    private static class RecordingMessage extends CotOutboundQueue.Message {
+        final List<String> sent;
+        final CountDownLatch gate;
+        final CountDownLatch done;
+
+        RecordingMessage(String endpoint, CotEvent event, List<String> sent,
+                CountDownLatch gate, CountDownLatch done) {
+            super(endpoint, event);
+            this.sent = sent;
+            this.gate = gate;
+            this.done = done;
+        }
+
+        @Override
+        void transmit() {
+            try {
+                if (gate != null)
+                    gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            synchronized (sent) {
+                sent.add(event.getUID() + "/" + event.getHow());
+            }
+            if (done != null)
+                done.countDown();
+        }
+    }
+
+    @Test
+    public void test_priority() {
+        assertEquals(CotOutboundQueue.Priority.LOW,
+                CotOutboundQueue.priorityOf(event("a", "a-f-G-U-C", "m-g")));
+        assertEquals(CotOutboundQueue.Priority.HIGH,
+                CotOutboundQueue.priorityOf(event("b", "b-t-f", "h-g-i-g-o")));
+        assertEquals(CotOutboundQueue.Priority.HIGH,
+                CotOutboundQueue.priorityOf(event("c", "b-a-o-tbl", "m-g")));
+        assertEquals(CotOutboundQueue.Priority.NORMAL,
+                CotOutboundQueue.priorityOf(event("d", "u-d-f", "h-e")));
+    }
+
+    @Test
+    public void test_coalesce_and_order() throws Exception {
+        final CotOutboundQueue queue = new CotOutboundQueue();
+        try {
+            final List<String> sent = new ArrayList<>();
+            final CountDownLatch gate = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(5);
+
+            // occupies the sender until the gate is opened
+            queue.submit(new RecordingMessage("ep", event("blocker", "u-d-f",
+                    "h-e"), sent, gate, done));
+            Thread.sleep(100);
+
+            queue.submit(new RecordingMessage("ep",
+                    event("pli", "a-f-G", "m-g"), sent, null, done));
+            queue.submit(new RecordingMessage("ep",
+                    event("pli", "a-f-G", "h-e"), sent, null, done));
+            queue.submit(new RecordingMessage("other",
+                    event("pli", "a-f-G", "h-g-i-g-o"), sent, null, done));
+            queue.submit(new RecordingMessage("ep",
+                    event("shape", "u-d-f", "h-e"), sent, null, done));
+            queue.submit(new RecordingMessage("ep",
+                    event("chat", "b-t-f", "h-g-i-g-o"), sent, null, done));
+
+            Map<String, CotOutboundQueue.EndpointStatistics> stats = queue
+                    .getStatistics();
+            assertEquals(3, stats.get("ep").depth);
+            assertEquals(1, stats.get("ep").coalesced);
+            assertEquals(1, stats.get("other").depth);
+
+            gate.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            synchronized (sent) {
+                assertEquals(5, sent.size());
+                assertEquals("blocker/h-e", sent.get(0));
+                assertEquals("chat/h-g-i-g-o", sent.get(1));
+                assertEquals("shape/h-e", sent.get(2));
+                // the superseded report is replaced in place
+                assertEquals("pli/h-e", sent.get(3));
+                assertEquals("pli/h-g-i-g-o", sent.get(4));
+            }
+
+            Thread.sleep(50);
+            stats = queue.getStatistics();
+            assertEquals(0, stats.get("ep").depth);
+            assertEquals(5, stats.get("ep").enqueued);
+            assertEquals(4, stats.get("ep").sent);
+        } finally {
+            queue.dispose();
+        }
+    }
+
+    @Test
+    public void test_capacity() throws Exception {
+        final CotOutboundQueue queue = new CotOutboundQueue(2);
+        try {
+            final List<String> sent = new ArrayList<>();
+            final CountDownLatch gate = new CountDownLatch(1);
+            queue.submit(new RecordingMessage("ep", event("blocker", "u-d-f",
+                    "h-e"), sent, gate, null));
+            Thread.sleep(100);
+
+            assertTrue(queue.submit(new RecordingMessage("ep",
+                    event("p1", "a-f-G", "m-g"), sent, null, null)));
+            assertTrue(queue.submit(new RecordingMessage("ep",
+                    event("p2", "a-f-G", "m-g"), sent, null, null)));
+            // evicts the oldest position report
+            assertTrue(queue.submit(new RecordingMessage("ep",
+                    event("chat", "b-t-f", "h-e"), sent, null, null)));
+            assertEquals(1, queue.getStatistics().get("ep").dropped);
+            assertTrue(queue.submit(new RecordingMessage("ep",
+                    event("chat2", "b-t-f", "h-e"), sent, null, null)));
+            assertEquals(2, queue.getStatistics().get("ep").dropped);
+            // nothing of equal or lower priority to evict
+            assertFalse(queue.submit(new RecordingMessage("ep",
+                    event("p3", "a-f-G", "m-g"), sent, null, null)));
+            assertEquals(3, queue.getStatistics().get("ep").dropped);
+            gate.countDown();
+        } finally {
+            queue.dispose();
+        }
+    }
+
+    @Test
+    public void test_delete_supersedes_pending() throws Exception {
+        final CotOutboundQueue queue = new CotOutboundQueue();
+        try {
+            final List<String> sent = new ArrayList<>();
+            final CountDownLatch gate = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(3);
+
+            queue.submit(new RecordingMessage("ep", event("blocker", "u-d-f",
+                    "h-e"), sent, gate, done));
+            Thread.sleep(100);
+
+            queue.submit(new RecordingMessage("ep",
+                    event("pli", "a-f-G", "m-g"), sent, null, done));
+            queue.submit(new RecordingMessage("other",
+                    event("pli", "a-f-G", "m-g"), sent, null, done));
+            queue.submit(new RecordingMessage("ep",
+                    delete("del", "pli"), sent, null, done));
+
+            assertEquals("pli",
+                    CotOutboundQueue.subjectOf(delete("del", "pli")));
+            // the pending report for the deleted item is discarded
+            assertEquals(1, queue.getStatistics().get("ep").depth);
+            assertEquals(1, queue.getStatistics().get("ep").coalesced);
+
+            gate.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            synchronized (sent) {
+                assertEquals(3, sent.size());
+                assertEquals("blocker/h-e", sent.get(0));
+                assertEquals("del/h-g-i-g-o", sent.get(1));
+                assertEquals("pli/m-g", sent.get(2));
+            }
+        } finally {
+            queue.dispose();
+        }
+    }
+
+    @Test
+    public void test_subject_order_across_lanes() throws Exception {
+        final CotOutboundQueue queue = new CotOutboundQueue();
+        try {
+            final List<String> sent = new ArrayList<>();
+            final CountDownLatch gate = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(4);
+
+            queue.submit(new RecordingMessage("ep", event("blocker", "u-d-f",
+                    "h-e"), sent, gate, done));
+            Thread.sleep(100);
+
+            queue.submit(new RecordingMessage("ep",
+                    event("pli", "a-f-G", "m-g"), sent, null, done));
+            queue.submit(new RecordingMessage("ep",
+                    event("shape", "u-d-f", "h-e"), sent, null, done));
+            queue.submit(new RecordingMessage("ep",
+                    delete("del", "pli"), sent, null, done));
+            // an update to the deleted item is sent after the delete, even
+            // though it is submitted to a higher priority lane
+            queue.submit(new RecordingMessage("ep",
+                    emergency(event("pli", "a-f-G-E", "h-e")), sent, null,
+                    done));
+
+            gate.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            synchronized (sent) {
+                assertEquals(4, sent.size());
+                assertEquals("blocker/h-e", sent.get(0));
+                assertEquals("del/h-g-i-g-o", sent.get(1));
+                assertEquals("pli/h-e", sent.get(2));
+                assertEquals("shape/h-e", sent.get(3));
+            }
+        } finally {
+            queue.dispose();
+        }
+    }
+
+    @Test
+    public void test_coalesce_priority_change() throws Exception {
+        final CotOutboundQueue queue = new CotOutboundQueue();
+        try {
+            final List<String> sent = new ArrayList<>();
+            final CountDownLatch gate = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(3);
+
+            queue.submit(new RecordingMessage("ep", event("blocker", "u-d-f",
+                    "h-e"), sent, gate, done));
+            Thread.sleep(100);
+
+            queue.submit(new RecordingMessage("ep",
+                    event("pli", "a-f-G", "m-g"), sent, null, done));
+            queue.submit(new RecordingMessage("ep",
+                    event("shape", "u-d-f", "h-e"), sent, null, done));
+            // replaces the pending report and moves it to the high lane
+            queue.submit(new RecordingMessage("ep",
+                    emergency(event("pli", "a-f-G", "h-g-i-g-o")), sent,
+                    null, done));
+            assertEquals(2, queue.getStatistics().get("ep").depth);
+            assertEquals(1, queue.getStatistics().get("ep").coalesced);
+
+            gate.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            synchronized (sent) {
+                assertEquals(3, sent.size());
+                assertEquals("blocker/h-e", sent.get(0));
+                assertEquals("pli/h-g-i-g-o", sent.get(1));
+                assertEquals("shape/h-e", sent.get(2));
+            }
+        } finally {
+            queue.dispose();
+        }
+    }
+}
@@ -52,6 +52,79 @@ public class CotDetailTest {
         assertEquals(detail.getAttributes()[0].getValue(), "test_value");
     }
 
+    @Test
+    public void test_attribute_update_and_remove() {
+        CotDetail detail = new CotDetail("contact");
+        detail.setAttribute("endpoint", "*:-1:stcp");
+        detail.setAttribute("callsign", "A");
+        detail.setAttribute("phone", "555");
+        detail.setAttribute("callsign", "B");
+        detail.setAttribute("ignored", null);
+
+        assertEquals(3, detail.getAttributeCount());
+        assertEquals("B", detail.getAttribute("callsign"));
+        assertNull(detail.getAttribute("ignored"));
+        assertEquals("<contact endpoint='*:-1:stcp' callsign='B' phone='555'/>",
+                detail.toString());
+
+        assertEquals("*:-1:stcp", detail.removeAttribute("endpoint"));
+        assertNull(detail.removeAttribute("endpoint"));
+        assertEquals(2, detail.getAttributeCount());
+        assertEquals("callsign", detail.getAttributes()[0].getName());
+        assertEquals("phone", detail.getAttributes()[1].getName());
+
+        detail.clearAttributes();
+        assertEquals(0, detail.getAttributeCount());
+        assertEquals("<contact/>", detail.toString());
+    }
+
+    @Test
+    public void test_names_interned() {
+        CotDetail a = new CotDetail(new String("contact"));
+        CotDetail b = new CotDetail(new String("contact"));
+        a.setAttribute(new String("callsign"), "A");
+        b.setAttribute(new String("callsign"), "B");
+
+        assertSame(a.getElementName(), b.getElementName());
+        assertSame(a.getAttributes()[0].getName(),
+                b.getAttributes()[0].getName());
+    }
+
+    @Test
+    public void test_children() {
+        CotDetail detail = new CotDetail();
+        for (int i = 0; i < 20; i++) {
+            CotDetail link = new CotDetail("link");
+            link.setAttribute("index", String.valueOf(i));
+            detail.addChild(link);
+        }
+        CotDetail remarks = new CotDetail("remarks");
+        detail.addChild(remarks);
+
+        assertEquals(21, detail.childCount());
+        assertSame(remarks, detail.getChild("remarks"));
+        assertSame(remarks, detail.getChild("remarks"));
+        assertEquals("0",
+                detail.getFirstChildByName(0, "link").getAttribute("index"));
+        assertEquals("5",
+                detail.getFirstChildByName(5, "link").getAttribute("index"));
+        assertEquals(20, detail.getChildrenByName("link").size());
+
+        detail.removeChild(remarks);
+        assertNull(detail.getChild("remarks"));
+        assertNull(detail.getChild(20));
+
+        CotDetail copy = new CotDetail(detail);
+        assertEquals(20, copy.childCount());
+        copy.addChild(new CotDetail("status"));
+        assertEquals(20, detail.childCount());
+
+        detail.setInnerText("text");
+        assertEquals(0, detail.childCount());
+        assertNull(detail.getChild("link"));
+        assertEquals("<detail>text</detail>", detail.toString());
+    }
+
     /*
     Contract violation reported in ATAK-12804
     @Test(expected = IllegalArgumentException.class)
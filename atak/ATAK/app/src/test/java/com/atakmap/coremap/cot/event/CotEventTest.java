@@ -0,0 +1,190 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CotEventTest {
+
+    private final static String SPOT_MARKER = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+            + "<event version='2.0' uid='9405e320-9356-41c4-8449-f46990aa17f8' type='b-m-p-s-m' time='2020-12-16T19:59:34.913Z' start='2020-12-16T19:59:34.913Z' stale='2021-01-02T20:40:03.841Z' how='h-g-i-g-o'>"
+            + "<point lat='38.85606343062312' lon='-77.0563755018233' hae='9999999.0' ce='9999999.0' le='9999999.0' />"
+            + "<detail>"
+            + "<status readiness='true'/>"
+            + "<link uid='ANDROID-589520ccfcd20f01' production_time='2020-12-16T19:51:09.603Z' type='a-f-G-U-C' parent_callsign='HOPE' relation='p-p'/>"
+            + "<contact callsign='R 1'/>"
+            + "<remarks>some remarks</remarks>"
+            + "<color argb='-65536'/>"
+            + "<usericon iconsetpath='COT_MAPPING_SPOTMAP/b-m-p-s-m/-65536'/>"
+            + "</detail>"
+            + "</event>";
+
+    @Test
+    public void test_parse() {
+        CotEvent event = CotEvent.parse(SPOT_MARKER);
+        assertTrue(event.isValid());
+        assertEquals("9405e320-9356-41c4-8449-f46990aa17f8", event.getUID());
+        assertEquals("b-m-p-s-m", event.getType());
+        assertEquals(38.85606343062312, event.getCotPoint().getLat(), 0d);
+        assertEquals(-77.0563755018233, event.getCotPoint().getLon(), 0d);
+
+        CotDetail contact = event.getDetail().getFirstChildByName(0,
+                "contact");
+        assertNotNull(contact);
+        assertEquals("R 1", contact.getAttribute("callsign"));
+        CotDetail remarks = event.getDetail().getFirstChildByName(0,
+                "remarks");
+        assertNotNull(remarks);
+        assertEquals("some remarks", remarks.getInnerText());
+    }
+
+    @Test
+    public void test_parse_invalid() {
+        CotEvent event = CotEvent.parse("<event><point/></event>");
+        assertNotNull(event);
+        assertFalse(event.isValid());
+
+        // the handler must recover after a bad message
+        event = CotEvent.parse(SPOT_MARKER);
+        assertTrue(event.isValid());
+    }
+
+    @Test
+    public void test_concurrent_parse() throws Exception {
+        final String expected = CotEvent.parse(SPOT_MARKER).toString();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        String last = null;
+                        for (int j = 0; j < 50; j++)
+                            last = CotEvent.parse(SPOT_MARKER).toString();
+                        return last;
+                    }
+                }));
+            }
+            for (Future<String> result : results)
+                assertEquals(expected, result.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_build_xml_buffer() {
+        final CotEvent event = CotEvent.parse(SPOT_MARKER);
+        event.getDetail().getFirstChildByName(0, "remarks")
+                .setInnerText("<a & 'b'>\n\u00e9\u4e2d\ud83d\ude00");
+
+        final byte[] expected = event.toString()
+                .getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(expected.length + 16);
+        buffer.put((byte) 0x7F);
+        assertEquals(expected.length, event.buildXml(buffer));
+        assertEquals(expected.length + 1, buffer.position());
+
+        final byte[] actual = new byte[expected.length];
+        buffer.position(1);
+        buffer.get(actual);
+        assertArrayEquals(expected, actual);
+
+        final CotEvent parsed = CotEvent.parse(
+                new String(actual, StandardCharsets.UTF_8));
+        assertTrue(parsed.isValid());
+        assertEquals("<a & 'b'>\n\u00e9\u4e2d\ud83d\ude00",
+                parsed.getDetail().getFirstChildByName(0, "remarks")
+                        .getInnerText());
+    }
+
+    @Test
+    public void test_build_xml_buffer_unpaired_surrogates() {
+        final CotEvent event = CotEvent.parse(SPOT_MARKER);
+        event.getDetail().getFirstChildByName(0, "remarks")
+                .setInnerText("\ude00a\ud83d\ud83d\ude00b\ud83d");
+
+        final byte[] expected = event.toString()
+                .getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+        assertEquals(expected.length, event.buildXml(buffer));
+        assertArrayEquals(expected, buffer.array());
+
+        // trailing high surrogate
+        final String text = "a\u00e9\ud83d";
+        final byte[] trailing = text.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer b = ByteBuffer.allocate(trailing.length);
+        final CotEvent.Utf8Appendable utf8 = new CotEvent.Utf8Appendable(b);
+        utf8.append(text);
+        utf8.finish();
+        assertEquals(trailing.length, b.position());
+        assertArrayEquals(trailing, b.array());
+    }
+
+    @Test
+    public void test_build_xml_buffer_overflow() {
+        final CotEvent event = CotEvent.parse(SPOT_MARKER);
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.position(3);
+        try {
+            event.buildXml(buffer);
+            fail();
+        } catch (BufferOverflowException expected) {
+            assertEquals(3, buffer.position());
+        }
+    }
+
+    @Test
+    public void test_escape() {
+        final String text = "a&b<c>d\"e'f\ng";
+        final StringBuilder sb = new StringBuilder();
+        try {
+            CotEvent.appendEscaped(sb, text);
+            CotEvent.appendEscaped(sb, "plain");
+            CotEvent.appendEscaped(sb, null);
+        } catch (java.io.IOException e) {
+            fail();
+        }
+        assertEquals(CotEvent.escapeXmlText(text) + "plain", sb.toString());
+        assertEquals("a&amp;b&lt;c&gt;d&quot;e&apos;f&#10;g",
+                CotEvent.escapeXmlText(text));
+    }
+
+    @Test
+    public void test_time_format() {
+        final SimpleDateFormat fmt = new SimpleDateFormat(
+                "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // interleave more distinct seconds than are retained per thread
+        final long base = 1608148774913L;
+        final long[] offsets = new long[] {
+                0L, 1000L, 60000L, 3600000L, 86400000L, 5L, 1005L, -1L
+        };
+        for (int i = 0; i < 3; i++) {
+            for (long offset : offsets) {
+                final long millis = base + offset;
+                assertEquals(fmt.format(new Date(millis)),
+                        CoordinatedTime.toCot(new CoordinatedTime(millis)));
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.atakmap.coremap.cot.event;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TakProtocolCodecTest {
+
+    private final static String SA = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+            + "<event version='2.0' uid='ANDROID-589520ccfcd20f01' type='a-f-G-U-C' time='2020-12-16T19:59:34.913Z' start='2020-12-16T19:59:34.913Z' stale='2020-12-16T20:05:34.913Z' how='h-e' access='Unclassified'>"
+            + "<point lat='38.85606343062312' lon='-77.0563755018233' hae='9999999.0' ce='9999999.0' le='9999999.0' />"
+            + "<detail>"
+            + "<contact endpoint='*:-1:stcp' callsign='HOPE'/>"
+            + "<__group name='Cyan' role='Team Member'/>"
+            + "<precisionlocation geopointsrc='GPS' altsrc='GPS'/>"
+            + "<status battery='88'/>"
+            + "<takv device='SAMSUNG SM-G950U' platform='ATAK-CIV' os='28' version='4.5.0'/>"
+            + "<track speed='1.5' course='270.25'/>"
+            + "<uid Droid='HOPE'/>"
+            + "<remarks>some &amp; remarks</remarks>"
+            + "</detail>"
+            + "</event>";
+
+    @Test
+    public void test_round_trip() throws Exception {
+        final CotEvent expected = CotEvent.parse(SA);
+        assertTrue(expected.isValid());
+
+        final byte[] encoded = TakProtocolCodec.encode(expected);
+        final CotEvent actual = TakProtocolCodec.decode(encoded, 0,
+                encoded.length);
+        assertNotNull(actual);
+        assertTrue(actual.isValid());
+
+        assertEquals(expected.getUID(), actual.getUID());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getHow(), actual.getHow());
+        assertEquals(expected.getAccess(), actual.getAccess());
+        assertNull(actual.getQos());
+        assertEquals(expected.getTime().getMilliseconds(),
+                actual.getTime().getMilliseconds());
+        assertEquals(expected.getStart().getMilliseconds(),
+                actual.getStart().getMilliseconds());
+        assertEquals(expected.getStale().getMilliseconds(),
+                actual.getStale().getMilliseconds());
+        assertEquals(expected.getCotPoint().getLat(),
+                actual.getCotPoint().getLat(), 0d);
+        assertEquals(expected.getCotPoint().getLon(),
+                actual.getCotPoint().getLon(), 0d);
+        assertEquals(expected.getCotPoint().getHae(),
+                actual.getCotPoint().getHae(), 0d);
+
+        final CotDetail detail = actual.getDetail();
+        assertNotNull(detail);
+        assertEquals(expected.getDetail().childCount(), detail.childCount());
+        assertDetailEquals(expected.getDetail(), detail, "contact");
+        assertDetailEquals(expected.getDetail(), detail, "__group");
+        assertDetailEquals(expected.getDetail(), detail, "precisionlocation");
+        assertDetailEquals(expected.getDetail(), detail, "status");
+        assertDetailEquals(expected.getDetail(), detail, "takv");
+        assertDetailEquals(expected.getDetail(), detail, "uid");
+        assertDetailEquals(expected.getDetail(), detail, "track");
+        assertEquals("some & remarks",
+                detail.getChild("remarks").getInnerText());
+    }
+
+    @Test
+    public void test_track_text_round_trip() throws Exception {
+        final String[][] tracks = new String[][] {
+                {
+                        "12", "0"
+                },
+                {
+                        "12.0", "270.25"
+                },
+                {
+                        "1.5E-4", "-0.0"
+                },
+                {
+                        "0.10", "359.9"
+                },
+        };
+        for (String[] track : tracks) {
+            final CotEvent expected = CotEvent.parse(SA.replace(
+                    "<track speed='1.5' course='270.25'/>",
+                    "<track speed='" + track[0] + "' course='" + track[1]
+                            + "'/>"));
+            final byte[] encoded = TakProtocolCodec.encode(expected);
+            final CotEvent actual = TakProtocolCodec.decode(encoded, 0,
+                    encoded.length);
+            assertDetailEquals(expected.getDetail(), actual.getDetail(),
+                    "track");
+
+            // a second round trip is stable as well
+            final byte[] reencoded = TakProtocolCodec.encode(actual);
+            assertDetailEquals(expected.getDetail(),
+                    TakProtocolCodec.decode(reencoded, 0, reencoded.length)
+                            .getDetail(),
+                    "track");
+        }
+    }
+
+    @Test
+    public void test_format_double() {
+        assertEquals("12", TakProtocolCodec.formatDouble(12d));
+        assertEquals("0", TakProtocolCodec.formatDouble(0d));
+        assertEquals("-0.0", TakProtocolCodec.formatDouble(-0d));
+        assertEquals("270.25", TakProtocolCodec.formatDouble(270.25d));
+        assertEquals("1.0E20", TakProtocolCodec.formatDouble(1e20d));
+    }
+
+    @Test
+    public void test_mesh_round_trip() throws Exception {
+        final CotEvent expected = CotEvent.parse(SA);
+        final byte[] encoded = TakProtocolCodec.encodeMeshMessage(expected);
+        assertEquals(TakProtocolCodec.MAGIC, encoded[0] & 0xFF);
+        assertEquals(TakProtocolCodec.VERSION, encoded[1]);
+        assertEquals(TakProtocolCodec.MAGIC, encoded[2] & 0xFF);
+
+        final CotEvent actual = TakProtocolCodec.decodeMeshMessage(encoded);
+        assertNotNull(actual);
+        assertEquals(expected.getUID(), actual.getUID());
+
+        // not a TAK protocol message
+        assertNull(TakProtocolCodec.decodeMeshMessage(SA.getBytes()));
+    }
+
+    @Test
+    public void test_decode_wire_format() {
+        // TakMessage { cotEvent { type: "a-f-G", uid: "x", sendTime: 1000,
+        //                         startTime: 1000, staleTime: 2000,
+        //                         how: "m-g",
+        //                         detail { contact { callsign: "C" } } } }
+        final byte[] payload = new byte[] {
+                0x12, 0x1F,
+                0x0A, 0x05, 'a', '-', 'f', '-', 'G',
+                0x2A, 0x01, 'x',
+                0x30, (byte) 0xE8, 0x07,
+                0x38, (byte) 0xE8, 0x07,
+                0x40, (byte) 0xD0, 0x0F,
+                0x4A, 0x03, 'm', '-', 'g',
+                0x7A, 0x05, 0x12, 0x03, 0x12, 0x01, 'C',
+        };
+        final CotEvent event = TakProtocolCodec.decode(payload, 0,
+                payload.length);
+        assertNotNull(event);
+        assertTrue(event.isValid());
+        assertEquals("a-f-G", event.getType());
+        assertEquals("x", event.getUID());
+        assertEquals("m-g", event.getHow());
+        assertEquals(1000L, event.getTime().getMilliseconds());
+        assertEquals(2000L, event.getStale().getMilliseconds());
+        assertEquals("C",
+                event.getDetail().getChild("contact").getAttribute("callsign"));
+        assertNull(event.getDetail().getChild("contact")
+                .getAttribute("endpoint"));
+    }
+
+    @Test
+    public void test_decode_truncated() {
+        final byte[] payload = new byte[] {
+                0x12, 0x25, 0x0A, 0x05, 'a'
+        };
+        final CotEvent event = TakProtocolCodec.decode(payload, 0,
+                payload.length);
+        assertNotNull(event);
+        assertFalse(event.isValid());
+    }
+
+    private static void assertDetailEquals(CotDetail expected,
+            CotDetail actual, String name) {
+        final CotDetail e = expected.getChild(name);
+        final CotDetail a = actual.getChild(name);
+        assertNotNull(a);
+        assertEquals(e.getAttributeCount(), a.getAttributeCount());
+        for (CotAttribute attr : e.getAttributes())
+            assertEquals(attr.getValue(), a.getAttribute(attr.getName()));
+    }
+}
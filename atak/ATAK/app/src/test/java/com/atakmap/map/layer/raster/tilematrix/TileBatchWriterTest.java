@@ -0,0 +1,80 @@
+
+package com.atakmap.map.layer.raster.tilematrix;
+
+import com.atakmap.map.layer.feature.geometry.Envelope;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TileBatchWriterTest {
+
+    private static MockTileContainer createContainer() {
+        return new MockTileContainer("test", 4326,
+                new TileMatrix.ZoomLevel[0], -180d, 90d,
+                new Envelope(-180d, -90d, 0d, 180d, 90d, 0d), false);
+    }
+
+    @Test
+    public void test_batch_written_when_full() {
+        final MockTileContainer sink = createContainer();
+        final TileBatchWriter writer = new TileBatchWriter(sink, 3,
+                Long.MAX_VALUE);
+
+        writer.write(1, 0, 0, new byte[] {
+                1
+        }, 10L);
+        writer.write(1, 1, 0, new byte[] {
+                2
+        }, 20L);
+        assertNull(sink.getTileData(1, 0, 0, null));
+        assertNull(sink.getTileData(1, 1, 0, null));
+
+        writer.write(1, 0, 1, new byte[] {
+                3
+        }, 30L);
+        assertArrayEquals(new byte[] {
+                1
+        }, sink.getTileData(1, 0, 0, null));
+        assertArrayEquals(new byte[] {
+                3
+        }, sink.getTileData(1, 0, 1, null));
+        assertEquals(20L, sink.getTileExpiration(1, 1, 0));
+    }
+
+    @Test
+    public void test_flush_writes_partial_batch() {
+        final MockTileContainer sink = createContainer();
+        final TileBatchWriter writer = new TileBatchWriter(sink, 64,
+                Long.MAX_VALUE);
+
+        writer.write(2, 3, 4, new byte[] {
+                5
+        }, 0L);
+        assertNull(sink.getTileData(2, 3, 4, null));
+
+        writer.flush();
+        assertArrayEquals(new byte[] {
+                5
+        }, sink.getTileData(2, 3, 4, null));
+
+        // nothing buffered
+        writer.flush();
+    }
+
+    @Test
+    public void test_batch_written_after_interval() {
+        final MockTileContainer sink = createContainer();
+        final TileBatchWriter writer = new TileBatchWriter(sink, 64, 0L);
+
+        writer.write(0, 0, 0, new byte[] {
+                7
+        }, 0L);
+        assertNotNull(sink.getTileData(0, 0, 0, null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_invalid_batch_size() {
+        new TileBatchWriter(createContainer(), 0, 0L);
+    }
+}
@@ -0,0 +1,603 @@
+
+package com.atakmap.map.layer.raster.tilematrix;
+
+import android.graphics.Bitmap;
+import android.graphics.Point;
+
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.map.contentservices.CacheRequest;
+import com.atakmap.map.contentservices.CacheRequestListener;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.core.classloader.annotations.SuppressStaticInitializationFor;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises {@link TileScraper} against a local HTTP tile server stand-in.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({
+        TileMatrix.Util.class, Geometry.class, Polygon.class,
+        LineString.class, Log.class, android.util.Log.class
+})
+@SuppressStaticInitializationFor("com.atakmap.map.layer.feature.geometry.Geometry")
+@PowerMockIgnore({
+        "com.sun.*", "javax.net.*", "javax.management.*"
+})
+public class TileScraperTest {
+
+    private static final String TAG = "TileScraperTest";
+
+    private static final int NUM_LEVELS = 8;
+    private static final byte[] TILE = new byte[256];
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final AtomicInteger maxActive = new AtomicInteger(0);
+    private volatile long latency = 10L;
+
+    @Before
+    public void setUp() throws Exception {
+        PowerMockito.mockStatic(android.util.Log.class);
+        PowerMockito.mockStatic(Log.class);
+        PowerMockito.whenNew(Point.class)
+                .withArguments(Matchers.anyInt(), Matchers.anyInt())
+                .thenAnswer(new Answer<Point>() {
+                    @Override
+                    public Point answer(InvocationOnMock invocation) {
+                        final Point p = PowerMockito.mock(Point.class);
+                        p.x = (Integer) invocation.getArguments()[0];
+                        p.y = (Integer) invocation.getArguments()[1];
+                        return p;
+                    }
+                });
+
+        serverExecutor = Executors.newFixedThreadPool(16);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                final int n = active.incrementAndGet();
+                while (true) {
+                    final int max = maxActive.get();
+                    if (n <= max || maxActive.compareAndSet(max, n))
+                        break;
+                }
+                requests.incrementAndGet();
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException ignored) {
+                }
+                active.decrementAndGet();
+
+                exchange.sendResponseHeaders(200, TILE.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(TILE);
+                }
+            }
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void test_tiles_per_second() {
+        final HttpTileClient client = new HttpTileClient(
+                server.getAddress().getPort());
+        final MockTileContainer sink = createContainer();
+        final CacheRequest request = createRequest(4, null);
+        final RecordingListener listener = new RecordingListener(request, -1);
+
+        final int expected = TileScraper.estimateTileCount(client, request);
+        assertTrue(expected > 100);
+
+        final long start = System.nanoTime();
+        new TileScraper(client, sink, request, listener).run();
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+        Log.d(TAG, String.format(LocaleUtil.US,
+                "%d tiles in %d ms: %.1f tiles/sec, %d concurrent downloads",
+                expected, elapsedMillis,
+                expected * 1000d / Math.max(elapsedMillis, 1L),
+                maxActive.get()));
+
+        assertTrue(listener.completed);
+        assertFalse(listener.error);
+        assertEquals(expected, requests.get());
+        assertEquals(expected, sink.tileData.size());
+        // downloads overlap, so the scrape beats downloading one at a time
+        assertTrue(maxActive.get() > 1);
+        assertTrue(elapsedMillis < expected * latency);
+    }
+
+    @Test
+    public void test_connections_per_host_limited() {
+        latency = 20L;
+        AbstractURLTileClient.setMaxConnectionsPerHost(2);
+        try {
+            final URLTileClient client = new URLTileClient(
+                    server.getAddress().getPort());
+            final MockTileContainer sink = createContainer();
+            final CacheRequest request = createRequest(8, null);
+            request.maxResolution = createLevels()[5].resolution;
+            final RecordingListener listener = new RecordingListener(request,
+                    -1);
+
+            final int expected = TileScraper.estimateTileCount(client,
+                    request);
+            new TileScraper(client, sink, request, listener).run();
+
+            assertTrue(listener.completed);
+            assertFalse(listener.error);
+            assertEquals(expected, requests.get());
+            assertEquals(expected, sink.tileData.size());
+            // eight download threads share two connections to the host
+            assertTrue(maxActive.get() > 1);
+            assertTrue(maxActive.get() <= 2);
+        } finally {
+            AbstractURLTileClient.setMaxConnectionsPerHost(
+                    AbstractURLTileClient.DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        }
+    }
+
+    @Test
+    public void test_resume_from_checkpoint() throws IOException {
+        final File cacheFile = File.createTempFile("scrape", ".sqlite");
+        final File checkpoint = new File(cacheFile.getPath() + ".scrape");
+        try {
+            final HttpTileClient client = new HttpTileClient(
+                    server.getAddress().getPort());
+            final MockTileContainer sink = createContainer();
+
+            // cancel part way through
+            CacheRequest request = createRequest(2, cacheFile);
+            final int expected = TileScraper.estimateTileCount(client,
+                    request);
+            RecordingListener listener = new RecordingListener(request,
+                    expected / 2);
+            new TileScraper(client, sink, request, listener).run();
+            assertTrue(listener.canceled);
+            assertTrue(checkpoint.exists());
+            final int firstRun = requests.getAndSet(0);
+            assertTrue(firstRun < expected);
+
+            // resume
+            request = createRequest(2, cacheFile);
+            listener = new RecordingListener(request, -1);
+            new TileScraper(client, sink, request, listener).run();
+            assertTrue(listener.completed);
+            assertTrue(requests.get() < expected);
+            assertEquals(expected, sink.tileData.size());
+            assertFalse(checkpoint.exists());
+        } finally {
+            cacheFile.delete();
+            checkpoint.delete();
+        }
+    }
+
+    @Test
+    public void test_checkpoint_discarded_for_replaced_cache()
+            throws IOException {
+        final File cacheFile = File.createTempFile("scrape", ".sqlite");
+        final File checkpoint = new File(cacheFile.getPath() + ".scrape");
+        try {
+            final HttpTileClient client = new HttpTileClient(
+                    server.getAddress().getPort());
+
+            CacheRequest request = createRequest(2, cacheFile);
+            final int expected = TileScraper.estimateTileCount(client,
+                    request);
+            RecordingListener listener = new RecordingListener(request,
+                    expected / 2);
+            new TileScraper(client, createContainer(), request, listener)
+                    .run();
+            assertTrue(listener.canceled);
+            assertTrue(checkpoint.exists());
+            requests.set(0);
+
+            // the cache is recreated after the checkpoint was written
+            assertTrue(cacheFile.delete());
+            assertTrue(cacheFile.createNewFile());
+            assertTrue(cacheFile.setLastModified(
+                    checkpoint.lastModified() + 60000L));
+
+            final MockTileContainer sink = createContainer();
+            request = createRequest(2, cacheFile);
+            listener = new RecordingListener(request, -1);
+            new TileScraper(client, sink, request, listener).run();
+            assertTrue(listener.completed);
+            assertEquals(expected, requests.get());
+            assertEquals(expected, sink.tileData.size());
+        } finally {
+            cacheFile.delete();
+            checkpoint.delete();
+        }
+    }
+
+    @Test
+    public void test_checkpoint_discarded_for_missing_cache()
+            throws IOException {
+        final File cacheFile = File.createTempFile("scrape", ".sqlite");
+        final File checkpoint = new File(cacheFile.getPath() + ".scrape");
+        try {
+            final HttpTileClient client = new HttpTileClient(
+                    server.getAddress().getPort());
+
+            CacheRequest request = createRequest(2, cacheFile);
+            final int expected = TileScraper.estimateTileCount(client,
+                    request);
+            RecordingListener listener = new RecordingListener(request,
+                    expected / 2);
+            new TileScraper(client, createContainer(), request, listener)
+                    .run();
+            assertTrue(listener.canceled);
+            assertTrue(checkpoint.exists());
+            requests.set(0);
+
+            assertTrue(cacheFile.delete());
+
+            request = createRequest(2, cacheFile);
+            listener = new RecordingListener(request, -1);
+            new TileScraper(client, createContainer(), request, listener)
+                    .run();
+            assertTrue(listener.completed);
+            assertEquals(expected, requests.get());
+        } finally {
+            cacheFile.delete();
+            checkpoint.delete();
+        }
+    }
+
+    @Test
+    public void test_write_failure_reported() {
+        latency = 0L;
+        final HttpTileClient client = new HttpTileClient(
+                server.getAddress().getPort());
+        final CacheRequest request = createRequest(2, null);
+        // few enough tiles that they are only written by the final flush
+        request.maxResolution = createLevels()[4].resolution;
+        assertTrue(TileScraper.estimateTileCount(client, request) < 64);
+        final RecordingListener listener = new RecordingListener(request, -1);
+
+        new TileScraper(client, new FailingTileContainer(), request,
+                listener).run();
+
+        assertTrue(listener.error);
+        assertFalse(listener.completed);
+    }
+
+    /**************************************************************************/
+
+    private static TileMatrix.ZoomLevel[] createLevels() {
+        final TileMatrix.ZoomLevel[] levels = new TileMatrix.ZoomLevel[NUM_LEVELS];
+        for (int i = 0; i < NUM_LEVELS; i++) {
+            levels[i] = new TileMatrix.ZoomLevel();
+            levels[i].level = i;
+            levels[i].tileWidth = 256;
+            levels[i].tileHeight = 256;
+            levels[i].pixelSizeX = 180d / 256d / (1 << i);
+            levels[i].pixelSizeY = levels[i].pixelSizeX;
+            levels[i].resolution = 156543.034d / (1 << i);
+        }
+        return levels;
+    }
+
+    private static MockTileContainer createContainer() {
+        return new MockTileContainer("test", 4326, createLevels(), -180d, 90d,
+                new Envelope(-180d, -90d, 0d, 180d, 90d, 0d), false);
+    }
+
+    private static CacheRequest createRequest(int maxThreads, File cacheFile) {
+        final CacheRequest request = new CacheRequest();
+        request.minResolution = Double.MAX_VALUE;
+        request.maxResolution = 0d;
+        request.region = createRegion(0d, 0d, 10d, 10d);
+        request.maxThreads = maxThreads;
+        request.cacheFile = cacheFile;
+        request.mode = CacheRequest.CacheMode.Create;
+        return request;
+    }
+
+    private static Geometry createRegion(double minX, double minY,
+            double maxX, double maxY) {
+        final double[] xs = new double[] {
+                minX, maxX, maxX, minX, minX
+        };
+        final double[] ys = new double[] {
+                maxY, maxY, minY, minY, maxY
+        };
+        final LineString ring = PowerMockito.mock(LineString.class);
+        PowerMockito.when(ring.getNumPoints()).thenReturn(xs.length);
+        for (int i = 0; i < xs.length; i++) {
+            PowerMockito.when(ring.getX(i)).thenReturn(xs[i]);
+            PowerMockito.when(ring.getY(i)).thenReturn(ys[i]);
+        }
+
+        final Polygon region = PowerMockito.mock(Polygon.class);
+        PowerMockito.when(region.getEnvelope())
+                .thenReturn(new Envelope(minX, minY, 0d, maxX, maxY, 0d));
+        PowerMockito.when(region.getExteriorRing()).thenReturn(ring);
+        return region;
+    }
+
+    private static class RecordingListener implements CacheRequestListener {
+        final CacheRequest request;
+        final int cancelAt;
+        volatile boolean completed;
+        volatile boolean canceled;
+        volatile boolean error;
+
+        RecordingListener(CacheRequest request, int cancelAt) {
+            this.request = request;
+            this.cancelAt = cancelAt;
+        }
+
+        @Override
+        public void onRequestStarted() {
+        }
+
+        @Override
+        public void onRequestComplete() {
+            completed = true;
+        }
+
+        @Override
+        public void onRequestProgress(int taskNum, int numTasks,
+                int taskProgress, int maxTaskProgress, int totalProgress,
+                int maxTotalProgress) {
+            if (cancelAt >= 0 && totalProgress >= cancelAt)
+                request.canceled = true;
+        }
+
+        @Override
+        public boolean onRequestError(Throwable t, String message,
+                boolean fatal) {
+            error = true;
+            return false;
+        }
+
+        @Override
+        public void onRequestCanceled() {
+            canceled = true;
+        }
+    }
+
+    /**
+     * Tile client that downloads tiles from the local HTTP stand-in
+     */
+    private static class HttpTileClient implements TileClient {
+        final int port;
+        final ZoomLevel[] levels = createLevels();
+
+        HttpTileClient(int port) {
+            this.port = port;
+        }
+
+        @Override
+        public String getName() {
+            return "http-test";
+        }
+
+        @Override
+        public int getSRID() {
+            return 4326;
+        }
+
+        @Override
+        public ZoomLevel[] getZoomLevel() {
+            return levels;
+        }
+
+        @Override
+        public double getOriginX() {
+            return -180d;
+        }
+
+        @Override
+        public double getOriginY() {
+            return 90d;
+        }
+
+        @Override
+        public Bitmap getTile(int zoom, int x, int y, Throwable[] error) {
+            return null;
+        }
+
+        @Override
+        public byte[] getTileData(int zoom, int x, int y, Throwable[] error) {
+            HttpURLConnection conn = null;
+            try {
+                conn = (HttpURLConnection) new URL("http://127.0.0.1:"
+                        + port + "/" + zoom + "/" + x + "/" + y)
+                                .openConnection();
+                try (InputStream is = conn.getInputStream()) {
+                    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+                    final byte[] buf = new byte[1024];
+                    int n;
+                    while ((n = is.read(buf)) > 0)
+                        data.write(buf, 0, n);
+                    return data.toByteArray();
+                }
+            } catch (IOException e) {
+                if (error != null)
+                    error[0] = e;
+                return null;
+            } finally {
+                if (conn != null)
+                    conn.disconnect();
+            }
+        }
+
+        @Override
+        public Envelope getBounds() {
+            return new Envelope(-180d, -90d, 0d, 180d, 90d, 0d);
+        }
+
+        @Override
+        public void dispose() {
+        }
+
+        @Override
+        public void clearAuthFailed() {
+        }
+
+        @Override
+        public void checkConnectivity() {
+        }
+
+        @Override
+        public void cache(CacheRequest request,
+                CacheRequestListener listener) {
+        }
+
+        @Override
+        public int estimateTileCount(CacheRequest request) {
+            return TileScraper.estimateTileCount(this, request);
+        }
+
+        @Override
+        public <T> T getControl(Class<T> controlClazz) {
+            return null;
+        }
+
+        @Override
+        public void getControls(Collection<Object> controls) {
+        }
+    }
+
+    /**
+     * URL tile client that downloads tiles from the local HTTP stand-in,
+     * subject to the per-host connection limit
+     */
+    private static class URLTileClient extends AbstractURLTileClient {
+        final int port;
+        final ZoomLevel[] levels = createLevels();
+
+        URLTileClient(int port) {
+            super("url-test", 0L, null);
+            this.port = port;
+        }
+
+        @Override
+        protected URL getTileURL(int zoom, int x, int y) {
+            try {
+                return new URL("http://127.0.0.1:" + port + "/" + zoom + "/"
+                        + x + "/" + y);
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int getSRID() {
+            return 4326;
+        }
+
+        @Override
+        public ZoomLevel[] getZoomLevel() {
+            return levels;
+        }
+
+        @Override
+        public double getOriginX() {
+            return -180d;
+        }
+
+        @Override
+        public double getOriginY() {
+            return 90d;
+        }
+
+        @Override
+        public Envelope getBounds() {
+            return new Envelope(-180d, -90d, 0d, 180d, 90d, 0d);
+        }
+
+        @Override
+        public <T> T getControl(Class<T> controlClazz) {
+            return null;
+        }
+
+        @Override
+        public void getControls(Collection<Object> controls) {
+        }
+    }
+
+    /**
+     * Container that fails every write
+     */
+    private static class FailingTileContainer extends MockTileMatrix
+            implements TileContainer {
+        FailingTileContainer() {
+            super("failing", 4326, createLevels(), -180d, 90d,
+                    new Envelope(-180d, -90d, 0d, 180d, 90d, 0d));
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return false;
+        }
+
+        @Override
+        public void setTile(int level, int x, int y, byte[] data,
+                long expiration) {
+            throw new IllegalStateException("disk full");
+        }
+
+        @Override
+        public void setTile(int level, int x, int y, Bitmap data,
+                long expiration) {
+            throw new IllegalStateException("disk full");
+        }
+
+        @Override
+        public boolean hasTileExpirationMetadata() {
+            return false;
+        }
+
+        @Override
+        public long getTileExpiration(int level, int x, int y) {
+            return -1L;
+        }
+    }
+}
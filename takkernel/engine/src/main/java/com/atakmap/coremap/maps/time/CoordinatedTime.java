@@ -336,7 +336,79 @@ public class CoordinatedTime implements Parcelable {
      * @return the formatted string.
      */
     public static String toCot(final CoordinatedTime time) {
-        return formatTime(new Date(time.getMilliseconds()));
+        return formatTime(time.getMilliseconds());
+    }
+
+    /**
+     * The formatted date and time, to second resolution, of a recently
+     * formatted second.
+     */
+    private final static class FormattedSecond {
+        final long second;
+        /** 'yyyy-MM-ddTHH:mm:ss.' */
+        final String prefix;
+
+        FormattedSecond(long second, String prefix) {
+            this.second = second;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * The seconds most recently formatted by a thread. A CoT message carries
+     * its time, start and stale, which generally fall within a handful of
+     * distinct seconds, so several seconds are retained and the full
+     * formatting is only performed when none of them match.
+     */
+    private final static class FormattedSeconds {
+        final FormattedSecond[] slots = new FormattedSecond[4];
+        int next;
+
+        FormattedSecond get(long second) {
+            for (FormattedSecond s : slots) {
+                if (s != null && s.second == second)
+                    return s;
+            }
+            return null;
+        }
+
+        void put(FormattedSecond s) {
+            slots[next] = s;
+            next = (next + 1) % slots.length;
+        }
+    }
+
+    private final static ThreadLocal<FormattedSeconds> _formattedSeconds = new ThreadLocal<FormattedSeconds>() {
+        @Override
+        protected FormattedSeconds initialValue() {
+            return new FormattedSeconds();
+        }
+    };
+
+    private static String formatTime(final long millis) {
+        long second = millis / 1000L;
+        if ((millis % 1000L) < 0L)
+            second--;
+
+        final FormattedSeconds formatted = _formattedSeconds.get();
+        FormattedSecond cached = formatted.get(second);
+        if (cached == null) {
+            final String time = formatTime(new Date(second * 1000L));
+            // only four digit years may be composed from the cached prefix
+            if (time.length() != 24 || !time.endsWith(".000Z"))
+                return formatTime(new Date(millis));
+            cached = new FormattedSecond(second, time.substring(0, 20));
+            formatted.put(cached);
+        }
+
+        final int ms = (int) (millis - (second * 1000L));
+        final char[] chars = new char[24];
+        cached.prefix.getChars(0, 20, chars, 0);
+        chars[20] = (char) ('0' + (ms / 100));
+        chars[21] = (char) ('0' + ((ms / 10) % 10));
+        chars[22] = (char) ('0' + (ms % 10));
+        chars[23] = 'Z';
+        return new String(chars);
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.atakmap.map.elevation;
 
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -11,13 +13,14 @@ import java.util.Set;
 
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.annotations.DeprecatedApi;
-import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoCalculations;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.interop.Pointer;
 import com.atakmap.coremap.maps.coords.GeoPointMetaData;
+import com.atakmap.map.layer.feature.geometry.Envelope;
 import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
 import com.atakmap.map.layer.feature.geometry.Point;
-import com.atakmap.map.layer.raster.DatasetDescriptor;
 import com.atakmap.map.layer.raster.ImageInfo;
 import com.atakmap.map.layer.raster.mosaic.FilterMosaicDatabaseCursor2;
 import com.atakmap.map.layer.raster.mosaic.MosaicDatabase2;
@@ -25,6 +28,9 @@ import com.atakmap.map.layer.raster.mosaic.MosaicDatabase2.Cursor;
 import com.atakmap.map.layer.raster.mosaic.MultiplexingMosaicDatabaseCursor2;
 import com.atakmap.spi.PriorityServiceProviderRegistry2;
 import com.atakmap.util.Filter;
+import com.atakmap.util.ReadWriteLock;
+
+import gov.tak.api.util.Disposable;
 
 public final class ElevationManager {
 
@@ -308,42 +314,148 @@ public final class ElevationManager {
         double[] src = new double[elevations.length*3];
         int idx = 0;
         GeoPoint point;
-        double north = -90;
-        double south = 90;
-        double east = -180;
-        double west = 180;
         while(points.hasNext()) {
+            if(idx == elevations.length)
+                throw new IllegalArgumentException();
             point = points.next();
             src[idx*3] = point.getLongitude();
             src[idx*3+1] = point.getLatitude();
             src[idx*3+2] = Double.NaN;
+            idx++;
+        }
 
-            if(idx == elevations.length)
-                throw new IllegalArgumentException();
-            elevations[idx++] = Double.NaN;
+        final boolean done = getElevationImpl(src, idx, filter, legacyHints);
+        for(int i = 0; i < idx; i++)
+            elevations[i] = src[(i*3)+2];
+        return done;
+    }
 
-            final double lat = point.getLatitude();
+    /**
+     * Returns elevation values for a set of points.
+     *
+     * @param lonLat        The points, as interleaved longitude, latitude
+     *                      pairs
+     * @param count         The number of points
+     * @param elevations    Returns the elevation values, as meters HAE, for
+     *                      the specified points. Values are
+     *                      <code>Double.NaN</code> where no elevation is
+     *                      available.
+     * @param filter        The filter, may be <code>null</code>
+     * @param legacyHints   The hints, may be <code>null</code>
+     * @return  <code>true</code> if elevation values were found for all
+     *          points, <code>false</code> otherwise
+     * @throws IllegalArgumentException if the points or elevations parameters are incorrect.
+     */
+    public static boolean getElevation(double[] lonLat, int count, double[] elevations, QueryParameters filter, ElevationData.Hints legacyHints) {
+        if(lonLat == null || lonLat.length < count*2)
+            throw new IllegalArgumentException("lonLat must contain count points");
+        if(elevations == null || elevations.length < count)
+            throw new IllegalArgumentException("elevations must contain count values");
+        if(count == 0)
+            return true;
+
+        final double[] src = new double[count*3];
+        for(int i = 0; i < count; i++) {
+            src[i*3] = lonLat[i*2];
+            src[i*3+1] = lonLat[i*2+1];
+            src[i*3+2] = Double.NaN;
+        }
+
+        final boolean done = getElevationImpl(src, count, filter, legacyHints);
+        for(int i = 0; i < count; i++)
+            elevations[i] = src[(i*3)+2];
+        return done;
+    }
+
+    /**
+     * Samples elevation along a polyline. A sample is placed at every vertex
+     * and at the specified interval along each segment, measured from the
+     * start of the segment. All samples are obtained with a single query.
+     *
+     * @param lonLat    The polyline vertices, as interleaved longitude,
+     *                  latitude pairs
+     * @param count     The number of vertices
+     * @param interval  The sample interval, in meters
+     * @param filter    The filter, may be <code>null</code>
+     * @param hints     The hints, may be <code>null</code>
+     * @return  The samples, as interleaved longitude, latitude, elevation
+     *          triplets. Elevation is in meters HAE, or
+     *          <code>Double.NaN</code> if not available.
+     * @throws IllegalArgumentException if the parameters are incorrect.
+     */
+    public static double[] sampleAlongPolyline(double[] lonLat, int count, double interval, QueryParameters filter, ElevationData.Hints hints) {
+        if(lonLat == null || lonLat.length < count*2)
+            throw new IllegalArgumentException("lonLat must contain count points");
+        if(!(interval > 0d))
+            throw new IllegalArgumentException("interval must be greater than zero");
+        if(count == 0)
+            return new double[0];
+
+        // compute the number of intervals along each segment and the number
+        // of samples. Each segment contributes a sample at every interval
+        // strictly inside the segment plus its end vertex.
+        final int[] steps = new int[count];
+        int numSamples = 1;
+        for(int i = 1; i < count; i++) {
+            final GeoPoint a = new GeoPoint(lonLat[(i-1)*2+1], lonLat[(i-1)*2]);
+            final GeoPoint b = new GeoPoint(lonLat[i*2+1], lonLat[i*2]);
+            steps[i] = (int)Math.ceil(GeoCalculations.distanceTo(a, b) / interval);
+            numSamples += Math.max(steps[i], 1);
+        }
+
+        final double[] lla = new double[numSamples*3];
+        int idx = 0;
+        lla[idx++] = lonLat[0];
+        lla[idx++] = lonLat[1];
+        lla[idx++] = Double.NaN;
+        for(int i = 1; i < count; i++) {
+            if(steps[i] > 1) {
+                final GeoPoint a = new GeoPoint(lonLat[(i-1)*2+1], lonLat[(i-1)*2]);
+                final GeoPoint b = new GeoPoint(lonLat[i*2+1], lonLat[i*2]);
+                final double bearing = GeoCalculations.bearingTo(a, b);
+                // compute each distance directly rather than accumulating, so
+                // that rounding cannot add a sample
+                for(int k = 1; k < steps[i]; k++) {
+                    final GeoPoint p = GeoCalculations.pointAtDistance(a, bearing, k*interval);
+                    lla[idx++] = p.getLongitude();
+                    lla[idx++] = p.getLatitude();
+                    lla[idx++] = Double.NaN;
+                }
+            }
+            lla[idx++] = lonLat[i*2];
+            lla[idx++] = lonLat[i*2+1];
+            lla[idx++] = Double.NaN;
+        }
+
+        getElevationImpl(lla, numSamples, filter, hints);
+        return lla;
+    }
+
+    /**
+     * Populates the elevation for each point, adapting the query parameters
+     * once for all points.
+     *
+     * @param lla   The points, as interleaved longitude, latitude, elevation
+     *              triplets
+     * @param count The number of points
+     */
+    private static boolean getElevationImpl(double[] lla, int count, QueryParameters filter, ElevationData.Hints legacyHints) {
+        double north = -90;
+        double south = 90;
+        double east = -180;
+        double west = 180;
+        for(int i = 0; i < count; i++) {
+            final double lng = lla[i*3];
+            final double lat = lla[i*3+1];
             if(lat > north)
                 north = lat;
             if(lat < south)
                 south = lat;
-            final double lng = point.getLongitude();
             if(lng > east)
                 east = lng;
             if(lng < west)
                 west = lng;
         }
-        final GeoBounds hint = new GeoBounds(north, west, south, east);
-
-        ElevationData.Hints h = legacyHints;
-        if (legacyHints == null) {
-            h = new ElevationData.Hints();
-            h.bounds = new GeoBounds(north, west, south, east);
-        } else if (legacyHints.bounds == null) { 
-            h = new ElevationData.Hints(legacyHints);
-            h.bounds = new GeoBounds(north, west, south, east);
-        }
-            
 
         // set up filter
         if(filter != null)
@@ -351,11 +463,8 @@ public final class ElevationManager {
         else
             filter = new QueryParameters();
 
-        filter.spatialFilter = DatasetDescriptor.createSimpleCoverage(
-                new GeoPoint(hint.getNorth(), hint.getWest()),
-                new GeoPoint(hint.getNorth(), hint.getEast()),
-                new GeoPoint(hint.getSouth(), hint.getEast()),
-                new GeoPoint(hint.getSouth(), hint.getWest()));
+        filter.spatialFilter = GeometryFactory.fromEnvelope(
+                new Envelope(west, south, 0d, east, north, 0d));
 
         final ElevationSource.QueryParameters params = Adapter.adapt(filter, legacyHints);
         Pointer cparams = null;
@@ -365,10 +474,7 @@ public final class ElevationManager {
                 NativeElevationSource.QueryParameters_adapt(params, cparams.raw);
             }
 
-            final boolean done = getElevation(src, idx, (cparams != null) ? cparams.raw : 0L);
-            for(int i = 0; i < idx; i++)
-                elevations[i] = src[(i*3)+2];
-            return done;
+            return getElevation(lla, count, (cparams != null) ? cparams.raw : 0L);
         } finally {
             if(cparams != null)
                 NativeElevationSource.QueryParameters_destruct(cparams);
@@ -424,6 +530,76 @@ public final class ElevationManager {
         }
     }
 
+    /**
+     * Populates elevation values in place for a set of points. No copies of
+     * the point data are made.
+     *
+     * @param lla       The points, as interleaved longitude, latitude,
+     *                  elevation triplets. On return, the elevation of each
+     *                  point is set to the value in meters HAE, or
+     *                  <code>Double.NaN</code> if not available.
+     * @param offset    The offset into the array of the first point, in
+     *                  points
+     * @param count     The number of points
+     * @param ctx       The query context
+     * @return  <code>true</code> if elevation values were found for all
+     *          points, <code>false</code> otherwise
+     * @throws IllegalArgumentException if the parameters are incorrect.
+     */
+    public static boolean getElevation(double[] lla, int offset, int count, QueryContext ctx) {
+        if(lla == null)
+            throw new IllegalArgumentException("lla cannot be null");
+        if(offset < 0 || count < 0 || (offset+count)*3 > lla.length)
+            throw new IllegalArgumentException("offset and count out of range");
+        if(ctx == null)
+            throw new IllegalArgumentException("ctx cannot be null");
+        if(count == 0)
+            return true;
+
+        ctx.rwlock.acquireRead();
+        try {
+            return getElevation(lla, offset, count, ctx.raw());
+        } finally {
+            ctx.rwlock.releaseRead();
+        }
+    }
+
+    /**
+     * Populates elevation values in place for a set of points held in a
+     * direct buffer. Points are read starting at the buffer's position; the
+     * position is not modified.
+     *
+     * @param lla       The points, as interleaved longitude, latitude,
+     *                  elevation triplets. The buffer must be direct and in
+     *                  native byte order. On return, the elevation of each
+     *                  point is set to the value in meters HAE, or
+     *                  <code>Double.NaN</code> if not available.
+     * @param count     The number of points
+     * @param ctx       The query context
+     * @return  <code>true</code> if elevation values were found for all
+     *          points, <code>false</code> otherwise
+     * @throws IllegalArgumentException if the parameters are incorrect.
+     */
+    public static boolean getElevation(DoubleBuffer lla, int count, QueryContext ctx) {
+        if(lla == null)
+            throw new IllegalArgumentException("lla cannot be null");
+        if(!lla.isDirect() || lla.order() != ByteOrder.nativeOrder())
+            throw new IllegalArgumentException("lla must be a direct buffer in native byte order");
+        if(count < 0 || count*3 > lla.remaining())
+            throw new IllegalArgumentException("count out of range");
+        if(ctx == null)
+            throw new IllegalArgumentException("ctx cannot be null");
+        if(count == 0)
+            return true;
+
+        ctx.rwlock.acquireRead();
+        try {
+            return getElevation(lla, lla.position(), count, ctx.raw());
+        } finally {
+            ctx.rwlock.releaseRead();
+        }
+    }
+
     /**************************************************************************/
     
     public static void registerDataSpi(ElevationDataSpi spi) {
@@ -484,6 +660,61 @@ public final class ElevationManager {
         }
     }
     
+    /**
+     * Query parameters that have been prepared for use with the native
+     * elevation service. A context may be reused for any number of queries,
+     * avoiding the cost of preparing the parameters on every call, and may
+     * be used concurrently by multiple threads. The context must be disposed
+     * when no longer needed.
+     */
+    public final static class QueryContext implements Disposable {
+        final ReadWriteLock rwlock = new ReadWriteLock();
+        Pointer cparams;
+        boolean disposed;
+
+        /**
+         * @param params    The query parameters, may be <code>null</code>
+         */
+        public QueryContext(ElevationSource.QueryParameters params) {
+            if(params != null) {
+                this.cparams = NativeElevationSource.QueryParameters_create();
+                NativeElevationSource.QueryParameters_adapt(params, this.cparams.raw);
+            }
+        }
+
+        /**
+         * @param filter    The filter, may be <code>null</code>
+         * @param hints     The hints, may be <code>null</code>
+         */
+        public QueryContext(QueryParameters filter, ElevationData.Hints hints) {
+            this(Adapter.adapt(filter, hints));
+        }
+
+        /**
+         * Returns the native parameters. Must be invoked while holding the
+         * read lock.
+         */
+        long raw() {
+            if(this.disposed)
+                throw new IllegalStateException("QueryContext has been disposed");
+            return (this.cparams != null) ? this.cparams.raw : 0L;
+        }
+
+        @Override
+        public void dispose() {
+            this.rwlock.acquireWrite();
+            try {
+                if(this.cparams != null) {
+                    NativeElevationSource.QueryParameters_destruct(this.cparams);
+                    this.cparams = null;
+                }
+                this.disposed = true;
+            } finally {
+                this.rwlock.releaseWrite();
+            }
+        }
+    }
+
     /**************************************************************************/
     
     private final static class ElevationModelFilter implements Filter<MosaicDatabase2.Cursor> {
@@ -512,4 +743,6 @@ public final class ElevationManager {
     static native int queryElevationSourcesCount(long cparams);
     static native double getElevation(double latitude, double longitude, long cfilter, String[] resultSource);
     static native boolean getElevation(double[] lla, int count, long cparams);
+    static native boolean getElevation(double[] lla, int offset, int count, long cparams);
+    static native boolean getElevation(DoubleBuffer lla, int offset, int count, long cparams);
 }
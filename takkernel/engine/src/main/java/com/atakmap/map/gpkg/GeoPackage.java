@@ -806,6 +806,36 @@ public class GeoPackage {
         }
     }
     
+    /**
+     * Inserts a batch of tiles, replacing any existing tiles at the same
+     * indices. The insert statement is compiled once for the batch. Relies on
+     * the <code>UNIQUE (zoom_level, tile_column, tile_row)</code> constraint
+     * that the specification requires of tile pyramid tables.
+     */
+    public void insertTiles(String tileTable, int count, int[] zoom, int[] column, int[] row, byte[][] blob) {
+        StatementIface stmt = null;
+        try {
+            StringBuilder sql = new StringBuilder();
+            sql.append("INSERT OR REPLACE INTO ");
+            sql.append(tileTable);
+            sql.append(" (tile_data, zoom_level, tile_column, tile_row) VALUES(?, ?, ?, ?)");
+
+            stmt = this.database.compileStatement(sql.toString());
+            for(int i = 0; i < count; i++) {
+                stmt.clearBindings();
+                stmt.bind(1, blob[i]);
+                stmt.bind(2, zoom[i]);
+                stmt.bind(3, column[i]);
+                stmt.bind(4, row[i]);
+
+                stmt.execute();
+            }
+        } finally {
+            if(stmt != null)
+                stmt.close();
+        }
+    }
+
     private boolean containsTile(String tileTable, int zoom, int column, int row) {
         QueryIface result = null;
         try {
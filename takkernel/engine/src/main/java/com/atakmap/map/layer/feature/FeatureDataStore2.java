@@ -356,7 +356,7 @@ public interface FeatureDataStore2 extends Disposable {
             }
             
             public final static class Arithmetic extends AttributeFilter {
-                enum Comparison {
+                public enum Comparison {
                     LessThan,
                     LessThanOrEqual,
                     GreaterThan,
@@ -376,7 +376,7 @@ public interface FeatureDataStore2 extends Disposable {
             }
             
             public final static class Text extends AttributeFilter {
-                enum Comparison {
+                public enum Comparison {
                     Matches,
                     Equals,
                     EqualsIgnoreCase,
@@ -11,6 +11,7 @@ import java.nio.ByteOrder;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
@@ -21,6 +22,7 @@ import android.util.Pair;
 
 import com.atakmap.content.BindArgument;
 import com.atakmap.content.WhereClauseBuilder;
+import com.atakmap.coremap.io.DatabaseInformation;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.database.CursorIface;
@@ -81,12 +83,44 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     
     private final static int DATABASE_VERSION = 4;
 
+    /**
+     * The number of features inserted by {@link #insertFeatures(FeatureCursor)}
+     * after which the indices are dropped for the remainder of the insert and
+     * rebuilt once it completes.
+     */
+    private final static int BULK_INSERT_THRESHOLD = 10000;
+
+    /**
+     * The bulk insert threshold applied by this instance. Benchmarks may set
+     * it to {@link Integer#MAX_VALUE} to compare against per-feature index
+     * updates.
+     */
+    int bulkInsertThreshold = BULK_INSERT_THRESHOLD;
+
     final String databaseFile;
 
     final boolean spatialIndexEnabled;
 
     DatabaseIface database;
 
+    /** maximum number of read-only connections */
+    private final static int MAX_READ_CONNECTIONS = 3;
+
+    /**
+     * Idle read-only connections. Queries are serviced on these connections
+     * so that they do not serialize with each other or with writes on
+     * {@link #database}; the database is placed in WAL mode so readers
+     * observe the last committed state while a write is in progress.
+     * Guarded by itself.
+     */
+    private final LinkedList<DatabaseIface> readers = new LinkedList<DatabaseIface>();
+    /** the number of open read-only connections */
+    private int numReaders;
+    /** <code>true</code> if the database was placed in WAL mode */
+    private final boolean writeAheadLog;
+    /** <code>true</code> if queries may be serviced on read-only connections */
+    private boolean readersEnabled;
+
     private static class FeatureSetDefn {
         boolean visible;
         int visibleVersion;
@@ -113,6 +147,12 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     final Map<Long, AttributeSpec> idToAttrSchema;
     final Map<String, AttributeSpec> keyToAttrSchema;
     boolean attrSchemaDirty;
+
+    /**
+     * The attribute keys mirrored into the <code>attribs_index</code> table.
+     * The set is immutable and replaced on modification.
+     */
+    private volatile Set<String> indexedAttribs;
     
     protected FDB2(File db,
                    int modificationFlags,
@@ -150,12 +190,17 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             }
 
         }
+
+        this.writeAheadLog = (dbFile != null) && this.enableWriteAheadLog();
+        this.readersEnabled = this.writeAheadLog;
         
         this.idToAttrSchema = new HashMap<Long, AttributeSpec>();
         this.keyToAttrSchema = new HashMap<String, AttributeSpec>();
         
         this.attrSchemaDirty = true;
 
+        this.indexedAttribs = this.queryIndexedAttributesNoSync();
+
         this.featureSets = new HashMap<Long, FeatureSetDefn>();
 
         this.refreshImpl();
@@ -325,6 +370,116 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                               "END;", null);
     }
 
+    private boolean enableWriteAheadLog() {
+        CursorIface result = null;
+        try {
+            result = this.database.query("PRAGMA journal_mode = WAL", null);
+            return result.moveToNext() && "wal".equalsIgnoreCase(result.getString(0));
+        } catch(Throwable t) {
+            Log.w(ABS_TAG, "Failed to enable WAL for " + this.databaseFile, t);
+            return false;
+        } finally {
+            if(result != null)
+                result.close();
+        }
+    }
+
+    /**
+     * Returns an idle read-only connection, opening a new one if the pool is
+     * not exhausted. Returns <code>null</code> if the query should be
+     * serviced on the write connection.
+     */
+    private DatabaseIface acquireReader() {
+        // the modify lock holder must observe its own uncommitted changes
+        if(this.holdsModifyLock())
+            return null;
+        synchronized(this.readers) {
+            if(!this.readersEnabled)
+                return null;
+            if(!this.readers.isEmpty())
+                return this.readers.removeFirst();
+            // a single query may hold several cursors; fall back on the write
+            // connection rather than blocking when the pool is exhausted
+            if(this.numReaders == MAX_READ_CONNECTIONS)
+                return null;
+            this.numReaders++;
+        }
+
+        DatabaseIface reader = null;
+        try {
+            reader = IOProviderFactory.createDatabase(new File(this.databaseFile), DatabaseInformation.OPTION_READONLY);
+        } catch(RuntimeException e) {
+            Log.w(ABS_TAG, "Failed to open read connection to " + this.databaseFile, e);
+        }
+        if(reader == null) {
+            synchronized(this.readers) {
+                this.numReaders--;
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Enables or disables servicing queries on read-only connections. Has no
+     * effect if the database is not in WAL mode. Idle connections are closed
+     * when disabled; connections held by open cursors are closed on release.
+     * Used by benchmarks to compare against the write connection.
+     */
+    void setReadConnectionsEnabled(boolean enabled) {
+        synchronized(this.readers) {
+            this.readersEnabled = enabled && this.writeAheadLog && (this.database != null);
+            if(!this.readersEnabled)
+                this.closeIdleReadersNoSync();
+        }
+    }
+
+    private void closeIdleReadersNoSync() {
+        for(DatabaseIface reader : this.readers)
+            reader.close();
+        this.numReaders -= this.readers.size();
+        this.readers.clear();
+    }
+
+    private void releaseReader(DatabaseIface reader) {
+        synchronized(this.readers) {
+            if(this.readersEnabled) {
+                this.readers.addLast(reader);
+                return;
+            }
+            this.numReaders--;
+        }
+        reader.close();
+    }
+
+    /**
+     * Executes the specified query on a read-only connection, if one is
+     * available, otherwise on the write connection. The connection is
+     * returned to the pool when the cursor is closed.
+     *
+     * @throws DataStoreException   If the datastore has been disposed
+     */
+    private CursorIface queryRead(String sql, Collection<BindArgument> args) throws DataStoreException {
+        final DatabaseIface reader = this.acquireReader();
+        if(reader == null) {
+            // the statement was built outside of the lock; the write
+            // connection may have been closed since
+            synchronized(this) {
+                if(this.database == null)
+                    throw new DataStoreException("Datastore is closed");
+                return BindArgument.query(this.database, sql, args.isEmpty() ? null : args);
+            }
+        }
+
+        CursorIface result = null;
+        try {
+            result = BindArgument.query(reader, sql, args.isEmpty() ? null : args);
+        } finally {
+            if(result == null)
+                this.releaseReader(reader);
+        }
+        return new ReaderCursor(result, reader);
+    }
+
     protected void validateInfo() {
         if(!this.infoDirty)
             return;
@@ -411,6 +566,274 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             this.attrSchemaDirty = false;
         }
     }
+
+    /**************************************************************************/
+    // Indexed attributes
+
+    /**
+     * Sets the attribute keys that are indexed for query. Values for indexed
+     * keys are mirrored into an indexed side table when attributes are
+     * written, and {@link FeatureQueryParameters#attributeFilters} on
+     * indexed keys are evaluated in SQL. Filters on keys that are not indexed
+     * are not evaluated.
+     *
+     * <P>Only top-level attributes of type <code>int</code>,
+     * <code>long</code>, <code>double</code> and <code>String</code> are
+     * indexed. Existing features are indexed when a key is added.
+     * Arithmetic filters only match numeric values. Possible values match
+     * string values by text and numeric values by number.
+     *
+     * @param keys  The keys to index; an empty set disables indexing
+     */
+    public void setIndexedAttributes(Set<String> keys) throws DataStoreException {
+        internalAcquireModifyLock(this, true, true);
+        try {
+            this.database.beginTransaction();
+            try {
+                this.setIndexedAttributesNoSync(keys);
+                this.database.setTransactionSuccessful();
+            } finally {
+                this.database.endTransaction();
+            }
+        } finally {
+            this.releaseModifyLock();
+        }
+    }
+
+    /**
+     * Returns the attribute keys that are indexed for query.
+     */
+    public Set<String> getIndexedAttributes() {
+        return this.indexedAttribs;
+    }
+
+    private void setIndexedAttributesNoSync(Set<String> keys) {
+        if(keys == null)
+            keys = Collections.<String>emptySet();
+        final Set<String> current = this.indexedAttribs;
+        if(current.equals(keys))
+            return;
+
+        this.database.execute("CREATE TABLE IF NOT EXISTS attribs_index_keys (key TEXT PRIMARY KEY)", null);
+        this.database.execute("CREATE TABLE IF NOT EXISTS attribs_index (attribs_id INTEGER, key TEXT, value)", null);
+        this.database.execute("CREATE INDEX IF NOT EXISTS IdxAttribsIndexKeyValue ON attribs_index(key, value)", null);
+
+        StatementIface stmt;
+
+        // drop keys no longer indexed
+        for(String key : current) {
+            if(keys.contains(key))
+                continue;
+            stmt = null;
+            try {
+                stmt = this.database.compileStatement("DELETE FROM attribs_index WHERE key = ?");
+                stmt.bind(1, key);
+                stmt.execute();
+            } finally {
+                if(stmt != null)
+                    stmt.close();
+            }
+            stmt = null;
+            try {
+                stmt = this.database.compileStatement("DELETE FROM attribs_index_keys WHERE key = ?");
+                stmt.bind(1, key);
+                stmt.execute();
+            } finally {
+                if(stmt != null)
+                    stmt.close();
+            }
+        }
+
+        final Set<String> added = new HashSet<String>(keys);
+        added.removeAll(current);
+        for(String key : added) {
+            stmt = null;
+            try {
+                stmt = this.database.compileStatement("INSERT INTO attribs_index_keys (key) VALUES (?)");
+                stmt.bind(1, key);
+                stmt.execute();
+            } finally {
+                if(stmt != null)
+                    stmt.close();
+            }
+        }
+
+        this.indexedAttribs = Collections.unmodifiableSet(new HashSet<String>(keys));
+        if(added.isEmpty())
+            return;
+
+        // index the existing attributes for the added keys
+        this.validateAttributeSchema();
+        InsertContext ctx = new InsertContext();
+        CursorIface result = null;
+        try {
+            result = this.database.query("SELECT id, value FROM attributes", null);
+            while(result.moveToNext()) {
+                final byte[] blob = result.getBlob(1);
+                if(blob == null)
+                    continue;
+                final AttributeSet attribs = decodeAttributes(blob, this.idToAttrSchema);
+                if(attribs != null)
+                    this.indexAttributesNoSync(ctx, result.getLong(0), attribs, added);
+            }
+        } finally {
+            if(result != null)
+                result.close();
+            ctx.dispose();
+        }
+    }
+
+    private Set<String> queryIndexedAttributesNoSync() {
+        if(!Databases.getTableNames(this.database).contains("attribs_index_keys"))
+            return Collections.<String>emptySet();
+
+        Set<String> retval = new HashSet<String>();
+        CursorIface result = null;
+        try {
+            result = this.database.query("SELECT key FROM attribs_index_keys", null);
+            while(result.moveToNext())
+                retval.add(result.getString(0));
+        } finally {
+            if(result != null)
+                result.close();
+        }
+        return Collections.unmodifiableSet(retval);
+    }
+
+    /**
+     * Mirrors the values for the indexed keys into the index table. Attribute
+     * rows are never modified once written, so index rows are keyed on the
+     * attributes ID and do not need to be updated.
+     */
+    private void indexAttributesNoSync(InsertContext ctx, long attribsId, AttributeSet attribs) {
+        final Set<String> keys = this.indexedAttribs;
+        if(keys.isEmpty() || attribs == null)
+            return;
+        this.indexAttributesNoSync(ctx, attribsId, attribs, keys);
+    }
+
+    private void indexAttributesNoSync(InsertContext ctx, long attribsId, AttributeSet attribs, Set<String> keys) {
+        StatementIface stmt = (ctx != null) ? ctx.insertAttributeIndexStatement : null;
+        try {
+            for(String key : keys) {
+                if(!attribs.containsAttribute(key))
+                    continue;
+                final Class<?> type = attribs.getAttributeType(key);
+                if(type != Integer.TYPE && type != Long.TYPE && type != Double.TYPE && type != String.class)
+                    continue;
+
+                if(stmt == null) {
+                    stmt = this.database.compileStatement("INSERT INTO attribs_index (attribs_id, key, value) VALUES (?, ?, ?)");
+                    if(ctx != null)
+                        ctx.insertAttributeIndexStatement = stmt;
+                }
+                try {
+                    stmt.bind(1, attribsId);
+                    stmt.bind(2, key);
+                    if(type == Integer.TYPE)
+                        stmt.bind(3, attribs.getIntAttribute(key));
+                    else if(type == Long.TYPE)
+                        stmt.bind(3, attribs.getLongAttribute(key));
+                    else if(type == Double.TYPE)
+                        stmt.bind(3, attribs.getDoubleAttribute(key));
+                    else
+                        stmt.bind(3, attribs.getStringAttribute(key));
+                    stmt.execute();
+                } finally {
+                    stmt.clearBindings();
+                }
+            }
+        } finally {
+            if(ctx == null && stmt != null)
+                stmt.close();
+        }
+    }
+
+    private void appendAttributeFilters(Collection<FeatureQueryParameters.AttributeFilter> filters, WhereClauseBuilder whereClause) {
+        final Set<String> keys = this.indexedAttribs;
+        for(FeatureQueryParameters.AttributeFilter filter : filters) {
+            if(!keys.contains(filter.key))
+                continue;
+
+            whereClause.beginCondition();
+            whereClause.append("features.attribs_id IN (SELECT attribs_id FROM attribs_index WHERE key = ? AND ");
+            whereClause.addArg(filter.key);
+            if(filter instanceof FeatureQueryParameters.AttributeFilter.Arithmetic) {
+                final FeatureQueryParameters.AttributeFilter.Arithmetic arithmetic = (FeatureQueryParameters.AttributeFilter.Arithmetic)filter;
+                // 'value' has no declared type; SQLite orders text after all
+                // numbers, so string values must be excluded explicitly
+                whereClause.append("typeof(value) IN ('integer', 'real') AND ");
+                switch(arithmetic.comparison) {
+                    case LessThan :
+                        whereClause.append("value < ?");
+                        break;
+                    case LessThanOrEqual :
+                        whereClause.append("value <= ?");
+                        break;
+                    case GreaterThan :
+                        whereClause.append("value > ?");
+                        break;
+                    case GreaterThanOrEqual :
+                        whereClause.append("value >= ?");
+                        break;
+                    case Equals :
+                        whereClause.append("value = ?");
+                        break;
+                    case NotEqual :
+                        whereClause.append("value <> ?");
+                        break;
+                    default :
+                        throw new IllegalArgumentException();
+                }
+                whereClause.addArg(arithmetic.value);
+            } else if(filter instanceof FeatureQueryParameters.AttributeFilter.Text) {
+                final FeatureQueryParameters.AttributeFilter.Text text = (FeatureQueryParameters.AttributeFilter.Text)filter;
+                switch(text.comparison) {
+                    case Matches :
+                        whereClause.append("value LIKE ?");
+                        break;
+                    case Equals :
+                        whereClause.append("value = ?");
+                        break;
+                    case EqualsIgnoreCase :
+                        whereClause.append("value = ? COLLATE NOCASE");
+                        break;
+                    case NotEqual :
+                        whereClause.append("value <> ?");
+                        break;
+                    default :
+                        throw new IllegalArgumentException();
+                }
+                whereClause.addArg(text.value);
+            } else if(filter instanceof FeatureQueryParameters.AttributeFilter.PossibleValues) {
+                // 'value' stores each attribute with its own type and a text
+                // argument never equals a numeric value. Bind each candidate
+                // as text and, if it parses, as a number as well.
+                final Collection<String> values = ((FeatureQueryParameters.AttributeFilter.PossibleValues)filter).values;
+                final Collection<BindArgument> args = new LinkedList<BindArgument>();
+                for(String s : values) {
+                    if(s == null) {
+                        args.add(new BindArgument());
+                        continue;
+                    }
+                    args.add(new BindArgument(s));
+                    if(WhereClauseBuilder.isWildcard(s))
+                        continue;
+                    try {
+                        args.add(new BindArgument(Long.parseLong(s)));
+                    } catch(NumberFormatException e) {
+                        try {
+                            args.add(new BindArgument(Double.parseDouble(s)));
+                        } catch(NumberFormatException ignored) {}
+                    }
+                }
+                whereClause.appendIn2("value", args);
+            } else {
+                throw new IllegalArgumentException();
+            }
+            whereClause.append(")");
+        }
+    }
     
     protected static boolean isCompatible(FeatureSetDefn defn, FeatureSetQueryParameters params) {
         if(params == null)
@@ -635,7 +1058,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     }
 
     @Override
-    public synchronized FeatureCursor queryFeatures(FeatureQueryParameters params) throws DataStoreException {
+    public FeatureCursor queryFeatures(FeatureQueryParameters params) throws DataStoreException {
         if(this.database == null)
             throw new DataStoreException("Datastore is closed");
 
@@ -718,7 +1141,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         if(params == null) {
             CursorIface result = null;
             try {
-                result = BindArgument.query(this.database, sql.toString(), args.isEmpty() ? null : args);
+                result = this.queryRead(sql.toString(), args);
 
                 final FeatureCursor retval = 
                        new FeatureCursorImpl(result,
@@ -739,163 +1162,151 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             }
         }
         
-        Collection<FeatureSetDefn> fsNoCheck = this.filterNoSync(params, true);
-        if(fsNoCheck.isEmpty())
-            return new MultiplexingFeatureCursor(Collections.<FeatureCursor>emptySet(), null);
+        // the statements are built while holding the lock and executed after
+        // it is released so that queries do not block each other or writers
+        LinkedList<Pair<String, LinkedList<BindArgument>>> statements = new LinkedList<Pair<String, LinkedList<BindArgument>>>();
+        synchronized(this) {
+            Collection<FeatureSetDefn> fsNoCheck = this.filterNoSync(params, true);
+            if(fsNoCheck.isEmpty())
+                return new MultiplexingFeatureCursor(Collections.<FeatureCursor>emptySet(), null);
 
-        Collection<FeatureSetDefn> fsCheck = new LinkedList<FeatureSetDefn>();
-        if(params.visibleOnly) {
-            this.validateInfo();
+            Collection<FeatureSetDefn> fsCheck = new LinkedList<FeatureSetDefn>();
+            if(params.visibleOnly) {
+                this.validateInfo();
             
-            Iterator<FeatureSetDefn> iter = fsNoCheck.iterator();
-            FeatureSetDefn defn;
-            while(iter.hasNext()) {
-                defn = iter.next();
-                if(defn.visibleCheck) {
-                    iter.remove();
-                    fsCheck.add(defn);
+                Iterator<FeatureSetDefn> iter = fsNoCheck.iterator();
+                FeatureSetDefn defn;
+                while(iter.hasNext()) {
+                    defn = iter.next();
+                    if(defn.visibleCheck) {
+                        iter.remove();
+                        fsCheck.add(defn);
+                    }
                 }
             }
-        }
-        if(params.featureSetFilter != null && (!Double.isNaN(params.featureSetFilter.minResolution) || !Double.isNaN(params.featureSetFilter.maxResolution))) {
-            this.validateInfo();
+            if(params.featureSetFilter != null && (!Double.isNaN(params.featureSetFilter.minResolution) || !Double.isNaN(params.featureSetFilter.maxResolution))) {
+                this.validateInfo();
             
-            Iterator<FeatureSetDefn> iter = fsNoCheck.iterator();
-            FeatureSetDefn defn;
-            while(iter.hasNext()) {
-                defn = iter.next();
-                if(defn.lodCheck) {
-                    iter.remove();
-                    fsCheck.add(defn);
+                Iterator<FeatureSetDefn> iter = fsNoCheck.iterator();
+                FeatureSetDefn defn;
+                while(iter.hasNext()) {
+                    defn = iter.next();
+                    if(defn.lodCheck) {
+                        iter.remove();
+                        fsCheck.add(defn);
+                    }
                 }
             }
-        }
         
-        LinkedList<FeatureCursor> retval = new LinkedList<FeatureCursor>();
-        if(fsCheck != null) {
-            for(FeatureSetDefn fs : fsCheck) {
-                StringBuilder subsql = new StringBuilder();
-                LinkedList<BindArgument> subargs = new LinkedList<BindArgument>();
-                WhereClauseBuilder where = new WhereClauseBuilder();
+            if(fsCheck != null) {
+                for(FeatureSetDefn fs : fsCheck) {
+                    StringBuilder subsql = new StringBuilder();
+                    LinkedList<BindArgument> subargs = new LinkedList<BindArgument>();
+                    WhereClauseBuilder where = new WhereClauseBuilder();
                 
-                if(!this.buildParamsWhereClauseCheck(params, fs, where))
-                    continue;
+                    if(!this.buildParamsWhereClauseCheck(params, fs, where))
+                        continue;
                 
-                subsql.append(sql);
-                subargs.addAll(args);
-
-                final String select = where.getSelection();
-                if(select != null) {
-                    subsql.append(" WHERE ");
-                    subsql.append(select);
-                    subargs.addAll(where.getBindArgs());
-                }
+                    subsql.append(sql);
+                    subargs.addAll(args);
+
+                    final String select = where.getSelection();
+                    if(select != null) {
+                        subsql.append(" WHERE ");
+                        subsql.append(select);
+                        subargs.addAll(where.getBindArgs());
+                    }
 
-                if(params.order != null) {
-                    boolean first = true;
-                    StringBuilder orderSql = new StringBuilder();
-                    for(FeatureQueryParameters.Order order : params.order)
-                        first = !appendOrder(order, orderSql, subargs, first);
-                    if(!first) {
-                        subsql.append(" ORDER BY ");
-                        subsql.append(orderSql);
+                    if(params.order != null) {
+                        boolean first = true;
+                        StringBuilder orderSql = new StringBuilder();
+                        for(FeatureQueryParameters.Order order : params.order)
+                            first = !appendOrder(order, orderSql, subargs, first);
+                        if(!first) {
+                            subsql.append(" ORDER BY ");
+                            subsql.append(orderSql);
+                        }
                     }
-                }
 
-                if(params.limit > 0) {
-                    subsql.append(" LIMIT ?");
-                    subargs.add(new BindArgument(params.limit));
+                    if(params.limit > 0) {
+                        subsql.append(" LIMIT ?");
+                        subargs.add(new BindArgument(params.limit));
                     
-                    if(fsCheck.size() == 1 && fsNoCheck.isEmpty() && params.offset > 0) {
-                        subsql.append(" OFFSET ?");
-                        subargs.add(new BindArgument(params.offset));
+                        if(fsCheck.size() == 1 && fsNoCheck.isEmpty() && params.offset > 0) {
+                            subsql.append(" OFFSET ?");
+                            subargs.add(new BindArgument(params.offset));
+                        }
                     }
-                }
                 
-                CursorIface result = null;
-                try {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-
-                    retval.add(new FeatureCursorImpl(result,
-                                                     idCol,
-                                                     fsidCol,
-                                                     versionCol,
-                                                     nameCol,
-                                                     geomCol,
-                                                     styleCol,
-                                                     attribsCol,
-                                                     altitudeModeCol,
-                                                     extrudeCol));
-                    result = null;
-                } finally {
-                    if(result != null)
-                        result.close();
+                    statements.add(Pair.create(subsql.toString(), subargs));
                 }
             }
-        }
 
-        if(!fsNoCheck.isEmpty()) {
-            do {
-                StringBuilder subsql = new StringBuilder();
-                LinkedList<BindArgument> subargs = new LinkedList<BindArgument>();
-                WhereClauseBuilder where = new WhereClauseBuilder();
+            if(!fsNoCheck.isEmpty()) {
+                do {
+                    StringBuilder subsql = new StringBuilder();
+                    LinkedList<BindArgument> subargs = new LinkedList<BindArgument>();
+                    WhereClauseBuilder where = new WhereClauseBuilder();
                 
-                if(!this.buildParamsWhereClauseNoCheck(params, (fsNoCheck.size() == this.featureSets.size()) ? null : fsNoCheck, where))
-                    continue;
+                    if(!this.buildParamsWhereClauseNoCheck(params, (fsNoCheck.size() == this.featureSets.size()) ? null : fsNoCheck, where))
+                        continue;
                 
-                subsql.append(sql);
-                subargs.addAll(args);
-
-                final String select = where.getSelection();
-                if(select != null) {
-                    subsql.append(" WHERE ");
-                    subsql.append(select);
-                    subargs.addAll(where.getBindArgs());
-                }
+                    subsql.append(sql);
+                    subargs.addAll(args);
+
+                    final String select = where.getSelection();
+                    if(select != null) {
+                        subsql.append(" WHERE ");
+                        subsql.append(select);
+                        subargs.addAll(where.getBindArgs());
+                    }
 
-                if(params.order != null) {
-                    boolean first = true;
-                    StringBuilder orderSql = new StringBuilder();
-                    for(FeatureQueryParameters.Order order : params.order)
-                        first = !appendOrder(order, orderSql, subargs, first);
-                    if(!first) {
-                        subsql.append(" ORDER BY ");
-                        subsql.append(orderSql);
+                    if(params.order != null) {
+                        boolean first = true;
+                        StringBuilder orderSql = new StringBuilder();
+                        for(FeatureQueryParameters.Order order : params.order)
+                            first = !appendOrder(order, orderSql, subargs, first);
+                        if(!first) {
+                            subsql.append(" ORDER BY ");
+                            subsql.append(orderSql);
+                        }
                     }
-                }
 
-                if(params.limit > 0) {
-                    subsql.append(" LIMIT ?");
-                    subargs.add(new BindArgument(params.limit));
+                    if(params.limit > 0) {
+                        subsql.append(" LIMIT ?");
+                        subargs.add(new BindArgument(params.limit));
                     
-                    if(fsCheck.isEmpty() && params.offset > 0) {
-                        subsql.append(" OFFSET ?");
-                        subargs.add(new BindArgument(params.offset));
+                        if(fsCheck.isEmpty() && params.offset > 0) {
+                            subsql.append(" OFFSET ?");
+                            subargs.add(new BindArgument(params.offset));
+                        }
                     }
-                }
                 
-                CursorIface result = null;
-                try {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-
-                    retval.add(new FeatureCursorImpl(result,
-                                                     idCol,
-                                                     fsidCol,
-                                                     versionCol,
-                                                     nameCol,
-                                                     geomCol,
-                                                     styleCol,
-                                                     attribsCol,
-                                                     altitudeModeCol,
-                                                     extrudeCol));
-                    result = null;
-                } finally {
-                    if(result != null)
-                        result.close();
-                }
-            } while(false);
+                    statements.add(Pair.create(subsql.toString(), subargs));
+                } while(false);
+            }
         }
-        
+
+        LinkedList<FeatureCursor> retval = new LinkedList<FeatureCursor>();
+        try {
+            for(Pair<String, LinkedList<BindArgument>> stmt : statements) {
+                retval.add(new FeatureCursorImpl(this.queryRead(stmt.first, stmt.second),
+                                                 idCol,
+                                                 fsidCol,
+                                                 versionCol,
+                                                 nameCol,
+                                                 geomCol,
+                                                 styleCol,
+                                                 attribsCol,
+                                                 altitudeModeCol,
+                                                 extrudeCol));
+            }
+        } catch(RuntimeException | DataStoreException e) {
+            for(FeatureCursor cursor : retval)
+                cursor.close();
+            throw e;
+        }
+
         if(retval.size() == 1) {
             return retval.getFirst();
         } else {
@@ -914,10 +1325,13 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
 
     @Override
     public int queryFeaturesCount(FeatureQueryParameters params) throws DataStoreException {
+        if(this.database == null)
+            throw new DataStoreException("Datastore is closed");
+
         if(params == null) {
             CursorIface result = null;
             try {
-                result = this.database.query("SELECT Count(1) FROM features", null);
+                result = this.queryRead("SELECT Count(1) FROM features", Collections.<BindArgument>emptySet());
                 if(!result.moveToNext())
                     return 0;
                 return result.getInt(0);
@@ -928,166 +1342,166 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         }
 
         Collection<FeatureSetDefn> fsNoCheck;
+        Collection<FeatureSetDefn> fsCheck = new LinkedList<FeatureSetDefn>();
         synchronized(this) {
             fsNoCheck = this.filterNoSync(params, true);
-        }
-        if(fsNoCheck.isEmpty())
-            return 0;
-
-        LinkedList<BindArgument> args = new LinkedList<BindArgument>();
+            if(fsNoCheck.isEmpty())
+                return 0;
 
-        Collection<FeatureSetDefn> fsCheck = new LinkedList<FeatureSetDefn>();
-        if(params.visibleOnly) {
-            this.validateInfo();
+            if(params.visibleOnly) {
+                this.validateInfo();
             
-            Iterator<FeatureSetDefn> iter = fsNoCheck.iterator();
-            FeatureSetDefn defn;
-            while(iter.hasNext()) {
-                defn = iter.next();
-                if(defn.visibleCheck) {
-                    iter.remove();
-                    fsCheck.add(defn);
+                Iterator<FeatureSetDefn> iter = fsNoCheck.iterator();
+                FeatureSetDefn defn;
+                while(iter.hasNext()) {
+                    defn = iter.next();
+                    if(defn.visibleCheck) {
+                        iter.remove();
+                        fsCheck.add(defn);
+                    }
                 }
             }
-        }
-        if(params.featureSetFilter != null && (!Double.isNaN(params.featureSetFilter.minResolution) || !Double.isNaN(params.featureSetFilter.maxResolution))) {
-            this.validateInfo();
+            if(params.featureSetFilter != null && (!Double.isNaN(params.featureSetFilter.minResolution) || !Double.isNaN(params.featureSetFilter.maxResolution))) {
+                this.validateInfo();
             
-            Iterator<FeatureSetDefn> iter = fsNoCheck.iterator();
-            FeatureSetDefn defn;
-            while(iter.hasNext()) {
-                defn = iter.next();
-                if(defn.lodCheck) {
-                    iter.remove();
-                    fsCheck.add(defn);
+                Iterator<FeatureSetDefn> iter = fsNoCheck.iterator();
+                FeatureSetDefn defn;
+                while(iter.hasNext()) {
+                    defn = iter.next();
+                    if(defn.lodCheck) {
+                        iter.remove();
+                        fsCheck.add(defn);
+                    }
                 }
             }
         }
-        
+
         if((params.limit > 0 && params.offset > 0) &&
            (fsCheck.size() > 1 ||
                    (!fsCheck.isEmpty() && !fsNoCheck.isEmpty()))) {
-            
+
             return Utils.queryFeaturesCount(this, params);
         }
 
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT ");
-        if(params.limit > 0)
-            sql.append("1");
-        else
-            sql.append("Count(1)");
-        sql.append(" FROM features");
+        // see queryFeatures
+        LinkedList<Pair<String, LinkedList<BindArgument>>> statements = new LinkedList<Pair<String, LinkedList<BindArgument>>>();
+        synchronized(this) {
+            LinkedList<BindArgument> args = new LinkedList<BindArgument>();
 
-        int retval = 0;
-        if(fsCheck != null) {
-            for(FeatureSetDefn fs : fsCheck) {
-                StringBuilder subsql = new StringBuilder();
-                LinkedList<BindArgument> subargs = new LinkedList<BindArgument>();
-                WhereClauseBuilder where = new WhereClauseBuilder();
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT ");
+            if(params.limit > 0)
+                sql.append("1");
+            else
+                sql.append("Count(1)");
+            sql.append(" FROM features");
+
+            if(fsCheck != null) {
+                for(FeatureSetDefn fs : fsCheck) {
+                    StringBuilder subsql = new StringBuilder();
+                    LinkedList<BindArgument> subargs = new LinkedList<BindArgument>();
+                    WhereClauseBuilder where = new WhereClauseBuilder();
                 
-                if(!this.buildParamsWhereClauseCheck(params, fs, where))
-                    continue;
+                    if(!this.buildParamsWhereClauseCheck(params, fs, where))
+                        continue;
                 
-                subsql.append(sql);
-                subargs.addAll(args);
-
-                final String select = where.getSelection();
-                if(select != null) {
-                    subsql.append(" WHERE ");
-                    subsql.append(select);
-                    subargs.addAll(where.getBindArgs());
-                }
+                    subsql.append(sql);
+                    subargs.addAll(args);
+
+                    final String select = where.getSelection();
+                    if(select != null) {
+                        subsql.append(" WHERE ");
+                        subsql.append(select);
+                        subargs.addAll(where.getBindArgs());
+                    }
 
-                if(params.order != null) {
-                    boolean first = true;
-                    StringBuilder orderSql = new StringBuilder();
-                    for(FeatureQueryParameters.Order order : params.order)
-                        first = !appendOrder(order, orderSql, subargs, first);
-                    if(!first) {
-                        subsql.append(" ORDER BY ");
-                        subsql.append(orderSql);
+                    if(params.order != null) {
+                        boolean first = true;
+                        StringBuilder orderSql = new StringBuilder();
+                        for(FeatureQueryParameters.Order order : params.order)
+                            first = !appendOrder(order, orderSql, subargs, first);
+                        if(!first) {
+                            subsql.append(" ORDER BY ");
+                            subsql.append(orderSql);
+                        }
                     }
-                }
 
-                if(params.limit > 0) {
-                    subsql.append(" LIMIT ?");
-                    subargs.add(new BindArgument(params.limit));
+                    if(params.limit > 0) {
+                        subsql.append(" LIMIT ?");
+                        subargs.add(new BindArgument(params.limit));
                     
-                    if(fsCheck.size() == 1 && fsNoCheck.isEmpty() && params.offset > 0) {
-                        subsql.append(" OFFSET ?");
-                        subargs.add(new BindArgument(params.offset));
-                    }
+                        if(fsCheck.size() == 1 && fsNoCheck.isEmpty() && params.offset > 0) {
+                            subsql.append(" OFFSET ?");
+                            subargs.add(new BindArgument(params.offset));
+                        }
                     
-                    subsql.insert(0, "SELECT Count(1) FROM (");
-                    subsql.append(")");
-                }
+                        subsql.insert(0, "SELECT Count(1) FROM (");
+                        subsql.append(")");
+                    }
                 
-                CursorIface result = null;
-                try {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-                    if(result.moveToNext())
-                        retval += result.getInt(0);
-                } finally {
-                    if(result != null)
-                        result.close();
+                    statements.add(Pair.create(subsql.toString(), subargs));
                 }
             }
-        }
 
-        if(!fsNoCheck.isEmpty()) {
-            do {
-                StringBuilder subsql = new StringBuilder();
-                LinkedList<BindArgument> subargs = new LinkedList<BindArgument>();
-                WhereClauseBuilder where = new WhereClauseBuilder();
+            if(!fsNoCheck.isEmpty()) {
+                do {
+                    StringBuilder subsql = new StringBuilder();
+                    LinkedList<BindArgument> subargs = new LinkedList<BindArgument>();
+                    WhereClauseBuilder where = new WhereClauseBuilder();
                 
-                if(!this.buildParamsWhereClauseNoCheck(params, (fsNoCheck.size() == this.featureSets.size()) ? null : fsNoCheck, where))
-                    continue;
+                    if(!this.buildParamsWhereClauseNoCheck(params, (fsNoCheck.size() == this.featureSets.size()) ? null : fsNoCheck, where))
+                        continue;
                 
-                subsql.append(sql);
-                subargs.addAll(args);
-
-                final String select = where.getSelection();
-                if(select != null) {
-                    subsql.append(" WHERE ");
-                    subsql.append(select);
-                    subargs.addAll(where.getBindArgs());
-                }
+                    subsql.append(sql);
+                    subargs.addAll(args);
+
+                    final String select = where.getSelection();
+                    if(select != null) {
+                        subsql.append(" WHERE ");
+                        subsql.append(select);
+                        subargs.addAll(where.getBindArgs());
+                    }
 
-                if(params.order != null) {
-                    boolean first = true;
-                    StringBuilder orderSql = new StringBuilder();
-                    for(FeatureQueryParameters.Order order : params.order)
-                        first = !appendOrder(order, orderSql, subargs, first);
-                    if(!first) {
-                        subsql.append(" ORDER BY ");
-                        subsql.append(orderSql);
+                    if(params.order != null) {
+                        boolean first = true;
+                        StringBuilder orderSql = new StringBuilder();
+                        for(FeatureQueryParameters.Order order : params.order)
+                            first = !appendOrder(order, orderSql, subargs, first);
+                        if(!first) {
+                            subsql.append(" ORDER BY ");
+                            subsql.append(orderSql);
+                        }
                     }
-                }
 
-                if(params.limit > 0) {
-                    subsql.append(" LIMIT ?");
-                    subargs.add(new BindArgument(params.limit));
+                    if(params.limit > 0) {
+                        subsql.append(" LIMIT ?");
+                        subargs.add(new BindArgument(params.limit));
                     
-                    if(fsCheck.isEmpty() && params.offset > 0) {
-                        subsql.append(" OFFSET ?");
-                        subargs.add(new BindArgument(params.offset));
-                    }
+                        if(fsCheck.isEmpty() && params.offset > 0) {
+                            subsql.append(" OFFSET ?");
+                            subargs.add(new BindArgument(params.offset));
+                        }
                     
-                    subsql.insert(0, "SELECT Count(1) FROM (");
-                    subsql.append(")");
-                }
+                        subsql.insert(0, "SELECT Count(1) FROM (");
+                        subsql.append(")");
+                    }
                 
-                CursorIface result = null;
-                try {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-                    if(result.moveToNext())
-                        retval += result.getInt(0);
-                } finally {
-                    if(result != null)
-                        result.close();
-                }
-            } while(false);
+                    statements.add(Pair.create(subsql.toString(), subargs));
+                } while(false);
+            }
+        }
+
+        int retval = 0;
+        for(Pair<String, LinkedList<BindArgument>> stmt : statements) {
+            CursorIface result = null;
+            try {
+                result = this.queryRead(stmt.first, stmt.second);
+                if(result.moveToNext())
+                    retval += result.getInt(0);
+            } finally {
+                if(result != null)
+                    result.close();
+            }
         }
 
         return retval;
@@ -1325,6 +1739,10 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
 
     @Override
     public synchronized void dispose() {
+        synchronized(this.readers) {
+            this.readersEnabled = false;
+            this.closeIdleReadersNoSync();
+        }
         if(this.database != null) {
             this.database.close();
             this.database = null;
@@ -1784,13 +2202,28 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         internalAcquireModifyLock(this, true, true);
         try {
             this.database.beginTransaction();
+            InsertContext ctx = new InsertContext();
             try {
-                InsertContext ctx = new InsertContext();
                 final FeatureDefinition2 def = Adapters.adapt(features);
-                while(features.moveToNext())
+                int count = 0;
+                boolean bulk = false;
+                while(features.moveToNext()) {
+                    // updating the spatial index per feature dominates large
+                    // imports; drop the indices and rebuild them in a single
+                    // pass once all features are inserted. The rebuild occurs
+                    // within the transaction, so readers never observe the
+                    // database without its indices.
+                    if(!bulk && this.spatialIndexEnabled && ++count > this.bulkInsertThreshold) {
+                        this.dropIndicesNoSync();
+                        bulk = true;
+                    }
                     this.insertFeatureImpl(ctx, features.getFsid(), features.getId(), def, features.getVersion());
+                }
+                if(bulk)
+                    this.createIndicesNoSync();
                 this.database.setTransactionSuccessful();
             } finally {
+                ctx.dispose();
                 this.database.endTransaction();
             }
         } finally {
@@ -1855,6 +2288,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                 }
                 
                 attributesId = Databases.lastInsertRowId(this.database);
+                this.indexAttributesNoSync(ctx, attributesId, attribs);
             }
         }
 
@@ -1967,7 +2401,12 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                         byte[] wkb = null;
                         if(def.getRawGeometry() != null) {
                             Geometry g = (Geometry)def.getRawGeometry();
-                            wkb = new byte[g.computeWkbSize()];
+                            // the blob is copied on bind, so the buffer may be
+                            // reused for subsequent geometries of the same size
+                            final int wkbSize = g.computeWkbSize();
+                            if(ctx.wkb == null || ctx.wkb.length != wkbSize)
+                                ctx.wkb = new byte[wkbSize];
+                            wkb = ctx.wkb;
                             g.toWkb(ByteBuffer.wrap(wkb).order(ByteOrder.nativeOrder()));
                         }
                         ctx.insertGeomArg.set(wkb);
@@ -2151,6 +2590,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                 stmt.close();
         }
         final long attribsId = Databases.lastInsertRowId(this.database);
+        this.indexAttributesNoSync(null, attribsId, attributes);
         stmt = null;
         try {
             stmt = this.database.compileStatement("UPDATE features SET attribs_id = ? WHERE fid = ?");
@@ -2206,6 +2646,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                 stmt.close();
         }
         final long attribsId = Databases.lastInsertRowId(this.database);
+        this.indexAttributesNoSync(null, attribsId, attributes);
 
         stmt = null;
         try {
@@ -2265,6 +2706,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                 stmt.close();
         }
         final long attribsId = Databases.lastInsertRowId(this.database);
+        this.indexAttributesNoSync(null, attribsId, attributes);
 
         stmt = null;
         try {
@@ -2332,6 +2774,9 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                 args.add(new BindArgument(fid.longValue()));
             whereClause.appendIn2("features.fid", args);
         }
+        if(params.attributeFilters != null) {
+            this.appendAttributeFilters(params.attributeFilters, whereClause);
+        }
         if(params.spatialFilter != null) {
             appendSpatialFilter(params.spatialFilter,
                                 whereClause,
@@ -2433,6 +2878,9 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                 args.add(new BindArgument(fid.longValue()));
             whereClause.appendIn2("features.fid", args);
         }
+        if(params.attributeFilters != null) {
+            this.appendAttributeFilters(params.attributeFilters, whereClause);
+        }
         if(params.spatialFilter != null) {
             appendSpatialFilter(params.spatialFilter,
                                 whereClause,
@@ -2976,6 +3424,27 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     /**************************************************************************/
     // FeatureCursorImpl
 
+    /**
+     * Returns the read-only connection to the pool on close.
+     */
+    private final class ReaderCursor extends CursorWrapper {
+        private DatabaseIface reader;
+
+        ReaderCursor(CursorIface filter, DatabaseIface reader) {
+            super(filter);
+            this.reader = reader;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if(this.reader != null) {
+                releaseReader(this.reader);
+                this.reader = null;
+            }
+        }
+    }
+
     private final class FeatureCursorImpl extends CursorWrapper implements FeatureCursor, FeatureDefinition3 {
 
         private final int idCol;
@@ -2989,6 +3458,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         private final int extrudeCol;
         
         private Feature row;
+        /** the decoded attributes for the current row */
+        private AttributeSet attribs;
 
         protected FeatureCursorImpl(CursorIface filter, int idCol, int fsidCol, int versionCol, int nameCol, int geomCol, int styleCol, int attribsCol, int altidueModeCol, int extrudeCol) {
             super(filter);
@@ -3073,9 +3544,13 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         public AttributeSet getAttributes() {
             if(this.attribsCol == -1)
                 return null;
-            
-            FDB2.this.validateAttributeSchema();
-            return decodeAttributes(this.getBlob(this.attribsCol), FDB2.this.idToAttrSchema);
+
+            // decode on first access for the row only
+            if(this.attribs == null) {
+                FDB2.this.validateAttributeSchema();
+                this.attribs = decodeAttributes(this.getBlob(this.attribsCol), FDB2.this.idToAttrSchema);
+            }
+            return this.attribs;
         }
 
         @Override
@@ -3098,6 +3573,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         @Override
         public boolean moveToNext() {
             this.row = null;
+            this.attribs = null;
             return super.moveToNext();
         }
 
@@ -3174,8 +3650,11 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         StatementIface insertStyleStatement;
         StatementIface insertAttributesStatement;
         StatementIface insertAttributeSchemaStatement;
+        StatementIface insertAttributeIndexStatement;
         BindArgument insertGeomArg;
         ByteArrayOutputStream codedAttribs;
+        /** WKB encoding buffer */
+        byte[] wkb;
         
         public InsertContext() {
             this.styleIds = new HashMap<String, Long>();
@@ -3210,8 +3689,13 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                 this.insertAttributeSchemaStatement.close();
                 this.insertAttributeSchemaStatement = null;
             }
+            if(this.insertAttributeIndexStatement != null) {
+                this.insertAttributeIndexStatement.close();
+                this.insertAttributeIndexStatement = null;
+            }
             this.insertGeomArg = null;
             this.codedAttribs = null;
+            this.wkb = null;
         }
     }
     
@@ -3281,6 +3765,18 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             this.insertFeature(fsid, fid, new DefaultFeatureDefinition(name, geometry, style, attribs));
         }
         
+        /**
+         * Sets the attribute keys that are indexed for query. This should be
+         * invoked before features are inserted.
+         *
+         * @see FDB2#setIndexedAttributes(Set)
+         */
+        public void setIndexedAttributes(Set<String> keys) throws DataStoreException {
+            if(this.done)
+                throw new IllegalStateException();
+            this.db.setIndexedAttributesNoSync(keys);
+        }
+
         protected void updateFeatureSet(long fsid, boolean visible, double minResolution, double maxResolution) throws DataStoreException {
             if(this.done)
                 throw new IllegalStateException();
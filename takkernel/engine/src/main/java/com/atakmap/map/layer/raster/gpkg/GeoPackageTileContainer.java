@@ -12,6 +12,7 @@ import android.graphics.Bitmap.CompressFormat;
 import android.graphics.Point;
 
 import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.database.DatabaseIface;
 import com.atakmap.map.gpkg.GeoPackage;
 import com.atakmap.map.gpkg.TileTable;
 import com.atakmap.map.gpkg.TileTable.TileMatrixSet;
@@ -372,6 +373,42 @@ public class GeoPackageTileContainer implements TileContainer {
 
         this.gpkg.insertTile(tileTableName, level, x, y, data);
         
+        if(this.expandBounds(level, x, y))
+            this.updateContentBounds();
+    }
+
+    @Override
+    public synchronized void setTiles(int count, int[] level, int[] x, int[] y, byte[][] data, long[] expiration) {
+        if(this.isReadOnly())
+            throw new UnsupportedOperationException();
+
+        // commit the batch as a single transaction and update the content
+        // bounds once for the batch
+        final DatabaseIface db = this.gpkg.getDatabase();
+        final boolean ownsTransaction = !db.inTransaction();
+        if(ownsTransaction)
+            db.beginTransaction();
+        try {
+            this.gpkg.insertTiles(tileTableName, count, level, x, y, data);
+            boolean boundsChanged = false;
+            for(int i = 0; i < count; i++)
+                boundsChanged |= this.expandBounds(level[i], x[i], y[i]);
+            if(boundsChanged)
+                this.updateContentBounds();
+            if(ownsTransaction)
+                db.setTransactionSuccessful();
+        } finally {
+            if(ownsTransaction)
+                db.endTransaction();
+        }
+    }
+
+    /**
+     * Expands the content bounds to include the specified tile.
+     *
+     * @return  <code>true</code> if the bounds changed
+     */
+    private boolean expandBounds(int level, int x, int y) {
         Envelope tileBounds = Util.getTileBounds(this, level, x, y);
         if(this.bounds == null) {
             this.bounds = tileBounds;
@@ -385,9 +422,12 @@ public class GeoPackageTileContainer implements TileContainer {
             this.bounds.maxX = Math.max(tileBounds.maxX, this.bounds.maxX);
             this.bounds.maxY = Math.max(tileBounds.maxY, this.bounds.maxY);
         } else {
-            return;
+            return false;
         }
-        
+        return true;
+    }
+
+    private void updateContentBounds() {
         this.gpkg.updateContentBounds(tileTableName,
                                       this.bounds.minX, this.bounds.minY,
                                       this.bounds.maxX, this.bounds.maxY);
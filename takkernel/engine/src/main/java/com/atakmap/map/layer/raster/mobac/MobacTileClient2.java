@@ -527,6 +527,11 @@ public class MobacTileClient2 implements TileClient, TileClientControl {
             this.impl.value.setTile(level, x, y, data, expiration);
         }
 
+        @Override
+        public void setTiles(int count, int[] level, int[] x, int[] y, byte[][] data, long[] expiration) {
+            this.impl.value.setTiles(count, level, x, y, data, expiration);
+        }
+
         @Override
         public void setTile(int level, int x, int y, Bitmap data, long expiration)
                 throws TileEncodeException {
@@ -365,6 +365,27 @@ public final class OSMDroidTileContainer implements TileContainer {
         }
     }
 
+    @Override
+    public synchronized void setTiles(int count, int[] level, int[] x, int[] y, byte[][] data, long[] expiration) {
+        if(this.isReadOnly())
+            throw new UnsupportedOperationException("TileContainer is read-only");
+
+        // commit the batch as a single transaction; the per-tile statements
+        // are precompiled and reused across the batch
+        final boolean ownsTransaction = !this.db.inTransaction();
+        if(ownsTransaction)
+            this.db.beginTransaction();
+        try {
+            for(int i = 0; i < count; i++)
+                this.setTile(level[i], x[i], y[i], data[i], expiration[i]);
+            if(ownsTransaction)
+                this.db.setTransactionSuccessful();
+        } finally {
+            if(ownsTransaction)
+                this.db.endTransaction();
+        }
+    }
+
     @Override
     public void setTile(int level, int x, int y, Bitmap data, long expiration) throws TileEncodeException {
         // convert bitmap to byte array
@@ -2,12 +2,16 @@ package com.atakmap.map.layer.raster.tilematrix;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.NoRouteToHostException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
 
 import com.atakmap.net.AsynchronousInetAddressResolver;
 import com.atakmap.net.AtakAuthenticationHandlerHTTP;
@@ -15,6 +19,12 @@ import com.atakmap.net.AtakAuthenticationHandlerHTTP;
 public abstract class AbstractURLTileClient extends AbstractTileClient {
 
     private static final int BUFFER_SIZE = 32 * 1024;
+
+    /** default maximum number of concurrent connections to a single host */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+    private static final Map<String, Semaphore> hostPermits = new HashMap<>();
+    private static int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
     
     protected AsynchronousInetAddressResolver dnsCheck;
     protected boolean checkConnectivity;
@@ -71,18 +81,31 @@ public abstract class AbstractURLTileClient extends AbstractTileClient {
             }
         }
 
-        URLConnection conn = url.openConnection();
-        this.configureConnection(conn);
+        // limit the number of connections open against the host across all
+        // clients
+        final Semaphore permits = getHostPermits(url.getHost());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
 
         try {
-            return load(conn);
-        } catch (IOException e) {
-            if ((conn instanceof HttpURLConnection)
-                    && isBadAccess(((HttpURLConnection) conn).getResponseCode()))
-                synchronized (this) { 
-                    this.authFailed = true;
-                }
-            throw e;
+            URLConnection conn = url.openConnection();
+            this.configureConnection(conn);
+
+            try {
+                return load(conn);
+            } catch (IOException e) {
+                if ((conn instanceof HttpURLConnection)
+                        && isBadAccess(((HttpURLConnection) conn).getResponseCode()))
+                    synchronized (this) {
+                        this.authFailed = true;
+                    }
+                throw e;
+            }
+        } finally {
+            permits.release();
         }
     }
 
@@ -113,7 +136,35 @@ public abstract class AbstractURLTileClient extends AbstractTileClient {
     protected abstract URL getTileURL(int zoom, int x, int y);
 
     /**************************************************************************/
-    
+
+    /**
+     * Sets the maximum number of concurrent connections that tile clients
+     * will open against any single host. The limit applies to connections
+     * opened after this method returns.
+     *
+     * @param limit The maximum number of connections per host
+     */
+    public static synchronized void setMaxConnectionsPerHost(int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException();
+        maxConnectionsPerHost = limit;
+        // connections in flight release to the permits they acquired
+        hostPermits.clear();
+    }
+
+    public static synchronized int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    private static synchronized Semaphore getHostPermits(String host) {
+        if (host == null)
+            host = "";
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null)
+            hostPermits.put(host, permits = new Semaphore(maxConnectionsPerHost, true));
+        return permits;
+    }
+
     public static byte[] load(URLConnection conn) throws IOException {
         AtakAuthenticationHandlerHTTP.Connection connection = null;
         try {
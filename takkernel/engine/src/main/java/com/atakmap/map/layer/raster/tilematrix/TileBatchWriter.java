@@ -0,0 +1,98 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import java.util.Arrays;
+
+/**
+ * Buffers tile writes to a {@link TileContainer}. Buffered tiles are written
+ * via {@link TileContainer#setTiles(int, int[], int[], int[], byte[][], long[])}
+ * once the batch is full or the oldest buffered tile has been held for the
+ * batch interval, so that containers backed by a database commit many tiles
+ * per transaction.
+ *
+ * <P>Tiles are not visible in the container until the batch containing them
+ * is written. {@link #flush()} should be invoked once writing is complete.
+ *
+ * <P>This class is thread-safe.
+ */
+public final class TileBatchWriter {
+
+    /** default maximum number of tiles per batch */
+    public final static int DEFAULT_BATCH_SIZE = 64;
+    /** default maximum time a tile is buffered, in milliseconds */
+    public final static long DEFAULT_BATCH_INTERVAL = 1000L;
+
+    private final TileContainer sink;
+    private final long batchInterval;
+
+    private final int[] level;
+    private final int[] x;
+    private final int[] y;
+    private final byte[][] data;
+    private final long[] expiration;
+    private int count;
+    private long oldest;
+
+    public TileBatchWriter(TileContainer sink) {
+        this(sink, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_INTERVAL);
+    }
+
+    /**
+     * @param sink          The container
+     * @param batchSize     The maximum number of tiles per batch
+     * @param batchInterval The maximum time a tile is buffered before the
+     *                      batch is written, in milliseconds
+     */
+    public TileBatchWriter(TileContainer sink, int batchSize, long batchInterval) {
+        if(sink == null)
+            throw new IllegalArgumentException();
+        if(batchSize < 1)
+            throw new IllegalArgumentException();
+
+        this.sink = sink;
+        this.batchInterval = batchInterval;
+
+        this.level = new int[batchSize];
+        this.x = new int[batchSize];
+        this.y = new int[batchSize];
+        this.data = new byte[batchSize][];
+        this.expiration = new long[batchSize];
+        this.count = 0;
+    }
+
+    /**
+     * Buffers the specified tile, writing the batch if it is full or has
+     * been held for the batch interval.
+     * 
+     * @throws UnsupportedOperationException    If the container is read-only
+     */
+    public synchronized void write(int level, int x, int y, byte[] data, long expiration) {
+        final long now = System.currentTimeMillis();
+        if(this.count == 0)
+            this.oldest = now;
+
+        this.level[this.count] = level;
+        this.x[this.count] = x;
+        this.y[this.count] = y;
+        this.data[this.count] = data;
+        this.expiration[this.count] = expiration;
+        this.count++;
+
+        if(this.count == this.data.length || (now-this.oldest) >= this.batchInterval)
+            this.flush();
+    }
+
+    /**
+     * Writes all buffered tiles to the container. The buffer is cleared even
+     * if the write fails.
+     */
+    public synchronized void flush() {
+        if(this.count == 0)
+            return;
+        try {
+            this.sink.setTiles(this.count, this.level, this.x, this.y, this.data, this.expiration);
+        } finally {
+            Arrays.fill(this.data, 0, this.count, null);
+            this.count = 0;
+        }
+    }
+}
@@ -44,6 +44,29 @@ public interface TileContainer extends TileMatrix {
      *                                          a serialized representation.
      */
     public void setTile(int level, int x, int y, Bitmap data, long expiration) throws TileEncodeException;
+    /**
+     * Sets the data for the specified tiles in the container. Containers
+     * backed by a database should write all tiles in a single transaction.
+     * 
+     * <P>The default implementation invokes
+     * {@link #setTile(int, int, int, byte[], long)} for each tile.
+     * 
+     * @param count         The number of tiles
+     * @param level         The tile zoom levels
+     * @param x             The tile columns
+     * @param y             The tile rows
+     * @param data          The tile data
+     * @param expiration    The expirations for the tile data, specified in
+     *                      epoch milliseconds (ignored if
+     *                      {@link #hasTileExpirationMetadata()} returns
+     *                      <code>false</code>)
+     * 
+     * @throws UnsupportedOperationException    If the container is read-only
+     */
+    public default void setTiles(int count, int[] level, int[] x, int[] y, byte[][] data, long[] expiration) {
+        for(int i = 0; i < count; i++)
+            this.setTile(level[i], x[i], y[i], data[i], expiration[i]);
+    }
     /**
      * Returns <code>true</code> if expiration metadata is associated with tiles
      * in the container.
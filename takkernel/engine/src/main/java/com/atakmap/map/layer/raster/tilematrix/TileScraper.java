@@ -1,9 +1,18 @@
 package com.atakmap.map.layer.raster.tilematrix;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -11,8 +20,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import android.graphics.Point;
-import android.util.SparseBooleanArray;
 
+import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.Vector2D;
 import com.atakmap.map.contentservices.CacheRequest;
@@ -43,6 +52,14 @@ public final class TileScraper {
 
     private final static int DOWNLOAD_ATTEMPTS = 2;
 
+    /** minimum interval between checkpoint writes, in milliseconds */
+    private final static long CHECKPOINT_INTERVAL = 2000L;
+    /**
+     * allowance for cache writes made after the last checkpoint by a run that
+     * was interrupted, in milliseconds
+     */
+    private final static long CHECKPOINT_SLACK = 5 * CHECKPOINT_INTERVAL;
+
     private final TileMatrix client;
     private final TileContainer sink;
     private final CacheRequest request;
@@ -89,13 +106,15 @@ public final class TileScraper {
 
     private static class DownloadTask implements Runnable {
         private final ScrapeContext context;
+        private final int ordinal;
         private final int tileX;
         private final int tileY;
         private final int tileZ;
 
-        public DownloadTask(ScrapeContext context, int tileZ, int tileX,
-                int tileY) {
+        public DownloadTask(ScrapeContext context, int ordinal, int tileZ,
+                int tileX, int tileY) {
             this.context = context;
+            this.ordinal = ordinal;
             this.tileX = tileX;
             this.tileY = tileY;
             this.tileZ = tileZ;
@@ -104,6 +123,7 @@ public final class TileScraper {
         @Override
         public void run() {
             boolean success = false;
+            boolean done = false;
             try {
                 Throwable[] err = new Throwable[1];
 
@@ -119,12 +139,14 @@ public final class TileScraper {
                                                                err);
                     if(d != null) {
                         // valid entry in cache
-                        this.context.sink.setTile(this.tileZ, this.tileX, this.tileY, d, System.currentTimeMillis()+context.request.expirationOffset);
+                        this.context.write(this.tileZ, this.tileX, this.tileY, d, System.currentTimeMillis()+context.request.expirationOffset);
                         success = true;
+                        done = true;
                         break;
                     } else if(err[0] == null) {
                         // there was no exception raised during which means that
                         // the client is unable to download
+                        done = true;
                         break;
                     } else {
                         attempts++;
@@ -134,7 +156,7 @@ public final class TileScraper {
                 // set the error if necessary
                 this.context.downloadError |= (err[0] != null); 
             } finally {
-                this.context.downloadComplete(success);
+                this.context.downloadComplete(this.ordinal, success, done);
             }
         }
     }
@@ -142,6 +164,9 @@ public final class TileScraper {
     private static class ScrapeContext {
         public final TileMatrix client;
         public final TileContainer sink;
+        /** batches writes to the sink */
+        private final TileBatchWriter writer;
+        private boolean writeError;
         public final CacheRequest request;
         public final String uri;
         public final int[] levels;
@@ -152,6 +177,12 @@ public final class TileScraper {
         private int totalTiles;
         private Map<Integer, List<TilePoint>> tiles = new HashMap<>();
         private int minLevel = 0, maxLevel = 0;
+        /** identifies the tile enumeration for the request */
+        private final String signature;
+        /** tiles completed, by ordinal */
+        private final BitSet completed = new BitSet();
+        /** the number of leading tiles, by ordinal, that are completed */
+        private int completedPrefix;
 
         // Temp vars across methods
         private final TileMatrix.ZoomLevel[] zooms;
@@ -168,23 +199,25 @@ public final class TileScraper {
         public ScrapeContext(TileMatrix client, TileContainer container, CacheRequest request) {
             this.client = client;
             this.sink = container;
+            this.writer = (container != null) ? new TileBatchWriter(container) : null;
             this.request = request;
             this.uri = client.getName();
 
             this.zooms = client.getZoomLevel();
-            SparseBooleanArray lvlArray = new SparseBooleanArray();
+            SortedSet<Integer> lvlSet = new TreeSet<>();
             for (TileMatrix.ZoomLevel zoom : this.zooms) {
                 if (zoom.resolution <= request.minResolution
                         && zoom.resolution >= request.maxResolution)
-                    lvlArray.append(zoom.level, true);
+                    lvlSet.add(zoom.level);
             }
-            if (lvlArray.size() == 0)
-                lvlArray.append(this.zooms[this.zooms.length - 1].level, true);
+            if (lvlSet.isEmpty())
+                lvlSet.add(this.zooms[this.zooms.length - 1].level);
 
-            // NOTE: order of 'keyAt' is guaranteed to be ascending
-            this.levels = new int[lvlArray.size()];
-            for (int i = 0; i < this.levels.length; i++)
-                this.levels[i] = lvlArray.keyAt(i);
+            // NOTE: iteration order is ascending
+            this.levels = new int[lvlSet.size()];
+            int lvlIdx = 0;
+            for (Integer level : lvlSet)
+                this.levels[lvlIdx++] = level;
 
             this.currentLevelIdx = 0;
 
@@ -223,6 +256,10 @@ public final class TileScraper {
             for (int r = minTile.y; r <= maxTile.y; r++)
                 for (int c = minTile.x; c <= maxTile.x; c++)
                     getTiles(c, r, 0, this.maxLevel);
+
+            this.signature = (this.uri + "|" + Arrays.toString(this.levels)
+                    + "|" + env.minX + "," + env.minY + "," + env.maxX + ","
+                    + env.maxY + "|" + this.totalTiles).replace('\n', ' ');
         }
 
         /**
@@ -305,12 +342,76 @@ public final class TileScraper {
             v.y = client.getOriginY() - (r * z.pixelSizeY * z.tileHeight);
         }
 
-        public synchronized void downloadComplete(boolean success) {
+        public synchronized void downloadComplete(int ordinal, boolean success, boolean done) {
             if (success) {
                 this.tilesDownloaded++;
             } else {
                 this.downloadError = true;
             }
+            // a tile is done if it was stored or the client reported that it
+            // has no data for it; tiles that failed are downloaded again on
+            // resume
+            if (done) {
+                this.completed.set(ordinal);
+                if (ordinal == this.completedPrefix)
+                    this.completedPrefix = this.completed.nextClearBit(ordinal);
+            }
+        }
+
+        /**
+         * Marks the leading tiles as completed by a previous run.
+         *
+         * @return  The number of tiles marked
+         */
+        public synchronized int resume(int count) {
+            count = Math.max(0, Math.min(count, this.totalTiles));
+            this.completed.set(0, count);
+            this.completedPrefix = Math.max(this.completedPrefix, count);
+            this.tilesDownloaded += count;
+            return count;
+        }
+
+        public synchronized int tilesCompleted() {
+            return this.completedPrefix;
+        }
+
+        public void write(int level, int x, int y, byte[] data, long expiration) {
+            try {
+                this.writer.write(level, x, y, data, expiration);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    this.writeError = true;
+                }
+                throw e;
+            }
+        }
+
+        public void flush() {
+            try {
+                this.writer.flush();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to write tiles to " + this.sink.getName(), e);
+                synchronized (this) {
+                    this.writeError = true;
+                }
+            }
+        }
+
+        /**
+         * Commits all buffered tiles and returns the number of leading tiles
+         * that are stored in the container.
+         *
+         * @return  The number of leading tiles that are completed, or
+         *          <code>-1</code> if a batch of tiles failed to write
+         */
+        public int checkpoint() {
+            // tiles counted as completed have already been submitted to the
+            // writer; flush after counting so they are committed
+            final int completed = this.tilesCompleted();
+            this.flush();
+            synchronized (this) {
+                return this.writeError ? -1 : completed;
+            }
         }
 
         public synchronized boolean downloadError() {
@@ -367,7 +468,7 @@ public final class TileScraper {
         }
 
         protected abstract void downloadTileImpl(ScrapeContext context,
-                int tileLevel, int tileX, int tileY);
+                int ordinal, int tileLevel, int tileX, int tileY);
 
 
 
@@ -381,6 +482,17 @@ public final class TileScraper {
             if(callback != null)
                 callback.onRequestStarted();
 
+            // resume from the last checkpoint for the same request, if any
+            final Checkpoint checkpoint = (request.cacheFile != null) ?
+                    new Checkpoint(request.cacheFile, downloadContext.signature) : null;
+            final int resumeFrom = (checkpoint != null) ?
+                    downloadContext.resume(checkpoint.restore()) : 0;
+            if (resumeFrom > 0)
+                Log.d(TAG, "Resuming download of " + client.getName() + " at tile " + resumeFrom + " of " + downloadContext.totalTiles);
+
+            int ordinal = 0;
+            boolean complete = false;
+            boolean exited = false;
             try {
                 reportStatus(downloadContext);
                 
@@ -397,12 +509,19 @@ public final class TileScraper {
                             / (zoom.pixelSizeX * zoom.tileWidth)) : -1;
 
                     List<TilePoint> tiles = downloadContext.tiles.get(downloadContext.levels[l]);
+                    if (tiles == null)
+                        tiles = Collections.emptyList();
                     downloadContext.totalTilesCurrentLevel = tiles.size();
                     this.levelStartTiles = downloadContext.tilesDownloaded();
 
                     this.onLevelDownloadStart(downloadContext);
 
                     for (TilePoint tile : tiles) {
+                        final int tileOrdinal = ordinal++;
+                        // completed by a previous run
+                        if (tileOrdinal < resumeFrom)
+                            continue;
+
                         while (true) {
 
                             // check for cancel
@@ -440,6 +559,8 @@ public final class TileScraper {
 
                             // report status
                             this.reportStatus(downloadContext);
+                            if (checkpoint != null)
+                                checkpoint.save(downloadContext, false);
 
                             // check if we should sleep for a little bit
                             // before proceeding to initiate download of
@@ -463,14 +584,27 @@ public final class TileScraper {
 
                         // download
                         if (tile180X > -1 && tile.c >= tile180X)
-                            downloadTileImpl(downloadContext, currentLevel, tile.c - tile180X, tile.r);
+                            downloadTileImpl(downloadContext, tileOrdinal, currentLevel, tile.c - tile180X, tile.r);
                         else
-                            downloadTileImpl(downloadContext, currentLevel, tile.c, tile.r);
-
-                        this.onLevelDownloadComplete(downloadContext);
+                            downloadTileImpl(downloadContext, tileOrdinal, currentLevel, tile.c, tile.r);
                     }
+
+                    this.onLevelDownloadComplete(downloadContext);
                 }
-                
+
+                // wait for outstanding downloads and commit the last batch of
+                // tiles before reporting the outcome
+                exited = true;
+                this.onDownloadExit(downloadContext, 0);
+                if (downloadContext.checkpoint() < 0) {
+                    if (callback != null)
+                        callback.onRequestError(null,
+                                "Failed to write tiles to " + sink.getName(),
+                                true);
+                    return false;
+                }
+
+                complete = true;
                 if(callback != null)
                     callback.onRequestComplete();
 
@@ -480,7 +614,17 @@ public final class TileScraper {
                         + downloadContext.uri, e);
                 return false;
             } finally {
-                this.onDownloadExit(downloadContext, 0);
+                if (!exited)
+                    this.onDownloadExit(downloadContext, 0);
+
+                if (checkpoint != null) {
+                    if (complete && !downloadContext.downloadError())
+                        checkpoint.clear();
+                    else
+                        checkpoint.save(downloadContext, true);
+                } else {
+                    downloadContext.flush();
+                }
             }
         }
 
@@ -534,8 +678,31 @@ public final class TileScraper {
         @Override
         protected void onDownloadExit(ScrapeContext context, int jobStatus) {
             this.flush(context, false);
+            // drop any pending downloads on cancel
+            if (request.canceled)
+                this.queue.clear();
             if (!this.downloadService.isShutdown())
                 this.downloadService.shutdown();
+            // wait for in-flight downloads to complete. a download that
+            // completes after the final flush would be written to the batch
+            // but never committed, so there is no timeout; each download is
+            // bounded by the client's attempts
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (this.downloadService.awaitTermination(30,
+                            TimeUnit.SECONDS))
+                        break;
+                    Log.w(TAG, "Waiting for "
+                            + this.downloadService.getActiveCount()
+                            + " downloads from " + context.uri
+                            + " to complete");
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
         }
 
         @Override
@@ -554,24 +721,109 @@ public final class TileScraper {
         }
 
         @Override
-        protected void downloadTileImpl(ScrapeContext context, int tileLevel,
-                int tileX, int tileY) {
+        protected void downloadTileImpl(ScrapeContext context, int ordinal,
+                int tileLevel, int tileX, int tileY) {
             // enqueue
-            downloadService.execute(new DownloadTask(context, tileLevel, tileX,
-                    tileY));
+            downloadService.execute(new DownloadTask(context, ordinal,
+                    tileLevel, tileX, tileY));
         }
     }
 
     private class LegacyDownloader extends Downloader {
 
         @Override
-        protected void downloadTileImpl(ScrapeContext context, int tileLevel,
-                int tileX, int tileY) {
+        protected void downloadTileImpl(ScrapeContext context, int ordinal,
+                int tileLevel, int tileX, int tileY) {
             
-            DownloadTask t = new DownloadTask(context, tileLevel, tileX, tileY);
+            DownloadTask t = new DownloadTask(context, ordinal, tileLevel, tileX, tileY);
             t.run();
         }
     }
 
+    /**
+     * Records the progress of a request so that an interrupted request may be
+     * resumed. Tiles are enumerated in the same order for the same request;
+     * the checkpoint is the number of leading tiles in that order that have
+     * been completed. The checkpoint is stored alongside the cache file and
+     * is discarded if the request does not match, or if the cache file was
+     * removed or replaced after the checkpoint was written.
+     */
+    private static class Checkpoint {
+        private final File cacheFile;
+        private final File file;
+        private final String signature;
+        private long savedAt;
+
+        Checkpoint(File cacheFile, String signature) {
+            this.cacheFile = cacheFile;
+            this.file = new File(cacheFile.getPath() + ".scrape");
+            this.signature = signature;
+            this.savedAt = 0L;
+        }
+
+        int restore() {
+            if (!IOProviderFactory.exists(this.file))
+                return 0;
+            // every write to the cache by the previous run is followed by a
+            // checkpoint unless the run was interrupted; a cache that is
+            // missing, or was modified well after the checkpoint, is not the
+            // one the checkpoint describes
+            if (!IOProviderFactory.exists(this.cacheFile)
+                    || IOProviderFactory.lastModified(this.cacheFile)
+                            > IOProviderFactory.lastModified(this.file) + CHECKPOINT_SLACK) {
+                Log.d(TAG, "Discarding stale checkpoint " + this.file);
+                this.clear();
+                return 0;
+            }
+            try (BufferedReader reader = new BufferedReader(IOProviderFactory.getFileReader(this.file))) {
+                if (!this.signature.equals(reader.readLine()))
+                    return 0;
+                final String completed = reader.readLine();
+                return (completed != null) ? Integer.parseInt(completed.trim()) : 0;
+            } catch (IOException | NumberFormatException e) {
+                Log.w(TAG, "Failed to read checkpoint " + this.file, e);
+                return 0;
+            }
+        }
+
+        void save(ScrapeContext context, boolean force) {
+            final long now = System.currentTimeMillis();
+            if (!force && (now - this.savedAt) < CHECKPOINT_INTERVAL)
+                return;
+            this.savedAt = now;
+
+            // rewrite even if progress has not changed, so the checkpoint
+            // is always newer than the tiles committed before it
+            final int completed = context.checkpoint();
+            if (completed < 0)
+                return;
+
+            // write and rename over the previous checkpoint so that a crash
+            // mid-write does not lose it
+            final File tmp = new File(this.file.getPath() + ".tmp");
+            try (Writer writer = IOProviderFactory.getFileWriter(tmp)) {
+                writer.write(this.signature);
+                writer.write('\n');
+                writer.write(Integer.toString(completed));
+                writer.write('\n');
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write checkpoint " + this.file, e);
+                return;
+            }
+            if (!IOProviderFactory.renameTo(tmp, this.file)) {
+                // the provider may not replace an existing file; the previous
+                // checkpoint is lost only if the process dies in between
+                IOProviderFactory.delete(this.file);
+                if (!IOProviderFactory.renameTo(tmp, this.file))
+                    Log.w(TAG, "Failed to write checkpoint " + this.file);
+            }
+        }
+
+        void clear() {
+            if (IOProviderFactory.exists(this.file))
+                IOProviderFactory.delete(this.file);
+        }
+    }
+
    
 }
@@ -0,0 +1,256 @@
+package com.atakmap.map.layer.raster.tilereader;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of decoded tile data. Tiles are keyed on the reader URI,
+ * pixel layout, source region, output size, level, column, row and tile
+ * version, so that a tile read by any {@link TileReader} for the same dataset
+ * can be served from memory on a subsequent request rather than being read
+ * and decoded again.
+ *
+ * <P>The cache is bounded by a byte budget and entries are evicted least
+ * recently used first. Evicted buffers are retained in a small pool and
+ * reused for subsequent tiles of the same size.
+ *
+ * <P>This class is thread-safe.
+ */
+public final class DecodedTileCache {
+
+    /** default byte budget */
+    public final static long DEFAULT_BUDGET = 32L*1024L*1024L;
+
+    /** maximum number of buffers retained for reuse */
+    private final static int MAX_POOLED = 16;
+
+    private final static Map<Key, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final static Map<Integer, ArrayDeque<byte[]>> pool = new LinkedHashMap<>();
+    private static int numPooled = 0;
+    private static long budget = DEFAULT_BUDGET;
+    private static long size = 0L;
+    private static long hits = 0L;
+    private static long misses = 0L;
+
+    private DecodedTileCache() {}
+
+    /**
+     * Sets the maximum number of bytes of decoded tile data retained. A
+     * budget of <code>0</code> disables the cache.
+     *
+     * @param bytes The budget, in bytes
+     */
+    public static synchronized void setBudget(long bytes) {
+        if(bytes < 0L)
+            throw new IllegalArgumentException();
+        budget = bytes;
+        trimNoSync();
+    }
+
+    public static synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Evicts all entries.
+     */
+    public static synchronized void clear() {
+        entries.clear();
+        pool.clear();
+        numPooled = 0;
+        size = 0L;
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     */
+    public static synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, entries.size(), size, budget);
+    }
+
+    /**
+     * Copies the cached data for the specified tile request into
+     * <code>dst</code>.
+     *
+     * @return  <code>true</code> if the tile was cached, <code>false</code>
+     *          otherwise
+     */
+    static boolean get(TileReader reader, TileReader.ReadRequest request, byte[] dst, int len) {
+        // the key queries the reader; build it before taking the cache lock
+        // so that readers are not serialized on each other
+        final Key key = new Key(reader, request);
+        synchronized(DecodedTileCache.class) {
+            if(budget == 0L)
+                return false;
+            final byte[] data = entries.get(key);
+            if(data == null || data.length != len || dst.length < len) {
+                misses++;
+                return false;
+            }
+            System.arraycopy(data, 0, dst, 0, len);
+            hits++;
+            return true;
+        }
+    }
+
+    /**
+     * Stores a copy of the data for the specified tile request.
+     */
+    static void put(TileReader reader, TileReader.ReadRequest request, byte[] src, int len) {
+        final Key key = new Key(reader, request);
+        synchronized(DecodedTileCache.class) {
+            if(len > budget)
+                return;
+
+            byte[] data = null;
+            final ArrayDeque<byte[]> pooled = pool.get(len);
+            if(pooled != null) {
+                data = pooled.poll();
+                if(data != null)
+                    numPooled--;
+            }
+            if(data == null)
+                data = new byte[len];
+            System.arraycopy(src, 0, data, 0, len);
+
+            final byte[] replaced = entries.put(key, data);
+            size += len;
+            if(replaced != null)
+                size -= replaced.length;
+            trimNoSync();
+        }
+    }
+
+    private static void trimNoSync() {
+        final Iterator<byte[]> it = entries.values().iterator();
+        while(size > budget && it.hasNext()) {
+            final byte[] evicted = it.next();
+            it.remove();
+            size -= evicted.length;
+            recycleNoSync(evicted);
+        }
+    }
+
+    private static void recycleNoSync(byte[] buf) {
+        if(numPooled >= MAX_POOLED)
+            return;
+        ArrayDeque<byte[]> pooled = pool.get(buf.length);
+        if(pooled == null)
+            pool.put(buf.length, pooled=new ArrayDeque<byte[]>());
+        pooled.add(buf);
+        numPooled++;
+    }
+
+    /**************************************************************************/
+
+    /**
+     * Snapshot of the cache statistics.
+     */
+    public final static class Statistics {
+        /** the number of lookups served from the cache */
+        public final long hits;
+        /** the number of lookups not served from the cache */
+        public final long misses;
+        /** the number of cached tiles */
+        public final int entries;
+        /** the number of bytes of cached tile data */
+        public final long size;
+        /** the byte budget */
+        public final long budget;
+
+        Statistics(long hits, long misses, int entries, long size, long budget) {
+            this.hits = hits;
+            this.misses = misses;
+            this.entries = entries;
+            this.size = size;
+            this.budget = budget;
+        }
+
+        /**
+         * Returns the fraction of lookups served from the cache.
+         */
+        public double getHitRate() {
+            final long lookups = this.hits+this.misses;
+            return (lookups > 0L) ? (double)this.hits / (double)lookups : 0d;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics {hits=" + hits + ",misses=" + misses
+                    + ",hitRate=" + getHitRate() + ",entries=" + entries
+                    + ",size=" + size + ",budget=" + budget + "}";
+        }
+    }
+
+    private final static class Key {
+        final String uri;
+        final TileReader.Format format;
+        final TileReader.Interleave interleave;
+        final long srcX;
+        final long srcY;
+        final long srcW;
+        final long srcH;
+        final int width;
+        final int height;
+        final int level;
+        final long tileColumn;
+        final long tileRow;
+        final long version;
+
+        Key(TileReader reader, TileReader.ReadRequest request) {
+            this.uri = reader.getUri();
+            this.format = reader.getFormat();
+            this.interleave = reader.getInterleave();
+            this.srcX = request.srcX;
+            this.srcY = request.srcY;
+            this.srcW = request.srcW;
+            this.srcH = request.srcH;
+            this.width = request.dstW;
+            this.height = request.dstH;
+            this.level = request.level;
+            this.tileColumn = request.tileColumn;
+            this.tileRow = request.tileRow;
+            this.version = reader.getTileVersion(request.level, request.tileColumn, request.tileRow);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof Key))
+                return false;
+            final Key other = (Key)o;
+            return this.level == other.level &&
+                   this.tileColumn == other.tileColumn &&
+                   this.tileRow == other.tileRow &&
+                   this.version == other.version &&
+                   this.srcX == other.srcX &&
+                   this.srcY == other.srcY &&
+                   this.srcW == other.srcW &&
+                   this.srcH == other.srcH &&
+                   this.width == other.width &&
+                   this.height == other.height &&
+                   this.format == other.format &&
+                   this.interleave == other.interleave &&
+                   this.uri.equals(other.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.uri.hashCode();
+            result = 31*result + this.level;
+            result = 31*result + this.width;
+            result = 31*result + this.height;
+            result = 31*result + (int)(this.tileColumn^(this.tileColumn>>>32));
+            result = 31*result + (int)(this.tileRow^(this.tileRow>>>32));
+            result = 31*result + (int)(this.version^(this.version>>>32));
+            result = 31*result + (int)(this.srcX^(this.srcX>>>32));
+            result = 31*result + (int)(this.srcY^(this.srcY>>>32));
+            result = 31*result + (int)(this.srcW^(this.srcW>>>32));
+            result = 31*result + (int)(this.srcH^(this.srcH>>>32));
+            return result;
+        }
+    }
+}
@@ -362,6 +362,20 @@ public abstract class TileReader implements Controls {
         final int size = this.getTransferSize(request.dstW, request.dstH);
         final byte[] readBuffer = this.asynchronousIO.getReadBuffer(size);
 
+        // tiles previously read by any reader on the same dataset are served
+        // from the shared decoded tile cache
+        final boolean cacheable = (request.level >= 0 &&
+                                   request.tileColumn >= 0 &&
+                                   request.tileRow >= 0 &&
+                                   this.uri != null);
+        if (cacheable && DecodedTileCache.get(this, request, readBuffer, size)) {
+            this.dispatchUpdate(request,
+                                readBuffer,
+                                0, 0,
+                                request.dstW, request.dstH);
+            return ReadResult.SUCCESS;
+        }
+
         final ReadResult retval = this.read(request.srcX,
                                             request.srcY,
                                             request.srcW,
@@ -370,6 +384,8 @@ public abstract class TileReader implements Controls {
                                             request.dstH, readBuffer);
 
         if (retval == ReadResult.SUCCESS) {
+            if (cacheable && !request.canceled)
+                DecodedTileCache.put(this, request, readBuffer, size);
             this.dispatchUpdate(request,
                                 readBuffer,
                                 0, 0,
@@ -888,9 +904,16 @@ public abstract class TileReader implements Controls {
         }
     }
 
+    /**
+     * Returns the shared {@link AsynchronousIO}. Unless otherwise configured
+     * via {@link AsynchronousIO#setMaxThreads(int)}, the shared instance
+     * services requests with one worker thread per available processor, less
+     * one reserved for rendering, up to a maximum of four.
+     */
     public static synchronized AsynchronousIO getMasterIOThread() {
         if (masterIOThread == null)
-            masterIOThread = new TileReader.AsynchronousIO();
+            masterIOThread = new TileReader.AsynchronousIO(null, 0L,
+                    Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()-1)));
         return masterIOThread;
     }
 
@@ -923,8 +946,8 @@ public abstract class TileReader implements Controls {
          */
         public final int id;
 
-        private boolean canceled;
-        private boolean servicing = false;
+        private volatile boolean canceled;
+        private volatile boolean servicing = false;
 
         /**
          * The source (unscaled) x-coordinate of the region to be read.
@@ -1148,8 +1171,14 @@ public abstract class TileReader implements Controls {
     } // AsynchronousReadRequestListener
 
     /**
-     * The asynchronous I/O thread for use by one or more
-     * <code>TileReader</code> instances. The same instance can be utilized by
+     * The asynchronous I/O service for use by one or more
+     * <code>TileReader</code> instances. Requests are serviced by a pool of up
+     * to a configurable number of worker threads. Requests for readers that
+     * share a {@link TileReader#readLock} are never serviced concurrently; the
+     * pool will service requests for other readers instead of blocking on the
+     * lock.
+     *
+     * <P>With a single worker thread, the same instance can be utilized by
      * multiple <code>TileReader</code> objects to ensure data reading and
      * delivery in series rather than in parallel. Forcing request servicing
      * into series rather than in parallel can be advantageous in memory
@@ -1160,13 +1189,23 @@ public abstract class TileReader implements Controls {
      */
     public final static class AsynchronousIO {
         private Map<TileReader, RequestQueue> tasks;
-        private Task executing;
+        private final ArrayList<Task> executing;
+        /** read locks of the readers with a task currently executing */
+        private final Set<Object> busy;
         private final Object syncOn;
         private boolean dead;
-        private boolean started;
         private final long maxIdle;
+        private int maxThreads;
+        private int numWorkers;
+        private int numIdle;
 
-        private byte[] readBuffer;
+        // statistics
+        private int maxQueueDepth;
+        private long completedTasks;
+        private long totalServiceMillis;
+        private long firstTaskTime;
+
+        private final ThreadLocal<byte[]> readBuffer;
 
         public AsynchronousIO() {
             this(null, 0L);
@@ -1181,33 +1220,96 @@ public abstract class TileReader implements Controls {
         }
 
         public AsynchronousIO(Object syncOn, long maxIdle) {
+            this(syncOn, maxIdle, 1);
+        }
+
+        /**
+         * @param syncOn        The object used for synchronization, if
+         *                      <code>null</code> this instance is used
+         * @param maxIdle       The maximum time, in milliseconds, that a
+         *                      worker thread will idle before exiting. If
+         *                      <code>0</code>, workers do not time out.
+         * @param maxThreads    The maximum number of worker threads
+         */
+        public AsynchronousIO(Object syncOn, long maxIdle, int maxThreads) {
             if (syncOn == null)
                 syncOn = this;
+            if (maxThreads < 1)
+                throw new IllegalArgumentException();
             this.syncOn = syncOn;
             this.tasks = new HashMap<>();
+            this.executing = new ArrayList<>(maxThreads);
+            this.busy = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
             this.dead = true;
-            this.started = false;
             this.maxIdle = maxIdle;
+            this.maxThreads = maxThreads;
+            this.numWorkers = 0;
+            this.numIdle = 0;
 
-            this.readBuffer = null;
+            this.readBuffer = new ThreadLocal<>();
         }
 
         private byte[] getReadBuffer(int size) {
-            if (this.readBuffer == null || this.readBuffer.length < size)
-                this.readBuffer = new byte[size];
-            return this.readBuffer;
+            byte[] buf = this.readBuffer.get();
+            if (buf == null || buf.length < size)
+                this.readBuffer.set(buf=new byte[size]);
+            return buf;
+        }
+
+        /**
+         * Sets the maximum number of worker threads. If the number is
+         * reduced, excess workers exit once they have completed their
+         * current task.
+         *
+         * @param maxThreads    The maximum number of worker threads
+         */
+        public void setMaxThreads(int maxThreads) {
+            if (maxThreads < 1)
+                throw new IllegalArgumentException();
+            synchronized (this.syncOn) {
+                this.maxThreads = maxThreads;
+                this.syncOn.notifyAll();
+                this.startWorkersNoSync();
+            }
+        }
+
+        public int getMaxThreads() {
+            synchronized (this.syncOn) {
+                return this.maxThreads;
+            }
+        }
+
+        /**
+         * Returns a snapshot of the service statistics.
+         */
+        public Statistics getStatistics() {
+            synchronized (this.syncOn) {
+                int queueDepth = 0;
+                for (RequestQueue queue : this.tasks.values())
+                    queueDepth += queue.tasks.size();
+                final long elapsed = (this.firstTaskTime > 0L)
+                        ? SystemClock.elapsedRealtime() - this.firstTaskTime
+                        : 0L;
+                return new Statistics(this.numWorkers,
+                                      this.executing.size(),
+                                      queueDepth,
+                                      this.maxQueueDepth,
+                                      this.completedTasks,
+                                      (this.completedTasks > 0L) ? (double)this.totalServiceMillis / (double)this.completedTasks : 0d,
+                                      (elapsed > 0L) ? (this.completedTasks * 1000d) / (double)elapsed : 0d);
+            }
         }
 
         /**
-         * Aborts all unserviced tasks and kills the thread. If a task is
-         * currently being serviced, it will complete before the thread exits.
-         * The thread may be restarted by queueing a new task.
+         * Aborts all unserviced tasks and kills the worker threads. If tasks
+         * are currently being serviced, they will complete before the threads
+         * exit. The threads may be restarted by queueing a new task.
          */
         public void release() {
             synchronized (this.syncOn) {
                 this.abortRequests(null);
                 this.dead = true;
-                this.syncOn.notify();
+                this.syncOn.notifyAll();
             }
         }
 
@@ -1219,9 +1321,9 @@ public abstract class TileReader implements Controls {
          */
         public void abortRequests(TileReader reader) {
             synchronized (this.syncOn) {
-                if(this.executing != null && executing.reader == reader) {
-                    if (this.executing.action instanceof Cancelable)
-                        ((Cancelable) this.executing.action).cancel();
+                for (Task t : this.executing) {
+                    if (t.reader == reader && t.action instanceof Cancelable)
+                        ((Cancelable) t.action).cancel();
                 }
 
                 if(reader != null) {
@@ -1254,6 +1356,22 @@ public abstract class TileReader implements Controls {
                 if(queue == null)
                     this.tasks.put(reader, queue=new RequestQueue());
                 queue.requestPrioritizer = prioritizer;
+                queue.dirty = true;
+            }
+        }
+
+        /**
+         * Marks the queued requests for the specified reader to be re-sorted
+         * before the next selection. Should be invoked when the reader's
+         * request prioritizer has been refocused.
+         *
+         * @param reader    The reader
+         */
+        public void reprioritize(TileReader reader) {
+            synchronized(this.syncOn) {
+                RequestQueue queue = this.tasks.get(reader);
+                if(queue != null)
+                    queue.dirty = true;
             }
         }
 
@@ -1263,66 +1381,106 @@ public abstract class TileReader implements Controls {
                 if(queue == null)
                     this.tasks.put(reader, queue=new RequestQueue());
                 queue.enqueue(new Task(reader, r));
-                this.syncOn.notify();
+
+                int queueDepth = 0;
+                for (RequestQueue q : this.tasks.values())
+                    queueDepth += q.tasks.size();
+                if (queueDepth > this.maxQueueDepth)
+                    this.maxQueueDepth = queueDepth;
+                if (this.firstTaskTime == 0L)
+                    this.firstTaskTime = SystemClock.elapsedRealtime();
 
                 this.dead = false;
-                if (!this.started) {
-                    Thread t = new Thread() {
-                        @Override
-                        public void run() {
-                            AsynchronousIO.this.runImpl();
-                        }
-                    };
-                    t.setPriority(Thread.MIN_PRIORITY);
-                    t.setName("tilereader-async-io-thread@" + Integer.toString(this.hashCode(), 16));
+                this.syncOn.notifyAll();
+                this.startWorkersNoSync();
+            }
+        }
 
-                    this.started = true;
-                    t.start();
+        private void startWorkersNoSync() {
+            // start a new worker if there are no idle workers available to
+            // pick up the work
+            if (this.dead || this.numIdle > 0 || this.numWorkers >= this.maxThreads)
+                return;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    AsynchronousIO.this.runImpl();
                 }
-            }
+            };
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.setName("tilereader-async-io-thread@" + Integer.toString(this.hashCode(), 16) + "-" + this.numWorkers);
+
+            this.numWorkers++;
+            t.start();
         }
 
         private void runImpl() {
-            Task task;
+            Task task = null;
+            Object taskLock = null;
+            long taskStart = 0L;
             while (true) {
                 synchronized (this.syncOn) {
-                    this.executing = null;
-                    if (this.dead) {
-                        this.started = false;
+                    if (task != null) {
+                        this.executing.remove(task);
+                        this.busy.remove(taskLock);
+                        this.completedTasks++;
+                        this.totalServiceMillis += SystemClock.elapsedRealtime()-taskStart;
+                        task = null;
+                        // requests for the reader may now be serviced
+                        this.syncOn.notifyAll();
+                    }
+                    if (this.dead || this.numWorkers > this.maxThreads) {
+                        this.numWorkers--;
                         break;
                     }
 
-                    // iterate all request queues and select the oldest task.
+                    // iterate all request queues for readers that are not
+                    // currently being serviced and select the oldest task.
                     // oldest task is used here to prevent starvation
                     RequestQueue rq = null;
                     int candidateId = Integer.MAX_VALUE;
-                    for(RequestQueue queue : tasks.values()) {
-                        final Task t = queue.peek();
+                    for(Map.Entry<TileReader, RequestQueue> entry : tasks.entrySet()) {
+                        if(this.busy.contains(entry.getKey().readLock))
+                            continue;
+                        final Task t = entry.getValue().peek();
                         if(t == null)
                             continue;
                         if(t.id < candidateId) {
-                            rq = queue;
+                            rq = entry.getValue();
                             candidateId = t.id;
                         }
                     }
 
                     if (rq == null) {
                         final long startIdle = SystemClock.elapsedRealtime();
-                        this.readBuffer = null;
+                        this.readBuffer.remove();
+                        this.numIdle++;
                         try {
                             this.syncOn.wait(this.maxIdle);
                         } catch (InterruptedException ignored) {
+                        } finally {
+                            this.numIdle--;
                         }
                         final long stopIdle = SystemClock.elapsedRealtime();
                         // check if the thread has idle'd out
-                        if(this.maxIdle > 0L && (stopIdle-startIdle) >= this.maxIdle)
-                            this.dead = true;
+                        if(this.maxIdle > 0L && (stopIdle-startIdle) >= this.maxIdle) {
+                            this.numWorkers--;
+                            if(this.numWorkers == 0)
+                                this.dead = true;
+                            break;
+                        }
                         // wake up and re-run the sync block
                         continue;
                     }
 
                     task = rq.get();
-                    this.executing = task;
+                    taskLock = task.reader.readLock;
+                    this.executing.add(task);
+                    this.busy.add(taskLock);
+                    taskStart = SystemClock.elapsedRealtime();
+
+                    // bring up another worker if there may be more work
+                    this.startWorkersNoSync();
                 }
 
                 try {
@@ -1345,6 +1503,47 @@ public abstract class TileReader implements Controls {
                 this.id = idGenerator.getAndIncrement();
             }
         }
+
+        /**
+         * Snapshot of the statistics for an {@link AsynchronousIO}.
+         */
+        public final static class Statistics {
+            /** the number of worker threads */
+            public final int workerThreads;
+            /** the number of tasks currently being serviced */
+            public final int activeTasks;
+            /** the number of tasks waiting to be serviced */
+            public final int queueDepth;
+            /** the maximum number of tasks waiting at one time */
+            public final int maxQueueDepth;
+            /** the number of tasks serviced */
+            public final long completedTasks;
+            /** the mean time to service a task, in milliseconds */
+            public final double meanServiceMillis;
+            /** the mean number of tasks serviced per second */
+            public final double throughput;
+
+            Statistics(int workerThreads, int activeTasks, int queueDepth, int maxQueueDepth, long completedTasks, double meanServiceMillis, double throughput) {
+                this.workerThreads = workerThreads;
+                this.activeTasks = activeTasks;
+                this.queueDepth = queueDepth;
+                this.maxQueueDepth = maxQueueDepth;
+                this.completedTasks = completedTasks;
+                this.meanServiceMillis = meanServiceMillis;
+                this.throughput = throughput;
+            }
+
+            @Override
+            public String toString() {
+                return "Statistics {workerThreads=" + workerThreads
+                        + ",activeTasks=" + activeTasks
+                        + ",queueDepth=" + queueDepth
+                        + ",maxQueueDepth=" + maxQueueDepth
+                        + ",completedTasks=" + completedTasks
+                        + ",meanServiceMillis=" + meanServiceMillis
+                        + ",throughput=" + throughput + "}";
+            }
+        }
     } // AsynchronousIO
 
 
@@ -1352,11 +1551,35 @@ public abstract class TileReader implements Controls {
         // sort order for tasks is LO => HI priority
         ArrayList<AsynchronousIO.Task> tasks = new ArrayList<>(64);
         Comparator<ReadRequest> requestPrioritizer;
+        boolean dirty;
 
+        /**
+         * Returns the highest priority task. The queue is only re-sorted if
+         * the prioritizer has been refocused since the last selection.
+         * Canceled read requests are discarded.
+         */
         AsynchronousIO.Task peek() {
             if(tasks.isEmpty())
                 return null;
-            return tasks.get(tasks.size()-1);
+            if(dirty) {
+                dirty = false;
+                try {
+                    Collections.sort(tasks, this);
+                } catch(IllegalArgumentException e) {
+                    // the prioritizer was refocused while sorting; the order
+                    // will be corrected on the next selection
+                    dirty = true;
+                }
+            }
+            while(!tasks.isEmpty()) {
+                final int idx = tasks.size()-1;
+                final AsynchronousIO.Task t = tasks.get(idx);
+                if(t.action instanceof ReadRequestTask && ((ReadRequestTask)t.action).request.canceled)
+                    tasks.remove(idx);
+                else
+                    return t;
+            }
+            return null;
         }
 
         AsynchronousIO.Task get() {
@@ -1366,19 +1589,18 @@ public abstract class TileReader implements Controls {
         }
 
         void enqueue(AsynchronousIO.Task task) {
-            tasks.add(task);
-            Collections.sort(tasks, this);
-            while(!tasks.isEmpty()) {
-                final int idx = tasks.size()-1;
-                final AsynchronousIO.Task t = tasks.get(idx);
-                if(t.action instanceof ReadRequestTask && ((ReadRequestTask)t.action).request.canceled)
-                    tasks.remove(idx);
-                else
-                    break;
+            if(dirty) {
+                tasks.add(task);
+                return;
             }
+            // insert into the sorted queue
+            int idx = Collections.binarySearch(tasks, task, this);
+            if(idx < 0)
+                idx = -(idx+1);
+            tasks.add(idx, task);
         }
 
-                @Override
+        @Override
         public int compare(AsynchronousIO.Task a, AsynchronousIO.Task b) {
             if(a == null && b == null)
                 return 0;
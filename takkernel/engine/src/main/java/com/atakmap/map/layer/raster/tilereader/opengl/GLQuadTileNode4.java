@@ -780,7 +780,8 @@ public class GLQuadTileNode4 implements
 
             view.scratch.geo.set(0d);
             this.core.imprecise.groundToImage(view.scratch.geo, view.scratch.pointD);
-            this.core.requestPrioritizer.setFocus((long) view.scratch.pointD.x, (long) view.scratch.pointD.y, null, 0);
+            if(this.core.requestPrioritizer.setFocus((long) view.scratch.pointD.x, (long) view.scratch.pointD.y, null, 0))
+                this.core.asyncio.reprioritize(this.core.tileReader);
 
             TileCacheControl ctrl = core.tileReader.getControl(TileCacheControl.class);
             if(ctrl != null)
@@ -29,7 +29,21 @@ final class TileReadRequestPrioritizer implements Comparator<TileReader.ReadRequ
         levelPrioritizer = highToLowLevelPrioritization ? -1 : 1;
     }
 
-    void setFocus(double poiX, double poiY, RectD[] rois, int numRois) {
+    /**
+     * @return  <code>true</code> if the focus changed, <code>false</code>
+     *          otherwise
+     */
+    boolean setFocus(double poiX, double poiY, RectD[] rois, int numRois) {
+        boolean changed = (this.poiX != poiX || this.poiY != poiY || this.numRois != numRois);
+        for(int i = 0; !changed && i < numRois; i++) {
+            changed = this.rois[i].left != rois[i].left ||
+                      this.rois[i].top != rois[i].top ||
+                      this.rois[i].right != rois[i].right ||
+                      this.rois[i].bottom != rois[i].bottom;
+        }
+        if(!changed)
+            return false;
+
         this.poiX = poiX;
         this.poiY = poiY;
         if(this.rois == null || this.rois.length < numRois)
@@ -43,6 +57,7 @@ final class TileReadRequestPrioritizer implements Comparator<TileReader.ReadRequ
             this.rois[i].bottom = rois[i].bottom;
         }
         this.numRois = numRois;
+        return true;
     }
 
     @Override
@@ -0,0 +1,493 @@
+package com.atakmap.spatial;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.GeometryCollection;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+
+/**
+ * A geometry whose coordinates have been copied into arrays so that the
+ * common spatial predicates may be evaluated in the JVM, without a round trip
+ * through SpatiaLite. Only the X and Y ordinates are considered.
+ *
+ * <P>Predicates are tri-state. {@link #UNKNOWN} is returned where the result
+ * is sensitive to boundary semantics that are not implemented here, or where
+ * the geometries are too complex for a brute-force evaluation to be
+ * worthwhile; the caller is expected to fall back on SpatiaLite.
+ */
+final class PreparedGeometry {
+
+    final static int FALSE = 0;
+    final static int TRUE = 1;
+    final static int UNKNOWN = -1;
+
+    /**
+     * The maximum number of segment pairs that will be tested before a
+     * predicate is deferred to SpatiaLite.
+     */
+    private final static long MAX_SEGMENT_PAIRS = 250000L;
+
+    /** isolated points, interleaved x,y */
+    private final double[] points;
+    private final int numPoints;
+    /** linestrings, each interleaved x,y */
+    private final double[][] lines;
+    /** polygons, each an array of rings, exterior ring first */
+    private final double[][][] polygons;
+
+    private final int numSegments;
+
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+
+    private PreparedGeometry(double[] points, int numPoints, Collection<double[]> lines, Collection<double[][]> polygons) {
+        this.points = points;
+        this.numPoints = numPoints;
+        this.lines = lines.toArray(new double[0][]);
+        this.polygons = polygons.toArray(new double[0][][]);
+
+        this.minX = Double.POSITIVE_INFINITY;
+        this.minY = Double.POSITIVE_INFINITY;
+        this.maxX = Double.NEGATIVE_INFINITY;
+        this.maxY = Double.NEGATIVE_INFINITY;
+
+        int segments = numPoints;
+        this.expand(points, numPoints*2);
+        for(double[] line : this.lines) {
+            this.expand(line, line.length);
+            segments += Math.max(line.length/2-1, 1);
+        }
+        for(double[][] polygon : this.polygons) {
+            // the exterior ring bounds the polygon
+            this.expand(polygon[0], polygon[0].length);
+            for(double[] ring : polygon)
+                segments += ring.length/2;
+        }
+        this.numSegments = segments;
+    }
+
+    private void expand(double[] xy, int len) {
+        for(int i = 0; i < len; i += 2) {
+            if(xy[i] < this.minX)
+                this.minX = xy[i];
+            if(xy[i] > this.maxX)
+                this.maxX = xy[i];
+            if(xy[i+1] < this.minY)
+                this.minY = xy[i+1];
+            if(xy[i+1] > this.maxY)
+                this.maxY = xy[i+1];
+        }
+    }
+
+    boolean isEmpty() {
+        return (this.numPoints == 0 && this.lines.length == 0 && this.polygons.length == 0);
+    }
+
+    /**************************************************************************/
+    // Factory
+
+    static PreparedGeometry point(double x, double y) {
+        return new PreparedGeometry(new double[] {x, y}, 1, new ArrayList<double[]>(0), new ArrayList<double[][]>(0));
+    }
+
+    /**
+     * @param xy    The linestring vertices, interleaved x,y
+     */
+    static PreparedGeometry lineString(double[] xy) {
+        final Collection<double[]> lines = new ArrayList<double[]>(1);
+        if(xy.length > 0)
+            lines.add(xy);
+        return new PreparedGeometry(new double[0], 0, lines, new ArrayList<double[][]>(0));
+    }
+
+    /**
+     * @param rings The polygon rings, exterior ring first, each interleaved
+     *              x,y
+     */
+    static PreparedGeometry polygon(double[][] rings) {
+        final Collection<double[][]> polygons = new ArrayList<double[][]>(1);
+        if(rings.length > 0 && rings[0].length > 0)
+            polygons.add(rings);
+        return new PreparedGeometry(new double[0], 0, new ArrayList<double[]>(0), polygons);
+    }
+
+    /**
+     * Prepares the specified geometry.
+     *
+     * @return  The prepared geometry or <code>null</code> if the geometry
+     *          contains an unsupported type
+     */
+    static PreparedGeometry prepare(Geometry geometry) {
+        final PointBuffer points = new PointBuffer();
+        final Collection<double[]> lines = new ArrayList<double[]>();
+        final Collection<double[][]> polygons = new ArrayList<double[][]>();
+        if(!flatten(geometry, points, lines, polygons))
+            return null;
+        return new PreparedGeometry(points.xy, points.size, lines, polygons);
+    }
+
+    private static boolean flatten(Geometry geometry, PointBuffer points, Collection<double[]> lines, Collection<double[][]> polygons) {
+        if(geometry instanceof Point) {
+            final Point p = (Point)geometry;
+            points.add(p.getX(), p.getY());
+        } else if(geometry instanceof LineString) {
+            final double[] xy = toArray((LineString)geometry);
+            if(xy.length > 0)
+                lines.add(xy);
+        } else if(geometry instanceof Polygon) {
+            final Polygon polygon = (Polygon)geometry;
+            final LineString exterior = polygon.getExteriorRing();
+            if(exterior == null || exterior.getNumPoints() == 0)
+                return true;
+            final Collection<LineString> interior = polygon.getInteriorRings();
+            final double[][] rings = new double[1+interior.size()][];
+            rings[0] = toArray(exterior);
+            int i = 1;
+            for(LineString ring : interior)
+                rings[i++] = toArray(ring);
+            polygons.add(rings);
+        } else if(geometry instanceof GeometryCollection) {
+            for(Geometry child : ((GeometryCollection)geometry).getGeometries())
+                if(!flatten(child, points, lines, polygons))
+                    return false;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static double[] toArray(LineString linestring) {
+        final int numPoints = linestring.getNumPoints();
+        final double[] xy = new double[numPoints*2];
+        for(int i = 0; i < numPoints; i++) {
+            xy[i*2] = linestring.getX(i);
+            xy[i*2+1] = linestring.getY(i);
+        }
+        return xy;
+    }
+
+    /**************************************************************************/
+    // Predicates
+
+    /**
+     * Returns {@link #TRUE} if the two geometries share any point, including
+     * points on their boundaries.
+     */
+    int intersects(PreparedGeometry other) {
+        if(this.isEmpty() || other.isEmpty())
+            return FALSE;
+        if(!this.envelopeIntersects(other))
+            return FALSE;
+        if((long)this.numSegments*(long)other.numSegments > MAX_SEGMENT_PAIRS)
+            return UNKNOWN;
+
+        if(this.edgesIntersect(other))
+            return TRUE;
+
+        // no edges meet; each component of one geometry is either entirely
+        // within or entirely outside of the areal components of the other
+        if(this.containsAnyVertexOf(other) || other.containsAnyVertexOf(this))
+            return TRUE;
+        return FALSE;
+    }
+
+    /**
+     * Returns {@link #TRUE} if no point of <code>other</code> lies in the
+     * exterior of this geometry and at least one point of the interior of
+     * <code>other</code> lies in the interior of this geometry.
+     *
+     * <P>Only areal geometries are evaluated. If the boundaries of the two
+     * geometries touch or cross, {@link #UNKNOWN} is returned.
+     */
+    int contains(PreparedGeometry other) {
+        if(this.numPoints > 0 || this.lines.length > 0)
+            return UNKNOWN;
+        if(this.isEmpty() || other.isEmpty())
+            return FALSE;
+        if(other.minX < this.minX || other.maxX > this.maxX || other.minY < this.minY || other.maxY > this.maxY)
+            return FALSE;
+        if((long)this.numSegments*(long)other.numSegments > MAX_SEGMENT_PAIRS)
+            return UNKNOWN;
+
+        if(this.edgesIntersect(other))
+            return UNKNOWN;
+
+        // with no boundary interaction, each component of 'other' is either
+        // entirely inside or entirely outside of this geometry
+        for(int i = 0; i < other.numPoints; i++)
+            if(!this.areaContains(other.points[i*2], other.points[i*2+1]))
+                return FALSE;
+        for(double[] line : other.lines)
+            if(!this.areaContains(line[0], line[1]))
+                return FALSE;
+        for(double[][] polygon : other.polygons)
+            if(!this.areaContains(polygon[0][0], polygon[0][1]))
+                return FALSE;
+
+        // if any part of this geometry's boundary lies within 'other', then
+        // 'other' covers points exterior to this geometry
+        for(double[][] polygon : this.polygons)
+            for(double[] ring : polygon)
+                if(other.areaContains(ring[0], ring[1]))
+                    return FALSE;
+
+        return TRUE;
+    }
+
+    private boolean envelopeIntersects(PreparedGeometry other) {
+        return this.minX <= other.maxX && this.maxX >= other.minX &&
+               this.minY <= other.maxY && this.maxY >= other.minY;
+    }
+
+    /**
+     * Returns <code>true</code> if any segment of this geometry intersects
+     * any segment of <code>other</code>.
+     */
+    private boolean edgesIntersect(PreparedGeometry other) {
+        final SegmentIterator a = new SegmentIterator(this);
+        final SegmentIterator b = new SegmentIterator(other);
+        while(a.next()) {
+            if(Math.max(a.x0, a.x1) < other.minX || Math.min(a.x0, a.x1) > other.maxX ||
+               Math.max(a.y0, a.y1) < other.minY || Math.min(a.y0, a.y1) > other.maxY) {
+
+                continue;
+            }
+            b.reset();
+            while(b.next()) {
+                if(segmentsIntersect(a.x0, a.y0, a.x1, a.y1, b.x0, b.y0, b.x1, b.y1))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if a vertex of any component of
+     * <code>other</code> lies within the areal components of this geometry.
+     */
+    private boolean containsAnyVertexOf(PreparedGeometry other) {
+        if(this.polygons.length == 0)
+            return false;
+        for(int i = 0; i < other.numPoints; i++)
+            if(this.areaContains(other.points[i*2], other.points[i*2+1]))
+                return true;
+        for(double[] line : other.lines)
+            if(this.areaContains(line[0], line[1]))
+                return true;
+        for(double[][] polygon : other.polygons)
+            if(this.areaContains(polygon[0][0], polygon[0][1]))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the specified location is within any of
+     * the polygons of this geometry. The location is assumed not to lie on a
+     * boundary.
+     */
+    private boolean areaContains(double x, double y) {
+        if(x < this.minX || x > this.maxX || y < this.minY || y > this.maxY)
+            return false;
+        for(double[][] polygon : this.polygons) {
+            if(!ringContains(polygon[0], x, y))
+                continue;
+            boolean inHole = false;
+            for(int i = 1; i < polygon.length; i++) {
+                if(ringContains(polygon[i], x, y)) {
+                    inHole = true;
+                    break;
+                }
+            }
+            if(!inHole)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Even-odd ray casting test. The ring is implicitly closed.
+     */
+    static boolean ringContains(double[] ring, double x, double y) {
+        final int n = ring.length/2;
+        boolean inside = false;
+        for(int i = 0, j = n-1; i < n; j = i++) {
+            final double xi = ring[i*2];
+            final double yi = ring[i*2+1];
+            final double xj = ring[j*2];
+            final double yj = ring[j*2+1];
+            if(((yi > y) != (yj > y)) && (x < (xj-xi)*(y-yi)/(yj-yi)+xi))
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     * Returns <code>true</code> if the closed segments <code>p0-p1</code> and
+     * <code>q0-q1</code> share any point. Degenerate segments are treated as
+     * points.
+     */
+    static boolean segmentsIntersect(double p0x, double p0y, double p1x, double p1y,
+                                     double q0x, double q0y, double q1x, double q1y) {
+
+        final int o1 = orientation(p0x, p0y, p1x, p1y, q0x, q0y);
+        final int o2 = orientation(p0x, p0y, p1x, p1y, q1x, q1y);
+        final int o3 = orientation(q0x, q0y, q1x, q1y, p0x, p0y);
+        final int o4 = orientation(q0x, q0y, q1x, q1y, p1x, p1y);
+
+        if(o1 != o2 && o3 != o4)
+            return true;
+
+        // collinear cases
+        if(o1 == 0 && onSegment(p0x, p0y, p1x, p1y, q0x, q0y))
+            return true;
+        if(o2 == 0 && onSegment(p0x, p0y, p1x, p1y, q1x, q1y))
+            return true;
+        if(o3 == 0 && onSegment(q0x, q0y, q1x, q1y, p0x, p0y))
+            return true;
+        if(o4 == 0 && onSegment(q0x, q0y, q1x, q1y, p1x, p1y))
+            return true;
+        return false;
+    }
+
+    private static int orientation(double ax, double ay, double bx, double by, double cx, double cy) {
+        final double v = (bx-ax)*(cy-ay) - (by-ay)*(cx-ax);
+        if(v > 0d)
+            return 1;
+        else if(v < 0d)
+            return -1;
+        else
+            return 0;
+    }
+
+    /**
+     * Returns <code>true</code> if the collinear point <code>r</code> lies
+     * within the bounds of segment <code>p-q</code>.
+     */
+    private static boolean onSegment(double px, double py, double qx, double qy, double rx, double ry) {
+        return rx >= Math.min(px, qx) && rx <= Math.max(px, qx) &&
+               ry >= Math.min(py, qy) && ry <= Math.max(py, qy);
+    }
+
+    /**************************************************************************/
+
+    private final static class PointBuffer {
+        double[] xy = new double[8];
+        int size;
+
+        void add(double x, double y) {
+            if(this.size*2 == this.xy.length) {
+                final double[] grown = new double[this.xy.length*2];
+                System.arraycopy(this.xy, 0, grown, 0, this.xy.length);
+                this.xy = grown;
+            }
+            this.xy[this.size*2] = x;
+            this.xy[this.size*2+1] = y;
+            this.size++;
+        }
+    }
+
+    /**
+     * Iterates the segments of a geometry. Points are returned as degenerate
+     * segments and polygon rings are implicitly closed.
+     */
+    private final static class SegmentIterator {
+        final PreparedGeometry geom;
+
+        double x0;
+        double y0;
+        double x1;
+        double y1;
+
+        /** 0=points, 1=lines, 2=polygons, 3=done */
+        int stage;
+        int part;
+        int ring;
+        int vertex;
+
+        SegmentIterator(PreparedGeometry geom) {
+            this.geom = geom;
+            this.reset();
+        }
+
+        void reset() {
+            this.stage = 0;
+            this.part = 0;
+            this.ring = 0;
+            this.vertex = 0;
+        }
+
+        boolean next() {
+            while(true) {
+                switch(this.stage) {
+                    case 0 :
+                        if(this.part < this.geom.numPoints) {
+                            this.x0 = this.geom.points[this.part*2];
+                            this.y0 = this.geom.points[this.part*2+1];
+                            this.x1 = this.x0;
+                            this.y1 = this.y0;
+                            this.part++;
+                            return true;
+                        }
+                        break;
+                    case 1 :
+                        if(this.part < this.geom.lines.length) {
+                            final double[] line = this.geom.lines[this.part];
+                            final int n = line.length/2;
+                            if(n == 1 && this.vertex == 0) {
+                                this.set(line, 0, 0);
+                                this.vertex++;
+                                return true;
+                            } else if(this.vertex < n-1) {
+                                this.set(line, this.vertex, this.vertex+1);
+                                this.vertex++;
+                                return true;
+                            }
+                            this.part++;
+                            this.vertex = 0;
+                            continue;
+                        }
+                        break;
+                    case 2 :
+                        if(this.part < this.geom.polygons.length) {
+                            final double[][] polygon = this.geom.polygons[this.part];
+                            if(this.ring < polygon.length) {
+                                final double[] ring = polygon[this.ring];
+                                final int n = ring.length/2;
+                                if(this.vertex < n) {
+                                    this.set(ring, this.vertex, (this.vertex+1)%n);
+                                    this.vertex++;
+                                    return true;
+                                }
+                                this.ring++;
+                                this.vertex = 0;
+                                continue;
+                            }
+                            this.part++;
+                            this.ring = 0;
+                            continue;
+                        }
+                        break;
+                    default :
+                        return false;
+                }
+                this.stage++;
+                this.part = 0;
+                this.ring = 0;
+                this.vertex = 0;
+            }
+        }
+
+        private void set(double[] xy, int i, int j) {
+            this.x0 = xy[i*2];
+            this.y0 = xy[i*2+1];
+            this.x1 = xy[j*2];
+            this.y1 = xy[j*2+1];
+        }
+    }
+}
@@ -10,6 +10,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import android.content.Context;
 import android.database.sqlite.SQLiteException;
@@ -75,6 +77,16 @@ import com.atakmap.map.layer.feature.geometry.Polygon;
  * that methods are invoked in a thread-safe manner. It is strongly recommended
  * that each instance only be used on a single thread.
  * 
+ * <H2>Predicates</H2>
+ * 
+ * <P>{@link #intersects(long, long)} and {@link #contains(long, long)} are
+ * evaluated in the JVM for points, linestrings, polygons and collections
+ * thereof. The coordinates of recently used geometries are retained so that
+ * repeated tests against the same geometry do not go back to the database.
+ * Tests whose results depend on boundary semantics (e.g. a point on the edge
+ * of a polygon for <code>contains</code>), as well as all other operations,
+ * are evaluated by SpatiaLite.
+ * 
  * <P>Special care must be taken when the calculator is in batch mode. When in
  * batch mode, instructions may only be issued to the calculator on the thread
  * that the batch was started in.
@@ -109,6 +121,9 @@ public final class SpatialCalculator {
     public final static int GEOM_TYPE_MULTIPOLYGON = 0x06;
     public final static int GEOM_TYPE_GEOMETRYCOLLECTION = 0x07;
 
+    /** maximum number of prepared geometries retained */
+    private final static int MAX_PREPARED = 256;
+
     static {
         // spawn a thread to clean up any old files
         cleanup(DEFAULT_TMP_DIR, getRuntimeTempDir(), false);
@@ -127,6 +142,14 @@ public final class SpatialCalculator {
     private StringBuilder wkt;
     private QuadBlob quad;
 
+    /**
+     * Geometries prepared for predicate evaluation, keyed on handle. A
+     * <code>null</code> value records a geometry that cannot be prepared.
+     * The entry for a handle must be invalidated whenever its geometry is
+     * modified.
+     */
+    private Map<Long, PreparedGeometry> prepared;
+
     private StatementIface insertGeomWkt;
     private StatementIface insertGeomBlob;
     private StatementIface insertGeomWkb;
@@ -355,6 +378,7 @@ public final class SpatialCalculator {
         this.arr2 = null;
         this.wkt = null;
         this.quad = null;
+        this.prepared = null;
     }
 
     /**
@@ -435,6 +459,8 @@ public final class SpatialCalculator {
         if(this.clear == null)
             this.clear = this.database.compileStatement("DELETE FROM Calculator");
         this.clear.execute();
+        if(this.prepared != null)
+            this.prepared.clear();
     }
     
     /**
@@ -466,6 +492,9 @@ public final class SpatialCalculator {
         if(commit)
             this.database.setTransactionSuccessful();
         this.database.endTransaction();
+        // handles created or modified during the batch are no longer valid
+        if(!commit && this.prepared != null)
+            this.prepared.clear();
     }
 
     /**
@@ -531,7 +560,9 @@ public final class SpatialCalculator {
 
             this.insertPoint.execute();
 
-            return Databases.lastInsertRowId(this.database);
+            final long handle = Databases.lastInsertRowId(this.database);
+            this.setPrepared(handle, PreparedGeometry.point(bindArgs[0], bindArgs[1]));
+            return handle;
         } finally {
             if(this.insertPoint != null)
                 this.insertPoint.clearBindings();
@@ -562,20 +593,32 @@ public final class SpatialCalculator {
         
     private long createLineString(int numPoints, Iterator<GeoPoint> points) {
         LineString line = new LineString(2);
+        double[] xy = new double[numPoints*2];
+        int idx = 0;
         GeoPoint geo;
         while(points.hasNext()) {
             geo = points.next();
             line.addPoint(geo.getLongitude(), geo.getLatitude());
+            if(idx < xy.length) {
+                xy[idx++] = geo.getLongitude();
+                xy[idx++] = geo.getLatitude();
+            }
         }
         
+        final long handle;
         switch(preferredCoding) {
             case FeatureDataSource.FeatureDefinition.GEOM_SPATIALITE_BLOB :
-                return this.createGeometry(line);
+                handle = this.createGeometry(line);
+                break;
             case FeatureDataSource.FeatureDefinition.GEOM_WKT :
-                return this.createGeometry(createLineStringWkt(line));
+                handle = this.createGeometry(createLineStringWkt(line));
+                break;
             default :
                 throw new IllegalArgumentException();
         }
+        if(idx == xy.length)
+            this.setPrepared(handle, PreparedGeometry.lineString(xy));
+        return handle;
     }
 
     /**
@@ -640,14 +683,19 @@ public final class SpatialCalculator {
                 ring.addPoint(geo.getLongitude(), geo.getLatitude());
             polygon.addRing(ring);
         }
+        final long handle;
         switch(preferredCoding) {
             case FeatureDataSource.FeatureDefinition.GEOM_SPATIALITE_BLOB :
-                return this.createGeometry(createPolygonBlob(polygon));
+                handle = this.createGeometry(createPolygonBlob(polygon));
+                break;
             case FeatureDataSource.FeatureDefinition.GEOM_WKT :
-                return this.createGeometry(createPolygonWkt(points, innerRings));
+                handle = this.createGeometry(createPolygonWkt(points, innerRings));
+                break;
             default :
                 throw new IllegalArgumentException();
         }
+        this.setPrepared(handle, preparePolygon(points, innerRings));
+        return handle;
     }
 
     public long createGeometry(byte[] blob) {
@@ -712,7 +760,9 @@ public final class SpatialCalculator {
      * @return  A handle to the polygon created in the calculator's memory.
      */
     public long createPolygon(GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d) {
-        return this.createGeometry(this.createQuadBlob(a, b, c, d));
+        final long handle = this.createGeometry(this.createQuadBlob(a, b, c, d));
+        this.setPrepared(handle, prepareQuad(a, b, c, d));
+        return handle;
     }
     
     /**
@@ -726,6 +776,7 @@ public final class SpatialCalculator {
                 this.deleteGeom = this.database.compileStatement("DELETE FROM Calculator WHERE id = ?");
             this.deleteGeom.bind(1, handle);
             this.deleteGeom.execute();
+            this.invalidate(handle);
         } finally {
             if(this.deleteGeom != null)
                 this.deleteGeom.clearBindings();
@@ -850,6 +901,14 @@ public final class SpatialCalculator {
      *          <code>false</code> otherwise.
      */
     public boolean intersects(long geom1, long geom2) {
+        final PreparedGeometry a = this.getPrepared(geom1);
+        final PreparedGeometry b = (a != null) ? this.getPrepared(geom2) : null;
+        if(a != null && b != null) {
+            final int retval = a.intersects(b);
+            if(retval != PreparedGeometry.UNKNOWN)
+                return (retval == PreparedGeometry.TRUE);
+        }
+
         CursorIface result = null;
         try {
             if(this.arr2 == null)
@@ -877,6 +936,14 @@ public final class SpatialCalculator {
      *          <code>geom2</code>, <code>false</code> otherwise.
      */
     public boolean contains(long geom1, long geom2) {
+        final PreparedGeometry a = this.getPrepared(geom1);
+        final PreparedGeometry b = (a != null) ? this.getPrepared(geom2) : null;
+        if(a != null && b != null) {
+            final int retval = a.contains(b);
+            if(retval != PreparedGeometry.UNKNOWN)
+                return (retval == PreparedGeometry.TRUE);
+        }
+
         CursorIface result = null;
         try {
             if(this.arr2 == null)
@@ -938,9 +1005,10 @@ public final class SpatialCalculator {
                 this.intersectionUpdate = this.database.compileStatement("UPDATE Calculator SET geom = Intersection((SELECT geom FROM Calculator WHERE id = ?), (SELECT geom FROM Calculator WHERE id = ?)) WHERE id = ?");
             this.intersectionUpdate.bind(1, geom1);
             this.intersectionUpdate.bind(2, geom2);
-            this.intersectionUpdate.bind(2, result);
+            this.intersectionUpdate.bind(3, result);
             
             this.intersectionUpdate.execute();
+            this.invalidate(result);
         } finally {
             if(this.intersectionUpdate != null)
                 this.intersectionUpdate.clearBindings();
@@ -994,6 +1062,7 @@ public final class SpatialCalculator {
             this.unionUpdate.bind(2, geom2);
             this.unionUpdate.bind(3, result);
             this.unionUpdate.execute();
+            this.invalidate(result);
         } finally {
             if(this.unionUpdate != null)
                 this.unionUpdate.clearBindings();
@@ -1025,6 +1094,7 @@ public final class SpatialCalculator {
             this.unionUpdate.bind(4, result);
             
             this.unionUpdate.execute();
+            this.invalidate(result);
         } finally {
             if(this.unionUpdate != null)
                 this.unionUpdate.clearBindings();
@@ -1067,6 +1137,7 @@ public final class SpatialCalculator {
             this.unaryUnionUpdate.bind(1, geom);
             this.unaryUnionUpdate.bind(2, result);
             this.unaryUnionUpdate.execute();
+            this.invalidate(result);
         } finally {
             if(this.unaryUnionUpdate != null)
                 this.unaryUnionUpdate.clearBindings();
@@ -1121,6 +1192,7 @@ public final class SpatialCalculator {
             this.differenceUpdate.bind(3, result);
             
             this.differenceUpdate.execute();
+            this.invalidate(result);
         } finally {
             if(this.differenceUpdate != null)
                 this.differenceUpdate.clearBindings();
@@ -1199,6 +1271,7 @@ public final class SpatialCalculator {
             stmt.bind(3, result);
             
             stmt.execute();
+            this.invalidate(result);
         } finally {
             if(stmt != null)
                 stmt.clearBindings();
@@ -1303,12 +1376,93 @@ public final class SpatialCalculator {
             this.bufferUpdate.bind(3, result);
             
             this.bufferUpdate.execute();
+            this.invalidate(result);
         } finally {
             if(this.bufferUpdate != null)
                 this.bufferUpdate.clearBindings();
         }
     }
 
+    /**************************************************************************/
+    // Prepared geometry
+
+    /**
+     * Returns the prepared geometry for the specified handle, loading it from
+     * the calculator's memory if necessary.
+     *
+     * @return  The prepared geometry or <code>null</code> if the geometry
+     *          does not exist or cannot be prepared
+     */
+    private PreparedGeometry getPrepared(long handle) {
+        if(this.prepared == null)
+            this.prepared = createPreparedCache();
+        final Long key = Long.valueOf(handle);
+        PreparedGeometry retval = this.prepared.get(key);
+        if(retval != null || this.prepared.containsKey(key))
+            return retval;
+
+        final Geometry geom = this.getGeometry(handle);
+        if(geom == null)
+            return null;
+        try {
+            retval = PreparedGeometry.prepare(geom);
+        } finally {
+            geom.dispose();
+        }
+        this.prepared.put(key, retval);
+        return retval;
+    }
+
+    private void setPrepared(long handle, PreparedGeometry geom) {
+        if(this.prepared == null)
+            this.prepared = createPreparedCache();
+        this.prepared.put(Long.valueOf(handle), geom);
+    }
+
+    private void invalidate(long handle) {
+        if(this.prepared != null)
+            this.prepared.remove(Long.valueOf(handle));
+    }
+
+    private static Map<Long, PreparedGeometry> createPreparedCache() {
+        return new LinkedHashMap<Long, PreparedGeometry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PreparedGeometry> eldest) {
+                return (this.size() > MAX_PREPARED);
+            }
+        };
+    }
+
+    private static PreparedGeometry preparePolygon(Collection<GeoPoint> points, Collection<Collection<GeoPoint>> innerRings) {
+        final double[][] rings = new double[1+innerRings.size()][];
+        rings[0] = toArray(points);
+        int i = 1;
+        for(Collection<GeoPoint> inner : innerRings)
+            rings[i++] = toArray(inner);
+        return PreparedGeometry.polygon(rings);
+    }
+
+    private static PreparedGeometry prepareQuad(GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d) {
+        return PreparedGeometry.polygon(new double[][] {
+            {
+                a.getLongitude(), a.getLatitude(),
+                b.getLongitude(), b.getLatitude(),
+                c.getLongitude(), c.getLatitude(),
+                d.getLongitude(), d.getLatitude(),
+            }
+        });
+    }
+
+    private static double[] toArray(Collection<GeoPoint> points) {
+        final double[] xy = new double[points.size()*2];
+        int i = 0;
+        for(GeoPoint geo : points) {
+            xy[i++] = geo.getLongitude();
+            xy[i++] = geo.getLatitude();
+        }
+        return xy;
+    }
+
     /**************************************************************************/
     // Object
     
@@ -1500,13 +1654,14 @@ public final class SpatialCalculator {
         switch(preferredCoding) {
             case FeatureDataSource.FeatureDefinition.GEOM_SPATIALITE_BLOB :
                 this.updateGeometry(handle, createPolygonBlob(polygon));
-                return;
+                break;
             case FeatureDataSource.FeatureDefinition.GEOM_WKT :
                 this.updateGeometry(handle, createPolygonWkt(points, innerRings));
-                return;
+                break;
             default :
                 throw new IllegalArgumentException("coding=" + preferredCoding);
         }
+        this.setPrepared(handle, preparePolygon(points, innerRings));
     }
 
 
@@ -1525,6 +1680,7 @@ public final class SpatialCalculator {
      */
     public void updatePolygon(long handle, GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d) {
         this.updateGeometry(handle, this.createQuadBlob(a, b, c, d));
+        this.setPrepared(handle, prepareQuad(a, b, c, d));
     }
 
 
@@ -1538,6 +1694,7 @@ public final class SpatialCalculator {
             this.updateGeomBlob.bind(2, handle);
 
             this.updateGeomBlob.execute();
+            this.invalidate(handle);
         } finally {
             if(this.updateGeomBlob!= null)
                 this.updateGeomBlob.clearBindings();
@@ -1553,6 +1710,7 @@ public final class SpatialCalculator {
             this.updateGeomWkt.bind(2, handle);
 
             this.updateGeomWkt.execute();
+            this.invalidate(handle);
         } finally {
             if(this.updateGeomWkt != null)
                 this.updateGeomWkt.clearBindings();
@@ -1570,6 +1728,7 @@ public final class SpatialCalculator {
             this.updatePoint.bind(3, handle);
 
             this.updatePoint.execute();
+            this.setPrepared(handle, PreparedGeometry.point(point.getLongitude(), point.getLatitude()));
         } finally {
             if(this.updatePoint!= null)
                 this.updatePoint.clearBindings();
@@ -345,6 +345,8 @@ public class Quadtree<T> {
             this.children[i] = null;
         this.numChildren = 0;
         this.descendants = 0;
+        if(this.objectToNode != null)
+            this.objectToNode.clear();
     }
 
     /**************************************************************************/
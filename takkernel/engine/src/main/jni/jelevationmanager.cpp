@@ -78,6 +78,44 @@ JNIEXPORT jboolean JNICALL Java_com_atakmap_map_elevation_ElevationManager_getEl
         return false;
     return done;
 }
+JNIEXPORT jboolean JNICALL Java_com_atakmap_map_elevation_ElevationManager_getElevation___3DIIJ
+  (JNIEnv *env, jclass clazz, jdoubleArray mllaArr, jint offset, jint count, jlong cparamsPtr)
+{
+    TAKErr code(TE_Ok);
+    JNIDoubleArray mlla(*env, mllaArr, 0);
+    double *lla = mlla.get<double>() + (offset*3u);
+    if(cparamsPtr)
+        code = ElevationManager_getElevation(lla+2u, count, lla+1u, lla, 3u, 3u, 3u, *JLONG_TO_INTPTR(ElevationSource::QueryParameters, cparamsPtr));
+    else
+        code = ElevationManager_getElevation(lla+2u, count, lla+1u, lla, 3u, 3u, 3u, ElevationSource::QueryParameters());
+    const bool done = (code == TE_Ok);
+    if(code == TE_Done)
+        code = TE_Ok;
+    if(ATAKMapEngineJNI_checkOrThrow(env, code))
+        return false;
+    return done;
+}
+JNIEXPORT jboolean JNICALL Java_com_atakmap_map_elevation_ElevationManager_getElevation__Ljava_nio_DoubleBuffer_2IIJ
+  (JNIEnv *env, jclass clazz, jobject mllaBuffer, jint offset, jint count, jlong cparamsPtr)
+{
+    TAKErr code(TE_Ok);
+    double *lla = reinterpret_cast<double *>(env->GetDirectBufferAddress(mllaBuffer));
+    if(!lla) {
+        ATAKMapEngineJNI_checkOrThrow(env, TE_InvalidArg);
+        return false;
+    }
+    lla += offset;
+    if(cparamsPtr)
+        code = ElevationManager_getElevation(lla+2u, count, lla+1u, lla, 3u, 3u, 3u, *JLONG_TO_INTPTR(ElevationSource::QueryParameters, cparamsPtr));
+    else
+        code = ElevationManager_getElevation(lla+2u, count, lla+1u, lla, 3u, 3u, 3u, ElevationSource::QueryParameters());
+    const bool done = (code == TE_Ok);
+    if(code == TE_Done)
+        code = TE_Ok;
+    if(ATAKMapEngineJNI_checkOrThrow(env, code))
+        return false;
+    return done;
+}
 JNIEXPORT jdouble JNICALL Java_com_atakmap_map_elevation_ElevationManager_getGeoidHeight
   (JNIEnv *env, jclass clazz, jdouble lat, jdouble lng)
 {